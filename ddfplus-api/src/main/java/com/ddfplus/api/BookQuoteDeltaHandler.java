@@ -0,0 +1,30 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.api;
+
+import com.ddfplus.db.BookQuote;
+import com.ddfplus.db.BookQuoteDelta;
+
+/**
+ * Handler for incremental Book/Depth updates.
+ * <p>
+ * Live depth messages are delivered as the changed levels only, refreshes and
+ * the cached book sent on subscribe still go to
+ * {@link #onBookQuote(BookQuote)}.
+ */
+public interface BookQuoteDeltaHandler extends BookQuoteHandler {
+
+	/**
+	 * Callback for a live depth update.
+	 * 
+	 * @param bookQuote
+	 *            Depth Book, already updated
+	 * @param delta
+	 *            Changed levels, only valid during the call
+	 */
+	void onBookQuoteDelta(BookQuote bookQuote, BookQuoteDelta delta);
+}
@@ -6,7 +6,10 @@
  */
 package com.ddfplus.api;
 
+import com.ddfplus.db.BookQuote;
 import com.ddfplus.enums.ConnectionType;
+import com.ddfplus.metrics.MetricsPublisher;
+import com.ddfplus.service.feed.FeedServiceImpl;
 
 /**
  * DDF Client Configuration.
@@ -66,6 +69,67 @@ public class ClientConfig {
 	 * Activate minute bars for all symbols on the exchange.
 	 */
 	private String minuteBarExchanges;
+	/*
+	 * TCP socket receive buffer size in bytes, if null the default is used.
+	 */
+	private Integer receiveBufferSize;
+	/*
+	 * If > 1 messages are decoded on the connection thread and processed on
+	 * this many threads, sharded by symbol. Handlers are then called
+	 * concurrently for different symbols and have to be thread safe.
+	 */
+	private int processingShards;
+	/*
+	 * If true the DataMaster publishes an immutable QuoteSnapshot per quote
+	 * update, see Quote.getSnapshot().
+	 */
+	private boolean quoteSnapshots;
+	/*
+	 * If true FeedEvents are recycled per thread, only valid during the
+	 * handler call, see DataMaster.setReuseEvents().
+	 */
+	private boolean reuseEvents;
+	/*
+	 * Levels per side held for each depth book.
+	 */
+	private int bookDepth = BookQuote.DEFAULT_DEPTH;
+	/*
+	 * Number of books to allocate level storage for at start up, e.g. the
+	 * expected number of depth subscriptions.
+	 */
+	private int bookPreallocate;
+	/*
+	 * If greater than 0 the quotes are stored off heap, with this number of
+	 * recently used quotes kept on the heap. For full exchange subscriptions.
+	 */
+	private int offHeapHotQuotes;
+	/*
+	 * If set the DataMaster is loaded from this file at start up and
+	 * checkpointed to it while connected, see DataMasterSnapshot.
+	 */
+	private String warmStartFile;
+	private long warmStartIntervalSec = 60;
+	/*
+	 * Snapshot/refresh web service requests, symbols per request and number
+	 * of concurrent requests.
+	 */
+	private int refreshBatchSize = FeedServiceImpl.DEFAULT_BATCH_SIZE;
+	private int refreshConcurrency = FeedServiceImpl.DEFAULT_CONCURRENCY;
+	/*
+	 * UDP listen mode, on lost datagrams refresh at most this many quotes
+	 * updated within the look back. 0 disables the recovery.
+	 */
+	private int gapRefreshLimit = 1000;
+	private long gapLookbackSec = 60;
+	/*
+	 * Record per stage and per record type latency histograms, from socket
+	 * read to handler return.
+	 */
+	private boolean latencyMetrics;
+	/*
+	 * Publishes the latency metrics, JMX if null.
+	 */
+	private MetricsPublisher metricsPublisher;
 
 
 	public String getSnapshotPassword() {
@@ -206,6 +270,20 @@ public class ClientConfig {
 		sb.append("\n\tunknownSymbolDelay: " + unknownSymbolDelay);
 		sb.append("\n\tminuteBarsSymbols: " + minuteBarSymbols);
 		sb.append("\n\tminuteBarExchanges: " + minuteBarExchanges);
+		sb.append("\n\treceiveBufferSize: " + receiveBufferSize);
+		sb.append("\n\tprocessingShards: " + processingShards);
+		sb.append("\n\tquoteSnapshots: " + quoteSnapshots);
+		sb.append("\n\treuseEvents: " + reuseEvents);
+		sb.append("\n\tbookDepth: " + bookDepth);
+		sb.append("\n\tbookPreallocate: " + bookPreallocate);
+		sb.append("\n\toffHeapHotQuotes: " + offHeapHotQuotes);
+		sb.append("\n\twarmStartFile: " + warmStartFile);
+		sb.append("\n\twarmStartIntervalSec: " + warmStartIntervalSec);
+		sb.append("\n\trefreshBatchSize: " + refreshBatchSize);
+		sb.append("\n\trefreshConcurrency: " + refreshConcurrency);
+		sb.append("\n\tgapRefreshLimit: " + gapRefreshLimit);
+		sb.append("\n\tgapLookbackSec: " + gapLookbackSec);
+		sb.append("\n\tlatencyMetrics: " + latencyMetrics);
 		sb.append("\n");
 		return sb.toString();
 	}
@@ -278,6 +356,126 @@ public class ClientConfig {
 		this.snapshotIntervalSec = snapshotIntervalSec;
 	}
 
+	public Integer getReceiveBufferSize() {
+		return receiveBufferSize;
+	}
+
+	public void setReceiveBufferSize(Integer receiveBufferSize) {
+		this.receiveBufferSize = receiveBufferSize;
+	}
+
+	public int getProcessingShards() {
+		return processingShards;
+	}
+
+	public void setProcessingShards(int processingShards) {
+		this.processingShards = processingShards;
+	}
+
+	public boolean isQuoteSnapshots() {
+		return quoteSnapshots;
+	}
+
+	public void setQuoteSnapshots(boolean quoteSnapshots) {
+		this.quoteSnapshots = quoteSnapshots;
+	}
+
+	public boolean isReuseEvents() {
+		return reuseEvents;
+	}
+
+	public void setReuseEvents(boolean reuseEvents) {
+		this.reuseEvents = reuseEvents;
+	}
+
+	public int getBookDepth() {
+		return bookDepth;
+	}
+
+	public void setBookDepth(int bookDepth) {
+		this.bookDepth = bookDepth;
+	}
+
+	public int getBookPreallocate() {
+		return bookPreallocate;
+	}
+
+	public void setBookPreallocate(int bookPreallocate) {
+		this.bookPreallocate = bookPreallocate;
+	}
+
+	public int getOffHeapHotQuotes() {
+		return offHeapHotQuotes;
+	}
+
+	public void setOffHeapHotQuotes(int offHeapHotQuotes) {
+		this.offHeapHotQuotes = offHeapHotQuotes;
+	}
+
+	public String getWarmStartFile() {
+		return warmStartFile;
+	}
+
+	public void setWarmStartFile(String warmStartFile) {
+		this.warmStartFile = warmStartFile;
+	}
+
+	public long getWarmStartIntervalSec() {
+		return warmStartIntervalSec;
+	}
+
+	public void setWarmStartIntervalSec(long warmStartIntervalSec) {
+		this.warmStartIntervalSec = warmStartIntervalSec;
+	}
+
+	public int getRefreshBatchSize() {
+		return refreshBatchSize;
+	}
+
+	public void setRefreshBatchSize(int refreshBatchSize) {
+		this.refreshBatchSize = refreshBatchSize;
+	}
+
+	public int getRefreshConcurrency() {
+		return refreshConcurrency;
+	}
+
+	public void setRefreshConcurrency(int refreshConcurrency) {
+		this.refreshConcurrency = refreshConcurrency;
+	}
+
+	public int getGapRefreshLimit() {
+		return gapRefreshLimit;
+	}
+
+	public void setGapRefreshLimit(int gapRefreshLimit) {
+		this.gapRefreshLimit = gapRefreshLimit;
+	}
+
+	public long getGapLookbackSec() {
+		return gapLookbackSec;
+	}
+
+	public void setGapLookbackSec(long gapLookbackSec) {
+		this.gapLookbackSec = gapLookbackSec;
+	}
+
+	public boolean isLatencyMetrics() {
+		return latencyMetrics;
+	}
+
+	public void setLatencyMetrics(boolean latencyMetrics) {
+		this.latencyMetrics = latencyMetrics;
+	}
+
+	public MetricsPublisher getMetricsPublisher() {
+		return metricsPublisher;
+	}
+
+	public void setMetricsPublisher(MetricsPublisher metricsPublisher) {
+		this.metricsPublisher = metricsPublisher;
+	}
+
 	public String getToken() {return this.token; }
 
 	public void setToken(String v) { this.token = v;}
@@ -0,0 +1,216 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.api;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ddfplus.db.Quote;
+
+/**
+ * Quote handler for slow consumers.
+ * <p>
+ * Wraps a {@link QuoteHandler} and calls it on its own thread with the latest
+ * quote per symbol. The feed thread only marks the symbol as updated, so it is
+ * never held up by the consumer. Updates to a symbol that arrive while the
+ * consumer is busy, or within the interval, are coalesced into one call.
+ * <p>
+ * The quote passed to the consumer is the live {@link Quote}, which can change
+ * while the consumer reads it. Enable quote snapshots, see
+ * {@link ClientConfig#setQuoteSnapshots(boolean)}, and read
+ * {@link Quote#getSnapshot()} for consistent values.
+ *
+ * <pre>
+ * ConflatingQuoteHandler h = new ConflatingQuoteHandler(uiHandler, 250);
+ * client.addQuoteHandler("ESZ9", h);
+ * client.addQuoteHandler("NQZ9", h);
+ * ...
+ * h.shutdown();
+ * </pre>
+ */
+public class ConflatingQuoteHandler implements QuoteHandler {
+
+	private static final Logger log = LoggerFactory.getLogger(ConflatingQuoteHandler.class);
+
+	private final QuoteHandler handler;
+
+	private final long intervalMs;
+
+	private final Object lock = new Object();
+
+	// Symbol to pending update, in update order. Guarded by lock.
+	private Map<String, Update> dirty = new LinkedHashMap<String, Update>();
+
+	// Delivered by the consumer thread, swapped with dirty.
+	private Map<String, Update> delivering = new LinkedHashMap<String, Update>();
+
+	private final Thread thread;
+
+	private volatile boolean running = true;
+
+	private volatile long received;
+
+	private volatile long delivered;
+
+	/**
+	 * Delivers as soon as the consumer is ready.
+	 *
+	 * @param handler
+	 *            Consumer
+	 */
+	public ConflatingQuoteHandler(QuoteHandler handler) {
+		this(handler, 0);
+	}
+
+	/**
+	 * @param handler
+	 *            Consumer
+	 * @param intervalMs
+	 *            Minimum time between two calls for a symbol, 0 to deliver as
+	 *            soon as the consumer is ready
+	 */
+	public ConflatingQuoteHandler(QuoteHandler handler, long intervalMs) {
+		if (handler == null) {
+			throw new IllegalArgumentException("Handler required");
+		}
+		if (intervalMs < 0) {
+			throw new IllegalArgumentException("Invalid interval: " + intervalMs);
+		}
+		this.handler = handler;
+		this.intervalMs = intervalMs;
+		this.thread = new Thread(this::run, "ConflatingQuoteHandler");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	@Override
+	public void onQuote(Quote quote) {
+		update(quote, false);
+	}
+
+	@Override
+	public void onQuote(Quote quote, boolean refreshMessage) {
+		update(quote, refreshMessage);
+	}
+
+	@Override
+	public boolean isSnapshotRequest() {
+		return handler.isSnapshotRequest();
+	}
+
+	/**
+	 * Stops the consumer thread, pending updates are dropped.
+	 */
+	public void shutdown() {
+		running = false;
+		synchronized (lock) {
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * @return Number of quote updates received.
+	 */
+	public long getReceived() {
+		return received;
+	}
+
+	/**
+	 * @return Number of calls made to the consumer, the difference to
+	 *         {@link #getReceived()} is the number of coalesced updates.
+	 */
+	public long getDelivered() {
+		return delivered;
+	}
+
+	/**
+	 * @return Number of symbols waiting to be delivered.
+	 */
+	public int getPending() {
+		synchronized (lock) {
+			return dirty.size();
+		}
+	}
+
+	private void update(Quote quote, boolean refreshMessage) {
+		if (quote == null || !running) {
+			return;
+		}
+		final String symbol = quote.getSymbolInfo().getSymbol();
+		synchronized (lock) {
+			received++;
+			Update u = dirty.get(symbol);
+			if (u == null) {
+				dirty.put(symbol, new Update(quote, refreshMessage));
+				if (dirty.size() == 1) {
+					// Consumer may be waiting
+					lock.notify();
+				}
+			} else {
+				u.quote = quote;
+				// Keep the refresh flag until delivered
+				u.refreshMessage |= refreshMessage;
+			}
+		}
+	}
+
+	private void run() {
+		while (running) {
+			synchronized (lock) {
+				while (running && dirty.isEmpty()) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				Map<String, Update> m = delivering;
+				delivering = dirty;
+				dirty = m;
+			}
+			for (Update u : delivering.values()) {
+				if (!running) {
+					break;
+				}
+				try {
+					if (u.refreshMessage) {
+						handler.onQuote(u.quote, true);
+					} else {
+						handler.onQuote(u.quote);
+					}
+				} catch (Exception e) {
+					log.error("onQuote(" + u.quote.getSymbolInfo().getSymbol() + ") failed. " + e);
+				}
+				delivered++;
+			}
+			delivering.clear();
+			if (intervalMs > 0) {
+				try {
+					Thread.sleep(intervalMs);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+
+	private static class Update {
+
+		private Quote quote;
+
+		private boolean refreshMessage;
+
+		Update(Quote quote, boolean refreshMessage) {
+			this.quote = quote;
+			this.refreshMessage = refreshMessage;
+		}
+	}
+
+}
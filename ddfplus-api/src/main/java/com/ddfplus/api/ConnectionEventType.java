@@ -42,6 +42,12 @@ public enum ConnectionEventType {
 	 */
 	LOGIN_FAILED(5), //
 
+	/**
+	 * Signals lost data on a listen connection, the quotes may be stale until
+	 * refreshed.
+	 */
+	DATA_GAP(6), //
+
 	;
 
 	final int code;
@@ -0,0 +1,27 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ * 
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.api;
+
+import com.ddfplus.codec.DdfMessageView;
+
+/**
+ * Raw DDF message handler, allocation free alternative to {@link FeedHandler}.
+ * 
+ * The view is re-used for every message and is only valid for the duration of
+ * the callback.
+ *
+ */
+public interface FeedViewHandler {
+
+	/**
+	 * Received DDF Message.
+	 * 
+	 * @param view
+	 *            Flyweight over the raw DDF message
+	 */
+	void onMessage(DdfMessageView view);
+}
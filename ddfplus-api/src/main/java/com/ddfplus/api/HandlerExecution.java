@@ -0,0 +1,31 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.api;
+
+/**
+ * Where a registered handler is called.
+ *
+ * @see HandlerOptions
+ */
+public enum HandlerExecution {
+	/**
+	 * On the feed (or processing shard) thread, a slow handler holds up the
+	 * feed. The default.
+	 */
+	Inline,
+	/**
+	 * On a thread of its own, fed by a bounded queue. Calls are made in
+	 * arrival order.
+	 */
+	Dedicated,
+	/**
+	 * On a pool of threads, each with a bounded queue. Calls for a symbol
+	 * always go to the same thread, so they are made in order per symbol.
+	 */
+	Ordered;
+
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.api;
+
+/**
+ * How a registered handler is called, see {@link HandlerExecution}.
+ * <p>
+ * Handlers not called inline get their arguments after the feed thread moved
+ * on. Quotes, books and re-used market events are copied for them. A
+ * {@link BookQuoteDeltaHandler} is only called with the book, since the delta
+ * is re-used.
+ *
+ * <pre>
+ * client.addQuoteHandler("ESZ9", dbWriter, HandlerOptions.ordered(4, 10000, HandlerOverflowPolicy.DropOldest));
+ * ...
+ * client.getHandlerStatistics();
+ * </pre>
+ */
+public final class HandlerOptions {
+
+	public static final int DEFAULT_QUEUE_CAPACITY = 16 * 1024;
+
+	/**
+	 * Called on the feed thread.
+	 */
+	public static final HandlerOptions INLINE = new HandlerOptions(HandlerExecution.Inline, 0, 0,
+			HandlerOverflowPolicy.Block);
+
+	private final HandlerExecution execution;
+
+	private final int threads;
+
+	private final int queueCapacity;
+
+	private final HandlerOverflowPolicy overflowPolicy;
+
+	/**
+	 * @param execution
+	 *            Execution mode
+	 * @param threads
+	 *            Number of threads for {@link HandlerExecution#Ordered}
+	 * @param queueCapacity
+	 *            Queue capacity per thread, rounded up to a power of 2
+	 * @param overflowPolicy
+	 *            What happens when a queue is full
+	 */
+	public HandlerOptions(HandlerExecution execution, int threads, int queueCapacity,
+			HandlerOverflowPolicy overflowPolicy) {
+		if (execution == null || overflowPolicy == null) {
+			throw new IllegalArgumentException("Execution and overflow policy required");
+		}
+		if (execution != HandlerExecution.Inline) {
+			if (queueCapacity < 1) {
+				throw new IllegalArgumentException("Invalid queue capacity: " + queueCapacity);
+			}
+			if (execution == HandlerExecution.Ordered && threads < 1) {
+				throw new IllegalArgumentException("Invalid thread count: " + threads);
+			}
+		}
+		this.execution = execution;
+		this.threads = execution == HandlerExecution.Dedicated ? 1 : threads;
+		this.queueCapacity = queueCapacity;
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	/**
+	 * @param queueCapacity
+	 *            Queue capacity
+	 * @param overflowPolicy
+	 *            What happens when the queue is full
+	 * @return Options for a handler on its own thread
+	 */
+	public static HandlerOptions dedicated(int queueCapacity, HandlerOverflowPolicy overflowPolicy) {
+		return new HandlerOptions(HandlerExecution.Dedicated, 1, queueCapacity, overflowPolicy);
+	}
+
+	/**
+	 * @param threads
+	 *            Number of threads
+	 * @param queueCapacity
+	 *            Queue capacity per thread
+	 * @param overflowPolicy
+	 *            What happens when a queue is full
+	 * @return Options for a handler on a pool of threads, ordered by symbol
+	 */
+	public static HandlerOptions ordered(int threads, int queueCapacity, HandlerOverflowPolicy overflowPolicy) {
+		return new HandlerOptions(HandlerExecution.Ordered, threads, queueCapacity, overflowPolicy);
+	}
+
+	public HandlerExecution getExecution() {
+		return execution;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	public HandlerOverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	@Override
+	public String toString() {
+		return "HandlerOptions [execution=" + execution + ", threads=" + threads + ", queueCapacity=" + queueCapacity
+				+ ", overflowPolicy=" + overflowPolicy + "]";
+	}
+
+}
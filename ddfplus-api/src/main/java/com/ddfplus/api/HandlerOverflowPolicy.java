@@ -0,0 +1,28 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.api;
+
+/**
+ * What happens when the queue of a handler not called inline is full.
+ *
+ * @see HandlerOptions
+ */
+public enum HandlerOverflowPolicy {
+	/**
+	 * The feed thread waits for space, a slow handler holds up the feed.
+	 */
+	Block,
+	/**
+	 * The oldest queued call is dropped.
+	 */
+	DropOldest,
+	/**
+	 * The new call is dropped.
+	 */
+	DropNewest;
+
+}
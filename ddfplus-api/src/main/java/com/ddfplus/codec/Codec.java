@@ -6,6 +6,8 @@
  */
 package com.ddfplus.codec;
 
+import java.util.Arrays;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,6 +33,33 @@ public class Codec {
     /** The Constant LOG. */
     private static final Logger log = LoggerFactory.getLogger(Codec.class);
 
+    /** Powers of ten, indexed by the price scale. */
+    private static final long[] POW10 = new long[19];
+
+    private static final double[] POW10_D = new double[POW10.length];
+
+    /*
+     * Fractional base codes (-1..-6) as a decimal scale and the value of one
+     * fraction unit at that scale, 1/8 = 0.125 ... 1/256 = 0.00390625.
+     */
+    private static final int[] FRACTION_SCALE = { 3, 4, 5, 6, 7, 8 };
+
+    private static final long[] FRACTION_UNIT = { 125, 625, 3125, 15625, 78125, 390625 };
+
+    /* Number of fraction digits on the wire and the fraction denominator. */
+    private static final int[] FRACTION_DIGITS = { 10, 100, 100, 100, 1000, 1000 };
+
+    private static final int[] FRACTION_DENOMINATOR = { 8, 16, 32, 64, 128, 256 };
+
+    static {
+        long p = 1;
+        for (int i = 0; i < POW10.length; i++) {
+            POW10[i] = p;
+            POW10_D[i] = p;
+            p *= 10;
+        }
+    }
+
     /**
      * Instantiates a new message provider.
      */
@@ -116,6 +145,53 @@ public class Codec {
     public static float parseDDFPriceValue(byte[] ba, int start, int length, int basecode)
             throws NumberFormatException {
 
+        return Codec.mantissaToFloat(Codec.parseDDFPriceMantissa(ba, start, length, basecode), basecode);
+    }
+
+    /**
+     * Parses the ddf price value as a fixed point number.
+     * 
+     * @param ba
+     *            the ba
+     * @param start
+     *            the start
+     * @param length
+     *            the length
+     * @param unitcode
+     *            the unitcode
+     * @return the price mantissa, see {@link #getPriceScale(int)}
+     * @throws NumberFormatException
+     *             the number format exception
+     */
+    public static long parseDDFPriceMantissa(byte[] ba, int start, int length, char unitcode)
+            throws NumberFormatException {
+        return Codec.parseDDFPriceMantissa(ba, start, length, SymbolInfo.ddfuc2bb(unitcode));
+    }
+
+    /**
+     * Converts a string representation of the data to an exact fixed point
+     * value, without any floating point arithmetic. The price is
+     * <code>mantissa / 10^getPriceScale(basecode)</code>.
+     * <P>
+     * Fractional base codes are converted to their exact decimal value, for
+     * example the 1/8 base code value 1234 (123 4/8) is returned as 123500 with
+     * a scale of 3.
+     * 
+     * @param ba
+     *            the ba
+     * @param start
+     *            the start
+     * @param length
+     *            the length
+     * @param basecode
+     *            the basecode
+     * @return the price mantissa
+     * @throws NumberFormatException
+     *             the number format exception
+     */
+    public static long parseDDFPriceMantissa(byte[] ba, int start, int length, int basecode)
+            throws NumberFormatException {
+
         if (start + length > ba.length)
             throw new NumberFormatException(
                     "Index Out of Bounds array.length=" + ba.length + ", start=" + start + ", length=" + length);
@@ -126,35 +202,92 @@ public class Codec {
         if (((char) ba[start] == '-') && (length == 1))
             return 0;
 
+        if (basecode < -6) {
+            // Unknown fraction
+            return 0;
+        }
+
+        long lval = Codec.parseLongValue(ba, start, length);
         if (basecode >= 0) {
-            long lval = Codec.parseLongValue(ba, start, length);
-            double d = (double) ((double) lval / (double) Math.pow(10, basecode));
-            return (float) d;
-        } else {
-            float f = 0;
-            int ival = Codec.parseIntValue(ba, start, length);
-            switch (basecode) {
-            case -1:
-                f = (ival / 10) + ((float) (ival % 10) / 8);
-                break;
-            case -2:
-                f = (ival / 100) + ((float) (ival % 100) / 16);
-                break;
-            case -3:
-                f = (ival / 100) + ((float) (ival % 100) / 32);
-                break;
-            case -4:
-                f = (ival / 100) + ((float) (ival % 100) / 64);
-                break;
-            case -5:
-                f = (ival / 1000) + ((float) (ival % 1000) / 128);
-                break;
-            case -6:
-                f = (ival / 1000) + ((float) (ival % 1000) / 256);
-                break;
-            }
-            return f;
+            return lval;
+        }
+        int i = -basecode - 1;
+        int digits = FRACTION_DIGITS[i];
+        return (lval / digits) * POW10[FRACTION_SCALE[i]] + (lval % digits) * FRACTION_UNIT[i];
+    }
+
+    /**
+     * The number of decimal places of a fixed point price for the base code.
+     * Decimal base codes map to their number of decimals, fractional base codes
+     * to the decimals needed to represent the fraction exactly (1/8 = 3 ...
+     * 1/256 = 8).
+     * 
+     * @param basecode
+     *            the basecode, see {@link SymbolInfo#ddfuc2bb(char)}
+     * @return the price scale
+     */
+    public static int getPriceScale(int basecode) {
+        if (basecode >= 0) {
+            return basecode;
         }
+        if (basecode < -6) {
+            return 0;
+        }
+        return FRACTION_SCALE[-basecode - 1];
+    }
+
+    /**
+     * Converts a fixed point price to a double.
+     * 
+     * @param mantissa
+     *            the price mantissa
+     * @param basecode
+     *            the basecode
+     * @return the price
+     */
+    public static double mantissaToDouble(long mantissa, int basecode) {
+        return mantissa / pow10(getPriceScale(basecode));
+    }
+
+    /**
+     * Converts a fixed point price to the float value historically returned by
+     * {@link #parseDDFPriceValue(byte[], int, int, int)}.
+     * 
+     * @param mantissa
+     *            the price mantissa
+     * @param basecode
+     *            the basecode
+     * @return the price
+     */
+    public static float mantissaToFloat(long mantissa, int basecode) {
+        if (basecode >= 0) {
+            return (float) (mantissa / pow10(basecode));
+        }
+        if (basecode < -6) {
+            return 0;
+        }
+        int i = -basecode - 1;
+        long scale = POW10[FRACTION_SCALE[i]];
+        long whole = mantissa / scale;
+        long fraction = (mantissa % scale) / FRACTION_UNIT[i];
+        return whole + ((float) fraction / FRACTION_DENOMINATOR[i]);
+    }
+
+    /**
+     * Converts a floating point price to the nearest fixed point price.
+     * 
+     * @param value
+     *            the price
+     * @param basecode
+     *            the basecode
+     * @return the price mantissa
+     */
+    public static long floatToMantissa(float value, int basecode) {
+        return Math.round(value * pow10(getPriceScale(basecode)));
+    }
+
+    private static double pow10(int scale) {
+        return (scale < POW10_D.length) ? POW10_D[scale] : Math.pow(10, scale);
     }
 
     /**
@@ -243,19 +376,21 @@ public class Codec {
             switch (array[0]) {
             case 37: // '%'
                 /* JERQ initiating / refresh message */
-                String message = new String(array);
-                if (message.charAt(1) == '<') {
+                if (array.length < 2) {
+                    log.error("format error; message={}", new String(array));
+                    break;
+                } else if (array[1] == '<') {
                     // ok
-                } else if (message.charAt(1) == '%') {
+                } else if (array[1] == '%') {
                     /*
                      * Compensate for a server bug that sends two % for HTTP sessions
                      */
-                    message = message.substring(1);
+                    array = Arrays.copyOfRange(array, 1, array.length);
                 } else {
-                    log.error("format error; message={}", message);
+                    log.error("format error; message={}", new String(array));
                     break;
                 }
-                msg = DataRefreshXML.Parse(message);
+                msg = DataRefreshXML.Parse(array);
                 break;
 
             case 1: // SOH
@@ -303,20 +438,26 @@ public class Codec {
                         char modifier = (char) array[pos2 + 2];
 
                         switch (element) {
-                        case '1': // Ask
-                            msg = new Data28BidAsk(array);
-                            ((Data28BidAsk) msg)._record = '2';
-                            ((Data28BidAsk) msg)._subrecord = '8';
-                            ((Data28BidAsk) msg)._ask = Codec.parseDDFPriceValue(array, pos + 7, pos2 - pos - 7,
-                                    baseCode);
+                        case '1': { // Ask
+                            Data28BidAsk ba = new Data28BidAsk(array);
+                            int bc = SymbolInfo.ddfuc2bb(baseCode);
+                            ba._record = '2';
+                            ba._subrecord = '8';
+                            ba._askMantissa = Codec.parseDDFPriceMantissa(array, pos + 7, pos2 - pos - 7, bc);
+                            ba._ask = Codec.mantissaToFloat(ba._askMantissa, bc);
+                            msg = ba;
                             break;
-                        case '2': // Bid
-                            msg = new Data28BidAsk(array);
-                            ((Data28BidAsk) msg)._record = '2';
-                            ((Data28BidAsk) msg)._subrecord = '8';
-                            ((Data28BidAsk) msg)._bid = Codec.parseDDFPriceValue(array, pos + 7, pos2 - pos - 7,
-                                    baseCode);
+                        }
+                        case '2': { // Bid
+                            Data28BidAsk ba = new Data28BidAsk(array);
+                            int bc = SymbolInfo.ddfuc2bb(baseCode);
+                            ba._record = '2';
+                            ba._subrecord = '8';
+                            ba._bidMantissa = Codec.parseDDFPriceMantissa(array, pos + 7, pos2 - pos - 7, bc);
+                            ba._bid = Codec.mantissaToFloat(ba._bidMantissa, bc);
+                            msg = ba;
                             break;
+                        }
                         default:
                             msg = Data20Parameter.Parse(array);
                             break;
@@ -0,0 +1,551 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.codec;
+
+import com.ddfplus.db.SymbolInfo;
+import com.ddfplus.util.ASCII;
+
+/**
+ * Zero copy, reusable view over a raw DDF message.
+ * <p>
+ * Unlike {@link Codec#parseMessage(byte[])} no message object, symbol
+ * <code>String</code> or boxed value is created, the fields are decoded as
+ * primitives directly from the wrapped byte array. One instance is meant to be
+ * re-used for every message received on a thread:
+ *
+ * <pre>
+ * DdfMessageView view = new DdfMessageView();
+ * ...
+ * if (view.wrap(buf, off, len).isTrade()) {
+ *     float price = view.getTradePrice();
+ * }
+ * </pre>
+ *
+ * The view is only valid until the next call to <code>wrap()</code> and the
+ * wrapped bytes must not be modified while the view is in use. Instances are not
+ * thread safe.
+ * <p>
+ * Supported messages: record 2 subrecords 0, 7, Z and 8 are decoded fully
+ * (including spread records), every other market record exposes the header
+ * fields (record, subrecord, symbol, base code, exchange, delay).
+ */
+public final class DdfMessageView {
+
+	private byte[] buf;
+	private int offset;
+	private int end;
+
+	private char record;
+	private char subrecord;
+	private int symbolOffset;
+	private int symbolLength;
+	private char baseCode;
+	private int unitCode;
+	private char exchange;
+	private int delay;
+	private char day;
+	private char session;
+	private int etxPos;
+	private boolean spread;
+	private boolean valid;
+
+	// record 2, subrecord 0
+	private char element;
+	private char modifier;
+	private int valueOffset;
+	private int valueLength;
+
+	// record 2, subrecord 7, Z
+	private long tradePrice;
+	private int tradeSize;
+
+	// record 2, subrecord 8 and subrecord 0 elements 1/2
+	private boolean hasBid;
+	private long bidPrice;
+	private int bidSize;
+	private boolean hasAsk;
+	private long askPrice;
+	private int askSize;
+
+	/**
+	 * Positions the view on a DDF message.
+	 *
+	 * @param buf
+	 *            Buffer holding the message
+	 * @param off
+	 *            Offset of the first message byte (SOH)
+	 * @param len
+	 *            Length of the message, including any time stamp suffix
+	 * @return this view
+	 */
+	public DdfMessageView wrap(byte[] buf, int off, int len) {
+		this.buf = buf;
+		this.offset = off;
+		this.end = off + len;
+		reset();
+
+		if (len < 2) {
+			return this;
+		}
+
+		if (buf[off] == ASCII.PERCENT) {
+			// Jerq refresh, not decoded by the view
+			record = '%';
+			return this;
+		}
+		if (buf[off] != ASCII.SOH) {
+			return this;
+		}
+
+		record = (char) buf[off + 1];
+		switch (record) {
+		case '#':
+		case '!':
+			// Control/Timestamp messages only have the record
+			etxPos = indexOf(ASCII.ETX, off + 2);
+			valid = etxPos > 0;
+			return this;
+		case 'S':
+			spread = true;
+			break;
+		default:
+			break;
+		}
+
+		int pos = indexOf(ASCII.COMMA, off + 2);
+		// header: {soh}[record][symbol],[subrecord]{stx}[basecode][exch][delay]
+		if (pos < 0 || pos + 7 > end) {
+			return this;
+		}
+		try {
+			symbolOffset = off + 2;
+			symbolLength = pos - symbolOffset;
+			subrecord = (char) buf[pos + 1];
+			baseCode = (char) buf[pos + 3];
+			unitCode = SymbolInfo.ddfuc2bb(baseCode);
+			exchange = (char) buf[pos + 4];
+			delay = Codec.parseIntValue(buf, pos + 5, 2);
+
+			int data = pos + 7;
+			if (spread) {
+				data = skipSpreadPreamble(data);
+			}
+
+			switch (record) {
+			case 'C':
+			case 'S':
+			case '2':
+				decodeRecord2(data);
+				break;
+			default:
+				etxPos = indexOf(ASCII.ETX, data);
+				break;
+			}
+			valid = etxPos > 0;
+		} catch (RuntimeException e) {
+			// Truncated or corrupted message
+			valid = false;
+		}
+		return this;
+	}
+
+	/**
+	 * @return true if the wrapped bytes were decoded as a complete DDF message
+	 */
+	public boolean isValid() {
+		return valid;
+	}
+
+	/**
+	 * @return true if the view wraps a DDF message with a symbol
+	 */
+	public boolean isMarketMessage() {
+		return valid && symbolLength > 0;
+	}
+
+	/**
+	 * @return true for trade messages (2,7 or 2,Z)
+	 */
+	public boolean isTrade() {
+		return isRecord2() && (subrecord == '7' || subrecord == 'Z');
+	}
+
+	/**
+	 * @return true for top of book messages (2,8 or a 2,0 bid/ask)
+	 */
+	public boolean isBidAsk() {
+		return hasBid || hasAsk;
+	}
+
+	/**
+	 * @return true for 2,0 parameter messages
+	 */
+	public boolean isParameter() {
+		return isRecord2() && subrecord == '0';
+	}
+
+	/**
+	 * @return true for spread (S) messages
+	 */
+	public boolean isSpread() {
+		return spread;
+	}
+
+	public byte[] getBuffer() {
+		return buf;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public int getLength() {
+		return end - offset;
+	}
+
+	public char getRecord() {
+		return record;
+	}
+
+	public char getSubrecord() {
+		return subrecord;
+	}
+
+	/**
+	 * @return Offset of the symbol in {@link #getBuffer()}
+	 */
+	public int getSymbolOffset() {
+		return symbolOffset;
+	}
+
+	/**
+	 * @return Length of the symbol, 0 if the message does not have one.
+	 */
+	public int getSymbolLength() {
+		return symbolLength;
+	}
+
+	/**
+	 * Compares the symbol without creating a String.
+	 *
+	 * @param symbol
+	 *            Symbol to compare
+	 * @return true if the message symbol matches
+	 */
+	public boolean symbolEquals(CharSequence symbol) {
+		if (symbol == null || symbol.length() != symbolLength) {
+			return false;
+		}
+		for (int i = 0; i < symbolLength; i++) {
+			if (buf[symbolOffset + i] != symbol.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compares the symbol with ASCII symbol bytes.
+	 *
+	 * @param symbol
+	 *            ASCII symbol bytes
+	 * @return true if the message symbol matches
+	 */
+	public boolean symbolEquals(byte[] symbol) {
+		if (symbol == null || symbol.length != symbolLength) {
+			return false;
+		}
+		for (int i = 0; i < symbolLength; i++) {
+			if (buf[symbolOffset + i] != symbol[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Copies the symbol bytes.
+	 *
+	 * @param dst
+	 *            Destination, must have room for {@link #getSymbolLength()}
+	 *            bytes
+	 * @param dstOff
+	 *            Destination offset
+	 * @return number of bytes copied
+	 */
+	public int copySymbol(byte[] dst, int dstOff) {
+		System.arraycopy(buf, symbolOffset, dst, dstOff, symbolLength);
+		return symbolLength;
+	}
+
+	/**
+	 * Hash of the symbol bytes, equal to <code>String.hashCode()</code> of the
+	 * symbol.
+	 *
+	 * @return symbol hash
+	 */
+	public int symbolHash() {
+		int h = 0;
+		for (int i = 0; i < symbolLength; i++) {
+			h = 31 * h + buf[symbolOffset + i];
+		}
+		return h;
+	}
+
+	/**
+	 * Note: allocates a new String, for logging or caching only.
+	 *
+	 * @return The symbol, null if the message does not have one.
+	 */
+	public String getSymbol() {
+		return symbolLength == 0 ? null : new String(buf, symbolOffset, symbolLength, ASCII.ASCII_CHARSET);
+	}
+
+	public char getBaseCode() {
+		return baseCode;
+	}
+
+	/**
+	 * @return The number of decimal places of the price mantissas
+	 * 
+	 * @see Codec#getPriceScale(int)
+	 */
+	public int getPriceScale() {
+		return Codec.getPriceScale(unitCode);
+	}
+
+	public char getExchange() {
+		return exchange;
+	}
+
+	public int getDelay() {
+		return delay;
+	}
+
+	public char getDay() {
+		return day;
+	}
+
+	public char getSession() {
+		return session;
+	}
+
+	/**
+	 * @return Position of the ETX byte in {@link #getBuffer()}, -1 if not found
+	 */
+	public int getPositionETX() {
+		return etxPos;
+	}
+
+	/**
+	 * @return 2,0 element code
+	 */
+	public char getElement() {
+		return element;
+	}
+
+	/**
+	 * @return 2,0 element modifier
+	 */
+	public char getModifier() {
+		return modifier;
+	}
+
+	/**
+	 * @return 2,0 value decoded as a price
+	 */
+	public float getValueAsPrice() {
+		return Codec.mantissaToFloat(getValueMantissa(), unitCode);
+	}
+
+	/**
+	 * @return 2,0 value decoded as a fixed point price
+	 */
+	public long getValueMantissa() {
+		return valueLength == 0 ? 0L : Codec.parseDDFPriceMantissa(buf, valueOffset, valueLength, unitCode);
+	}
+
+	/**
+	 * @return 2,0 value decoded as an integer (sizes, volume)
+	 */
+	public long getValueAsLong() {
+		return valueLength == 0 ? 0L : Codec.parseLongValue(buf, valueOffset, valueLength);
+	}
+
+	public float getTradePrice() {
+		return Codec.mantissaToFloat(tradePrice, unitCode);
+	}
+
+	public long getTradePriceMantissa() {
+		return tradePrice;
+	}
+
+	public int getTradeSize() {
+		return tradeSize;
+	}
+
+	public boolean hasBid() {
+		return hasBid;
+	}
+
+	public float getBidPrice() {
+		return Codec.mantissaToFloat(bidPrice, unitCode);
+	}
+
+	public long getBidPriceMantissa() {
+		return bidPrice;
+	}
+
+	public int getBidSize() {
+		return bidSize;
+	}
+
+	public boolean hasAsk() {
+		return hasAsk;
+	}
+
+	public float getAskPrice() {
+		return Codec.mantissaToFloat(askPrice, unitCode);
+	}
+
+	public long getAskPriceMantissa() {
+		return askPrice;
+	}
+
+	public int getAskSize() {
+		return askSize;
+	}
+
+	@Override
+	public String toString() {
+		return buf == null ? "" : new String(buf, offset, end - offset, ASCII.ASCII_CHARSET);
+	}
+
+	private boolean isRecord2() {
+		return record == '2' || record == 'C' || record == 'S';
+	}
+
+	private void reset() {
+		record = '\0';
+		subrecord = '\0';
+		symbolOffset = 0;
+		symbolLength = 0;
+		baseCode = '\0';
+		unitCode = 0;
+		exchange = '\0';
+		delay = 0;
+		day = '\0';
+		session = '\0';
+		etxPos = -1;
+		spread = false;
+		valid = false;
+		element = '\0';
+		modifier = '\0';
+		valueOffset = 0;
+		valueLength = 0;
+		tradePrice = 0;
+		tradeSize = 0;
+		hasBid = false;
+		bidPrice = 0;
+		bidSize = 0;
+		hasAsk = false;
+		askPrice = 0;
+		askSize = 0;
+	}
+
+	/*
+	 * Spread preamble: [type(2)][legs(1)][leg2],...[legN], the first leg is the
+	 * message symbol. Returns the start of the regular data fields.
+	 */
+	private int skipSpreadPreamble(int pos) {
+		int legs = Codec.parseIntValue(buf, pos + 2, 1);
+		pos += 3;
+		for (int i = 1; i < legs; i++) {
+			pos = indexOf(ASCII.COMMA, pos) + 1;
+		}
+		switch (subrecord) {
+		case '1':
+		case '2':
+		case '3':
+		case '4':
+		case '5':
+			// Refresh data starts with the comma
+			pos--;
+			break;
+		}
+		return pos;
+	}
+
+	private void decodeRecord2(int data) {
+		switch (subrecord) {
+		case '0': {
+			int pos2 = indexOf(ASCII.COMMA, data);
+			valueOffset = data;
+			valueLength = pos2 - data;
+			element = (char) buf[pos2 + 1];
+			modifier = (char) buf[pos2 + 2];
+			day = (char) buf[pos2 + 3];
+			session = (char) buf[pos2 + 4];
+			etxPos = indexOf(ASCII.ETX, pos2 + 5);
+			if (element == '1') {
+				hasAsk = true;
+				askPrice = getValueMantissa();
+			} else if (element == '2') {
+				hasBid = true;
+				bidPrice = getValueMantissa();
+			}
+			return;
+		}
+		case '7':
+		case 'Z': {
+			int pos2 = indexOf(ASCII.COMMA, data);
+			tradePrice = Codec.parseDDFPriceMantissa(buf, data, pos2 - data, unitCode);
+			int pos = indexOf(ASCII.COMMA, pos2 + 1);
+			tradeSize = Codec.parseDDFIntValue(buf, pos2 + 1, pos - pos2 - 1);
+			break;
+		}
+		case '8': {
+			int pos2 = indexOf(ASCII.COMMA, data);
+			if (pos2 > data) {
+				hasBid = true;
+				bidPrice = Codec.parseDDFPriceMantissa(buf, data, pos2 - data, unitCode);
+			}
+			int pos = indexOf(ASCII.COMMA, pos2 + 1);
+			if (hasBid) {
+				bidSize = Codec.parseDDFIntValue(buf, pos2 + 1, pos - pos2 - 1);
+			}
+			pos2 = indexOf(ASCII.COMMA, pos + 1);
+			if (pos2 > pos + 1) {
+				hasAsk = true;
+				askPrice = Codec.parseDDFPriceMantissa(buf, pos + 1, pos2 - pos - 1, unitCode);
+			}
+			pos = indexOf(ASCII.COMMA, pos2 + 1);
+			if (hasAsk) {
+				askSize = Codec.parseDDFIntValue(buf, pos2 + 1, pos - pos2 - 1);
+			}
+			break;
+		}
+		default:
+			break;
+		}
+		etxPos = indexOf(ASCII.ETX, data);
+		if (etxPos > 1) {
+			day = (char) buf[etxPos - 2];
+			session = (char) buf[etxPos - 1];
+		}
+	}
+
+	private int indexOf(byte b, int start) {
+		for (int i = start; i < end; i++) {
+			if (buf[i] == b) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+}
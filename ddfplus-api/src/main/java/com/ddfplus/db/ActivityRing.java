@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.db;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded ring of recently updated symbol ids, written on the update path by
+ * the processing threads and read after a data gap.
+ * <p>
+ * Each entry is the update second and the symbol id packed into a long. A
+ * symbol is recorded at most once per second by the caller, the oldest
+ * entries are overwritten.
+ */
+final class ActivityRing {
+
+	private final AtomicLongArray entries;
+
+	private final AtomicLong next = new AtomicLong();
+
+	private final int mask;
+
+	/**
+	 * @param capacity
+	 *            Number of entries, rounded up to a power of 2
+	 */
+	ActivityRing(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+		final int size = Integer.highestOneBit(capacity - 1) << 1;
+		this.entries = new AtomicLongArray(Math.max(size, 1));
+		this.mask = entries.length() - 1;
+	}
+
+	/**
+	 * @param symbolId
+	 *            Symbol id
+	 * @param second
+	 *            Update time in seconds since the epoch
+	 */
+	void record(int symbolId, long second) {
+		final long i = next.getAndIncrement();
+		entries.lazySet((int) (i & mask), second << 32 | (symbolId & 0xFFFFFFFFL));
+	}
+
+	/**
+	 * @param sinceMillis
+	 *            Oldest update time
+	 * @param max
+	 *            Maximum number of ids
+	 * @return Ids updated at or after the time, most recent first, each once
+	 */
+	int[] recent(long sinceMillis, int max) {
+		final long since = sinceMillis / 1000;
+		final long end = next.get();
+		final long start = Math.max(0, end - entries.length());
+		final Set<Integer> seen = new HashSet<Integer>();
+		final int[] ids = new int[(int) Math.min(max, end - start)];
+		int n = 0;
+		for (long i = end - 1; i >= start && n < ids.length; i--) {
+			final long e = entries.get((int) (i & mask));
+			if (e >>> 32 < since) {
+				// Recorded in time order, give or take the threads
+				break;
+			}
+			final int id = (int) e;
+			if (seen.add(id)) {
+				ids[n++] = id;
+			}
+		}
+		return n == ids.length ? ids : Arrays.copyOf(ids, n);
+	}
+
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.db;
+
+import java.util.ArrayDeque;
+
+/**
+ * Pooled level storage for {@link BookQuote} objects.
+ * <p>
+ * Every book gets price and size arrays for a fixed number of levels per side,
+ * taken from a pool which can be filled up front. Updates are applied in place
+ * so the level storage is only allocated once per book.
+ * <p>
+ * The storage of a replaced or cleared book is not pooled again, user code,
+ * snapshots and queued handler calls may still hold the book and read its
+ * levels. It is garbage collected with the book.
+ */
+public final class BookArena {
+
+	/*
+	 * Estimated sizes, 64 bit JVM with compressed oops.
+	 */
+	private static final int OBJECT_HEADER = 16;
+	private static final int ARRAY_HEADER = 16;
+	private static final int BOOK_FIELDS = 64;
+
+	/**
+	 * Level storage of one book.
+	 */
+	static final class Levels {
+		final BookArena arena;
+		final float[] askPrices;
+		final int[] askSizes;
+		final float[] bidPrices;
+		final int[] bidSizes;
+
+		Levels(BookArena arena, int depth) {
+			this.arena = arena;
+			askPrices = new float[depth];
+			askSizes = new int[depth];
+			bidPrices = new float[depth];
+			bidSizes = new int[depth];
+		}
+	}
+
+	private final int depth;
+	private final ArrayDeque<Levels> pool = new ArrayDeque<>();
+	private int inUse;
+
+	/**
+	 * @param depth
+	 *            Levels per side
+	 * @param preallocate
+	 *            Number of books to allocate up front
+	 */
+	public BookArena(int depth, int preallocate) {
+		if (depth <= 0) {
+			throw new IllegalArgumentException("Invalid book depth: " + depth);
+		}
+		this.depth = depth;
+		for (int i = 0; i < preallocate; i++) {
+			pool.push(new Levels(this, depth));
+		}
+	}
+
+	/**
+	 * @return Levels per side
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * @return Books using level storage from this arena
+	 */
+	public synchronized int getBooksInUse() {
+		return inUse;
+	}
+
+	/**
+	 * @return Level storage allocated and not in use
+	 */
+	public synchronized int getBooksPooled() {
+		return pool.size();
+	}
+
+	/**
+	 * Estimated heap use of one book, including its level storage and the
+	 * re-used delta.
+	 *
+	 * @return bytes
+	 */
+	public long getBytesPerBook() {
+		long levels = 4 * (ARRAY_HEADER + 4L * depth);
+		long delta = OBJECT_HEADER + 16 + 4 * (ARRAY_HEADER + 4L * 2 * depth);
+		return OBJECT_HEADER + BOOK_FIELDS + OBJECT_HEADER + levels + delta;
+	}
+
+	/**
+	 * Estimated heap use of all books in use and pooled.
+	 *
+	 * @return bytes
+	 */
+	public synchronized long getMemoryUsage() {
+		return (inUse + pool.size()) * getBytesPerBook();
+	}
+
+	/**
+	 * Creates a book backed by pooled level storage.
+	 *
+	 * @param symbol
+	 *            Symbol
+	 * @return BookQuote
+	 */
+	public BookQuote newBookQuote(String symbol) {
+		return new BookQuote(symbol, acquire());
+	}
+
+	synchronized Levels acquire() {
+		inUse++;
+		Levels l = pool.poll();
+		return l != null ? l : new Levels(this, depth);
+	}
+
+	synchronized void release(Levels levels) {
+		inUse--;
+	}
+
+	@Override
+	public String toString() {
+		return "BookArena [depth=" + depth + ", inUse=" + getBooksInUse() + ", pooled=" + getBooksPooled()
+				+ ", bytesPerBook=" + getBytesPerBook() + "]";
+	}
+
+}
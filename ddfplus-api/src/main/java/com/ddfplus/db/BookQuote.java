@@ -6,6 +6,8 @@
  */
 package com.ddfplus.db;
 
+import java.util.Arrays;
+
 import com.ddfplus.messages.DdfMarketDepth;
 import com.ddfplus.util.ParserHelper;
 import com.ddfplus.util.XMLNode;
@@ -21,22 +23,89 @@ import com.ddfplus.util.XMLNode;
 public class BookQuote implements java.io.Serializable {
 	static final long serialVersionUID = 8023594349583363700L;
 
+	/**
+	 * Levels per side of books created without an explicit depth.
+	 */
+	public static final int DEFAULT_DEPTH = 10;
+
 	protected final String symbol;
 
 	protected volatile int askcount = 0;
 	protected volatile int bidcount = 0;
 
-	protected volatile float[] askprices = new float[10];
-	protected volatile int[] asksizes = new int[10];
-	protected volatile float[] bidprices = new float[10];
-	protected volatile int[] bidsizes = new int[10];
+	protected volatile float[] askprices;
+	protected volatile int[] asksizes;
+	protected volatile float[] bidprices;
+	protected volatile int[] bidsizes;
+
+	// Pooled level storage, null if not from a BookArena
+	private transient BookArena.Levels levels;
 
 	protected volatile char basecode = '\0';
 
 	protected volatile long timestamp = 0L;
 
+	// Incremented on every update
+	protected volatile long sequence = 0L;
+
+	// Loaded from a warm start snapshot, until live depth is received
+	protected volatile boolean stale;
+
+	// Changes of the last update, re-used
+	private transient BookQuoteDelta delta;
+
 	public BookQuote(String symbol) {
+		this(symbol, DEFAULT_DEPTH);
+	}
+
+	/**
+	 * @param symbol
+	 *            Symbol
+	 * @param depth
+	 *            Levels per side
+	 */
+	public BookQuote(String symbol, int depth) {
 		this.symbol = symbol;
+		this.askprices = new float[depth];
+		this.asksizes = new int[depth];
+		this.bidprices = new float[depth];
+		this.bidsizes = new int[depth];
+	}
+
+	BookQuote(String symbol, BookArena.Levels levels) {
+		this.symbol = symbol;
+		this.levels = levels;
+		this.askprices = levels.askPrices;
+		this.asksizes = levels.askSizes;
+		this.bidprices = levels.bidPrices;
+		this.bidsizes = levels.bidSizes;
+	}
+
+	/**
+	 * Returns the maximum number of levels per side the book holds.
+	 * 
+	 * @return depth
+	 */
+	public int getDepth() {
+		return askprices.length;
+	}
+
+	/**
+	 * Returns the sequence number of the book, incremented with every depth
+	 * update or refresh of the symbol.
+	 * 
+	 * @return sequence number
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return true if the book was loaded from a warm start snapshot and not
+	 *         updated from the feed yet, see {@link DataMasterSnapshot}
+	 */
+	public boolean isStale() {
+		return stale;
 	}
 
 	/**
@@ -185,8 +254,8 @@ public class BookQuote implements java.io.Serializable {
 
 		final BookQuote bq = new BookQuote(message.getSymbol());
 		bq.basecode = message.getBaseCode();
-		bq.askcount = message.getAskCount();
-		bq.bidcount = message.getBidCount();
+		bq.askcount = Math.min(message.getAskCount(), bq.askprices.length);
+		bq.bidcount = Math.min(message.getBidCount(), bq.bidprices.length);
 
 		System.arraycopy(message.getAskPrices(), 0, bq.askprices, 0, bq.askcount);
 		System.arraycopy(message.getAskSizes(), 0, bq.asksizes, 0, bq.askcount);
@@ -197,6 +266,55 @@ public class BookQuote implements java.io.Serializable {
 
 	}
 
+	/**
+	 * Applies a depth message to this book in place.
+	 * 
+	 * @param message
+	 *            the ddf message
+	 * @return The changed levels, only valid until the next update
+	 */
+	BookQuoteDelta update(final DdfMarketDepth message) {
+		if (delta == null) {
+			delta = new BookQuoteDelta(askprices.length);
+		}
+		delta.reset(++sequence);
+		stale = false;
+		setBaseCode(message.getBaseCode());
+
+		askcount = update(BookQuoteDelta.Side.Ask, askcount, message.getAskCount(), message.getAskPrices(),
+				message.getAskSizes(), askprices, asksizes);
+		bidcount = update(BookQuoteDelta.Side.Bid, bidcount, message.getBidCount(), message.getBidPrices(),
+				message.getBidSizes(), bidprices, bidsizes);
+
+		return delta;
+	}
+
+	private int update(BookQuoteDelta.Side side, int oldCount, int count, float[] fa, int[] ia, float[] prices,
+			int[] sizes) {
+		count = Math.min(count, prices.length);
+		for (int i = 0; i < count; i++) {
+			boolean changed = i >= oldCount;
+			if (fa[i] != ParserHelper.DDFAPI_NOVALUE && fa[i] != prices[i]) {
+				prices[i] = fa[i];
+				changed = true;
+			}
+			if (ia[i] != ParserHelper.DDFAPI_NOVALUE && ia[i] != sizes[i]) {
+				sizes[i] = ia[i];
+				changed = true;
+			}
+			if (changed) {
+				delta.add(side, i, prices[i], sizes[i]);
+			}
+		}
+		for (int i = count; i < oldCount; i++) {
+			// Level removed
+			delta.add(side, i, prices[i], 0);
+			prices[i] = 0.0f;
+			sizes[i] = 0;
+		}
+		return count;
+	}
+
 	/**
 	 * Takes in an XMLNode object, and parses this into a BookQuote object.
 	 * 
@@ -208,17 +326,34 @@ public class BookQuote implements java.io.Serializable {
 	public static BookQuote fromXMLNode(final XMLNode node) {
 
 		final BookQuote bq = new BookQuote(node.getAttribute("symbol"));
+		bq.load(node);
+		return bq;
 
-		bq.basecode = node.getAttribute("basecode").charAt(0);
-		bq.askcount = Integer.parseInt(node.getAttribute("askcount"));
-		bq.bidcount = Integer.parseInt(node.getAttribute("bidcount"));
+	}
+
+	/**
+	 * Replaces the levels of this book with a refresh, levels beyond the depth
+	 * of the book are dropped.
+	 * 
+	 * @param node
+	 *            <code>XMLNode</code> an XMLNode of type "Book"
+	 */
+	void load(final XMLNode node) {
+		Arrays.fill(askprices, 0.0f);
+		Arrays.fill(asksizes, 0);
+		Arrays.fill(bidprices, 0.0f);
+		Arrays.fill(bidsizes, 0);
+
+		basecode = node.getAttribute("basecode").charAt(0);
+		askcount = Math.min(Integer.parseInt(node.getAttribute("askcount")), askprices.length);
+		bidcount = Math.min(Integer.parseInt(node.getAttribute("bidcount")), bidprices.length);
 
 		String s = node.getAttribute("askprices");
 		if (s != null) {
 			String[] sa = s.split(",");
-			for (int i = 0; i < sa.length; i++) {
+			for (int i = 0; i < sa.length && i < askprices.length; i++) {
 				if (sa[i].length() > 0) {
-					bq.askprices[i] = ParserHelper.string2float(sa[i], bq.basecode);
+					askprices[i] = ParserHelper.string2float(sa[i], basecode);
 				}
 			}
 		}
@@ -226,9 +361,9 @@ public class BookQuote implements java.io.Serializable {
 		s = node.getAttribute("asksizes");
 		if (s != null) {
 			String[] sa = s.split(",");
-			for (int i = 0; i < sa.length; i++) {
+			for (int i = 0; i < sa.length && i < asksizes.length; i++) {
 				if (sa[i].length() > 0) {
-					bq.asksizes[i] = Integer.parseInt(sa[i]);
+					asksizes[i] = Integer.parseInt(sa[i]);
 				}
 			}
 		}
@@ -236,9 +371,9 @@ public class BookQuote implements java.io.Serializable {
 		s = node.getAttribute("bidprices");
 		if (s != null) {
 			String[] sa = s.split(",");
-			for (int i = 0; i < sa.length; i++) {
+			for (int i = 0; i < sa.length && i < bidprices.length; i++) {
 				if (sa[i].length() > 0) {
-					bq.bidprices[i] = ParserHelper.string2float(sa[i], bq.basecode);
+					bidprices[i] = ParserHelper.string2float(sa[i], basecode);
 				}
 			}
 		}
@@ -246,15 +381,47 @@ public class BookQuote implements java.io.Serializable {
 		s = node.getAttribute("bidsizes");
 		if (s != null) {
 			String[] sa = s.split(",");
-			for (int i = 0; i < sa.length; i++) {
+			for (int i = 0; i < sa.length && i < bidsizes.length; i++) {
 				if (sa[i].length() > 0) {
-					bq.bidsizes[i] = Integer.parseInt(sa[i]);
+					bidsizes[i] = Integer.parseInt(sa[i]);
 				}
 			}
 		}
+	}
 
-		return bq;
+	/**
+	 * Copies the book, for handlers called on another thread while the book
+	 * is updated in place. The copy has its own level storage, not taken from
+	 * an arena.
+	 * 
+	 * @return Copy of the book
+	 */
+	public BookQuote copy() {
+		final BookQuote b = new BookQuote(symbol, 0);
+		b.askcount = askcount;
+		b.bidcount = bidcount;
+		b.askprices = Arrays.copyOf(askprices, askprices.length);
+		b.asksizes = Arrays.copyOf(asksizes, asksizes.length);
+		b.bidprices = Arrays.copyOf(bidprices, bidprices.length);
+		b.bidsizes = Arrays.copyOf(bidsizes, bidsizes.length);
+		b.basecode = basecode;
+		b.timestamp = timestamp;
+		b.sequence = sequence;
+		b.stale = stale;
+		return b;
+	}
 
+	/**
+	 * Called when the book is replaced or cleared, it is no longer counted as
+	 * in use by its arena. The levels are left as they are for readers still
+	 * holding the book.
+	 */
+	void release() {
+		if (levels == null) {
+			return;
+		}
+		levels.arena.release(levels);
+		levels = null;
 	}
 
 }
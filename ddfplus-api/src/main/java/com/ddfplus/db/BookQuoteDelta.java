@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.db;
+
+/**
+ * The levels of a {@link BookQuote} changed by one depth update.
+ * <p>
+ * One instance is kept per book and re-used for every update, it is only
+ * valid during the handler call. A level which was removed from the book has a
+ * size of 0.
+ */
+public final class BookQuoteDelta {
+
+	public enum Side {
+		Bid, Ask
+	}
+
+	private final Side[] sides;
+	private final int[] levels;
+	private final float[] prices;
+	private final int[] sizes;
+	private int count;
+	private long sequence;
+
+	BookQuoteDelta(int maxLevels) {
+		int n = maxLevels * 2;
+		sides = new Side[n];
+		levels = new int[n];
+		prices = new float[n];
+		sizes = new int[n];
+	}
+
+	/**
+	 * @return Sequence number of the book after this update.
+	 * @see BookQuote#getSequence()
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return Number of changed levels.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	public Side getSide(int i) {
+		return sides[i];
+	}
+
+	/**
+	 * @param i
+	 *            change index, 0 to {@link #getCount()} - 1
+	 * @return Book level, 0 is the top of the book
+	 */
+	public int getLevel(int i) {
+		return levels[i];
+	}
+
+	public float getPrice(int i) {
+		return prices[i];
+	}
+
+	/**
+	 * @param i
+	 *            change index, 0 to {@link #getCount()} - 1
+	 * @return New size, 0 if the level was removed
+	 */
+	public int getSize(int i) {
+		return sizes[i];
+	}
+
+	void reset(long sequence) {
+		this.sequence = sequence;
+		this.count = 0;
+	}
+
+	void add(Side side, int level, float price, int size) {
+		sides[count] = side;
+		levels[count] = level;
+		prices[count] = price;
+		sizes[count] = size;
+		count++;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("BookQuoteDelta [sequence=").append(sequence);
+		for (int i = 0; i < count; i++) {
+			sb.append(' ').append(sides[i]).append(levels[i]).append('=').append(prices[i]).append('x')
+					.append(sizes[i]);
+		}
+		return sb.append(']').toString();
+	}
+
+}
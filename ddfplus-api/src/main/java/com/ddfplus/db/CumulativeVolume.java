@@ -9,10 +9,12 @@
 package com.ddfplus.db;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import com.ddfplus.util.DDFDate;
 import com.ddfplus.util.ParserHelper;
@@ -20,12 +22,30 @@ import com.ddfplus.util.XMLNode;
 
 /**
  * The CumulativeVolume class encapsulates all of the trades throughout the day,
- * and organizes a table of volume at prices. It is very much an expanded data
- * table, or hashtable. Essentially, prices serve as keys, and the total volume
- * traded at those prices are the values.
+ * and organizes a table of volume at prices.
+ * <P>
+ * The volumes are kept in a price ladder, an <code>int</code> array indexed by
+ * the price in ticks of the tick increment, so a trade is added without boxing
+ * or hashing and the prices are always in order. The ladder grows as new
+ * prices trade, up to a few thousand ticks around the first prices, so a bad
+ * tick cannot blow it up. Prices outside of it are kept in a sorted map. Read
+ * it with {@link #forEach(VolumeVisitor)}.
  */
 public class CumulativeVolume {
 
+	/**
+	 * Visits the volume at each price, see
+	 * {@link CumulativeVolume#forEach(VolumeVisitor)}.
+	 */
+	public interface VolumeVisitor {
+		void visit(float price, int volume);
+	}
+
+	private static final int INITIAL_SLOTS = 64;
+
+	// Larger ranges go to the outliers, guards against bad prices
+	static final int MAX_SLOTS = 4096;
+
 	protected final String _symbol;
 	protected volatile char _baseCode = '\0';
 	protected volatile int _tickIncrement = 1;
@@ -33,12 +53,17 @@ public class CumulativeVolume {
 	protected volatile int _lastSize = 0;
 	protected volatile int _lastCumulativeVolume = 0;
 	protected volatile long _date = 0L;
+	// Loaded from a warm start snapshot, until the first refresh
+	protected volatile boolean _stale;
 
-	protected final Map<Float, Integer> _data;
+	// Replaced on growth, readers use the reference they read
+	private volatile Ladder _ladder = null;
+	// Prices which do not fit in the ladder
+	private final NavigableMap<Float, Integer> _outliers = new ConcurrentSkipListMap<Float, Integer>();
+	private volatile int _priceCount = 0;
 
 	public CumulativeVolume(String symbol) {
 		_symbol = symbol;
-		_data = new ConcurrentHashMap<Float, Integer>();
 	}
 
 	/**
@@ -51,14 +76,7 @@ public class CumulativeVolume {
 	 */
 
 	protected void addTrade(float price, int size) {
-		Float f = price;
-		Integer i = _data.get(f);
-		int ival = 0;
-		if (i != null)
-			ival = i.intValue();
-		ival += size;
-
-		_data.put(f, ival);
+		addVolume(price, size);
 
 		_lastSize = size;
 		if (price == _last)
@@ -92,6 +110,14 @@ public class CumulativeVolume {
 		return _date;
 	}
 
+	/**
+	 * @return true if loaded from a warm start snapshot and not refreshed from
+	 *         the feed yet, see {@link DataMasterSnapshot}
+	 */
+	public boolean isStale() {
+		return _stale;
+	}
+
 	/**
 	 * @return the last price.
 	 */
@@ -121,21 +147,96 @@ public class CumulativeVolume {
 	}
 
 	/**
-	 * @return an <code>ArrayList</code> of the last prices.
+	 * @return an <code>ArrayList</code> of the traded prices, in ascending
+	 *         order.
 	 */
 
 	public List<Float> getPrices() {
-		List<Float> l = new ArrayList<Float>(_data.keySet());
-		Collections.sort(l);
+		final List<Float> l = new ArrayList<Float>(_priceCount);
+		forEach((price, volume) -> l.add(price));
 		return l;
 	}
 
 	/**
-	 * @return <code>Hashtable</code> the data
+	 * @return a sorted copy of the volume at each price.
 	 */
 
 	public Map<Float, Integer> getData() {
-		return _data;
+		final Map<Float, Integer> m = new TreeMap<Float, Integer>();
+		forEach((price, volume) -> m.put(price, volume));
+		return m;
+	}
+
+	/**
+	 * @param price
+	 *            Price
+	 * @return The volume traded at the price, 0 if none.
+	 */
+
+	public int getVolume(float price) {
+		final Ladder l = _ladder;
+		if (l != null) {
+			final long units = l.units(price);
+			if (units % l.step == 0) {
+				final long i = units / l.step - l.first;
+				if (i >= 0 && i < l.volumes.length) {
+					return l.volumes[(int) i];
+				}
+			}
+		}
+		final Integer v = _outliers.get(price);
+		return v == null ? 0 : v;
+	}
+
+	/**
+	 * @return The number of prices with volume.
+	 */
+
+	public int getPriceCount() {
+		return _priceCount;
+	}
+
+	/**
+	 * Calls the visitor for each price with volume, in ascending price order.
+	 * Does not allocate, unless there are outliers.
+	 * 
+	 * @param visitor
+	 *            Visitor
+	 */
+
+	public void forEach(VolumeVisitor visitor) {
+		final Ladder l = _ladder;
+		final Iterator<Map.Entry<Float, Integer>> it = _outliers.isEmpty() ? null : _outliers.entrySet().iterator();
+		Map.Entry<Float, Integer> outlier = it != null && it.hasNext() ? it.next() : null;
+		if (l != null) {
+			final int[] volumes = l.volumes;
+			for (int i = 0; i < volumes.length; i++) {
+				final int v = volumes[i];
+				if (v != 0) {
+					final float price = l.price(i);
+					// Merge in price order
+					while (outlier != null && outlier.getKey() < price) {
+						visitor.visit(outlier.getKey(), outlier.getValue());
+						outlier = it.hasNext() ? it.next() : null;
+					}
+					visitor.visit(price, v);
+				}
+			}
+		}
+		while (outlier != null) {
+			visitor.visit(outlier.getKey(), outlier.getValue());
+			outlier = it.hasNext() ? it.next() : null;
+		}
+	}
+
+	/**
+	 * Removes all volume, for a new session.
+	 */
+
+	public void clear() {
+		_ladder = null;
+		_outliers.clear();
+		_priceCount = 0;
 	}
 
 	/**
@@ -168,7 +269,17 @@ public class CumulativeVolume {
 	}
 
 	public void setBaseCode(char _baseCode) {
-		this._baseCode = _baseCode;
+		if (_baseCode != this._baseCode && _ladder != null) {
+			// Price scale changes, rebuild
+			final Map<Float, Integer> data = getData();
+			clear();
+			this._baseCode = _baseCode;
+			for (Map.Entry<Float, Integer> e : data.entrySet()) {
+				addVolume(e.getKey(), e.getValue());
+			}
+		} else {
+			this._baseCode = _baseCode;
+		}
 	}
 
 	public void setTickIncrement(int _tickIncrement) {
@@ -188,7 +299,7 @@ public class CumulativeVolume {
 	}
 
 	public String toString() { // Overrides Object
-		String s = _symbol + ";" + _last + ";" + _lastSize + ";" + _lastCumulativeVolume + ";" + _data.toString();
+		String s = _symbol + ";" + _last + ";" + _lastSize + ";" + _lastCumulativeVolume + ";" + getData().toString();
 		return s;
 	}
 
@@ -215,14 +326,14 @@ public class CumulativeVolume {
 			node.setAttribute("date", d.toDDFString());
 		}
 
-		node.setAttribute("count", "" + _data.size());
+		node.setAttribute("count", "" + _priceCount);
 
-		StringBuilder sb = new StringBuilder();
-		for (Float f : _data.keySet()) {
+		final StringBuilder sb = new StringBuilder();
+		forEach((price, volume) -> {
 			if (sb.length() > 0)
 				sb.append(":");
-			sb.append(ParserHelper.float2int(uc, f) + "," + _data.get(f));
-		}
+			sb.append(ParserHelper.float2int(uc, price)).append(',').append(volume);
+		});
 
 		if (sb.length() > 0)
 			node.setAttribute("data", sb.toString());
@@ -267,9 +378,9 @@ public class CumulativeVolume {
 			final String[] data = dataString.split(":");
 			for (int i = 0; i < data.length; i++) {
 				String[] pair = data[i].split(",");
-				Float price = ParserHelper.string2float(pair[0], volume._baseCode);
-				Integer quantity = Integer.parseInt(pair[1]);
-				volume._data.put(price, quantity);
+				float price = ParserHelper.string2float(pair[0], volume._baseCode);
+				int quantity = Integer.parseInt(pair[1]);
+				volume.addVolume(price, quantity);
 			}
 		}
 
@@ -277,4 +388,124 @@ public class CumulativeVolume {
 
 	}
 
+	private void addVolume(float price, int size) {
+		Ladder l = _ladder;
+		if (l == null) {
+			final int scale = priceScale(_baseCode);
+			final long units = Math.round((double) price * scale);
+			final int step = _tickIncrement > 0 && units % _tickIncrement == 0 ? _tickIncrement : 1;
+			l = new Ladder(new int[INITIAL_SLOTS], units / step - INITIAL_SLOTS / 2, step, scale);
+			_ladder = l;
+		}
+		final long units = l.units(price);
+		if (units % l.step != 0) {
+			// Not on the tick increment, use single units
+			l = resize(l, 1, units);
+		}
+		if (l != null) {
+			long i = units / l.step - l.first;
+			if (i < 0 || i >= l.volumes.length) {
+				l = resize(l, l.step, units);
+				i = l != null ? units / l.step - l.first : -1;
+			}
+			if (l != null) {
+				final int v = l.volumes[(int) i];
+				if (v == 0 && size != 0) {
+					_priceCount++;
+				}
+				l.volumes[(int) i] = v + size;
+				return;
+			}
+		}
+		final Integer v = _outliers.get(price);
+		if (v == null) {
+			_priceCount++;
+		}
+		_outliers.put(price, v == null ? size : v + size);
+	}
+
+	/*
+	 * Returns a new ladder with the step which covers the current one and the
+	 * price, or null if too large.
+	 */
+	private Ladder resize(Ladder l, int step, long units) {
+		final int[] old = l.volumes;
+		long lo = Math.min(l.first * l.step, units) / step;
+		long hi = Math.max((l.first + old.length - 1) * l.step, units) / step;
+		final long needed = hi - lo + 1;
+		if (needed > MAX_SLOTS) {
+			return null;
+		}
+		final int length = (int) Math.min(MAX_SLOTS, Math.max(needed, 2L * old.length));
+		// Room to grow in the direction of the new price
+		final long first = units / step < l.first * l.step / step ? hi - length + 1 : lo;
+		final Ladder n = new Ladder(new int[length], first, step, l.scale);
+		for (int i = 0; i < old.length; i++) {
+			if (old[i] != 0) {
+				n.volumes[(int) ((l.first + i) * l.step / step - first)] = old[i];
+			}
+		}
+		if (!_outliers.isEmpty()) {
+			// Move the outliers now covered
+			for (Iterator<Map.Entry<Float, Integer>> it = _outliers.entrySet().iterator(); it.hasNext();) {
+				final Map.Entry<Float, Integer> e = it.next();
+				final long u = n.units(e.getKey());
+				final long i = u / step - first;
+				if (u % step == 0 && i >= 0 && i < length) {
+					if (n.volumes[(int) i] != 0) {
+						_priceCount--;
+					}
+					n.volumes[(int) i] += e.getValue();
+					it.remove();
+				}
+			}
+		}
+		_ladder = n;
+		return n;
+	}
+
+	/*
+	 * Ladder size, for tests.
+	 */
+	int getLadderSlots() {
+		final Ladder l = _ladder;
+		return l == null ? 0 : l.volumes.length;
+	}
+
+	/*
+	 * Price units per 1.0 for the base code, 10000 if unknown.
+	 */
+	static int priceScale(char baseCode) {
+		if ((baseCode >= '2' && baseCode <= '9') || (baseCode >= 'A' && baseCode <= 'E')) {
+			final int uc = SymbolInfo.ddfuc2bb(baseCode);
+			// 1/8 .. 1/256, or 10^decimals
+			return uc < 0 ? 1 << (2 - uc) : (int) Math.pow(10, uc);
+		}
+		return 10000;
+	}
+
+	private static final class Ladder {
+
+		// Volume at price (first + i) * step / scale
+		final int[] volumes;
+		final long first;
+		final int step;
+		final int scale;
+
+		Ladder(int[] volumes, long first, int step, int scale) {
+			this.volumes = volumes;
+			this.first = first;
+			this.step = step;
+			this.scale = scale;
+		}
+
+		long units(float price) {
+			return Math.round((double) price * scale);
+		}
+
+		float price(int i) {
+			return (float) ((double) ((first + i) * step) / scale);
+		}
+	}
+
 }
@@ -12,15 +12,14 @@ import com.ddfplus.enums.*;
 import com.ddfplus.messages.*;
 import com.ddfplus.service.feed.FeedService;
 import com.ddfplus.util.DDFDate;
-import com.ddfplus.util.ParserHelper;
 import com.ddfplus.util.XMLNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
 
 /**
  * The DataMaster class controls the "mini-database" system that comes with the
@@ -33,16 +32,27 @@ public class DataMaster {
 
 	private static final Logger log = LoggerFactory.getLogger(DataMaster.class);
 
-	private final Map<String, BookQuote> bookMap;
+	// Recently updated quotes kept for a gap refresh, one entry per quote and second
+	private static final int ACTIVITY_CAPACITY = 1 << 16;
 
-	private final Map<String, CumulativeVolume> _cumulativeVolumeTable;
+	/*
+	 * All caches are keyed by the symbol id from this registry.
+	 */
+	private final SymbolRegistry symbols;
+
+	private final SymbolMap<BookQuote> bookMap;
 
-	private final Map<String, Quote> quoteMap;
+	private final SymbolMap<CumulativeVolume> _cumulativeVolumeTable;
+
+	/**
+	 * Quote storage, on the heap by default.
+	 */
+	private volatile QuoteStore quoteStore = new HeapQuoteStore();
 
 	/*
 	 * Symbols not know to the system, with time received.
 	 */
-	private final Map<String, Long> unrecoginzedSymbols;
+	private final SymbolMap<Long> unrecoginzedSymbols;
 
 	private volatile long millisCST = 0L; // If single cloud source
 
@@ -55,6 +65,28 @@ public class DataMaster {
 	 */
 	private FeedService feedService;
 
+	/**
+	 * Publish an immutable QuoteSnapshot per quote update.
+	 */
+	private volatile boolean quoteSnapshots;
+
+	/**
+	 * Level storage for the books.
+	 */
+	private volatile BookArena bookArena = new BookArena(BookQuote.DEFAULT_DEPTH, 0);
+
+	/**
+	 * Recently updated quotes, for the refresh after a data gap.
+	 */
+	private final ActivityRing activity = new ActivityRing(ACTIVITY_CAPACITY);
+
+	/**
+	 * Recycle one FeedEvent per processing thread.
+	 */
+	private volatile boolean reuseEvents;
+
+	private final ThreadLocal<FeedEvent> events = ThreadLocal.withInitial(() -> new FeedEvent(true));
+
 	/**
 	 * Constructor which takes in the realtime argument as a boolean.
 	 * 
@@ -64,10 +96,17 @@ public class DataMaster {
 	 */
 	public DataMaster(MasterType type) {
 		_type = type;
-		bookMap = new ConcurrentHashMap<>();
-		_cumulativeVolumeTable = new ConcurrentHashMap<>();
-		quoteMap = new ConcurrentHashMap<>();
-		unrecoginzedSymbols = new ConcurrentHashMap<>();
+		symbols = new SymbolRegistry();
+		bookMap = new SymbolMap<>();
+		_cumulativeVolumeTable = new SymbolMap<>();
+		unrecoginzedSymbols = new SymbolMap<>();
+	}
+
+	/**
+	 * @return The symbol registry used to key the internal caches.
+	 */
+	public SymbolRegistry getSymbolRegistry() {
+		return symbols;
 	}
 
 	/**
@@ -120,7 +159,13 @@ public class DataMaster {
 		 * TCP and UDP Listen modes (which pushes data from the replay server)
 		 * just use the raw DDF Message.
 		 */
-		FeedEvent fe = new FeedEvent();
+		FeedEvent fe;
+		if (reuseEvents) {
+			fe = events.get();
+			fe.reset();
+		} else {
+			fe = new FeedEvent();
+		}
 		// Save RAW DDF Message
 		fe.setDdfMessage(msg);
 
@@ -132,14 +177,14 @@ public class DataMaster {
 		/*
 		 * Mark as an unknown symbol until we receive the refresh quote.
 		 */
-		if (msg.getSymbol() != null && msg.getSymbol().length() > 0) {
-			String s = msg.getSymbol();
-			Quote quote = getQuote(s);
-			if (quote == null) {
-				unrecoginzedSymbols.put(s, System.currentTimeMillis());
-			} else if (unrecoginzedSymbols.containsKey(s)) {
+		final int symbolId = getSymbolId(msg);
+		fe.setSymbolId(symbolId);
+		if (symbolId != SymbolRegistry.NOT_FOUND) {
+			if (!quoteStore.containsKey(symbolId)) {
+				unrecoginzedSymbols.put(symbolId, System.currentTimeMillis());
+			} else if (unrecoginzedSymbols.containsKey(symbolId)) {
 				// We have the quote, pull from the unrecognized list
-				unrecoginzedSymbols.remove(s);
+				unrecoginzedSymbols.remove(symbolId);
 			}
 		}
 
@@ -154,8 +199,7 @@ public class DataMaster {
 			// TIME!ZONE
 			// ///////////////////////////
 			millisCST = ((DdfTimestamp) msg).getMillisCST();
-			Date d = new Date(millisCST);
-			fe.setDate(d);
+			fe.setTimestamp(millisCST);
 
 		} else if (msg.getRecord() == DdfRecord.RefreshOld.value()) {
 			// /////////////////////////////////////////////////////////
@@ -182,7 +226,7 @@ public class DataMaster {
 				fe.setTrade((DdfMarketTrade) msg);
 			}
 
-			final Quote quote = getQuote(msg.getSymbol());
+			final Quote quote = getQuote(symbolId);
 			if (quote == null) {
 				/*
 				 * Initial Quote refresh not received yet, get snapshot refresh
@@ -200,14 +244,14 @@ public class DataMaster {
 			 * the refresh quote. The Quote object will be updated.
 			 */
 			record2_liveprices(msg, quote, fe);
-			fe.setQuote(quote);
+			setQuote(fe, quote);
 			return fe;
 
 		} else if (msg.getRecord() == DdfRecord.DepthEndOfDay.value()) {
 			// ////////////////////////////////////////////
 			// record 3 Market Depth, End of Day
 			// ///////////////////////////////////////////
-			BookQuote b = record3_book_eod(msg);
+			BookQuote b = record3_book_eod(msg, symbolId, fe);
 			fe.setBook(b);
 		} else {
 			log.warn("Unrecognized DDF Message: " + msg);
@@ -216,6 +260,31 @@ public class DataMaster {
 		return fe;
 	}
 
+	/**
+	 * Returns the symbol id of a message, registering the symbol if required.
+	 * Live messages carry the symbol at {soh}R&lt;symbol&gt;, so the id is
+	 * taken straight from the raw bytes.
+	 * 
+	 * @param msg
+	 *            DDF Message
+	 * @return symbol id, {@link SymbolRegistry#NOT_FOUND} if the message has no
+	 *         symbol
+	 */
+	public int getSymbolId(DdfMarketBase msg) {
+		byte[] ba = msg.getBytes();
+		if (ba != null && ba.length > 2 && ba[0] == 1) {
+			for (int i = 2; i < ba.length; i++) {
+				if (ba[i] == ',') {
+					return symbols.register(ba, 2, i - 2);
+				}
+				if (ba[i] == 2 || ba[i] == 3) {
+					break;
+				}
+			}
+		}
+		return symbols.register(msg.getSymbol());
+	}
+
 	/**
 	 * Retrieves the active last BookQuote object for the given symbol. This
 	 * method will return <B>null</B> if no BookQuote is found for the symbol.
@@ -231,12 +300,23 @@ public class DataMaster {
 			return null;
 		}
 
-		BookQuote bookQoute = bookMap.get(symbol);
+		BookQuote bookQoute = bookMap.get(symbols.getId(symbol));
 
 		return bookQoute;
 
 	}
 
+	/**
+	 * Retrieves the active last BookQuote object for the given symbol id.
+	 * 
+	 * @param symbolId
+	 *            Symbol id, see {@link #getSymbolRegistry()}
+	 * @return <B>BookQuote</B>, null if not found
+	 */
+	public BookQuote getBookQuote(int symbolId) {
+		return bookMap.get(symbolId);
+	}
+
 	/**
 	 * Retrieves a <code>CumulativeVolume</code> object for the given symbol.
 	 * This method will return <code>null</code> if no CumulativeVolume object
@@ -249,10 +329,24 @@ public class DataMaster {
 	 */
 
 	public CumulativeVolume getCumulativeVolume(String symbol) {
-		CumulativeVolume cv = _cumulativeVolumeTable.get(symbol);
+		if (symbol == null) {
+			return null;
+		}
+		CumulativeVolume cv = _cumulativeVolumeTable.get(symbols.getId(symbol));
 		return cv;
 	}
 
+	/**
+	 * Retrieves a <code>CumulativeVolume</code> object for the given symbol id.
+	 * 
+	 * @param symbolId
+	 *            Symbol id, see {@link #getSymbolRegistry()}
+	 * @return <code>CumulativeVolume</code>, null if not found
+	 */
+	public CumulativeVolume getCumulativeVolume(int symbolId) {
+		return _cumulativeVolumeTable.get(symbolId);
+	}
+
 	/**
 	 * Retrieves the active Quote object for the given symbol. This method will
 	 * return <B>null</B> if no Quote object is found for the symbol.
@@ -267,22 +361,37 @@ public class DataMaster {
 			return null;
 		}
 
-		Quote quote = quoteMap.get(symbol);
+		Quote quote = quoteStore.get(symbols.getId(symbol));
 
 		return quote;
 
 	}
 
+	/**
+	 * Retrieves the active Quote object for the given symbol id.
+	 * 
+	 * @param symbolId
+	 *            Symbol id, see {@link #getSymbolRegistry()}
+	 * @return <B>Quote</B>, null if not found
+	 */
+	public Quote getQuote(int symbolId) {
+		return quoteStore.get(symbolId);
+	}
+
 	/**
 	 * Returns sizes of caches.
 	 * 
 	 * @return cache sizes of quote,book,culativeVolume in this order.
 	 */
 	public int[] getSizes() {
-		return new int[] { quoteMap.size(), bookMap.size(), _cumulativeVolumeTable.size() };
+		return new int[] { quoteStore.size(), bookMap.size(), _cumulativeVolumeTable.size() };
 	}
 
-	public String [] getAllSymbols() { return quoteMap.keySet().toArray(new String[quoteMap.size()]); }
+	public String[] getAllSymbols() {
+		final List<String> list = new ArrayList<>(quoteStore.size());
+		quoteStore.forEachId(id -> list.add(symbols.getSymbol(id)));
+		return list.toArray(new String[list.size()]);
+	}
 
 	/**
 	 * Returns the latest timestamp processed by the DataMaster object.
@@ -301,14 +410,14 @@ public class DataMaster {
 	 *            Quote
 	 */
 	public void putQuote(Quote q) {
-		quoteMap.put(q.getSymbolInfo().getSymbol(), q);
+		storeQuote(q);
 		if(q.getRequestSymbol() != null) {
-			quoteMap.put(q.getRequestSymbol(), q);
+			quoteStore.put(symbols.register(q.getRequestSymbol()), q);
 		}
 	}
 
 	public void putQuote(String symbol, Quote q) {
-		quoteMap.put(symbol, q);
+		quoteStore.put(symbols.register(symbol), q);
 	}
 
 	/**
@@ -318,7 +427,10 @@ public class DataMaster {
 	 *            Quote
 	 */
 	public void putBookQuote(BookQuote q) {
-		bookMap.put(q.getSymbol(), q);
+		BookQuote previous = bookMap.put(symbols.register(q.getSymbol()), q);
+		if (previous != null && previous != q) {
+			previous.release();
+		}
 	}
 
 	/**
@@ -328,7 +440,7 @@ public class DataMaster {
 	 *            Cumm Volume
 	 */
 	public void putCumulativeVolume(CumulativeVolume cv) {
-		_cumulativeVolumeTable.put(cv.getSymbol(), cv);
+		_cumulativeVolumeTable.put(symbols.register(cv.getSymbol()), cv);
 	}
 
 	public MasterType getMasterType() {
@@ -341,21 +453,188 @@ public class DataMaster {
 	 */
 	public void clearDataCache() {
 		_cumulativeVolumeTable.clear();
+		bookMap.forEach((id, book) -> book.release());
 		bookMap.clear();
-		quoteMap.clear();
+		quoteStore.clear();
 		millisCST = 0L;
 	}
 
+	SymbolMap<BookQuote> getBookMap() {
+		return bookMap;
+	}
+
+	SymbolMap<CumulativeVolume> getCumulativeVolumeMap() {
+		return _cumulativeVolumeTable;
+	}
+
 	public void setFeedService(FeedService feedService) {
 		this.feedService = feedService;
 	}
 
+	/**
+	 * Marks the quotes updated since the given time as stale and schedules a
+	 * snapshot refresh for them, most recently updated first. Used to recover
+	 * after lost data, when the affected symbols are not known. For callers
+	 * processing all messages on their own thread.
+	 * 
+	 * @param sinceMillis
+	 *            Quotes updated at or after this time are refreshed
+	 * @param max
+	 *            Maximum number of quotes to refresh
+	 * @return Symbols scheduled for refresh, empty if there is no feed
+	 *         service
+	 */
+	public List<String> refreshActiveQuotes(long sinceMillis, int max) {
+		return refreshActiveQuotes(sinceMillis, max, (symbolId, task) -> task.run());
+	}
+
+	/**
+	 * Same as {@link #refreshActiveQuotes(long, int)}, the recently updated
+	 * quotes are taken from a bounded record of the update path. The refresh
+	 * is scheduled at once, the quotes are marked stale on the thread
+	 * processing their messages, unless the refresh replaced them first.
+	 * 
+	 * @param sinceMillis
+	 *            Quotes updated at or after this time are refreshed
+	 * @param max
+	 *            Maximum number of quotes to refresh
+	 * @param executor
+	 *            Runs a task on the thread processing the symbol
+	 * @return Symbols scheduled for refresh, empty if there is no feed
+	 *         service
+	 */
+	public List<String> refreshActiveQuotes(long sinceMillis, int max, SymbolExecutor executor) {
+		final FeedService fs = feedService;
+		if (fs == null || max <= 0) {
+			return new ArrayList<String>();
+		}
+		final int[] ids = activity.recent(sinceMillis, max);
+		final List<String> refreshed = new ArrayList<String>(ids.length);
+		for (int id : ids) {
+			final String symbol = symbols.getSymbol(id);
+			if (symbol == null) {
+				continue;
+			}
+			final Quote q = quoteStore.get(id);
+			if (q == null) {
+				continue;
+			}
+			executor.execute(id, () -> {
+				if (quoteStore.get(id) == q) {
+					q.setStale(true);
+					quoteStore.updated(q);
+				}
+			});
+			fs.scheduleQuoteRefresh(symbol);
+			refreshed.add(symbol);
+		}
+		return refreshed;
+	}
+
+	/**
+	 * Runs a task on the thread which processes the messages of a symbol, see
+	 * {@link DataMaster#refreshActiveQuotes(long, int, SymbolExecutor)}.
+	 */
+	public interface SymbolExecutor {
+
+		/**
+		 * @param symbolId
+		 *            Symbol id
+		 * @param task
+		 *            Task
+		 */
+		void execute(int symbolId, Runnable task);
+	}
+
+	/**
+	 * If enabled, an immutable {@link QuoteSnapshot} is published for every
+	 * quote update, see {@link FeedEvent#getQuoteSnapshot()} and
+	 * {@link Quote#getSnapshot()}. Costs one small allocation per update, plus
+	 * one per changed session.
+	 * 
+	 * @param quoteSnapshots
+	 *            true to publish snapshots, default is false
+	 */
+	public void setQuoteSnapshots(boolean quoteSnapshots) {
+		this.quoteSnapshots = quoteSnapshots;
+	}
+
+	public boolean isQuoteSnapshots() {
+		return quoteSnapshots;
+	}
+
+	/**
+	 * If enabled, the {@link FeedEvent} returned by processMessage, its market
+	 * events and timestamp are recycled by the calling thread for the next
+	 * message. They are only valid until then, i.e. during the handler call,
+	 * and must be copied to be kept.
+	 * 
+	 * @param reuseEvents
+	 *            true to recycle the events, default is false
+	 */
+	public void setReuseEvents(boolean reuseEvents) {
+		this.reuseEvents = reuseEvents;
+	}
+
+	public boolean isReuseEvents() {
+		return reuseEvents;
+	}
+
+	/**
+	 * Sets the arena new books take their level storage from, and with it the
+	 * book depth. Books already cached keep their depth.
+	 * 
+	 * @param bookArena
+	 *            Book arena, default is {@link BookQuote#DEFAULT_DEPTH} levels
+	 *            without preallocation
+	 */
+	public void setBookArena(BookArena bookArena) {
+		this.bookArena = bookArena;
+	}
+
+	/**
+	 * @return The arena used for new books, reports the book memory use.
+	 */
+	public BookArena getBookArena() {
+		return bookArena;
+	}
+
+	/**
+	 * Sets where the quotes are stored, e.g. an {@link OffHeapQuoteStore} for
+	 * full exchange subscriptions. Quotes already cached are not moved.
+	 * 
+	 * @param quoteStore
+	 *            Quote store, default is a {@link HeapQuoteStore}
+	 */
+	public void setQuoteStore(QuoteStore quoteStore) {
+		this.quoteStore = quoteStore;
+	}
+
+	public QuoteStore getQuoteStore() {
+		return quoteStore;
+	}
+
+	private void setQuote(FeedEvent fe, Quote quote) {
+		fe.setQuote(quote);
+		if (quote != null) {
+			final long second = System.currentTimeMillis() / 1000;
+			if (quote.activitySecond != second && quote.getSymbolId() != SymbolRegistry.NOT_FOUND) {
+				quote.activitySecond = second;
+				activity.record(quote.getSymbolId(), second);
+			}
+			quoteStore.updated(quote);
+			if (quoteSnapshots) {
+				fe.setQuoteSnapshot(quote.updateSnapshot());
+			}
+		}
+	}
+
 	void recordX_marketRefresh(DdfMarketBase msg, FeedEvent fe) {
 		DdfMarketRefreshXML message = (DdfMarketRefreshXML) msg;
 		XMLNode node = message.getXMLNode();
 		if (node.getName().equals("QUOTE")) {
 			Quote quote = handleRefreshQuote(msg, node);
-			fe.setQuote(quote);
+			setQuote(fe, quote);
 			fe.setRefreshMessage(true);
 		} else if (node.getName().equals("BOOK")) {
 			BookQuote bookQuote = handleBookQuoteRefresh(node);
@@ -394,7 +673,8 @@ public class DataMaster {
 		 */
 		boolean bDoNotSetFlag = false;
 		// Running cumulative Volume
-		CumulativeVolume cv = getCumulativeVolume(msg.getSymbol());
+		CumulativeVolume cv = fe.getSymbolId() != SymbolRegistry.NOT_FOUND
+				? _cumulativeVolumeTable.get(fe.getSymbolId()) : getCumulativeVolume(msg.getSymbol());
 
 		Session pCombinedSession = null;
 		Session pPreviousSession = null;
@@ -480,7 +760,7 @@ public class DataMaster {
 					// session
 					DDFDate d = DDFDate.fromDayCode(msg.getDay());
 					cv.setDate(d.getMillisCST());
-					cv.getData().clear();
+					cv.clear();
 				}
 			}
 		} else {
@@ -571,6 +851,7 @@ public class DataMaster {
 		final char modifier = msg20.getModifier();
 
 		final float f = msg20.getValueAsFloat();
+		final long m = msg20.getValueMantissa();
 		final int i = msg20.getValueAsInteger();
 
 		if ((msg20.getValueAsFloat() == 0.0f) && (msg20.getValueAsInteger() == 0)) {
@@ -583,9 +864,9 @@ public class DataMaster {
 						|| (modifier == QuoteElementModifiers.Bid.value()))) {
 			// Trade - Last
 			if (session != null) {
-				session.setLast(f);
+				session.setLast(f, m);
 			}
-			pCombinedSession.setLast(f);
+			pCombinedSession.setLast(f, m);
 
 			if (modifier == QuoteElementModifiers.Last.value()) {
 				if (msg.getMillisCST() > 0) {
@@ -626,7 +907,7 @@ public class DataMaster {
 				quote.setAsk(0.0f);
 				quote.setAskSize(0);
 			} else
-				quote.setAsk(f);
+				quote.setAsk(f, m);
 
 			if (_type != MasterType.Realtime)
 				bUpdateTimestamp = false;
@@ -636,25 +917,25 @@ public class DataMaster {
 				quote.setBid(0.0f);
 				quote.setBidSize(0);
 			} else
-				quote.setBid(f);
+				quote.setBid(f, m);
 
 			if (_type != MasterType.Realtime)
 				bUpdateTimestamp = false;
 		} else if (element == QuoteElement.Close.value()) {
 			// Closing Message
 			if (session != null) {
-				session.setLast(f);
-				session._close = f;
+				session.setLast(f, m);
+				session.setClose(f, m);
 			}
 
-			pCombinedSession.setLast(f);
-			pCombinedSession._close = f;
+			pCombinedSession.setLast(f, m);
+			pCombinedSession.setClose(f, m);
 			if (!bDoNotSetFlag)
 				quote.setFlag('c');
 			if (modifier == QuoteElementModifiers.Ask.value())
-				quote.setAsk(f);
+				quote.setAsk(f, m);
 			else if (modifier == QuoteElementModifiers.Bid.value())
-				quote.setBid(f);
+				quote.setBid(f, m);
 
 			// MarketEvent.Close
 			MarketEvent me = addMarketEvent(fe, msg, MarketEventType.Close, quote.getSymbolInfo().getSymbol());
@@ -669,17 +950,17 @@ public class DataMaster {
 				quote.setFlag('c');
 
 			if (session != null) {
-				session.setLast(f);
+				session.setLast(f, m);
 				session._close2 = f;
 			}
 
-			pCombinedSession.setLast(f);
+			pCombinedSession.setLast(f, m);
 			pCombinedSession._close2 = f;
 
 			if (modifier == QuoteElementModifiers.Ask.value())
-				quote.setAsk(f);
+				quote.setAsk(f, m);
 			else if (modifier == QuoteElementModifiers.Bid.value())
-				quote.setBid(f);
+				quote.setBid(f, m);
 
 		} else if ((element == QuoteElement.OpenInterest.value()) && (modifier == QuoteElementModifiers.Ask.value())) { // Open
 																														// Interest
@@ -690,12 +971,12 @@ public class DataMaster {
 			if (!bDoNotSetFlag)
 				quote.setFlag('s');
 			if (session != null) {
-				session.setLast(f);
-				session._settlement = f;
+				session.setLast(f, m);
+				session.setSettlement(f, m);
 			}
 
-			pCombinedSession.setLast(f);
-			pCombinedSession._settlement = f;
+			pCombinedSession.setLast(f, m);
+			pCombinedSession.setSettlement(f, m);
 
 			// MarketEvent.Settlement
 			MarketEvent me = addMarketEvent(fe, msg, MarketEventType.Settlement, quote.getSymbolInfo().getSymbol());
@@ -711,9 +992,9 @@ public class DataMaster {
 				&& (modifier == QuoteElementModifiers.Last.value())) {
 			// Pre-Settlement
 			if (session != null)
-				session._settlement = f;
+				session.setSettlement(f, m);
 
-			pCombinedSession._settlement = f;
+			pCombinedSession.setSettlement(f, m);
 
 			// MarketEvent.PreSettlement
 			MarketEvent me = addMarketEvent(fe, msg, MarketEventType.PreSettlement, quote.getSymbolInfo().getSymbol());
@@ -731,9 +1012,9 @@ public class DataMaster {
 		} else if (element == QuoteElement.High.value()) {
 			// High
 			if (session != null)
-				session._high = f;
+				session.setHigh(f, m);
 
-			pCombinedSession._high = f;
+			pCombinedSession.setHigh(f, m);
 
 			// MarketEvent.High
 			MarketEvent me = addMarketEvent(fe, msg, MarketEventType.High, quote.getSymbolInfo().getSymbol());
@@ -745,9 +1026,9 @@ public class DataMaster {
 		} else if (element == QuoteElement.Low.value()) {
 			// Low
 			if (session != null)
-				session._low = f;
+				session.setLow(f, m);
 
-			pCombinedSession._low = f;
+			pCombinedSession.setLow(f, m);
 
 			// MarketEvent.Low
 			MarketEvent me = addMarketEvent(fe, msg, MarketEventType.Low, quote.getSymbolInfo().getSymbol());
@@ -784,22 +1065,22 @@ public class DataMaster {
 				 */
 				if (session != null) {
 					if (session.getHigh() == 0.0f && session.getLow() == 0.0f && session.getLast() == 0.0f) {
-						session.setLast(f);
-						session._open = f;
-						session._high = f;
-						session._low = f;
+						session.setLast(f, m);
+						session.setOpen(f, m);
+						session.setHigh(f, m);
+						session.setLow(f, m);
 					} else {
-						session._open = f;
+						session.setOpen(f, m);
 					}
 				}
 				if (pCombinedSession.getHigh() == 0.0f && pCombinedSession.getLow() == 0.0f
 						&& pCombinedSession.getLast() == 0.0f) {
-					pCombinedSession.setLast(f);
-					pCombinedSession._open = f;
-					pCombinedSession._high = f;
-					pCombinedSession._low = f;
+					pCombinedSession.setLast(f, m);
+					pCombinedSession.setOpen(f, m);
+					pCombinedSession.setHigh(f, m);
+					pCombinedSession.setLow(f, m);
 				} else {
-					pCombinedSession._open = f;
+					pCombinedSession.setOpen(f, m);
 				}
 
 				// MarketEvent.Settlement, only send if open value was undefined
@@ -816,13 +1097,13 @@ public class DataMaster {
 		} else if (element == QuoteElement.Previous.value()) {
 			// Previous
 
-			pPreviousSession.setLast(f);
-			pPreviousSession._settlement = f;
+			pPreviousSession.setLast(f, m);
+			pPreviousSession.setSettlement(f, m);
 
 			if (session != null)
-				session.setPrevious(f);
+				session.setPrevious(f, m);
 
-			pCombinedSession.setPrevious(f);
+			pCombinedSession.setPrevious(f, m);
 
 			if (_type == MasterType.Delayed) {
 				Calendar c = java.util.Calendar.getInstance();
@@ -1100,14 +1381,14 @@ public class DataMaster {
 	void record2_subrecord7T(DdfMarketBase msg, Session pCombinedSession, Session pElectronicSession, Session session) {
 		// Electronic (Form-T) Trade
 		if (session != null && session != pElectronicSession) {
-			session.setLast(((DdfMarketTrade) msg).getTradePrice());
+			session.setLast(((DdfMarketTrade) msg).getTradePrice(), ((DdfMarketTrade) msg).getTradePriceMantissa());
 			session._tradeSize = ((DdfMarketTrade) msg).getTradeSize();
 			session._volume += ((DdfMarketTrade) msg).getTradeSize();
 			session._numTrades++;
 			session._priceVolume += ((DdfMarketTrade) msg).getTradePrice() * ((DdfMarketTrade) msg).getTradeSize();
 		}
 
-		pElectronicSession.setLast(((DdfMarketTrade) msg).getTradePrice());
+		pElectronicSession.setLast(((DdfMarketTrade) msg).getTradePrice(), ((DdfMarketTrade) msg).getTradePriceMantissa());
 		pElectronicSession._tradeSize = ((DdfMarketTrade) msg).getTradeSize();
 		pElectronicSession._volume += ((DdfMarketTrade) msg).getTradeSize();
 		pElectronicSession._numTrades++;
@@ -1166,14 +1447,14 @@ public class DataMaster {
 				return;
 			}
 			if (session != null) {
-				session.setLast(trade.getTradePrice());
+				session.setLast(trade.getTradePrice(), trade.getTradePriceMantissa());
 				session._tradeSize = trade.getTradeSize();
 				session._volume += trade.getTradeSize();
 				session._numTrades++;
 				session._priceVolume += trade.getTradePrice() * trade.getTradeSize();
 			}
 
-			pCombinedSession.setLast(trade.getTradePrice());
+			pCombinedSession.setLast(trade.getTradePrice(), trade.getTradePriceMantissa());
 			pCombinedSession._tradeSize = trade.getTradeSize();
 			pCombinedSession._volume += trade.getTradeSize();
 			pCombinedSession._numTrades++;
@@ -1208,7 +1489,7 @@ public class DataMaster {
 		DdfMarketBidAsk m = (DdfMarketBidAsk) msg;
 		Float f = m.getAskPrice();
 		if (f != null) {
-			quote.setAsk(f);
+			quote.setAsk(f, m.getAskPriceMantissa());
 			if (f == 0.0f)
 				quote.setAskSize(0);
 			else {
@@ -1220,7 +1501,7 @@ public class DataMaster {
 
 		f = m.getBidPrice();
 		if (f != null) {
-			quote.setBid(f);
+			quote.setBid(f, m.getBidPriceMantissa());
 			if (f == 0.0f)
 				quote.setBidSize(0);
 			else {
@@ -1238,67 +1519,80 @@ public class DataMaster {
 	}
 
 	BookQuote record3_book_eod(DdfMarketBase msg) {
+		return record3_book_eod(msg, symbols.register(msg.getSymbol()));
+	}
+
+	BookQuote record3_book_eod(DdfMarketBase msg, int symbolId) {
+		return record3_book_eod(msg, symbolId, null);
+	}
+
+	/*
+	 * Depth is applied in place to the cached book, the changed levels are set
+	 * on the feed event.
+	 */
+	private BookQuote record3_book_eod(DdfMarketBase msg, int symbolId, FeedEvent fe) {
 		// Market Depth Messages
 		if (msg.getSubRecord() == DdfSubRecord.BookDepth.value()) {
-			BookQuote bookQuote = getBookQuote(msg.getSymbol());
+			BookQuote bookQuote = bookMap.get(symbolId);
 			if (bookQuote == null) {
-				bookQuote = BookQuote.FromDDFMessage((DdfMarketDepth) msg);
-			} else {
-				bookQuote.setBaseCode(msg.getBaseCode());
-
-				bookQuote.askcount = ((DdfMarketDepth) msg).getAskCount();
-				bookQuote.bidcount = ((DdfMarketDepth) msg).getBidCount();
-
-				float fa[] = ((DdfMarketDepth) msg).getAskPrices();
-				int ia[] = ((DdfMarketDepth) msg).getAskSizes();
-				for (int i = 0; i < bookQuote.askcount; i++) {
-					if (fa[i] != ParserHelper.DDFAPI_NOVALUE)
-						bookQuote.askprices[i] = fa[i];
-					if (ia[i] != ParserHelper.DDFAPI_NOVALUE)
-						bookQuote.asksizes[i] = ia[i];
-				}
-
-				fa = ((DdfMarketDepth) msg).getBidPrices();
-				ia = ((DdfMarketDepth) msg).getBidSizes();
-
-				for (int i = 0; i < bookQuote.bidcount; i++) {
-					if (fa[i] != ParserHelper.DDFAPI_NOVALUE)
-						bookQuote.bidprices[i] = fa[i];
-					if (ia[i] != ParserHelper.DDFAPI_NOVALUE)
-						bookQuote.bidsizes[i] = ia[i];
-				}
+				bookQuote = bookArena.newBookQuote(msg.getSymbol());
+				bookMap.put(symbolId, bookQuote);
 			}
-
-			if (bookQuote != null) {
-				bookMap.put(bookQuote.getSymbol(), bookQuote);
+			BookQuoteDelta delta = bookQuote.update((DdfMarketDepth) msg);
+			if (fe != null) {
+				fe.setBookDelta(delta);
 			}
-
 			return bookQuote;
 		}
 		return null;
 	}
 
+	/*
+	 * Stores the quote under its primary symbol, the quote keeps the id for
+	 * routing.
+	 */
+	private void storeQuote(Quote quote) {
+		int id = symbols.register(quote.getSymbolInfo().getSymbol());
+		quote.setSymbolId(id);
+		quoteStore.put(id, quote);
+	}
+
+	private String[] toSymbols(SymbolMap<?> map) {
+		final List<String> list = new ArrayList<>(map.size());
+		map.forEach((id, v) -> list.add(symbols.getSymbol(id)));
+		return list.toArray(new String[list.size()]);
+	}
+
 	private MarketEvent addMarketEvent(FeedEvent fe, DdfMarketBase msg, MarketEventType type, String symbol) {
-		MarketEvent me = new MarketEvent(type);
+		MarketEvent me = fe.addMarketEvent(type);
 		me.setDdfMessage(msg);
 		me.setSymbol(symbol);
-		fe.addMarketEvent(me);
 		return me;
 	}
 
 	private CumulativeVolume handleRefreshCumlativeVolume(XMLNode node) {
 		CumulativeVolume volume = CumulativeVolume.fromXMLNode(node);
 		if (volume != null) {
-			_cumulativeVolumeTable.put(volume.getSymbol(), volume);
+			_cumulativeVolumeTable.put(symbols.register(volume.getSymbol()), volume);
 		}
 		return volume;
 	}
 
 	private BookQuote handleBookQuoteRefresh(XMLNode node) {
-		BookQuote bookQuote = BookQuote.fromXMLNode(node);
-		if (bookQuote != null) {
-			bookMap.put(bookQuote.getSymbol(), bookQuote);
+		String symbol = node.getAttribute("symbol");
+		if (symbol == null) {
+			return null;
+		}
+		// Refreshes are loaded in place, the sequence continues
+		int id = symbols.register(symbol);
+		BookQuote bookQuote = bookMap.get(id);
+		if (bookQuote == null) {
+			bookQuote = bookArena.newBookQuote(symbol);
+			bookMap.put(id, bookQuote);
 		}
+		bookQuote.load(node);
+		bookQuote.sequence++;
+		bookQuote.stale = false;
 		return bookQuote;
 	}
 
@@ -1306,7 +1600,7 @@ public class DataMaster {
 		// makes new
 		Quote quote = Quote.fromXMLNode(node);
 		if (quote != null) {
-			quoteMap.put(quote.getSymbolInfo().getSymbol(), quote);
+			storeQuote(quote);
 			quote.setMessage(msg);
 		}
 		return quote;
@@ -1371,19 +1665,19 @@ public class DataMaster {
 
 	public void addSubscribedSymbol(String symbol) {
 		// Assume it is not a known symbol.
-		unrecoginzedSymbols.put(symbol, System.currentTimeMillis());
+		unrecoginzedSymbols.put(symbols.register(symbol), System.currentTimeMillis());
 	}
 
 	public void removeSubscribedSymbol(String symbol) {
-		unrecoginzedSymbols.remove(symbol);
+		unrecoginzedSymbols.remove(symbols.getId(symbol));
 	}
 
 	public String[] getUnknownSymbols() {
-		return unrecoginzedSymbols.keySet().toArray(new String[unrecoginzedSymbols.size()]);
+		return toSymbols(unrecoginzedSymbols);
 
 	}
 
 	public void deleteQuote(String symbol) {
-		quoteMap.remove(symbol);
+		quoteStore.remove(symbols.getId(symbol));
 	}
 }
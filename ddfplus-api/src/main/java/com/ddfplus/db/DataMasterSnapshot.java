@@ -0,0 +1,229 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.db;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import com.ddfplus.util.XMLNode;
+
+/**
+ * Warm start snapshot of the {@link DataMaster} quotes, books and cumulative
+ * volumes.
+ * <p>
+ * Quotes are written as their fixed size binary record, books and cumulative
+ * volumes in their refresh XML form. The file is replaced atomically and read
+ * memory mapped. Loaded entries are marked stale until the feed refreshes
+ * them, see {@link Quote#isStale()}, {@link BookQuote#isStale()} and
+ * {@link CumulativeVolume#isStale()}.
+ */
+public final class DataMasterSnapshot {
+
+	private static final int MAGIC = 0x44444653; // DDFS
+
+	static final int VERSION = 2;
+
+	private DataMasterSnapshot() {
+	}
+
+	/**
+	 * Writes the current state of the data master.
+	 * 
+	 * @param dataMaster
+	 *            DataMaster
+	 * @param file
+	 *            Snapshot file, replaced
+	 * @return Number of entries written
+	 * @throws IOException
+	 *             If the file could not be written
+	 */
+	public static int write(DataMaster dataMaster, Path file) throws IOException {
+		final Output out = new Output();
+		out.buf.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis()).putInt(Quote.BYTES);
+
+		final int[] count = new int[1];
+		final int quotes = out.buf.position();
+		out.buf.putInt(0);
+		// Records are copied as stored, off heap quotes are not loaded. Request
+		// symbol aliases are restored with the quote.
+		dataMaster.getQuoteStore().forEachRecord((si, ddfExchange, requestSymbol, record, offset) -> {
+			out.putString(si.getSymbol());
+			out.putString(si.getName());
+			out.putString(si.getExchange());
+			out.putString(si.getLongSymbol());
+			out.ensure(10);
+			out.buf.putChar(si.getBaseCode()).putFloat(si.getPointValue()).putInt(si.getTickIncrement());
+			out.putString(requestSymbol);
+			out.putString(ddfExchange);
+			out.ensure(Quote.BYTES);
+			final ByteBuffer r = record.duplicate();
+			r.limit(offset + Quote.BYTES).position(offset);
+			out.buf.put(r);
+			count[0]++;
+		});
+		out.buf.putInt(quotes, count[0]);
+		int total = count[0];
+
+		count[0] = 0;
+		final int books = out.buf.position();
+		out.putInt(0);
+		dataMaster.getBookMap().forEach((id, b) -> {
+			out.putString(b.toXMLNode().toXMLString());
+			count[0]++;
+		});
+		out.buf.putInt(books, count[0]);
+		total += count[0];
+
+		count[0] = 0;
+		final int volumes = out.buf.position();
+		out.putInt(0);
+		dataMaster.getCumulativeVolumeMap().forEach((id, cv) -> {
+			out.putString(cv.toXMLNode().toXMLString());
+			count[0]++;
+		});
+		out.buf.putInt(volumes, count[0]);
+		total += count[0];
+
+		out.buf.flip();
+		final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (out.buf.hasRemaining()) {
+				ch.write(out.buf);
+			}
+			// On disk before the rename, a crash must not leave a torn snapshot
+			ch.force(true);
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return total;
+	}
+
+	/**
+	 * Loads a snapshot. Symbols the data master already holds are skipped.
+	 * 
+	 * @param dataMaster
+	 *            DataMaster
+	 * @param file
+	 *            Snapshot file
+	 * @return Number of entries loaded
+	 * @throws IOException
+	 *             If the file could not be read or has an unsupported version
+	 */
+	public static int read(DataMaster dataMaster, Path file) throws IOException {
+		final MappedByteBuffer b;
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			b = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+		}
+		if (b.remaining() < 20 || b.getInt() != MAGIC) {
+			throw new IOException("Not a snapshot file: " + file);
+		}
+		final int version = b.getInt();
+		b.getLong(); // created
+		final int recordBytes = b.getInt();
+		if (version != VERSION || recordBytes != Quote.BYTES) {
+			throw new IOException("Unsupported snapshot version: " + version + " record bytes: " + recordBytes);
+		}
+
+		int loaded = 0;
+		final SymbolRegistry symbols = dataMaster.getSymbolRegistry();
+		for (int n = b.getInt(); n > 0; n--) {
+			String symbol = getString(b);
+			String name = getString(b);
+			String exchange = getString(b);
+			String longSymbol = getString(b);
+			char baseCode = b.getChar();
+			float pointValue = b.getFloat();
+			SymbolInfo si = new SymbolInfo(symbol, name, exchange, baseCode, pointValue, b.getInt());
+			si.setLongSymbol(longSymbol);
+			String requestSymbol = getString(b);
+			String ddfExchange = getString(b);
+			int pos = b.position();
+			b.position(pos + Quote.BYTES);
+			if (dataMaster.getQuoteStore().containsKey(symbols.getId(symbol))) {
+				continue;
+			}
+			Quote q = Quote.read(si, ddfExchange, b, pos);
+			q.setRequestSymbol(requestSymbol);
+			q.setStale(true);
+			dataMaster.putQuote(q);
+			loaded++;
+		}
+
+		for (int n = b.getInt(); n > 0; n--) {
+			XMLNode node = XMLNode.parse(getString(b));
+			String symbol = node.getAttribute("symbol");
+			if (dataMaster.getBookQuote(symbol) != null) {
+				continue;
+			}
+			BookQuote book = dataMaster.getBookArena().newBookQuote(symbol);
+			book.load(node);
+			book.stale = true;
+			dataMaster.putBookQuote(book);
+			loaded++;
+		}
+
+		for (int n = b.getInt(); n > 0; n--) {
+			CumulativeVolume cv = CumulativeVolume.fromXMLNode(XMLNode.parse(getString(b)));
+			if (cv == null || dataMaster.getCumulativeVolume(cv.getSymbol()) != null) {
+				continue;
+			}
+			cv._stale = true;
+			dataMaster.putCumulativeVolume(cv);
+			loaded++;
+		}
+		return loaded;
+	}
+
+	private static String getString(ByteBuffer b) {
+		final int len = b.getInt();
+		if (len < 0) {
+			return null;
+		}
+		final byte[] bytes = new byte[len];
+		b.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/*
+	 * Growable write buffer.
+	 */
+	private static final class Output {
+		ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+
+		void ensure(int n) {
+			if (buf.remaining() < n) {
+				ByteBuffer b = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + n));
+				buf.flip();
+				b.put(buf);
+				buf = b;
+			}
+		}
+
+		void putInt(int i) {
+			ensure(4);
+			buf.putInt(i);
+		}
+
+		void putString(String s) {
+			if (s == null) {
+				putInt(-1);
+				return;
+			}
+			final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			ensure(4 + bytes.length);
+			buf.putInt(bytes.length).put(bytes);
+		}
+	}
+
+}
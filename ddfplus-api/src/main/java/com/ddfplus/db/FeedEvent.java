@@ -13,17 +13,63 @@ import java.util.List;
 import com.ddfplus.messages.DdfMarketTrade;
 import com.ddfplus.messages.DdfMessageBase;
 
+/**
+ * Result of processing one message by the {@link DataMaster}.
+ * <p>
+ * If event re-use is enabled, see {@link DataMaster#setReuseEvents(boolean)},
+ * the event and its market events are recycled by the processing thread and
+ * are only valid during the handler call.
+ */
 public class FeedEvent {
 
+	// Recycled per thread, see reset()
+	private final boolean reused;
 	private Date timestamp;
 	private DdfMessageBase ddfMessage;
 	private Quote quote;
+	private QuoteSnapshot quoteSnapshot;
 	private BookQuote bookQuote;
+	private BookQuoteDelta bookDelta;
 	private CumulativeVolume cumVolume;
 	private List<MarketEvent> marketEvents;
 	private Ohlc ohlc;
 	private DdfMarketTrade trade;
 	private boolean refreshMessage;
+	private int symbolId = SymbolRegistry.NOT_FOUND;
+	// Re-used storage, only if recycled
+	private Date reusedDate;
+	private List<MarketEvent> reusedList;
+	private List<MarketEvent> marketEventPool;
+
+	public FeedEvent() {
+		this(false);
+	}
+
+	FeedEvent(boolean reused) {
+		this.reused = reused;
+	}
+
+	/*
+	 * Clears the event for the next message, keeps the allocated storage.
+	 */
+	void reset() {
+		timestamp = null;
+		ddfMessage = null;
+		quote = null;
+		quoteSnapshot = null;
+		bookQuote = null;
+		bookDelta = null;
+		cumVolume = null;
+		if (marketEvents != null) {
+			marketEvents.clear();
+			reusedList = marketEvents;
+			marketEvents = null;
+		}
+		ohlc = null;
+		trade = null;
+		refreshMessage = false;
+		symbolId = SymbolRegistry.NOT_FOUND;
+	}
 
 	public boolean isDdfMessage() {
 		return ddfMessage != null;
@@ -49,6 +95,19 @@ public class FeedEvent {
 		this.timestamp = date;
 	}
 
+	void setTimestamp(long millis) {
+		if (!reused) {
+			timestamp = new Date(millis);
+			return;
+		}
+		if (reusedDate == null) {
+			reusedDate = new Date(millis);
+		} else {
+			reusedDate.setTime(millis);
+		}
+		timestamp = reusedDate;
+	}
+
 	public boolean isQuote() {
 		return quote != null;
 	}
@@ -61,6 +120,18 @@ public class FeedEvent {
 		this.quote = quote;
 	}
 
+	/**
+	 * @return Immutable snapshot of the quote after this event, null if quote
+	 *         snapshots are not enabled on the DataMaster.
+	 */
+	public QuoteSnapshot getQuoteSnapshot() {
+		return quoteSnapshot;
+	}
+
+	public void setQuoteSnapshot(QuoteSnapshot quoteSnapshot) {
+		this.quoteSnapshot = quoteSnapshot;
+	}
+
 	public boolean isBookQuote() {
 		return bookQuote != null;
 	}
@@ -73,6 +144,17 @@ public class FeedEvent {
 		this.bookQuote = book;
 	}
 
+	/**
+	 * @return The levels changed by a live depth update, null for refreshes.
+	 */
+	public BookQuoteDelta getBookDelta() {
+		return bookDelta;
+	}
+
+	public void setBookDelta(BookQuoteDelta bookDelta) {
+		this.bookDelta = bookDelta;
+	}
+
 	public boolean isMarketEvents() {
 		return marketEvents != null && marketEvents.size() > 0;
 	}
@@ -83,11 +165,36 @@ public class FeedEvent {
 
 	public void addMarketEvent(MarketEvent event) {
 		if (marketEvents == null) {
-			marketEvents = new ArrayList<>();
+			marketEvents = reusedList != null ? reusedList : new ArrayList<>();
+			reusedList = null;
 		}
 		marketEvents.add(event);
 	}
 
+	/*
+	 * Adds a market event, recycled if this event is.
+	 */
+	MarketEvent addMarketEvent(MarketEvent.MarketEventType type) {
+		MarketEvent me;
+		if (!reused) {
+			me = new MarketEvent(type);
+		} else {
+			if (marketEventPool == null) {
+				marketEventPool = new ArrayList<>();
+			}
+			int i = marketEvents == null ? 0 : marketEvents.size();
+			if (i < marketEventPool.size()) {
+				me = marketEventPool.get(i);
+				me.reset(type);
+			} else {
+				me = new MarketEvent(type);
+				marketEventPool.add(me);
+			}
+		}
+		addMarketEvent(me);
+		return me;
+	}
+
 	public void setMarketEvents(List<MarketEvent> marketEvent) {
 		this.marketEvents = marketEvent;
 	}
@@ -133,4 +240,16 @@ public class FeedEvent {
 		this.refreshMessage = b;
     }
     public boolean isRefreshMessage() { return this.refreshMessage; }
+
+	/**
+	 * @return Symbol id of the live message, {@link SymbolRegistry#NOT_FOUND}
+	 *         if not set.
+	 */
+	public int getSymbolId() {
+		return symbolId;
+	}
+
+	public void setSymbolId(int symbolId) {
+		this.symbolId = symbolId;
+	}
 }
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.db;
+
+import java.nio.ByteBuffer;
+import java.util.function.IntConsumer;
+
+/**
+ * Keeps the quote objects on the heap, the default {@link QuoteStore}.
+ */
+public final class HeapQuoteStore implements QuoteStore {
+
+	private final SymbolMap<Quote> quotes = new SymbolMap<>();
+
+	@Override
+	public Quote get(int symbolId) {
+		return quotes.get(symbolId);
+	}
+
+	@Override
+	public void put(int symbolId, Quote quote) {
+		quotes.put(symbolId, quote);
+	}
+
+	@Override
+	public void remove(int symbolId) {
+		quotes.remove(symbolId);
+	}
+
+	@Override
+	public boolean containsKey(int symbolId) {
+		return quotes.containsKey(symbolId);
+	}
+
+	@Override
+	public int size() {
+		return quotes.size();
+	}
+
+	@Override
+	public void forEachId(IntConsumer consumer) {
+		quotes.forEach((id, q) -> consumer.accept(id));
+	}
+
+	@Override
+	public void forEachRecord(RecordVisitor visitor) {
+		final ByteBuffer record = ByteBuffer.allocate(Quote.BYTES);
+		quotes.forEach((id, q) -> {
+			if (q.getSymbolId() == id) {
+				q.write(record, 0);
+				visitor.visit(q.getSymbolInfo(), q.getDDFExchange(), q.getRequestSymbol(), record, 0);
+			}
+		});
+	}
+
+	@Override
+	public void clear() {
+		quotes.clear();
+	}
+
+}
@@ -27,6 +27,37 @@ public class MarketEvent {
 		this.type = eventType;
 	}
 
+	void reset(MarketEventType eventType) {
+		type = eventType;
+		open = 0;
+		high = 0;
+		low = 0;
+		close = 0;
+		preSettlement = 0;
+		settlement = 0;
+		symbol = null;
+		ddfMessage = null;
+	}
+
+	/**
+	 * Copies the event, for handlers called on another thread while events
+	 * are re-used, see {@link DataMaster#setReuseEvents(boolean)}.
+	 * 
+	 * @return Copy of the event
+	 */
+	public MarketEvent copy() {
+		MarketEvent e = new MarketEvent(type);
+		e.open = open;
+		e.high = high;
+		e.low = low;
+		e.close = close;
+		e.preSettlement = preSettlement;
+		e.settlement = settlement;
+		e.symbol = symbol;
+		e.ddfMessage = ddfMessage;
+		return e;
+	}
+
 	public MarketEventType getEventType() {
 		return this.type;
 	}
@@ -0,0 +1,243 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.db;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Keeps the quotes in fixed size records outside of the heap, for full
+ * exchange subscriptions with a large number of symbols.
+ * <p>
+ * Records are stored in direct buffers of 1024 quotes, addressed by the
+ * primary symbol id. The most recently used quotes are kept on the heap as
+ * objects and written back to their record when they are evicted, so the heap
+ * use is bounded by the hot capacity. A quote object obtained before it was
+ * evicted is detached, unless it is updated again, see
+ * {@link #updated(Quote)}.
+ * <p>
+ * The symbol info, request symbol and exchange are kept on the heap. Not
+ * stored are the last message and the day sessions before the latest
+ * {@link Quote#MAX_SESSIONS}.
+ */
+public final class OffHeapQuoteStore implements QuoteStore {
+
+	public static final int DEFAULT_HOT_QUOTES = 10000;
+
+	private static final int SLAB_SHIFT = 10;
+
+	private static final int SLAB_RECORDS = 1 << SLAB_SHIFT;
+
+	/*
+	 * Heap part of a quote, shared by the primary id and its aliases.
+	 */
+	private static final class Slot {
+		final int primary;
+		SymbolInfo symbolInfo;
+		String ddfExchange;
+		String requestSymbol;
+		// Heap instance while the quote is hot
+		Quote quote;
+
+		Slot(int primary) {
+			this.primary = primary;
+		}
+	}
+
+	private final SymbolMap<Slot> index = new SymbolMap<>();
+
+	private final int hotQuotes;
+
+	// Hot quotes by primary id, in access order
+	private final LinkedHashMap<Integer, Slot> hot;
+
+	private ByteBuffer[] slabs = new ByteBuffer[0];
+
+	public OffHeapQuoteStore() {
+		this(DEFAULT_HOT_QUOTES);
+	}
+
+	/**
+	 * @param hotQuotes
+	 *            Number of quotes kept on the heap
+	 */
+	public OffHeapQuoteStore(int hotQuotes) {
+		if (hotQuotes <= 0) {
+			throw new IllegalArgumentException("Invalid hot quote count: " + hotQuotes);
+		}
+		this.hotQuotes = hotQuotes;
+		this.hot = new LinkedHashMap<Integer, Slot>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Slot> eldest) {
+				if (size() <= OffHeapQuoteStore.this.hotQuotes) {
+					return false;
+				}
+				Slot e = eldest.getValue();
+				write(e, e.quote);
+				e.quote = null;
+				return true;
+			}
+		};
+	}
+
+	@Override
+	public synchronized Quote get(int symbolId) {
+		final Slot e = index.get(symbolId);
+		if (e == null) {
+			return null;
+		}
+		if (e.quote != null) {
+			hot.get(e.primary);
+			return e.quote;
+		}
+		Quote q = Quote.read(e.symbolInfo, e.ddfExchange, slab(e.primary), offset(e.primary));
+		q.setRequestSymbol(e.requestSymbol);
+		q.setSymbolId(e.primary);
+		e.quote = q;
+		hot.put(e.primary, e);
+		return q;
+	}
+
+	@Override
+	public synchronized void put(int symbolId, Quote quote) {
+		final int primary = quote.getSymbolId() != SymbolRegistry.NOT_FOUND ? quote.getSymbolId() : symbolId;
+		Slot e = index.get(primary);
+		if (e == null) {
+			e = new Slot(primary);
+			index.put(primary, e);
+		}
+		if (e.quote != quote) {
+			// Replaces a previous instance, aliases share the entry
+			write(e, quote);
+			e.quote = quote;
+			hot.put(primary, e);
+		}
+		if (symbolId != primary) {
+			index.put(symbolId, e);
+		}
+	}
+
+	/**
+	 * If the quote was evicted while being updated it is written through and
+	 * made the hot instance again, replacing one read from the record in the
+	 * meantime, so the next update starts from this one.
+	 */
+	@Override
+	public synchronized void updated(Quote quote) {
+		final Slot e = index.get(quote.getSymbolId());
+		if (e != null && e.quote != quote) {
+			write(e, quote);
+			e.quote = quote;
+			hot.put(e.primary, e);
+		}
+	}
+
+	@Override
+	public synchronized void remove(int symbolId) {
+		final Slot e = index.remove(symbolId);
+		if (e != null && e.primary == symbolId && e.quote != null) {
+			// Aliases read the record from now on
+			write(e, e.quote);
+			e.quote = null;
+			hot.remove(symbolId);
+		}
+	}
+
+	@Override
+	public synchronized boolean containsKey(int symbolId) {
+		return index.containsKey(symbolId);
+	}
+
+	@Override
+	public synchronized int size() {
+		return index.size();
+	}
+
+	@Override
+	public synchronized void forEachId(IntConsumer consumer) {
+		index.forEach((id, e) -> consumer.accept(id));
+	}
+
+	/**
+	 * Hot quotes are written to a scratch record, the others are visited in
+	 * their slab. The hot quotes are not touched.
+	 */
+	@Override
+	public synchronized void forEachRecord(RecordVisitor visitor) {
+		final ByteBuffer scratch = ByteBuffer.allocate(Quote.BYTES);
+		index.forEach((id, e) -> {
+			if (e.primary != id) {
+				return;
+			}
+			if (e.quote != null) {
+				e.quote.write(scratch, 0);
+				visitor.visit(e.quote.getSymbolInfo(), e.quote.getDDFExchange(), e.quote.getRequestSymbol(),
+						scratch, 0);
+			} else {
+				visitor.visit(e.symbolInfo, e.ddfExchange, e.requestSymbol, slab(id), offset(id));
+			}
+		});
+	}
+
+	/**
+	 * Clears the quotes, the allocated buffers are kept for re-use.
+	 */
+	@Override
+	public synchronized void clear() {
+		index.clear();
+		hot.clear();
+	}
+
+	/**
+	 * @return Number of quotes kept on the heap
+	 */
+	public synchronized int getHotCount() {
+		return hot.size();
+	}
+
+	/**
+	 * @return Bytes allocated outside of the heap
+	 */
+	public synchronized long getOffHeapBytes() {
+		return (long) slabs.length * SLAB_RECORDS * Quote.BYTES;
+	}
+
+	private void write(Slot e, Quote q) {
+		e.symbolInfo = q.getSymbolInfo();
+		e.ddfExchange = q.getDDFExchange();
+		e.requestSymbol = q.getRequestSymbol();
+		q.write(slab(e.primary), offset(e.primary));
+	}
+
+	private ByteBuffer slab(int primary) {
+		final int i = primary >> SLAB_SHIFT;
+		if (i >= slabs.length) {
+			int n = slabs.length;
+			slabs = Arrays.copyOf(slabs, i + 1);
+			for (; n <= i; n++) {
+				slabs[n] = ByteBuffer.allocateDirect(SLAB_RECORDS * Quote.BYTES);
+			}
+		}
+		return slabs[i];
+	}
+
+	private static int offset(int primary) {
+		return (primary & (SLAB_RECORDS - 1)) * Quote.BYTES;
+	}
+
+	@Override
+	public String toString() {
+		return "OffHeapQuoteStore [quotes=" + size() + ", hot=" + getHotCount() + ", offHeapBytes="
+				+ getOffHeapBytes() + "]";
+	}
+
+}
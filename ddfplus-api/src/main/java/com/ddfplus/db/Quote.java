@@ -7,6 +7,7 @@
 
 package com.ddfplus.db;
 
+import com.ddfplus.codec.Codec;
 import com.ddfplus.enums.MarketConditionType;
 import com.ddfplus.messages.DdfMarketBase;
 import com.ddfplus.util.DDFDate;
@@ -14,6 +15,7 @@ import com.ddfplus.util.ParserHelper;
 import com.ddfplus.util.XMLNode;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
@@ -41,11 +43,16 @@ public class Quote implements Cloneable, Serializable {
     private final SymbolInfo _symbolInfo;
     // Request symbol can be short symbol
     private String _requestSymbol = null;
+    // Id in the DataMaster symbol registry
+    private volatile int _symbolId = SymbolRegistry.NOT_FOUND;
     // Prices
     private volatile float _ask = 0.0f;
     private volatile int _askSize = 0;
     private volatile float _bid = 0.0f;
     private volatile int _bidSize = 0;
+    // Fixed point prices as received, valid while they match the float prices
+    private volatile long _askMantissa = 0;
+    private volatile long _bidMantissa = 0;
     // BOLO fields
     private float _bolbid;
     private int _bolbidsize;
@@ -61,15 +68,21 @@ public class Quote implements Cloneable, Serializable {
     private volatile char _flag = '\0';
     private volatile MarketConditionType _marketCondition = MarketConditionType.NORMAL;
     protected volatile long _lastUpdated = 0;
+    // Second of the last DataMaster activity record, processing thread only
+    transient long activitySecond;
 
     // Original DDF Message
     private volatile DdfMarketBase _message = null;
     private volatile char _permission = '\0';
+    // Last published snapshot, only set if enabled on the DataMaster
+    private volatile QuoteSnapshot _snapshot = null;
     // Openfeed Fields
     private long _seqNo;
     private long _marketId;
     private long _cacheTimeMs;
     private CacheAge _cacheAge;
+    // Loaded from a warm start snapshot, until the first refresh
+    private volatile boolean _stale;
 
 
     public Quote(SymbolInfo symbolInfo) {
@@ -90,6 +103,8 @@ public class Quote implements Cloneable, Serializable {
         q._askSize = _askSize;
         q._bid = _bid;
         q._bidSize = _bidSize;
+        q._askMantissa = _askMantissa;
+        q._bidMantissa = _bidMantissa;
         // Bolo
         q._bolbid = _bolbid;
         q._bolbidsize = _bolbidsize;
@@ -111,10 +126,12 @@ public class Quote implements Cloneable, Serializable {
 
         q._sessions.addAll(_sessions);
         q._requestSymbol = _requestSymbol;
+        q._symbolId = _symbolId;
         q._seqNo = _seqNo;
         q._marketId = _marketId;
         q._cacheTimeMs = _cacheTimeMs;
         q._cacheAge = _cacheAge;
+        q._stale = _stale;
 
         return q;
 
@@ -203,6 +220,58 @@ public class Quote implements Cloneable, Serializable {
         return _bidSize;
     }
 
+    /**
+     * Returns the number of decimal places of the fixed point prices of the
+     * quote, e.g. {@link #getBidMantissa()}.
+     *
+     * @return <code>int</code> The price scale
+     */
+    public int getPriceScale() {
+        return Codec.getPriceScale(SymbolInfo.ddfuc2bb(_symbolInfo.getBaseCode()));
+    }
+
+    /**
+     * Returns the best Ask (offer) price as a fixed point number, the price is
+     * <code>mantissa / 10^getPriceScale()</code>. Exact when the price was set
+     * by a 2,0 or 2,8 message or a quote refresh, see
+     * {@link #toMantissa(float, long)}.
+     *
+     * @return <code>long</code> The Ask price mantissa
+     */
+    public long getAskMantissa() {
+        return toMantissa(_ask, _askMantissa);
+    }
+
+    /**
+     * Returns the best bid price as a fixed point number, the price is
+     * <code>mantissa / 10^getPriceScale()</code>. Exact when the price was set
+     * by a 2,0 or 2,8 message or a quote refresh, see
+     * {@link #toMantissa(float, long)}.
+     *
+     * @return <code>long</code> The Bid price mantissa
+     */
+    public long getBidMantissa() {
+        return toMantissa(_bid, _bidMantissa);
+    }
+
+    /**
+     * Returns the stored mantissa of a price if it still matches the float
+     * price. Prices only set as a float, e.g. by a 2,1 refresh or a setter, are
+     * rounded to the nearest tick of the price scale, which is not exact beyond
+     * about 7 significant digits.
+     *
+     * @param value    float price
+     * @param mantissa stored mantissa
+     * @return <code>long</code> The price mantissa
+     */
+    long toMantissa(float value, long mantissa) {
+        final int basecode = SymbolInfo.ddfuc2bb(_symbolInfo.getBaseCode());
+        if (Codec.mantissaToFloat(mantissa, basecode) == value) {
+            return mantissa;
+        }
+        return Codec.floatToMantissa(value, basecode);
+    }
+
     public float getBolbid() {
         return _bolbid;
     }
@@ -396,6 +465,17 @@ public class Quote implements Cloneable, Serializable {
         _ask = value;
     }
 
+    /**
+     * Sets the ask price with its fixed point value from the message.
+     *
+     * @param value    price
+     * @param mantissa price mantissa, see {@link #getPriceScale()}
+     */
+    public void setAsk(float value, long mantissa) {
+        _askMantissa = mantissa;
+        _ask = value;
+    }
+
     public void setAskSize(int value) {
         _askSize = value;
     }
@@ -404,6 +484,17 @@ public class Quote implements Cloneable, Serializable {
         _bid = value;
     }
 
+    /**
+     * Sets the bid price with its fixed point value from the message.
+     *
+     * @param value    price
+     * @param mantissa price mantissa, see {@link #getPriceScale()}
+     */
+    public void setBid(float value, long mantissa) {
+        _bidMantissa = mantissa;
+        _bid = value;
+    }
+
     public void setBidSize(int value) {
         _bidSize = value;
     }
@@ -1080,16 +1171,20 @@ public class Quote implements Cloneable, Serializable {
             qte._marketCondition = MarketConditionType.getByCode(s.charAt(0));
 
         s = node.getAttribute("bid");
-        if (s != null)
+        if (s != null) {
             qte._bid = ParserHelper.string2float(s, qte.getSymbolInfo().getBaseCode());
+            qte._bidMantissa = ParserHelper.string2mantissa(s, qte.getSymbolInfo().getBaseCode());
+        }
 
         s = node.getAttribute("bidsize");
         if (s != null)
             qte._bidSize = ParserHelper.string2int(s);
 
         s = node.getAttribute("ask");
-        if (s != null)
+        if (s != null) {
             qte._ask = ParserHelper.string2float(s, qte.getSymbolInfo().getBaseCode());
+            qte._askMantissa = ParserHelper.string2mantissa(s, qte.getSymbolInfo().getBaseCode());
+        }
 
         s = node.getAttribute("asksize");
         if (s != null)
@@ -1142,6 +1237,36 @@ public class Quote implements Cloneable, Serializable {
         this._requestSymbol = symbol;
     }
 
+    /**
+     * @return Id of the symbol in the {@link DataMaster} symbol registry,
+     *         {@link SymbolRegistry#NOT_FOUND} if the quote is not cached.
+     */
+    public int getSymbolId() {
+        return _symbolId;
+    }
+
+    void setSymbolId(int id) {
+        this._symbolId = id;
+    }
+
+    /**
+     * Returns the immutable snapshot published by the {@link DataMaster} after
+     * the last update. Unlike the Quote, the snapshot can be passed to other
+     * threads without cloning.
+     *
+     * @return Latest snapshot, null if snapshots are not enabled.
+     * @see DataMaster#setQuoteSnapshots(boolean)
+     */
+    public QuoteSnapshot getSnapshot() {
+        return _snapshot;
+    }
+
+    QuoteSnapshot updateSnapshot() {
+        QuoteSnapshot s = new QuoteSnapshot(this, _snapshot);
+        _snapshot = s;
+        return s;
+    }
+
     public long getMarketId() {
         return _marketId;
     }
@@ -1166,6 +1291,130 @@ public class Quote implements Cloneable, Serializable {
         return this._cacheAge;
     }
 
+    /**
+     * @return true if the quote was loaded from a warm start snapshot and not
+     *         refreshed from the feed yet, see {@link DataMasterSnapshot}
+     */
+    public boolean isStale() {
+        return _stale;
+    }
+
+    void setStale(boolean stale) {
+        this._stale = stale;
+    }
+
+    /*
+     * Fixed layout of a quote with its sessions, see OffHeapQuoteStore.
+     */
+    static final int MAX_SESSIONS = 4;
+
+    private static final int FIELD_BYTES = 88;
+
+    static final int BYTES = FIELD_BYTES + (3 + MAX_SESSIONS) * Session.BYTES;
+
+    /**
+     * Writes the quote fields and sessions to a fixed size record of
+     * {@link #BYTES} bytes. The symbol info, request symbol, exchange and last
+     * message are not written. Of the day sessions the latest
+     * {@link #MAX_SESSIONS} are kept.
+     *
+     * @param b   buffer
+     * @param pos record offset
+     */
+    void write(ByteBuffer b, int pos) {
+        b.putFloat(pos, _ask);
+        b.putInt(pos + 4, _askSize);
+        b.putFloat(pos + 8, _bid);
+        b.putInt(pos + 12, _bidSize);
+        b.putFloat(pos + 16, _bolbid);
+        b.putInt(pos + 20, _bolbidsize);
+        b.putFloat(pos + 24, _bolask);
+        b.putInt(pos + 28, _bolasksize);
+        b.putChar(pos + 32, _flag);
+        b.putChar(pos + 34, _permission);
+        b.put(pos + 36, (byte) (_marketCondition == null ? -1 : _marketCondition.ordinal()));
+        b.put(pos + 37, (byte) (_cacheAge == null ? -1 : _cacheAge.ordinal()));
+        b.putLong(pos + 40, _lastUpdated);
+        b.putLong(pos + 48, _seqNo);
+        b.putLong(pos + 56, _marketId);
+        b.putLong(pos + 64, _cacheTimeMs);
+        b.putLong(pos + 72, _askMantissa);
+        b.putLong(pos + 80, _bidMantissa);
+
+        int present = 0;
+        int s = pos + FIELD_BYTES;
+        if (_combinedSession != null) {
+            present |= 1;
+            _combinedSession.write(b, s);
+        }
+        if (_previousSession != null) {
+            present |= 2;
+            _previousSession.write(b, s + Session.BYTES);
+        }
+        final Session z = _zSession;
+        if (z != null) {
+            present |= 4;
+            z.write(b, s + 2 * Session.BYTES);
+        }
+        if (_stale) {
+            present |= 8;
+        }
+        b.put(pos + 39, (byte) present);
+
+        final Object[] sessions = _sessions.toArray();
+        final int n = Math.min(sessions.length, MAX_SESSIONS);
+        for (int i = 0; i < n; i++) {
+            ((Session) sessions[sessions.length - n + i]).write(b, s + (3 + i) * Session.BYTES);
+        }
+        b.put(pos + 38, (byte) n);
+    }
+
+    /**
+     * Reads a quote written by {@link #write(ByteBuffer, int)}.
+     *
+     * @param symbolInfo  symbol info
+     * @param ddfExchange DDF exchange
+     * @param b           buffer
+     * @param pos         record offset
+     * @return Quote
+     */
+    static Quote read(SymbolInfo symbolInfo, String ddfExchange, ByteBuffer b, int pos) {
+        Quote q = new Quote(symbolInfo);
+        q._ddfExchange = ddfExchange;
+        q._ask = b.getFloat(pos);
+        q._askSize = b.getInt(pos + 4);
+        q._bid = b.getFloat(pos + 8);
+        q._bidSize = b.getInt(pos + 12);
+        q._bolbid = b.getFloat(pos + 16);
+        q._bolbidsize = b.getInt(pos + 20);
+        q._bolask = b.getFloat(pos + 24);
+        q._bolasksize = b.getInt(pos + 28);
+        q._flag = b.getChar(pos + 32);
+        q._permission = b.getChar(pos + 34);
+        int i = b.get(pos + 36);
+        q._marketCondition = i < 0 ? null : MarketConditionType.values()[i];
+        i = b.get(pos + 37);
+        q._cacheAge = i < 0 ? null : CacheAge.values()[i];
+        q._lastUpdated = b.getLong(pos + 40);
+        q._seqNo = b.getLong(pos + 48);
+        q._marketId = b.getLong(pos + 56);
+        q._cacheTimeMs = b.getLong(pos + 64);
+        q._askMantissa = b.getLong(pos + 72);
+        q._bidMantissa = b.getLong(pos + 80);
+
+        final int present = b.get(pos + 39);
+        final int s = pos + FIELD_BYTES;
+        q._combinedSession = (present & 1) != 0 ? Session.read(q, b, s) : null;
+        q._previousSession = (present & 2) != 0 ? Session.read(q, b, s + Session.BYTES) : null;
+        q._zSession = (present & 4) != 0 ? Session.read(q, b, s + 2 * Session.BYTES) : null;
+        q._stale = (present & 8) != 0;
+        final int n = b.get(pos + 38);
+        for (i = 0; i < n; i++) {
+            q._sessions.add(Session.read(q, b, s + (3 + i) * Session.BYTES));
+        }
+        return q;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.db;
+
+import com.ddfplus.enums.MarketConditionType;
+import com.ddfplus.messages.DdfMarketBase;
+
+/**
+ * Immutable copy of the {@link Quote} values after one update.
+ * <p>
+ * Published by the {@link DataMaster} when quote snapshots are enabled, see
+ * {@link DataMaster#setQuoteSnapshots(boolean)}. Unlike the live
+ * {@link Quote}, which keeps changing as the next messages are applied, a
+ * snapshot can be handed to other threads and read without cloning. Sessions
+ * which did not change are shared with the previous snapshot.
+ */
+public final class QuoteSnapshot {
+
+	private final SymbolInfo symbolInfo;
+	private final int symbolId;
+	private final String ddfExchange;
+	private final float ask;
+	private final int askSize;
+	private final float bid;
+	private final int bidSize;
+	private final char flag;
+	private final char permission;
+	private final MarketConditionType marketCondition;
+	private final long lastUpdated;
+	private final DdfMarketBase message;
+	private final SessionSnapshot combinedSession;
+	private final SessionSnapshot previousSession;
+	private final SessionSnapshot zSession;
+
+	/**
+	 * @param q
+	 *            Quote, owning thread only
+	 * @param current
+	 *            Previous snapshot of the quote, may be null
+	 */
+	QuoteSnapshot(Quote q, QuoteSnapshot current) {
+		symbolInfo = q.getSymbolInfo();
+		symbolId = q.getSymbolId();
+		ddfExchange = q.getDDFExchange();
+		ask = q.getAsk();
+		askSize = q.getAskSize();
+		bid = q.getBid();
+		bidSize = q.getBidSize();
+		flag = q.getFlag();
+		permission = q.getPermission();
+		marketCondition = q.getMarketCondition();
+		lastUpdated = q.getLastUpdated();
+		message = q.getMessage();
+		combinedSession = SessionSnapshot.of(q.getCombinedSession(),
+				current != null ? current.combinedSession : null);
+		previousSession = SessionSnapshot.of(q.getPreviousSession(),
+				current != null ? current.previousSession : null);
+		zSession = SessionSnapshot.of(q.getZSession(), current != null ? current.zSession : null);
+	}
+
+	public SymbolInfo getSymbolInfo() {
+		return symbolInfo;
+	}
+
+	/**
+	 * @return Id of the symbol in the {@link DataMaster} symbol registry.
+	 */
+	public int getSymbolId() {
+		return symbolId;
+	}
+
+	public String getDDFExchange() {
+		return ddfExchange;
+	}
+
+	public float getAsk() {
+		return ask;
+	}
+
+	public int getAskSize() {
+		return askSize;
+	}
+
+	public float getBid() {
+		return bid;
+	}
+
+	public int getBidSize() {
+		return bidSize;
+	}
+
+	public char getFlag() {
+		return flag;
+	}
+
+	public char getPermission() {
+		return permission;
+	}
+
+	public MarketConditionType getMarketCondition() {
+		return marketCondition;
+	}
+
+	public long getLastUpdated() {
+		return lastUpdated;
+	}
+
+	/**
+	 * @return The message which produced this snapshot.
+	 */
+	public DdfMarketBase getMessage() {
+		return message;
+	}
+
+	public SessionSnapshot getCombinedSession() {
+		return combinedSession;
+	}
+
+	public SessionSnapshot getPreviousSession() {
+		return previousSession;
+	}
+
+	/**
+	 * @return The 'Z' session, null if the quote has none.
+	 */
+	public SessionSnapshot getZSession() {
+		return zSession;
+	}
+
+	/**
+	 * @return Combined session last minus the previous session last, 0 if
+	 *         either is not set. Same as {@link Quote#getChange()}.
+	 */
+	public float getChange() {
+		if (combinedSession == null || previousSession == null) {
+			return 0.0f;
+		}
+		float last = combinedSession.getLast();
+		float prev = previousSession.getLast();
+		if (last == 0.0f || prev == 0.0f) {
+			return 0.0f;
+		}
+		return last - prev;
+	}
+
+	@Override
+	public String toString() {
+		return "QuoteSnapshot [symbol=" + symbolInfo.getSymbol() + ", bid=" + bid + ", ask=" + ask + ", combined="
+				+ combinedSession + ", previous=" + previousSession + "]";
+	}
+
+}
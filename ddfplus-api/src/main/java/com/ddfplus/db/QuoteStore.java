@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.db;
+
+import java.nio.ByteBuffer;
+import java.util.function.IntConsumer;
+
+/**
+ * Storage of the {@link DataMaster} quotes, keyed by {@link SymbolRegistry}
+ * id.
+ * 
+ * @see HeapQuoteStore
+ * @see OffHeapQuoteStore
+ */
+public interface QuoteStore {
+
+	/**
+	 * @param symbolId
+	 *            symbol id
+	 * @return Quote, null if not present
+	 */
+	Quote get(int symbolId);
+
+	/**
+	 * Adds or replaces the quote of a symbol. A quote can be stored under
+	 * several ids, e.g. the symbol and the request symbol.
+	 * 
+	 * @param symbolId
+	 *            symbol id
+	 * @param quote
+	 *            Quote
+	 */
+	void put(int symbolId, Quote quote);
+
+	void remove(int symbolId);
+
+	boolean containsKey(int symbolId);
+
+	/**
+	 * Called by the {@link DataMaster} after a message updated the quote.
+	 * 
+	 * @param quote
+	 *            Quote
+	 */
+	default void updated(Quote quote) {
+	}
+
+	int size();
+
+	/**
+	 * Visits the ids of all stored quotes.
+	 * 
+	 * @param consumer
+	 *            Symbol id consumer
+	 */
+	void forEachId(IntConsumer consumer);
+
+	/**
+	 * Visits the binary record of every stored quote once, request symbol
+	 * aliases are skipped. Quotes kept outside of the heap are read in place,
+	 * not loaded.
+	 * 
+	 * @param visitor
+	 *            Record visitor
+	 */
+	void forEachRecord(RecordVisitor visitor);
+
+	void clear();
+
+	/**
+	 * Visitor of the {@link Quote#BYTES} quote records, see
+	 * {@link QuoteStore#forEachRecord(RecordVisitor)}.
+	 */
+	interface RecordVisitor {
+
+		/**
+		 * @param symbolInfo
+		 *            Symbol info
+		 * @param ddfExchange
+		 *            DDF exchange
+		 * @param requestSymbol
+		 *            Request symbol, null if none
+		 * @param record
+		 *            Buffer holding the record, only valid during the call
+		 * @param offset
+		 *            Record offset in the buffer
+		 */
+		void visit(SymbolInfo symbolInfo, String ddfExchange, String requestSymbol, ByteBuffer record, int offset);
+	}
+
+}
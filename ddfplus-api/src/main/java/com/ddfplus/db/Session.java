@@ -11,6 +11,7 @@ import com.ddfplus.util.DDFDate;
 import com.ddfplus.util.ParserHelper;
 import com.ddfplus.util.XMLNode;
 
+import java.nio.ByteBuffer;
 import java.text.NumberFormat;
 import java.time.Instant;
 import java.time.ZonedDateTime;
@@ -71,6 +72,14 @@ public class Session implements java.lang.Cloneable, java.io.Serializable {
 	protected volatile long _numTrades = 0L;
 	protected volatile double _priceVolume = 0.0;
 	protected volatile float _vwap = 0.0f;
+	// Fixed point prices as received, valid while they match the float prices
+	private volatile long _openMantissa = 0L;
+	private volatile long _highMantissa = 0L;
+	private volatile long _lowMantissa = 0L;
+	private volatile long _lastMantissa = 0L;
+	private volatile long _closeMantissa = 0L;
+	private volatile long _previousMantissa = 0L;
+	private volatile long _settlementMantissa = 0L;
     private OfficialBestBidOffer _officialBestBidOffer;
     private ReferenceVolatilityPrice _referenceVolatilityPrice;
     private PriceLimits _priceLimits;
@@ -124,6 +133,13 @@ public class Session implements java.lang.Cloneable, java.io.Serializable {
 		s._numTrades = _numTrades;
 		s._priceVolume = _priceVolume;
 		s._vwap = _vwap;
+		s._openMantissa = _openMantissa;
+		s._highMantissa = _highMantissa;
+		s._lowMantissa = _lowMantissa;
+		s._lastMantissa = _lastMantissa;
+		s._closeMantissa = _closeMantissa;
+		s._previousMantissa = _previousMantissa;
+		s._settlementMantissa = _settlementMantissa;
         s._officialBestBidOffer = _officialBestBidOffer != null ? _officialBestBidOffer.clone() : null;
         s._referenceVolatilityPrice = _referenceVolatilityPrice !=null ? _referenceVolatilityPrice.clone() : null;
         s._priceLimits = _priceLimits != null ? _priceLimits.clone() : null;
@@ -156,6 +172,13 @@ public class Session implements java.lang.Cloneable, java.io.Serializable {
         _numTrades = 0;
         _priceVolume = 0.0f;
         _vwap = 0.0f;
+        _openMantissa = 0L;
+        _highMantissa = 0L;
+        _lowMantissa = 0L;
+        _lastMantissa = 0L;
+        _closeMantissa = 0L;
+        _previousMantissa = 0L;
+        _settlementMantissa = 0L;
         _officialBestBidOffer = null;
         _referenceVolatilityPrice = null;
         _priceLimits = null;
@@ -163,6 +186,211 @@ public class Session implements java.lang.Cloneable, java.io.Serializable {
         _vwapNew = null;
     }
 
+    /*
+     * Fixed layout of a session, see OffHeapQuoteStore.
+     */
+    static final int BYTES = 328;
+
+    private static final int SURFACE_DOMAIN_BYTES = 15;
+
+    /**
+     * Writes the session to a fixed size record of {@link #BYTES} bytes.
+     *
+     * @param b   buffer
+     * @param pos record offset
+     */
+    void write(ByteBuffer b, int pos) {
+        b.putFloat(pos, _blockTrade);
+        b.putFloat(pos + 4, _close);
+        b.putFloat(pos + 8, _close2);
+        b.putFloat(pos + 12, _high);
+        b.putFloat(pos + 16, _low);
+        b.putFloat(pos + 20, _open);
+        b.putFloat(pos + 24, _open2);
+        b.putFloat(pos + 28, _previous);
+        b.putFloat(pos + 32, _settlement);
+        b.putFloat(pos + 36, _vwap);
+        final float[] lasts = lastArray;
+        for (int i = 0; i < LAST_LIMIT; i++) {
+            b.putFloat(pos + 40 + i * 4, lasts[i]);
+        }
+        b.putInt(pos + 52, _openInterest);
+        b.putInt(pos + 56, _tradeSize);
+        b.putChar(pos + 60, _session);
+        b.putLong(pos + 62, _tzAdjustment);
+        b.putLong(pos + 70, _timestamp);
+        b.putLong(pos + 78, _tradeTimestamp);
+        b.putLong(pos + 86, _volume);
+        b.putLong(pos + 94, _numTrades);
+        b.putDouble(pos + 102, _tradeSizeFractional);
+        b.putDouble(pos + 110, _volumeFractional);
+        b.putDouble(pos + 118, _priceVolume);
+        putDate(b, pos + 126, _day);
+        putDate(b, pos + 134, _openInterestDate);
+        putDate(b, pos + 142, _previousDay);
+        putDate(b, pos + 150, _volumeDate);
+
+        int present = 0;
+        final OfficialBestBidOffer obbo = _officialBestBidOffer;
+        if (obbo != null) {
+            present |= 1;
+            b.putInt(pos + 159, obbo.getTradeDate());
+            b.putLong(pos + 163, obbo.getTransactionTime());
+            b.putFloat(pos + 171, obbo.getBidPrice());
+            b.putFloat(pos + 175, obbo.getOfferPrice());
+        }
+        final ReferenceVolatilityPrice rvp = _referenceVolatilityPrice;
+        if (rvp != null) {
+            present |= 2;
+            b.putInt(pos + 179, rvp.getTradeDate());
+            b.putInt(pos + 183, rvp.getAtm());
+            String domain = rvp.getSurfaceDomain();
+            int len = domain == null ? -1 : Math.min(domain.length(), SURFACE_DOMAIN_BYTES);
+            b.put(pos + 187, (byte) len);
+            for (int i = 0; i < len; i++) {
+                b.put(pos + 188 + i, (byte) domain.charAt(i));
+            }
+            b.putFloat(pos + 203, rvp.getVolatility());
+            b.putFloat(pos + 207, rvp.getPremium());
+            b.putFloat(pos + 211, rvp.getDelta());
+        }
+        final PriceLimits limits = _priceLimits;
+        if (limits != null) {
+            present |= 4;
+            b.putInt(pos + 215, limits.getTradeDate());
+            b.putLong(pos + 219, limits.getTransactionTime());
+            b.putFloat(pos + 227, limits.getUpperPriceLimit());
+            b.putFloat(pos + 231, limits.getLowerPriceLimit());
+        }
+        final MarketOpenInterest moi = _marketOpenInterest;
+        if (moi != null) {
+            present |= 8;
+            b.putInt(pos + 235, moi.getTradeDate());
+            b.putLong(pos + 239, moi.getTransactionTime());
+            b.putLong(pos + 247, moi.getVolume());
+        }
+        final Vwap vwap = _vwapNew;
+        if (vwap != null) {
+            present |= 16;
+            b.putLong(pos + 255, vwap.getTransactionTime());
+            b.putInt(pos + 263, vwap.getTradeDate());
+            b.putFloat(pos + 267, vwap.getVwap());
+        }
+        b.put(pos + 158, (byte) present);
+
+        b.putLong(pos + 272, _openMantissa);
+        b.putLong(pos + 280, _highMantissa);
+        b.putLong(pos + 288, _lowMantissa);
+        b.putLong(pos + 296, _lastMantissa);
+        b.putLong(pos + 304, _closeMantissa);
+        b.putLong(pos + 312, _previousMantissa);
+        b.putLong(pos + 320, _settlementMantissa);
+    }
+
+    /**
+     * Reads a session written by {@link #write(ByteBuffer, int)}.
+     *
+     * @param parent quote
+     * @param b      buffer
+     * @param pos    record offset
+     * @return Session
+     */
+    static Session read(Quote parent, ByteBuffer b, int pos) {
+        Session s = new Session(parent, getDate(b, pos + 126), b.getChar(pos + 60));
+        s._blockTrade = b.getFloat(pos);
+        s._close = b.getFloat(pos + 4);
+        s._close2 = b.getFloat(pos + 8);
+        s._high = b.getFloat(pos + 12);
+        s._low = b.getFloat(pos + 16);
+        s._open = b.getFloat(pos + 20);
+        s._open2 = b.getFloat(pos + 24);
+        s._previous = b.getFloat(pos + 28);
+        s._settlement = b.getFloat(pos + 32);
+        s._vwap = b.getFloat(pos + 36);
+        for (int i = 0; i < LAST_LIMIT; i++) {
+            s.lastArray[i] = b.getFloat(pos + 40 + i * 4);
+        }
+        s._openInterest = b.getInt(pos + 52);
+        s._tradeSize = b.getInt(pos + 56);
+        s._tzAdjustment = b.getLong(pos + 62);
+        s._timestamp = b.getLong(pos + 70);
+        s._tradeTimestamp = b.getLong(pos + 78);
+        s._volume = b.getLong(pos + 86);
+        s._numTrades = b.getLong(pos + 94);
+        s._tradeSizeFractional = b.getDouble(pos + 102);
+        s._volumeFractional = b.getDouble(pos + 110);
+        s._priceVolume = b.getDouble(pos + 118);
+        s._openInterestDate = getDate(b, pos + 134);
+        s._previousDay = getDate(b, pos + 142);
+        s._volumeDate = getDate(b, pos + 150);
+        s._openMantissa = b.getLong(pos + 272);
+        s._highMantissa = b.getLong(pos + 280);
+        s._lowMantissa = b.getLong(pos + 288);
+        s._lastMantissa = b.getLong(pos + 296);
+        s._closeMantissa = b.getLong(pos + 304);
+        s._previousMantissa = b.getLong(pos + 312);
+        s._settlementMantissa = b.getLong(pos + 320);
+
+        final int present = b.get(pos + 158);
+        if ((present & 1) != 0) {
+            OfficialBestBidOffer obbo = new OfficialBestBidOffer();
+            obbo.setTradeDate(b.getInt(pos + 159));
+            obbo.setTransactionTime(b.getLong(pos + 163));
+            obbo.setBidPrice(b.getFloat(pos + 171));
+            obbo.setOfferPrice(b.getFloat(pos + 175));
+            s._officialBestBidOffer = obbo;
+        }
+        if ((present & 2) != 0) {
+            ReferenceVolatilityPrice rvp = new ReferenceVolatilityPrice();
+            rvp.setTradeDate(b.getInt(pos + 179));
+            rvp.setAtm(b.getInt(pos + 183));
+            int len = b.get(pos + 187);
+            if (len >= 0) {
+                char[] c = new char[len];
+                for (int i = 0; i < len; i++) {
+                    c[i] = (char) b.get(pos + 188 + i);
+                }
+                rvp.setSurfaceDomain(new String(c));
+            }
+            rvp.setVolatility(b.getFloat(pos + 203));
+            rvp.setPremium(b.getFloat(pos + 207));
+            rvp.setDelta(b.getFloat(pos + 211));
+            s._referenceVolatilityPrice = rvp;
+        }
+        if ((present & 4) != 0) {
+            PriceLimits limits = new PriceLimits();
+            limits.setTradeDate(b.getInt(pos + 215));
+            limits.setTransactionTime(b.getLong(pos + 219));
+            limits.setUpperPriceLimit(b.getFloat(pos + 227));
+            limits.setLowerPriceLimit(b.getFloat(pos + 231));
+            s._priceLimits = limits;
+        }
+        if ((present & 8) != 0) {
+            MarketOpenInterest moi = new MarketOpenInterest();
+            moi.setTradeDate(b.getInt(pos + 235));
+            moi.setTransactionTime(b.getLong(pos + 239));
+            moi.setVolume(b.getLong(pos + 247));
+            s._marketOpenInterest = moi;
+        }
+        if ((present & 16) != 0) {
+            Vwap vwap = new Vwap();
+            vwap.setTransactionTime(b.getLong(pos + 255));
+            vwap.setTradeDate(b.getInt(pos + 263));
+            vwap.setVwap(b.getFloat(pos + 267));
+            s._vwapNew = vwap;
+        }
+        return s;
+    }
+
+    private static void putDate(ByteBuffer b, int pos, DDFDate date) {
+        b.putLong(pos, date == null ? Long.MIN_VALUE : date.getMillisCST());
+    }
+
+    private static DDFDate getDate(ByteBuffer b, int pos) {
+        long millis = b.getLong(pos);
+        return millis == Long.MIN_VALUE ? null : new DDFDate(millis);
+    }
+
 	
 	/**
 	 * @return The last Block Trade price
@@ -188,6 +416,11 @@ public class Session implements java.lang.Cloneable, java.io.Serializable {
 		this._close = v;
 	}
 
+	public void setClose(float v, long mantissa) {
+		this._closeMantissa = mantissa;
+		this._close = v;
+	}
+
 	/**
 	 * @return The Close2 price for the session. On some pit-traded commodities,
 	 *         the exchange reports multiple closing prices, generally the last
@@ -378,6 +611,11 @@ public class Session implements java.lang.Cloneable, java.io.Serializable {
 		_settlement = f;
 	}
 
+	public void setSettlement(float f, long mantissa) {
+		_settlementMantissa = mantissa;
+		_settlement = f;
+	}
+
 	/**
 	 * Returns the timestamp (in millis) of the last trade.
 	 * 
@@ -402,6 +640,68 @@ public class Session implements java.lang.Cloneable, java.io.Serializable {
 		return this._vwap;
 	}
 
+	/*
+	 * Fixed point prices, the price is mantissa / 10^Quote.getPriceScale().
+	 * Exact when the price was set by a 2,0, 2,7 or 2,Z message or a quote
+	 * refresh, otherwise rounded from the float price, see Quote.toMantissa().
+	 */
+
+	/**
+	 * @return The Open price as a fixed point number.
+	 */
+
+	public long getOpenMantissa() {
+		return _parentQuote.toMantissa(_open, _openMantissa);
+	}
+
+	/**
+	 * @return The High price as a fixed point number.
+	 */
+
+	public long getHighMantissa() {
+		return _parentQuote.toMantissa(_high, _highMantissa);
+	}
+
+	/**
+	 * @return The Low price as a fixed point number.
+	 */
+
+	public long getLowMantissa() {
+		return _parentQuote.toMantissa(_low, _lowMantissa);
+	}
+
+	/**
+	 * @return The Last price as a fixed point number.
+	 */
+
+	public long getLastMantissa() {
+		return _parentQuote.toMantissa(lastArray[0], _lastMantissa);
+	}
+
+	/**
+	 * @return The Close price as a fixed point number.
+	 */
+
+	public long getCloseMantissa() {
+		return _parentQuote.toMantissa(_close, _closeMantissa);
+	}
+
+	/**
+	 * @return The Previous price as a fixed point number.
+	 */
+
+	public long getPreviousMantissa() {
+		return _parentQuote.toMantissa(_previous, _previousMantissa);
+	}
+
+	/**
+	 * @return The Settlement price as a fixed point number.
+	 */
+
+	public long getSettlementMantissa() {
+		return _parentQuote.toMantissa(_settlement, _settlementMantissa);
+	}
+
 	/**
 	 * Sets the last price. Used internally.
 	 */
@@ -419,6 +719,15 @@ public class Session implements java.lang.Cloneable, java.io.Serializable {
 		// + " LA2=" + lastArray[2]);
 	}
 
+	/**
+	 * Sets the last price with its fixed point value from the message.
+	 */
+
+	public void setLast(final float last, final long mantissa) {
+		_lastMantissa = mantissa;
+		setLast(last);
+	}
+
 	public void clearLasts() {
 		lastArray[2] = lastArray[1] = lastArray[0] = 0.0f;
 	}
@@ -514,40 +823,53 @@ public class Session implements java.lang.Cloneable, java.io.Serializable {
 			_tradeTimestamp = DDFDate.fromDDFString(s).getMillisCST();
 
 		s = node.getAttribute("open");
-		if (s != null)
+		if (s != null) {
 			_open = ParserHelper.string2float(s, _parentQuote.getSymbolInfo().getBaseCode());
+			_openMantissa = ParserHelper.string2mantissa(s, _parentQuote.getSymbolInfo().getBaseCode());
+		}
 
 		s = node.getAttribute("open2");
 		if (s != null)
 			_open2 = ParserHelper.string2float(s, _parentQuote.getSymbolInfo().getBaseCode());
 
 		s = node.getAttribute("high");
-		if (s != null)
+		if (s != null) {
 			_high = ParserHelper.string2float(s, _parentQuote.getSymbolInfo().getBaseCode());
+			_highMantissa = ParserHelper.string2mantissa(s, _parentQuote.getSymbolInfo().getBaseCode());
+		}
 
 		s = node.getAttribute("low");
-		if (s != null)
+		if (s != null) {
 			_low = ParserHelper.string2float(s, _parentQuote.getSymbolInfo().getBaseCode());
+			_lowMantissa = ParserHelper.string2mantissa(s, _parentQuote.getSymbolInfo().getBaseCode());
+		}
 
 		s = node.getAttribute("last");
 		if (s != null)
-			setLast(ParserHelper.string2float(s, _parentQuote.getSymbolInfo().getBaseCode()));
+			setLast(ParserHelper.string2float(s, _parentQuote.getSymbolInfo().getBaseCode()),
+					ParserHelper.string2mantissa(s, _parentQuote.getSymbolInfo().getBaseCode()));
 
 		s = node.getAttribute("close");
-		if (s != null)
+		if (s != null) {
 			_close = ParserHelper.string2float(s, _parentQuote.getSymbolInfo().getBaseCode());
+			_closeMantissa = ParserHelper.string2mantissa(s, _parentQuote.getSymbolInfo().getBaseCode());
+		}
 
 		s = node.getAttribute("close2");
 		if (s != null)
 			_close2 = ParserHelper.string2float(s, _parentQuote.getSymbolInfo().getBaseCode());
 
 		s = node.getAttribute("previous");
-		if (s != null)
+		if (s != null) {
 			_previous = ParserHelper.string2float(s, _parentQuote.getSymbolInfo().getBaseCode());
+			_previousMantissa = ParserHelper.string2mantissa(s, _parentQuote.getSymbolInfo().getBaseCode());
+		}
 
 		s = node.getAttribute("settlement");
-		if (s != null)
+		if (s != null) {
 			_settlement = ParserHelper.string2float(s, _parentQuote.getSymbolInfo().getBaseCode());
+			_settlementMantissa = ParserHelper.string2mantissa(s, _parentQuote.getSymbolInfo().getBaseCode());
+		}
 
 		s = node.getAttribute("tradesize");
 		if (s != null)
@@ -598,10 +920,20 @@ public class Session implements java.lang.Cloneable, java.io.Serializable {
 		_high = value;
 	}
 
+	public void setHigh(float value, long mantissa) {
+		_highMantissa = mantissa;
+		_high = value;
+	}
+
 	public void setLow(float value) {
 		_low = value;
 	}
 
+	public void setLow(float value, long mantissa) {
+		_lowMantissa = mantissa;
+		_low = value;
+	}
+
 	public void setNumberOfTrades(long value) {
 		this._numTrades = value;
 	}
@@ -610,10 +942,20 @@ public class Session implements java.lang.Cloneable, java.io.Serializable {
 		_open = value;
 	}
 
+	public void setOpen(float value, long mantissa) {
+		_openMantissa = mantissa;
+		_open = value;
+	}
+
 	public void setPrevious(float value) {
 		_previous = value;
 	}
 
+	public void setPrevious(float value, long mantissa) {
+		_previousMantissa = mantissa;
+		_previous = value;
+	}
+
 	public void setPriceVolume(double value) {
 		this._priceVolume = value;
 	}
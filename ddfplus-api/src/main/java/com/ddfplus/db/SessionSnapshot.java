@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.db;
+
+import com.ddfplus.util.DDFDate;
+
+/**
+ * Immutable copy of the {@link Session} values at one update.
+ * <p>
+ * Part of a {@link QuoteSnapshot}, a snapshot is re-used by the next quote
+ * snapshot when the session did not change.
+ */
+public final class SessionSnapshot {
+
+	private final DDFDate day;
+	private final char sessionCode;
+	private final float open;
+	private final float open2;
+	private final float high;
+	private final float low;
+	private final float last;
+	private final float previous;
+	private final float close;
+	private final float close2;
+	private final float settlement;
+	private final float blockTrade;
+	private final float vwap;
+	private final int lastSize;
+	private final int openInterest;
+	private final long volume;
+	private final long numberOfTrades;
+	private final double priceVolume;
+	private final long timeInMillis;
+	private final long tradeTimestamp;
+
+	private SessionSnapshot(Session s) {
+		day = s.getDay();
+		sessionCode = s._session;
+		open = s._open;
+		open2 = s._open2;
+		high = s._high;
+		low = s._low;
+		last = s.getLast();
+		previous = s.getPrevious();
+		close = s._close;
+		close2 = s._close2;
+		settlement = s._settlement;
+		blockTrade = s._blockTrade;
+		vwap = s._vwap;
+		lastSize = s._tradeSize;
+		openInterest = s._openInterest;
+		volume = s._volume;
+		numberOfTrades = s._numTrades;
+		priceVolume = s._priceVolume;
+		timeInMillis = s._timestamp;
+		tradeTimestamp = s._tradeTimestamp;
+	}
+
+	/**
+	 * @param session
+	 *            Session, may be null
+	 * @param current
+	 *            Snapshot of the session at the previous update, may be null
+	 * @return <code>current</code> if the session did not change, else a new
+	 *         snapshot
+	 */
+	static SessionSnapshot of(Session session, SessionSnapshot current) {
+		if (session == null) {
+			return null;
+		}
+		if (current != null && current.matches(session)) {
+			return current;
+		}
+		return new SessionSnapshot(session);
+	}
+
+	private boolean matches(Session s) {
+		return timeInMillis == s._timestamp && volume == s._volume && last == s.getLast() && lastSize == s._tradeSize
+				&& tradeTimestamp == s._tradeTimestamp && high == s._high && low == s._low && open == s._open
+				&& open2 == s._open2 && close == s._close && close2 == s._close2 && settlement == s._settlement
+				&& previous == s.getPrevious() && blockTrade == s._blockTrade && vwap == s._vwap
+				&& openInterest == s._openInterest && numberOfTrades == s._numTrades
+				&& priceVolume == s._priceVolume && sessionCode == s._session && day == s.getDay();
+	}
+
+	public DDFDate getDay() {
+		return day;
+	}
+
+	public char getDayCode() {
+		return day == null ? '\0' : day.getDayCode();
+	}
+
+	public char getSessionCode() {
+		return sessionCode;
+	}
+
+	public float getOpen() {
+		return open;
+	}
+
+	public float getOpen2() {
+		return open2;
+	}
+
+	public float getHigh() {
+		return high;
+	}
+
+	public float getLow() {
+		return low;
+	}
+
+	public float getLast() {
+		return last;
+	}
+
+	public float getPrevious() {
+		return previous;
+	}
+
+	public float getClose() {
+		return close;
+	}
+
+	public float getClose2() {
+		return close2;
+	}
+
+	public float getSettlement() {
+		return settlement;
+	}
+
+	public float getBlockTrade() {
+		return blockTrade;
+	}
+
+	public float getVWAP() {
+		return vwap;
+	}
+
+	public int getLastSize() {
+		return lastSize;
+	}
+
+	public int getOpenInterest() {
+		return openInterest;
+	}
+
+	public long getVolume() {
+		return volume;
+	}
+
+	public long getNumberOfTrades() {
+		return numberOfTrades;
+	}
+
+	public double getPriceVolume() {
+		return priceVolume;
+	}
+
+	public long getTimeInMillis() {
+		return timeInMillis;
+	}
+
+	public long getTradeTimestamp() {
+		return tradeTimestamp;
+	}
+
+	@Override
+	public String toString() {
+		return "{ session: " + getDayCode() + sessionCode + " last: " + last + " volume: " + volume + " }";
+	}
+
+}
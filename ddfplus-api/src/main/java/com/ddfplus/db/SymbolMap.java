@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.db;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Thread safe map keyed by a {@link SymbolRegistry} id.
+ * <p>
+ * Values are held in pages of an array indexed by the id, lookups are a couple
+ * of array reads with no hashing. Pages are allocated on demand as ids grow.
+ *
+ * @param <V>
+ *            value type
+ */
+public final class SymbolMap<V> {
+
+	private static final int PAGE_SHIFT = 10;
+	private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+	/**
+	 * Callback for {@link SymbolMap#forEach(Visitor)}.
+	 *
+	 * @param <V>
+	 *            value type
+	 */
+	public interface Visitor<V> {
+		void visit(int id, V value);
+	}
+
+	private final Object growLock = new Object();
+	private final AtomicInteger size = new AtomicInteger();
+	private volatile AtomicReferenceArray<V>[] pages = newPages(0);
+
+	/**
+	 * @param id
+	 *            symbol id
+	 * @return value, null if not present
+	 */
+	public V get(int id) {
+		if (id < 0) {
+			return null;
+		}
+		AtomicReferenceArray<V>[] p = pages;
+		int page = id >>> PAGE_SHIFT;
+		if (page >= p.length || p[page] == null) {
+			return null;
+		}
+		return p[page].get(id & PAGE_MASK);
+	}
+
+	/**
+	 * @param id
+	 *            symbol id
+	 * @param value
+	 *            value, not null
+	 * @return previous value, null if not present
+	 */
+	public V put(int id, V value) {
+		if (value == null) {
+			throw new NullPointerException("value");
+		}
+		V prev = page(id).getAndSet(id & PAGE_MASK, value);
+		if (prev == null) {
+			size.incrementAndGet();
+		}
+		return prev;
+	}
+
+	/**
+	 * @param id
+	 *            symbol id
+	 * @param value
+	 *            value, not null
+	 * @return existing value, null if the value was stored
+	 */
+	public V putIfAbsent(int id, V value) {
+		if (value == null) {
+			throw new NullPointerException("value");
+		}
+		AtomicReferenceArray<V> page = page(id);
+		int i = id & PAGE_MASK;
+		if (page.compareAndSet(i, null, value)) {
+			size.incrementAndGet();
+			return null;
+		}
+		V existing = page.get(i);
+		// Removed in between
+		return existing != null ? existing : putIfAbsent(id, value);
+	}
+
+	/**
+	 * @param id
+	 *            symbol id
+	 * @return removed value, null if not present
+	 */
+	public V remove(int id) {
+		if (id < 0) {
+			return null;
+		}
+		AtomicReferenceArray<V>[] p = pages;
+		int page = id >>> PAGE_SHIFT;
+		if (page >= p.length || p[page] == null) {
+			return null;
+		}
+		V prev = p[page].getAndSet(id & PAGE_MASK, null);
+		if (prev != null) {
+			size.decrementAndGet();
+		}
+		return prev;
+	}
+
+	public boolean containsKey(int id) {
+		return get(id) != null;
+	}
+
+	public int size() {
+		return size.get();
+	}
+
+	public boolean isEmpty() {
+		return size.get() == 0;
+	}
+
+	public void clear() {
+		AtomicReferenceArray<V>[] p = pages;
+		for (int page = 0; page < p.length; page++) {
+			if (p[page] == null) {
+				continue;
+			}
+			for (int i = 0; i < PAGE_SIZE; i++) {
+				if (p[page].getAndSet(i, null) != null) {
+					size.decrementAndGet();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Visits all the entries in id order.
+	 *
+	 * @param visitor
+	 *            Visitor
+	 */
+	public void forEach(Visitor<? super V> visitor) {
+		AtomicReferenceArray<V>[] p = pages;
+		for (int page = 0; page < p.length; page++) {
+			if (p[page] == null) {
+				continue;
+			}
+			for (int i = 0; i < PAGE_SIZE; i++) {
+				V v = p[page].get(i);
+				if (v != null) {
+					visitor.visit((page << PAGE_SHIFT) | i, v);
+				}
+			}
+		}
+	}
+
+	private AtomicReferenceArray<V> page(int id) {
+		if (id < 0) {
+			throw new IllegalArgumentException("Invalid symbol id: " + id);
+		}
+		int page = id >>> PAGE_SHIFT;
+		AtomicReferenceArray<V>[] p = pages;
+		if (page < p.length && p[page] != null) {
+			return p[page];
+		}
+		synchronized (growLock) {
+			p = pages;
+			if (page >= p.length) {
+				AtomicReferenceArray<V>[] n = newPages(Math.max(page + 1, p.length * 2));
+				System.arraycopy(p, 0, n, 0, p.length);
+				p = n;
+			}
+			if (p[page] == null) {
+				p[page] = new AtomicReferenceArray<V>(PAGE_SIZE);
+			}
+			pages = p;
+			return p[page];
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <V> AtomicReferenceArray<V>[] newPages(int n) {
+		final AtomicReferenceArray<V>[] pages = (AtomicReferenceArray<V>[]) new AtomicReferenceArray<?>[n];
+		return pages;
+	}
+
+}
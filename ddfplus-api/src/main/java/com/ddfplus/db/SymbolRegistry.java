@@ -0,0 +1,278 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.db;
+
+import com.ddfplus.util.ASCII;
+
+/**
+ * Interned symbol table, maps a symbol to a dense <code>int</code> id.
+ * <p>
+ * Symbols can be looked up directly from the raw DDF message bytes, the hash is
+ * computed over the byte slice and no <code>String</code> is created. The byte
+ * hash is identical to <code>String.hashCode()</code> for ASCII symbols, so
+ * String lookups use the cached String hash.
+ * <p>
+ * Ids are assigned in registration order starting at 0 and are never re-used,
+ * they can be used to index arrays, see {@link SymbolMap}. Lookups are lock
+ * free, registration of a new symbol is synchronized.
+ */
+public final class SymbolRegistry {
+
+	/** Returned by the lookups when the symbol is not registered. */
+	public static final int NOT_FOUND = -1;
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private static final class Entry {
+		final int id;
+		final int hash;
+		final byte[] bytes;
+		final String symbol;
+
+		Entry(int id, int hash, String symbol) {
+			this.id = id;
+			this.hash = hash;
+			this.symbol = symbol;
+			this.bytes = symbol.getBytes(ASCII.ASCII_CHARSET);
+		}
+	}
+
+	// Open addressing, linear probing. Power of 2 length.
+	private volatile Entry[] slots = new Entry[INITIAL_CAPACITY * 2];
+
+	private volatile Entry[] byId = new Entry[INITIAL_CAPACITY];
+
+	private volatile int size;
+
+	/**
+	 * Hash of an ASCII symbol byte slice, same as <code>String.hashCode()</code>.
+	 *
+	 * @param buf
+	 *            buffer
+	 * @param off
+	 *            symbol offset
+	 * @param len
+	 *            symbol length
+	 * @return hash code
+	 */
+	public static int hash(byte[] buf, int off, int len) {
+		int h = 0;
+		for (int i = off; i < off + len; i++) {
+			h = 31 * h + (buf[i] & 0xFF);
+		}
+		return h;
+	}
+
+	/**
+	 * Looks up the id of a symbol.
+	 *
+	 * @param buf
+	 *            buffer
+	 * @param off
+	 *            symbol offset
+	 * @param len
+	 *            symbol length
+	 * @return symbol id or {@link #NOT_FOUND}
+	 */
+	public int getId(byte[] buf, int off, int len) {
+		if (len <= 0) {
+			return NOT_FOUND;
+		}
+		int hash = hash(buf, off, len);
+		Entry e = find(slots, hash, buf, off, len);
+		if (e == null) {
+			// Could be registering concurrently
+			synchronized (this) {
+				e = find(slots, hash, buf, off, len);
+			}
+		}
+		return e == null ? NOT_FOUND : e.id;
+	}
+
+	/**
+	 * Looks up the id of a symbol.
+	 *
+	 * @param symbol
+	 *            Symbol
+	 * @return symbol id or {@link #NOT_FOUND}
+	 */
+	public int getId(String symbol) {
+		if (symbol == null || symbol.isEmpty()) {
+			return NOT_FOUND;
+		}
+		int hash = symbol.hashCode();
+		Entry e = find(slots, hash, symbol);
+		if (e == null) {
+			synchronized (this) {
+				e = find(slots, hash, symbol);
+			}
+		}
+		return e == null ? NOT_FOUND : e.id;
+	}
+
+	/**
+	 * Returns the id of the symbol, registering it if required.
+	 *
+	 * @param buf
+	 *            buffer
+	 * @param off
+	 *            symbol offset
+	 * @param len
+	 *            symbol length
+	 * @return symbol id or {@link #NOT_FOUND} for an empty symbol
+	 */
+	public int register(byte[] buf, int off, int len) {
+		if (len <= 0) {
+			return NOT_FOUND;
+		}
+		int hash = hash(buf, off, len);
+		Entry e = find(slots, hash, buf, off, len);
+		if (e != null) {
+			return e.id;
+		}
+		synchronized (this) {
+			e = find(slots, hash, buf, off, len);
+			if (e != null) {
+				return e.id;
+			}
+			return add(hash, new String(buf, off, len, ASCII.ASCII_CHARSET));
+		}
+	}
+
+	/**
+	 * Returns the id of the symbol, registering it if required.
+	 *
+	 * @param symbol
+	 *            Symbol
+	 * @return symbol id or {@link #NOT_FOUND} for an empty symbol
+	 */
+	public int register(String symbol) {
+		if (symbol == null || symbol.isEmpty()) {
+			return NOT_FOUND;
+		}
+		int hash = symbol.hashCode();
+		Entry e = find(slots, hash, symbol);
+		if (e != null) {
+			return e.id;
+		}
+		synchronized (this) {
+			e = find(slots, hash, symbol);
+			if (e != null) {
+				return e.id;
+			}
+			return add(hash, symbol);
+		}
+	}
+
+	/**
+	 * @param id
+	 *            symbol id
+	 * @return The symbol for the id, null if the id is unknown.
+	 */
+	public String getSymbol(int id) {
+		Entry[] ids = byId;
+		if (id < 0 || id >= ids.length) {
+			return null;
+		}
+		Entry e = ids[id];
+		return e == null ? null : e.symbol;
+	}
+
+	/**
+	 * @return Number of registered symbols, ids are in the range [0, size).
+	 */
+	public int size() {
+		return size;
+	}
+
+	private int add(int hash, String symbol) {
+		int id = size;
+		Entry e = new Entry(id, hash, symbol);
+
+		Entry[] ids = byId;
+		if (id == ids.length) {
+			Entry[] n = new Entry[ids.length * 2];
+			System.arraycopy(ids, 0, n, 0, ids.length);
+			ids = n;
+		}
+		ids[id] = e;
+		byId = ids;
+
+		Entry[] s = slots;
+		if ((id + 1) * 2 > s.length) {
+			// Keep the load factor below 0.5
+			s = rehash(s, s.length * 2);
+		}
+		insert(s, e);
+		slots = s;
+		size = id + 1;
+		return id;
+	}
+
+	private static Entry[] rehash(Entry[] old, int capacity) {
+		Entry[] n = new Entry[capacity];
+		for (Entry e : old) {
+			if (e != null) {
+				insert(n, e);
+			}
+		}
+		return n;
+	}
+
+	private static void insert(Entry[] s, Entry e) {
+		int mask = s.length - 1;
+		int i = mix(e.hash) & mask;
+		while (s[i] != null) {
+			i = (i + 1) & mask;
+		}
+		s[i] = e;
+	}
+
+	private static Entry find(Entry[] s, int hash, byte[] buf, int off, int len) {
+		int mask = s.length - 1;
+		int i = mix(hash) & mask;
+		Entry e;
+		while ((e = s[i]) != null) {
+			if (e.hash == hash && equals(e.bytes, buf, off, len)) {
+				return e;
+			}
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	private static Entry find(Entry[] s, int hash, String symbol) {
+		int mask = s.length - 1;
+		int i = mix(hash) & mask;
+		Entry e;
+		while ((e = s[i]) != null) {
+			if (e.hash == hash && e.symbol.equals(symbol)) {
+				return e;
+			}
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	private static boolean equals(byte[] a, byte[] buf, int off, int len) {
+		if (a.length != len) {
+			return false;
+		}
+		for (int i = 0; i < len; i++) {
+			if (a[i] != buf[off + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int mix(int h) {
+		// Spread the String hash, symbols share long prefixes
+		return h ^ (h >>> 16);
+	}
+
+}
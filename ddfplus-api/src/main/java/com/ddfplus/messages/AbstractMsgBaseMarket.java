@@ -17,6 +17,8 @@ import java.time.ZonedDateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.ddfplus.codec.Codec;
+import com.ddfplus.db.SymbolInfo;
 import com.ddfplus.enums.QuoteType;
 import com.ddfplus.util.ASCII;
 import com.ddfplus.util.DDFDate;
@@ -102,6 +104,10 @@ public abstract class AbstractMsgBaseMarket extends AbstractMsgBase implements D
 		return _etxpos;
 	}
 
+	public int getPriceScale() {
+		return Codec.getPriceScale(SymbolInfo.ddfuc2bb(_basecode));
+	}
+
 	public char getExchange() {
 		return _exchange;
 	}
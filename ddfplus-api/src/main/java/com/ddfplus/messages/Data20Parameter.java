@@ -8,6 +8,7 @@
 package com.ddfplus.messages;
 
 import com.ddfplus.codec.Codec;
+import com.ddfplus.db.SymbolInfo;
 import com.ddfplus.enums.DdfMessageType;
 import com.ddfplus.enums.QuoteType;
 
@@ -39,6 +40,9 @@ public class Data20Parameter extends AbstractMsgBaseMarket implements DdfMarketP
 	/** The _value. */
 	public volatile Number _value = null;
 
+	/** The _value as fixed point. */
+	public volatile long _valueMantissa = 0;
+
 	/**
 	 * Instantiates a new data20 parameter.
 	 * 
@@ -99,6 +103,10 @@ public class Data20Parameter extends AbstractMsgBaseMarket implements DdfMarketP
 		return (_value == null) ? 0 : _value.intValue();
 	}
 
+	public long getValueMantissa() {
+		return _valueMantissa;
+	}
+
 	/**
 	 * Parses the.
 	 * 
@@ -144,10 +152,15 @@ public class Data20Parameter extends AbstractMsgBaseMarket implements DdfMarketP
 			break;
 		}
 
-		if (isFloat)
-			this._value = Codec.parseDDFPriceValue(ba, pos + 7, pos2 - pos - 7, this._basecode);
-		else
-			this._value = Codec.parseDDFIntValue(ba, pos + 7, pos2 - pos - 7);
+		if (isFloat) {
+			int basecode = SymbolInfo.ddfuc2bb(this._basecode);
+			this._valueMantissa = Codec.parseDDFPriceMantissa(ba, pos + 7, pos2 - pos - 7, basecode);
+			this._value = Codec.mantissaToFloat(this._valueMantissa, basecode);
+		} else {
+			int value = Codec.parseDDFIntValue(ba, pos + 7, pos2 - pos - 7);
+			this._valueMantissa = value;
+			this._value = value;
+		}
 
 		this._day = (char) ba[pos2 + 3];
 		this._session = (char) ba[pos2 + 4];
@@ -8,6 +8,7 @@
 package com.ddfplus.messages;
 
 import com.ddfplus.codec.Codec;
+import com.ddfplus.db.SymbolInfo;
 import com.ddfplus.enums.QuoteType;
 
 /**
@@ -30,6 +31,12 @@ public class Data28BidAsk extends AbstractMsgBaseMarket implements DdfMarketBidA
 	/** The _bid size. */
 	public volatile Integer _bidSize = null;
 
+	/** The _ask as fixed point. */
+	public volatile long _askMantissa = 0;
+
+	/** The _bid as fixed point. */
+	public volatile long _bidMantissa = 0;
+
 	/**
 	 * Instantiates a new data28 bid ask.
 	 * 
@@ -60,6 +67,10 @@ public class Data28BidAsk extends AbstractMsgBaseMarket implements DdfMarketBidA
 		return _askSize;
 	}
 
+	public long getAskPriceMantissa() {
+		return _askMantissa;
+	}
+
 	/**
 	 * The Bid price.
 	 * 
@@ -80,6 +91,10 @@ public class Data28BidAsk extends AbstractMsgBaseMarket implements DdfMarketBidA
 		return _bidSize;
 	}
 
+	public long getBidPriceMantissa() {
+		return _bidMantissa;
+	}
+
 	/**
 	 * Parses the.
 	 * 
@@ -97,17 +112,23 @@ public class Data28BidAsk extends AbstractMsgBaseMarket implements DdfMarketBidA
 		this._record = (char) ba[1];
 		this._subrecord = (char) ba[pos + 1];
 
+		int basecode = SymbolInfo.ddfuc2bb(this._basecode);
+
 		int pos2 = Codec.getIndexOf(ba, ',', pos + 7);
-		if (pos2 > pos + 7)
-			this._bid = Codec.parseDDFPriceValue(ba, pos + 7, pos2 - pos - 7, this._basecode);
+		if (pos2 > pos + 7) {
+			this._bidMantissa = Codec.parseDDFPriceMantissa(ba, pos + 7, pos2 - pos - 7, basecode);
+			this._bid = Codec.mantissaToFloat(this._bidMantissa, basecode);
+		}
 
 		pos = Codec.getIndexOf(ba, ',', pos2 + 1);
 		if (this._bid != null)
 			this._bidSize = Codec.parseDDFIntValue(ba, pos2 + 1, pos - pos2 - 1);
 
 		pos2 = Codec.getIndexOf(ba, ',', pos + 1);
-		if (pos2 > pos + 1)
-			this._ask = Codec.parseDDFPriceValue(ba, pos + 1, pos2 - pos - 1, this._basecode);
+		if (pos2 > pos + 1) {
+			this._askMantissa = Codec.parseDDFPriceMantissa(ba, pos + 1, pos2 - pos - 1, basecode);
+			this._ask = Codec.mantissaToFloat(this._askMantissa, basecode);
+		}
 
 		pos = Codec.getIndexOf(ba, ',', pos2 + 1);
 		if (this._ask != null)
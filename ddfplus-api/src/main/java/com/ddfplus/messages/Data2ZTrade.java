@@ -6,11 +6,13 @@
  */
 package com.ddfplus.messages;
 
+import com.ddfplus.db.SymbolInfo;
 import com.ddfplus.enums.QuoteType;
 
 import static com.ddfplus.codec.Codec.getIndexOf;
+import static com.ddfplus.codec.Codec.mantissaToFloat;
 import static com.ddfplus.codec.Codec.parseDDFIntValue;
-import static com.ddfplus.codec.Codec.parseDDFPriceValue;
+import static com.ddfplus.codec.Codec.parseDDFPriceMantissa;
 import static com.ddfplus.codec.Codec.parseIntValue;
 import static com.ddfplus.codec.Codec.parseStringValue;
 
@@ -29,6 +31,9 @@ public class Data2ZTrade extends AbstractMsgBaseMarket implements DdfMarketTrade
 	/** The _trade size. */
 	volatile Integer _tradeSize = null;
 
+	/** The _trade price as fixed point. */
+	volatile long _tradePriceMantissa = 0;
+
 	/**
 	 * Instantiates a new data27 trade.
 	 * 
@@ -61,6 +66,10 @@ public class Data2ZTrade extends AbstractMsgBaseMarket implements DdfMarketTrade
 		return (_tradeSize == null) ? 0 : _tradeSize;
 	}
 
+	public long getTradePriceMantissa() {
+		return _tradePriceMantissa;
+	}
+
 	/**
 	 * Parses the.
 	 * 
@@ -79,7 +88,9 @@ public class Data2ZTrade extends AbstractMsgBaseMarket implements DdfMarketTrade
 		this._subrecord = (char) ba[pos + 1];
 
 		int pos2 = getIndexOf(ba, ',', pos + 7);
-		this._tradePrice = parseDDFPriceValue(ba, pos + 7, pos2 - pos - 7, this._basecode);
+		int basecode = SymbolInfo.ddfuc2bb(this._basecode);
+		this._tradePriceMantissa = parseDDFPriceMantissa(ba, pos + 7, pos2 - pos - 7, basecode);
+		this._tradePrice = mantissaToFloat(this._tradePriceMantissa, basecode);
 
 		pos = getIndexOf(ba, ',', pos2 + 1);
 		this._tradeSize = parseDDFIntValue(ba, pos2 + 1, pos - pos2 - 1);
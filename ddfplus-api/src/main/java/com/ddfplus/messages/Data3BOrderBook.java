@@ -28,23 +28,29 @@ import com.ddfplus.enums.QuoteType;
 
 public class Data3BOrderBook extends AbstractMsgBaseMarket implements DdfMarketDepth {
 
+	/**
+	 * Levels per side the message can carry, bids are denoted K .. T and asks
+	 * J .. A.
+	 */
+	public static final int MAX_LEVELS = 10;
+
 	/** The _ask count. */
 	public volatile int _askCount = 0;
 
 	/** The _ask prices. */
-	public final float[] _askPrices = new float[10];
+	public final float[] _askPrices = new float[MAX_LEVELS];
 
 	/** The _ask sizes. */
-	public final int[] _askSizes = new int[10];
+	public final int[] _askSizes = new int[MAX_LEVELS];
 
 	/** The _bid count. */
 	public volatile int _bidCount = 0;
 
 	/** The _bid prices. */
-	public final float[] _bidPrices = new float[10];
+	public final float[] _bidPrices = new float[MAX_LEVELS];
 
 	/** The _bid sizes. */
-	public final int[] _bidSizes = new int[10];
+	public final int[] _bidSizes = new int[MAX_LEVELS];
 
 	/**
 	 * Instantiates a new data3 b order book.
@@ -143,15 +149,8 @@ public class Data3BOrderBook extends AbstractMsgBaseMarket implements DdfMarketD
 		msg._record = (char) ba[1];
 		msg._subrecord = (char) ba[pos + 1];
 
-		if ((char) ba[pos + 5] == 'A')
-			msg._bidCount = 10;
-		else
-			msg._bidCount = ((int) ba[pos + 5]) - 48;
-
-		if ((char) ba[pos + 6] == 'A')
-			msg._askCount = 10;
-		else
-			msg._askCount = ((int) ba[pos + 6]) - 48;
+		msg._bidCount = levelCount(ba[pos + 5]);
+		msg._askCount = levelCount(ba[pos + 6]);
 
 		if (ba.length < pos + 9)
 			return msg;
@@ -167,13 +166,13 @@ public class Data3BOrderBook extends AbstractMsgBaseMarket implements DdfMarketD
 
 			int xx = 0;
 			for (xx = pos; xx < pos2; xx++) {
-				if ((ba[xx] >= 75) && (ba[xx] <= 90)) {
+				if ((ba[xx] >= 75) && (ba[xx] < 75 + MAX_LEVELS)) {
 					// Bids are denoted positionally K .. T
 					int i = ba[xx] - 75;
 					msg._bidPrices[i] = Codec.parseDDFPriceValue(ba, pos, xx - pos, msg._basecode);
 					msg._bidSizes[i] = Codec.parseIntValue(ba, xx + 1, pos2 - xx - 1);
-				} else if ((ba[xx] >= 65) && (ba[xx] <= 74)) {
-					int i = 9 - (ba[xx] - 65);
+				} else if ((ba[xx] >= 65) && (ba[xx] < 65 + MAX_LEVELS)) {
+					int i = MAX_LEVELS - 1 - (ba[xx] - 65);
 					msg._askPrices[i] = Codec.parseDDFPriceValue(ba, pos, xx - pos, msg._basecode);
 					msg._askSizes[i] = Codec.parseIntValue(ba, xx + 1, pos2 - xx - 1);
 				}
@@ -185,6 +184,17 @@ public class Data3BOrderBook extends AbstractMsgBaseMarket implements DdfMarketD
 		return msg;
 	}
 
+	/*
+	 * 0 .. 9, A for 10
+	 */
+	private static int levelCount(byte b) {
+		if (b == 'A') {
+			return MAX_LEVELS;
+		}
+		int n = b - '0';
+		return n < 0 || n > MAX_LEVELS ? 0 : n;
+	}
+
 	public QuoteType getQuoteType() {
 		return QuoteType.BOOK;
 	}
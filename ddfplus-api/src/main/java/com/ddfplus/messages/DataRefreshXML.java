@@ -49,14 +49,21 @@ public class DataRefreshXML extends AbstractMsgBaseMarket implements DdfMarketRe
 	 * @return the data refresh xml
 	 */
 	public static DataRefreshXML Parse(String text) {
+		return Parse(text.getBytes());
+	}
 
-		DataRefreshXML msg = new DataRefreshXML(text.getBytes());
+	/**
+	 * Parses the refresh straight from the message bytes.
+	 * 
+	 * @param ba
+	 *            the message, <code>%&lt;QUOTE ...</code>
+	 * @return the data refresh xml
+	 */
+	public static DataRefreshXML Parse(byte[] ba) {
 
-		if (text.charAt(0) == '%') {
-			text = text.substring(1);
-		}
+		DataRefreshXML msg = new DataRefreshXML(ba);
 
-		XMLNode node = XMLNode.parse(text);
+		XMLNode node = XMLNode.parse(ba, 0, ba.length);
 		msg._record = 'X';
 		msg._symbol = node.getAttribute("symbol");
 		msg.setBaseCode(node.getAttribute("basecode").charAt(0));
@@ -51,6 +51,16 @@ public interface DdfMarketBase extends DdfMessageBase {
 	 */
 	int getPositionETX();
 
+	/**
+	 * The number of decimal places of the fixed point (mantissa) prices of the
+	 * message, derived from the base code.
+	 * 
+	 * @return the price scale
+	 * 
+	 * @see com.ddfplus.codec.Codec#getPriceScale(int)
+	 */
+	int getPriceScale();
+
 	/**
 	 * The exchange code identifies the originating exchange for the quote.
 	 * 
@@ -19,6 +19,15 @@ public interface DdfMarketBidAsk extends DdfMarketBase {
 
 	Float getAskPrice();
 
+	/**
+	 * The exact Ask price as a fixed point number, the price is
+	 * <code>mantissa / 10^getPriceScale()</code>.
+	 * 
+	 * @return The Ask price mantissa, 0 if there is no Ask price.
+	 */
+
+	long getAskPriceMantissa();
+
 	/**
 	 * The Size of the Ask.
 	 * 
@@ -35,6 +44,15 @@ public interface DdfMarketBidAsk extends DdfMarketBase {
 
 	Float getBidPrice();
 
+	/**
+	 * The exact Bid price as a fixed point number, the price is
+	 * <code>mantissa / 10^getPriceScale()</code>.
+	 * 
+	 * @return The Bid price mantissa, 0 if there is no Bid price.
+	 */
+
+	long getBidPriceMantissa();
+
 	/**
 	 * The Size of the Bid.
 	 * 
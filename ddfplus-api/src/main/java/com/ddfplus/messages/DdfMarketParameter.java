@@ -44,6 +44,16 @@ public interface DdfMarketParameter extends DdfMarketBase {
 
 	float getValueAsFloat();
 
+	/**
+	 * Gets the value as a fixed point number. Prices are
+	 * <code>mantissa / 10^getPriceScale()</code>, integer values are returned
+	 * as is.
+	 * 
+	 * @return The value mantissa
+	 */
+
+	long getValueMantissa();
+
 	/**
 	 * Gets the value as integer.
 	 * 
@@ -19,6 +19,15 @@ public interface DdfMarketTrade extends DdfMarketBase {
 
 	float getTradePrice();
 
+	/**
+	 * Gets the exact trade price as a fixed point number, the price is
+	 * <code>mantissa / 10^getPriceScale()</code>.
+	 * 
+	 * @return The Trade price mantissa.
+	 */
+
+	long getTradePriceMantissa();
+
 	/**
 	 * Gets the trade size.
 	 * 
@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registers a {@link LatencyMXBean} with the platform MBean server as
+ * <code>com.ddfplus:type=Latency,name=&lt;client name&gt;</code>.
+ */
+public class JmxMetricsPublisher implements MetricsPublisher {
+
+	private static final Logger log = LoggerFactory.getLogger(JmxMetricsPublisher.class);
+
+	private final MBeanServer server;
+
+	private ObjectName objectName;
+
+	public JmxMetricsPublisher() {
+		this(ManagementFactory.getPlatformMBeanServer());
+	}
+
+	public JmxMetricsPublisher(MBeanServer server) {
+		this.server = server;
+	}
+
+	@Override
+	public synchronized void start(String name, final LatencyRecorder recorder) {
+		stop();
+		try {
+			ObjectName on = new ObjectName("com.ddfplus:type=Latency,name=" + ObjectName.quote(name));
+			server.registerMBean(new LatencyMXBean() {
+				@Override
+				public List<LatencyStatistics> getStages() {
+					return recorder.getStageStatistics();
+				}
+
+				@Override
+				public List<LatencyStatistics> getRecordTypes() {
+					return recorder.getRecordTypeStatistics();
+				}
+
+				@Override
+				public void reset() {
+					recorder.reset();
+				}
+			}, on);
+			objectName = on;
+		} catch (JMException e) {
+			log.error("Could not register latency MBean: " + e);
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (objectName == null) {
+			return;
+		}
+		try {
+			server.unregisterMBean(objectName);
+		} catch (JMException e) {
+			log.warn("Could not unregister latency MBean: " + e);
+		}
+		objectName = null;
+	}
+
+	public synchronized ObjectName getObjectName() {
+		return objectName;
+	}
+
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size, log linear histogram of nanosecond values.
+ * <p>
+ * Values below 64 are counted exactly, above that every power of 2 is split
+ * into 32 buckets, so a recorded value is reported within about 3%. Values
+ * above 2^42 ns (about 73 minutes) are counted in the last bucket. Recording
+ * does not allocate and can be done from several threads.
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BITS = 5;
+
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+
+	private static final int LINEAR = SUB_COUNT * 2;
+
+	private static final int MAX_MAGNITUDE = 42;
+
+	// Last bucket counts the values above the range
+	static final int BUCKETS = LINEAR + (MAX_MAGNITUDE - SUB_BITS - 1) * SUB_COUNT + 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong sum = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @param nanos
+	 *            value, negative values are counted as 0
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts.incrementAndGet(index(nanos));
+		count.incrementAndGet();
+		sum.addAndGet(nanos);
+		long m;
+		while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos)) {
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long n = count.get();
+		return n == 0 ? 0 : (double) sum.get() / n;
+	}
+
+	/**
+	 * @param percentile
+	 *            0 to 100
+	 * @return Highest value of the bucket the percentile falls in, 0 if empty
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long n = count.get();
+		if (n == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * n));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= target) {
+				return Math.min(highestValue(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Clears the counts. Values recorded concurrently may be lost.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+	static int index(long v) {
+		if (v < LINEAR) {
+			return (int) v;
+		}
+		int magnitude = 63 - Long.numberOfLeadingZeros(v);
+		if (magnitude >= MAX_MAGNITUDE) {
+			return BUCKETS - 1;
+		}
+		int shift = magnitude - SUB_BITS;
+		return LINEAR + (shift - 1) * SUB_COUNT + (int) (v >>> shift) - SUB_COUNT;
+	}
+
+	static long highestValue(int index) {
+		if (index < LINEAR) {
+			return index;
+		}
+		int shift = (index - LINEAR) / SUB_COUNT + 1;
+		long sub = (index - LINEAR) % SUB_COUNT + SUB_COUNT;
+		return ((sub + 1) << shift) - 1;
+	}
+
+	@Override
+	public String toString() {
+		return "count=" + getCount() + " mean=" + (long) getMean() + " p50=" + getValueAtPercentile(50) + " p99="
+				+ getValueAtPercentile(99) + " p99.9=" + getValueAtPercentile(99.9) + " max=" + getMax();
+	}
+
+}
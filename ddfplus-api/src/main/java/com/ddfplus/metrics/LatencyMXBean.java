@@ -0,0 +1,22 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.metrics;
+
+import java.util.List;
+
+/**
+ * JMX view of a {@link LatencyRecorder}, values in nanoseconds.
+ */
+public interface LatencyMXBean {
+
+	List<LatencyStatistics> getStages();
+
+	List<LatencyStatistics> getRecordTypes();
+
+	void reset();
+
+}
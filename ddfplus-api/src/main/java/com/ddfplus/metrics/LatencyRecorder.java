@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Latency histograms per {@link LatencyStage} and per DDF record type.
+ * <p>
+ * Timestamps are taken with {@link System#nanoTime()}. A stage is recorded
+ * from the end of the previous one, {@link #record(LatencyStage, long)}
+ * returns the time to start the next stage from. The pipeline only calls the
+ * recorder if latency metrics are enabled, so there is no cost otherwise.
+ */
+public final class LatencyRecorder {
+
+	private static final LatencyStage[] STAGES = LatencyStage.values();
+
+	private final LatencyHistogram[] stages = new LatencyHistogram[STAGES.length];
+
+	// Keyed by record << 7 | sub record, created on first use
+	private final AtomicReferenceArray<LatencyHistogram> recordTypes = new AtomicReferenceArray<>(1 << 14);
+
+	public LatencyRecorder() {
+		for (int i = 0; i < stages.length; i++) {
+			stages[i] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * @return Current time in nanoseconds
+	 */
+	public long now() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records a stage ending now.
+	 *
+	 * @param stage
+	 *            Stage
+	 * @param start
+	 *            Start of the stage, nanoseconds
+	 * @return End of the stage, start of the next
+	 */
+	public long record(LatencyStage stage, long start) {
+		long now = System.nanoTime();
+		stages[stage.ordinal()].record(now - start);
+		return now;
+	}
+
+	/**
+	 * Records the total latency of a message ending now.
+	 *
+	 * @param record
+	 *            DDF record
+	 * @param subRecord
+	 *            DDF sub record
+	 * @param start
+	 *            Receive time, nanoseconds
+	 * @return End time
+	 */
+	public long recordMessage(char record, char subRecord, long start) {
+		long now = record(LatencyStage.TOTAL, start);
+		recordType(record, subRecord).record(now - start);
+		return now;
+	}
+
+	public LatencyHistogram getHistogram(LatencyStage stage) {
+		return stages[stage.ordinal()];
+	}
+
+	/**
+	 * @param recordType
+	 *            record and sub record, e.g. "2Z"
+	 * @return Total latency of the record type, null if none recorded
+	 */
+	public LatencyHistogram getHistogram(String recordType) {
+		if (recordType == null || recordType.length() != 2) {
+			return null;
+		}
+		return recordTypes.get(key(recordType.charAt(0), recordType.charAt(1)));
+	}
+
+	/**
+	 * @return Statistics of the stages with recorded values
+	 */
+	public List<LatencyStatistics> getStageStatistics() {
+		List<LatencyStatistics> l = new ArrayList<>();
+		for (LatencyStage s : STAGES) {
+			LatencyHistogram h = stages[s.ordinal()];
+			if (h.getCount() > 0) {
+				l.add(new LatencyStatistics(s.name(), h));
+			}
+		}
+		return l;
+	}
+
+	/**
+	 * @return Statistics of the record types seen
+	 */
+	public List<LatencyStatistics> getRecordTypeStatistics() {
+		List<LatencyStatistics> l = new ArrayList<>();
+		for (int i = 0; i < recordTypes.length(); i++) {
+			LatencyHistogram h = recordTypes.get(i);
+			if (h != null) {
+				l.add(new LatencyStatistics("" + (char) (i >> 7) + (char) (i & 0x7f), h));
+			}
+		}
+		return l;
+	}
+
+	public void reset() {
+		for (LatencyHistogram h : stages) {
+			h.reset();
+		}
+		for (int i = 0; i < recordTypes.length(); i++) {
+			LatencyHistogram h = recordTypes.get(i);
+			if (h != null) {
+				h.reset();
+			}
+		}
+	}
+
+	private LatencyHistogram recordType(char record, char subRecord) {
+		int key = key(record, subRecord);
+		LatencyHistogram h = recordTypes.get(key);
+		if (h == null) {
+			recordTypes.compareAndSet(key, null, new LatencyHistogram());
+			h = recordTypes.get(key);
+		}
+		return h;
+	}
+
+	private static int key(char record, char subRecord) {
+		return (record & 0x7f) << 7 | (subRecord & 0x7f);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("Latency ns:");
+		for (LatencyStatistics s : getStageStatistics()) {
+			sb.append("\n\t").append(s);
+		}
+		for (LatencyStatistics s : getRecordTypeStatistics()) {
+			sb.append("\n\t").append(s);
+		}
+		return sb.toString();
+	}
+
+}
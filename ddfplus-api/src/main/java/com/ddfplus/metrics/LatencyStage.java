@@ -0,0 +1,38 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.metrics;
+
+/**
+ * Stages of the message pipeline, each measured from the end of the previous
+ * stage.
+ */
+public enum LatencyStage {
+
+	/** Socket read to the complete message framed. */
+	FRAMING,
+	/** Raw message view handlers. */
+	VIEW_HANDLERS,
+	/** Codec.parseMessage. */
+	DECODE,
+	/** DataMaster.processMessage, updating the caches. */
+	PROCESS,
+	/** Raw message handlers. */
+	FEED_HANDLERS,
+	/** Quote and exchange quote/trade handlers. */
+	QUOTE_HANDLERS,
+	/** Book handlers. */
+	BOOK_HANDLERS,
+	/** Timestamp handlers. */
+	TIMESTAMP_HANDLERS,
+	/** Market event handlers. */
+	MARKET_EVENT_HANDLERS,
+	/** Minute bar handlers. */
+	MINUTE_BAR_HANDLERS,
+	/** Socket read, or dequeue if the receive time is not known, to the return of the last handler. */
+	TOTAL;
+
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.metrics;
+
+/**
+ * Summary of a {@link LatencyHistogram}, values in nanoseconds.
+ */
+public final class LatencyStatistics {
+
+	private final String name;
+	private final long count;
+	private final long mean;
+	private final long p50;
+	private final long p90;
+	private final long p99;
+	private final long p999;
+	private final long max;
+
+	public LatencyStatistics(String name, LatencyHistogram h) {
+		this.name = name;
+		this.count = h.getCount();
+		this.mean = (long) h.getMean();
+		this.p50 = h.getValueAtPercentile(50);
+		this.p90 = h.getValueAtPercentile(90);
+		this.p99 = h.getValueAtPercentile(99);
+		this.p999 = h.getValueAtPercentile(99.9);
+		this.max = h.getMax();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMean() {
+		return mean;
+	}
+
+	public long getP50() {
+		return p50;
+	}
+
+	public long getP90() {
+		return p90;
+	}
+
+	public long getP99() {
+		return p99;
+	}
+
+	public long getP999() {
+		return p999;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return name + " count=" + count + " mean=" + mean + " p50=" + p50 + " p90=" + p90 + " p99=" + p99
+				+ " p99.9=" + p999 + " max=" + max;
+	}
+
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.metrics;
+
+/**
+ * Exposes the latency metrics of a client, e.g. to JMX or a metrics library.
+ * 
+ * @see JmxMetricsPublisher
+ */
+public interface MetricsPublisher {
+
+	/**
+	 * Called when the client connects.
+	 * 
+	 * @param name
+	 *            Client name, unique in the JVM
+	 * @param recorder
+	 *            Latency recorder of the client
+	 */
+	void start(String name, LatencyRecorder recorder);
+
+	/**
+	 * Called when the client disconnects.
+	 */
+	void stop();
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Latency instrumentation of the message pipeline.
+ */
+package com.ddfplus.metrics;
@@ -9,8 +9,10 @@ package com.ddfplus.net;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,6 +20,7 @@ import org.slf4j.LoggerFactory;
 import com.ddfplus.api.ConnectionEvent;
 import com.ddfplus.api.ConnectionEventType;
 import com.ddfplus.enums.ConnectionType;
+import com.ddfplus.metrics.LatencyRecorder;
 
 /**
  * The Connection object manages and maintains a persistent connection to the
@@ -68,6 +71,16 @@ public class Connection {
 
 	private boolean _useQueue = false;
 
+	private int queueCapacity = NetConstants.QUEUE_CAPACITY;
+
+	private QueueWaitStrategy queueWaitStrategy = QueueWaitStrategy.Park;
+
+	private QueueOverflowPolicy queueOverflowPolicy = QueueOverflowPolicy.Block;
+
+	private int receiveBufferSize = NetConstants.TCP_RECV_BUFFER_SIZE;
+
+	private volatile LatencyRecorder latencyRecorder;
+
 	/*
 	 * Provide for implementations that do not support dynamic symbol
 	 * registration.
@@ -194,12 +207,12 @@ public class Connection {
 	}
 
 	/**
-	 * Unsubscribe for a quote subscription.
+	 * Unsubscribe for a quote subscription, including the volume.
 	 * 
 	 * @param symbol
 	 */
 	public void unsubscribeQuote(String symbol) {
-		Cmd cmd = new Cmd("STOP", symbol, "Ss");
+		Cmd cmd = new Cmd("STOP", symbol, "SsV");
 		channel.enqueueCommand(cmd);
 	}
 
@@ -415,16 +428,97 @@ public class Connection {
 	 */
 
 	public void setUseQueue(boolean value) {
+		if (_queue != null) {
+			_queue.shutdown();
+			_queue = null;
+		}
+		if (value) {
+			_queue = createQueue("XQueue for " + getId(), this::newQueueMessage);
+		}
 		_useQueue = value;
-		if (_useQueue) {
-			_queue = new XQueue(this);
+
+	}
+
+	/**
+	 * Returns the counters of the message queue, either the internal queue or
+	 * the queue of the listen channels.
+	 * 
+	 * @return Queue statistics, null if no queue is used.
+	 */
+
+	public QueueStatistics getQueueStatistics() {
+		XQueue q = _queue;
+		if (q != null) {
+			return q.getStatistics();
+		}
+		IoChannel c = channel;
+		return c != null ? c.getQueueStatistics() : null;
+	}
+
+	/**
+	 * Returns the counters of the connected feed sources of the listen
+	 * channels.
+	 * 
+	 * @return Source statistics, empty if not listening.
+	 */
+	public List<SourceStatistics> getSourceStatistics() {
+		IoChannel c = channel;
+		return c != null ? c.getSourceStatistics() : Collections.<SourceStatistics> emptyList();
+	}
+
+	/**
+	 * Returns the datagram receive counters of the UDP listen channel.
+	 * 
+	 * @return Receive statistics, null if not listening on UDP.
+	 */
+	public ReceiveStatistics getReceiveStatistics() {
+		IoChannel c = channel;
+		return c != null ? c.getReceiveStatistics() : null;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * Sets the capacity of the message queues, rounded up to a power of 2.
+	 * Must be set before the queue is created by {@link #setUseQueue(boolean)}
+	 * or {@link #startDataStream()}.
+	 * 
+	 * @param capacity
+	 *            Maximum number of queued messages
+	 */
+
+	public void setQueueCapacity(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Invalid queue capacity: " + capacity);
 		}
+		this.queueCapacity = capacity;
+	}
+
+	public QueueWaitStrategy getQueueWaitStrategy() {
+		return queueWaitStrategy;
+	}
+
+	public void setQueueWaitStrategy(QueueWaitStrategy strategy) {
+		this.queueWaitStrategy = strategy;
+	}
+
+	public QueueOverflowPolicy getQueueOverflowPolicy() {
+		return queueOverflowPolicy;
+	}
 
+	public void setQueueOverflowPolicy(QueueOverflowPolicy policy) {
+		this.queueOverflowPolicy = policy;
+	}
+
+	XQueue createQueue(String name, Consumer<byte[]> sink) {
+		return new XQueue(name, new MessageRing<byte[]>(queueCapacity, queueWaitStrategy, queueOverflowPolicy), sink);
 	}
 
 	public void newQueueMessage(byte[] array) {
 
-		pumpMessage(array);
+		pumpMessage(array, 0L);
 
 	}
 
@@ -446,6 +540,45 @@ public class Connection {
 		this.version = version;
 	}
 
+	/**
+	 * Returns the socket receive buffer size used by the TCP client.
+	 */
+
+	public int getReceiveBufferSize() {
+		return receiveBufferSize;
+	}
+
+	/**
+	 * Sets the socket receive buffer size used by the TCP client, takes effect
+	 * on the next connect.
+	 * 
+	 * @param size
+	 *            Size in bytes
+	 */
+
+	public void setReceiveBufferSize(int size) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("Invalid receive buffer size: " + size);
+		}
+		this.receiveBufferSize = size;
+	}
+
+	public LatencyRecorder getLatencyRecorder() {
+		return latencyRecorder;
+	}
+
+	/**
+	 * Sets the recorder for the socket read to framed message latency, and
+	 * enables passing the receive time to the handlers.
+	 * 
+	 * @param latencyRecorder
+	 *            Recorder, null to disable
+	 */
+
+	public void setLatencyRecorder(LatencyRecorder latencyRecorder) {
+		this.latencyRecorder = latencyRecorder;
+	}
+
 	public void setThreadPriority(int priority) {
 
 		if (channel == null) {
@@ -525,10 +658,28 @@ public class Connection {
 			array[i] = (byte) message.charAt(i);
 		}
 
+		handleMessage(array);
+
+	}
+
+	protected void handleMessage(final byte[] array) {
+		handleMessage(array, 0L);
+	}
+
+	/*
+	 * The receive time is lost if the message is queued.
+	 */
+	protected void handleMessage(final byte[] array, final long receivedNanos) {
+
 		if (_useQueue) {
-			_queue.add(array);
+			if (!_queue.add(array)) {
+				IoChannel c = channel;
+				if (c != null) {
+					c.onQueueOverflow();
+				}
+			}
 		} else {
-			pumpMessage(array);
+			pumpMessage(array, receivedNanos);
 		}
 
 	}
@@ -558,7 +709,7 @@ public class Connection {
 
 	}
 
-	private void pumpMessage(byte[] array) {
+	private void pumpMessage(byte[] array, long receivedNanos) {
 
 		if ((array == null) || (array.length < 1)) {
 			return;
@@ -581,7 +732,7 @@ public class Connection {
 		// Call each handler
 		for (ConnectionHandler handler : handlerList) {
 			try {
-				handler.onMessage(array);
+				handler.onMessage(array, receivedNanos);
 			} catch (Exception e) {
 				log.error("Connection.pumpMesage(" + new String(array) + "): " + e);
 			}
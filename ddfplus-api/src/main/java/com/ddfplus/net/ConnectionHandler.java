@@ -35,4 +35,16 @@ public interface ConnectionHandler {
 	 * @see com.ddfplus.codec
 	 */
 	public void onMessage(byte[] array);
+
+	/**
+	 * Called instead of {@link #onMessage(byte[])} by the connection.
+	 * 
+	 * @param array
+	 *            DDF message
+	 * @param receivedNanos
+	 *            {@link System#nanoTime()} of the socket read, 0 if not known
+	 */
+	default void onMessage(byte[] array, long receivedNanos) {
+		onMessage(array);
+	}
 }
@@ -6,19 +6,25 @@
  */
 package com.ddfplus.net;
 
+import java.util.List;
+
 import com.ddfplus.api.BookQuoteHandler;
 import com.ddfplus.api.ConnectionEventHandler;
 import com.ddfplus.api.FeedHandler;
+import com.ddfplus.api.FeedViewHandler;
+import com.ddfplus.api.HandlerOptions;
 import com.ddfplus.api.MarketEventHandler;
 import com.ddfplus.api.MinuteBarExchangeHandler;
 import com.ddfplus.api.MinuteBarHandler;
 import com.ddfplus.api.QuoteHandler;
 import com.ddfplus.api.TimestampHandler;
 import com.ddfplus.api.TradeHandler;
+import com.ddfplus.db.BookArena;
 import com.ddfplus.db.BookQuote;
 import com.ddfplus.db.CumulativeVolume;
 import com.ddfplus.db.MarketEvent;
 import com.ddfplus.db.Quote;
+import com.ddfplus.metrics.LatencyRecorder;
 
 /**
  * DDF Client API. The DDF client can operate in one of two modes:
@@ -74,8 +80,28 @@ public interface DdfClient {
 	 */
 	void addFeedHandler(FeedHandler handler);
 
+	/**
+	 * DDF message handler, called as set by the options.
+	 * 
+	 * @param handler
+	 *            Handler
+	 * @param options
+	 *            Execution options, inline if null
+	 */
+	void addFeedHandler(FeedHandler handler, HandlerOptions options);
+
 	void removeFeedHandler(FeedHandler handler);
 
+	/**
+	 * Raw DDF message handler, called back for all received DDF messages
+	 * without decoding them into message objects.
+	 * 
+	 * @param handler
+	 */
+	void addFeedViewHandler(FeedViewHandler handler);
+
+	void removeFeedViewHandler(FeedViewHandler handler);
+
 	/**
 	 * Market Event Handler
 	 * 
@@ -85,6 +111,16 @@ public interface DdfClient {
 	 */
 	void addMarketEventHandler(MarketEventHandler handler);
 
+	/**
+	 * Market Event Handler, called as set by the options.
+	 * 
+	 * @param handler
+	 *            Handler
+	 * @param options
+	 *            Execution options, inline if null
+	 */
+	void addMarketEventHandler(MarketEventHandler handler, HandlerOptions options);
+
 	void removeMarketEventHandler(MarketEventHandler handler);
 
 	/**
@@ -93,6 +129,18 @@ public interface DdfClient {
 	 */
 	void addQuoteHandler(String symbol, QuoteHandler handler);
 
+	/**
+	 * Quote/BBO handler, called as set by the options.
+	 * 
+	 * @param symbol
+	 *            Symbol
+	 * @param handler
+	 *            Handler
+	 * @param options
+	 *            Execution options, inline if null
+	 */
+	void addQuoteHandler(String symbol, QuoteHandler handler, HandlerOptions options);
+
 	void removeQuoteHandler(String symbol, QuoteHandler handler);
 
 	/**
@@ -100,6 +148,18 @@ public interface DdfClient {
 	 */
 	void addBookQuoteHandler(String symbol, BookQuoteHandler handler);
 
+	/**
+	 * Market Depth Handler, called as set by the options.
+	 * 
+	 * @param symbol
+	 *            Symbol
+	 * @param handler
+	 *            Handler
+	 * @param options
+	 *            Execution options, inline if null
+	 */
+	void addBookQuoteHandler(String symbol, BookQuoteHandler handler, HandlerOptions options);
+
 	void removeBookQuoteHandler(String symbol, BookQuoteHandler handler);
 
 	/**
@@ -133,6 +193,19 @@ public interface DdfClient {
 	 */
 	void addTradeExchangeHandler(String exchangeCode, TradeHandler handler);
 
+	/**
+	 * Add a trade handler for all symbols at the exchange, called as set by
+	 * the options.
+	 * 
+	 * @param exchangeCode
+	 *            DDF Exchange Code
+	 * @param handler
+	 *            Trade Handler for all symbols at the exchange
+	 * @param options
+	 *            Execution options, inline if null
+	 */
+	void addTradeExchangeHandler(String exchangeCode, TradeHandler handler, HandlerOptions options);
+
 	/**
 	 * Removes the trade handler for the exchange
 	 * 
@@ -153,6 +226,18 @@ public interface DdfClient {
 	 */
 	void addMinuteBarHandler(String symbol, MinuteBarHandler mbHandler);
 
+	/**
+	 * Adds handler to process OHLC messages, called as set by the options.
+	 * 
+	 * @param symbol
+	 *            Symbol
+	 * @param mbHandler
+	 *            OHLC handler
+	 * @param options
+	 *            Execution options, inline if null
+	 */
+	void addMinuteBarHandler(String symbol, MinuteBarHandler mbHandler, HandlerOptions options);
+
 	void removeMinuteBarHandler(String symbol);
 
 	void addMinuteBarExchangeHandler(String exch, MinuteBarExchangeHandler handler);
@@ -190,5 +275,30 @@ public interface DdfClient {
 	 */
 	CumulativeVolume getCumulativeVolume(String symbol);
 
+	/**
+	 * Returns the level storage of the depth books, with the number of books
+	 * and their estimated memory use.
+	 * 
+	 * @return The <code>BookArena</code> used for new books.
+	 */
+	BookArena getBookArena();
+
+	/**
+	 * Returns the latency histograms of the message pipeline, see
+	 * {@link com.ddfplus.api.ClientConfig#setLatencyMetrics(boolean)}.
+	 * 
+	 * @return The <code>LatencyRecorder</code>, null if latency metrics are
+	 *         disabled.
+	 */
+	LatencyRecorder getLatencyRecorder();
+
+	/**
+	 * Returns the queue and lag counters of the handlers registered with an
+	 * execution mode other than inline, see {@link HandlerOptions}.
+	 * 
+	 * @return Handler statistics, one per handler and handler type.
+	 */
+	List<HandlerStatistics> getHandlerStatistics();
+
 	void sendQuoteSnapshot(String symbol);
 }
\ No newline at end of file
@@ -8,8 +8,14 @@
 package com.ddfplus.net;
 
 import com.ddfplus.api.*;
+import com.ddfplus.codec.Codec;
+import com.ddfplus.codec.DdfMessageView;
 import com.ddfplus.db.*;
 import com.ddfplus.enums.ConnectionType;
+import com.ddfplus.metrics.JmxMetricsPublisher;
+import com.ddfplus.metrics.LatencyRecorder;
+import com.ddfplus.metrics.LatencyStage;
+import com.ddfplus.metrics.MetricsPublisher;
 import com.ddfplus.messages.DdfMarketBase;
 import com.ddfplus.messages.DdfMarketTrade;
 import com.ddfplus.service.definition.DefinitionService;
@@ -23,9 +29,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.*;
+import java.util.function.Function;
 
 /**
  * DDF Client API.
@@ -54,14 +68,20 @@ public class DdfClientImpl implements DdfClient {
 	// Raw DDF message handlers
 	private static final CopyOnWriteArrayList<FeedHandler> feedHandlers = new CopyOnWriteArrayList<>();
 
+	// Raw DDF message handlers, no decoding
+	private static final CopyOnWriteArrayList<FeedViewHandler> feedViewHandlers = new CopyOnWriteArrayList<>();
+
 	// Market Event Handlers
 	private static final CopyOnWriteArrayList<MarketEventHandler> marketEventHandlers = new CopyOnWriteArrayList<>();
 
 	// Timestamp Handlers
 	private static final CopyOnWriteArrayList<TimestampHandler> timestampHandlers = new CopyOnWriteArrayList<>();
 
-	// Quote/Market Update
-	private static final Map<String, CopyOnWriteArrayList<QuoteHandler>> quoteHandlers = new ConcurrentHashMap<>();
+	// Symbol ids for the handler tables below
+	private static final SymbolRegistry symbols = dataMaster.getSymbolRegistry();
+
+	// Quote/Market Update (Symbol Id ==> Handlers)
+	private static final SymbolMap<CopyOnWriteArrayList<QuoteHandler>> quoteHandlers = new SymbolMap<>();
 
 	// Quote/Market Update by Exchange (ExchangeCode ==> Handler)
 	private static final Map<String, QuoteHandler> quoteExchangeHandlers = new ConcurrentHashMap<>();
@@ -69,14 +89,24 @@ public class DdfClientImpl implements DdfClient {
 	// Trades by Exchange (ExchangeCode ==> Handler)
 	private static final Map<String, TradeHandler> tradeExchangeHandlers = new ConcurrentHashMap<>();
 
-	// Market Depth/Book Quote
-	private static final Map<String, CopyOnWriteArrayList<BookQuoteHandler>> bookQuoteHandlers = new ConcurrentHashMap<>();
+	// Market Depth/Book Quote (Symbol Id ==> Handlers)
+	private static final SymbolMap<CopyOnWriteArrayList<BookQuoteHandler>> bookQuoteHandlers = new SymbolMap<>();
 
-	// OHLC handlers
-	private static final Map<String, MinuteBarHandler> minuteBarHandlers = new ConcurrentHashMap<>();
+	// OHLC handlers (Symbol Id ==> Handler)
+	private static final SymbolMap<MinuteBarHandler> minuteBarHandlers = new SymbolMap<>();
 	// Exchange to OHLC exchange handler
 	private static final Map<String, MinuteBarExchangeHandler> minuteBarExchangeHandlers = new ConcurrentHashMap<>();
 
+	// Handlers not called inline, handler type and handler to the dispatcher
+	private static final Map<Object, HandlerDispatcher> dispatchers = new ConcurrentHashMap<>();
+
+	private static final String FEED = "FeedHandler";
+	private static final String MARKET_EVENT = "MarketEventHandler";
+	private static final String QUOTE = "QuoteHandler";
+	private static final String BOOK_QUOTE = "BookQuoteHandler";
+	private static final String TRADE = "TradeHandler";
+	private static final String MINUTE_BAR = "MinuteBarHandler";
+
 	private static int instanceId = 0;
 
 	// Client Configuration
@@ -111,6 +141,12 @@ public class DdfClientImpl implements DdfClient {
 	private SymbolShortCuts symbolShortCuts;
 	private DefinitionService definitionService;
 	private final ScheduledExecutorService unknownSymbolScheduler = Executors.newScheduledThreadPool(1);
+	private DdfClientConnectionHandler connectionHandler;
+	// Null if latency metrics are disabled
+	private LatencyRecorder latencyRecorder;
+	private MetricsPublisher metricsPublisher;
+	// Null if there is no warm start file
+	private ScheduledFuture<?> warmStartCheckpoint;
 
 	public DdfClientImpl(ClientConfig config) {
 		this(config, new SymbolProviderImpl());
@@ -170,10 +206,23 @@ public class DdfClientImpl implements DdfClient {
 			/*
 			 * Add Feed Service
 			 */
-			feedService = new FeedServiceImpl(dataMaster, snapshotUserSettings, quoteExchangeHandlers);
+			FeedServiceImpl fs = new FeedServiceImpl(dataMaster, snapshotUserSettings, quoteExchangeHandlers);
+			fs.setBatchSize(config.getRefreshBatchSize());
+			fs.setConcurrency(config.getRefreshConcurrency());
+			feedService = fs;
 			dataMaster.setFeedService(feedService);
 		}
 
+		dataMaster.setQuoteSnapshots(config.isQuoteSnapshots());
+		dataMaster.setReuseEvents(config.isReuseEvents());
+		dataMaster.setBookArena(new BookArena(config.getBookDepth(), config.getBookPreallocate()));
+		if (config.getOffHeapHotQuotes() > 0) {
+			dataMaster.setQuoteStore(new OffHeapQuoteStore(config.getOffHeapHotQuotes()));
+		}
+		if (config.getWarmStartFile() != null) {
+			loadWarmStart(Paths.get(config.getWarmStartFile()));
+		}
+
 		/*
 		 * Start a background task to subscribe to unknown symbols (Symbols
 		 * which do not have quotes), in order to see if the symbol has been
@@ -185,6 +234,48 @@ public class DdfClientImpl implements DdfClient {
 				config.getUnknownSymbolInterval(), TimeUnit.SECONDS);
 	}
 
+	private void loadWarmStart(Path file) {
+		if (!Files.exists(file)) {
+			return;
+		}
+		try {
+			int n = DataMasterSnapshot.read(dataMaster, file);
+			log.info("Loaded " + n + " stale entries from warm start file: " + file);
+		} catch (Exception e) {
+			log.warn("Could not load warm start file: " + file + " error: " + e);
+		}
+	}
+
+	/*
+	 * Lost data in listen mode, refresh the recently updated quotes.
+	 */
+	private void recoverGap() {
+		int limit = config.getGapRefreshLimit();
+		if (limit <= 0) {
+			return;
+		}
+		if (feedService == null) {
+			log.warn("Data gap detected, quotes may be stale. Set the snapshot login to refresh them.");
+			return;
+		}
+		long since = System.currentTimeMillis() - config.getGapLookbackSec() * 1000;
+		// Refreshes are requested at once, quotes are marked stale on their
+		// processing thread
+		final DdfClientConnectionHandler handler = connectionHandler;
+		List<String> symbols = handler != null ? dataMaster.refreshActiveQuotes(since, limit, handler::execute)
+				: dataMaster.refreshActiveQuotes(since, limit);
+		log.info("Data gap detected, refreshing " + symbols.size() + " quotes.");
+	}
+
+	private void saveWarmStart(Path file) {
+		try {
+			int n = DataMasterSnapshot.write(dataMaster, file);
+			log.debug("Saved " + n + " entries to warm start file: " + file);
+		} catch (Exception e) {
+			log.error("Could not save warm start file: " + file, e);
+		}
+	}
+
 	@Override
 	public void setSnapshotLogin(String username, String password) {
 		snapshotUserName = username;
@@ -226,9 +317,27 @@ public class DdfClientImpl implements DdfClient {
 
 			// Sets the JERQ/P version
 			connection.setVersion(jerqVersion);
+			if (config.getReceiveBufferSize() != null) {
+				connection.setReceiveBufferSize(config.getReceiveBufferSize());
+			}
 
-			DdfClientConnectionHandler handler = new DdfClientConnectionHandler();
-			connection.registerHandler(handler);
+			if (config.isLatencyMetrics()) {
+				latencyRecorder = new LatencyRecorder();
+				metricsPublisher = config.getMetricsPublisher() != null ? config.getMetricsPublisher()
+						: new JmxMetricsPublisher();
+				metricsPublisher.start(username + "-" + (instanceId + 1), latencyRecorder);
+			}
+			connection.setLatencyRecorder(latencyRecorder);
+
+			if (config.getWarmStartFile() != null) {
+				long interval = config.getWarmStartIntervalSec();
+				Path file = Paths.get(config.getWarmStartFile());
+				warmStartCheckpoint = unknownSymbolScheduler.scheduleAtFixedRate(() -> saveWarmStart(file),
+						interval, interval, TimeUnit.SECONDS);
+			}
+
+			connectionHandler = new DdfClientConnectionHandler(config.getProcessingShards(), latencyRecorder);
+			connection.registerHandler(connectionHandler);
 
 			log.info("Starting DdfClient#" + ++instanceId + " Version = " + connection.getVersion());
 
@@ -244,9 +353,23 @@ public class DdfClientImpl implements DdfClient {
 			log.info("Stopping DdfClient#" + ++instanceId + " Version = " + connection.getVersion());
 			connection.stopDataStream();
 			connection = null;
+			if (connectionHandler != null) {
+				connectionHandler.shutdown();
+				connectionHandler = null;
+			}
+			if (metricsPublisher != null) {
+				metricsPublisher.stop();
+				metricsPublisher = null;
+			}
+			if (warmStartCheckpoint != null) {
+				warmStartCheckpoint.cancel(false);
+				warmStartCheckpoint = null;
+				saveWarmStart(Paths.get(config.getWarmStartFile()));
+			}
 			// Clear handlers
 			adminHandlers.clear();
 			feedHandlers.clear();
+			feedViewHandlers.clear();
 			marketEventHandlers.clear();
 			timestampHandlers.clear();
 			quoteHandlers.clear();
@@ -255,6 +378,12 @@ public class DdfClientImpl implements DdfClient {
 			bookQuoteHandlers.clear();
 			minuteBarHandlers.clear();
 			minuteBarExchangeHandlers.clear();
+			synchronized (dispatchers) {
+				for (HandlerDispatcher d : dispatchers.values()) {
+					d.shutdown();
+				}
+				dispatchers.clear();
+			}
 		}
 	}
 
@@ -273,9 +402,29 @@ public class DdfClientImpl implements DdfClient {
 		feedHandlers.addIfAbsent(handler);
 	}
 
+	@Override
+	public void addFeedHandler(FeedHandler handler, HandlerOptions options) {
+		FeedHandler h = dispatched(FEED, handler, options, d -> new HandlerDispatcher.FeedProxy(d, handler));
+		if (!feedHandlers.addIfAbsent(h)) {
+			release(FEED, handler);
+		}
+	}
+
 	@Override
 	public void removeFeedHandler(FeedHandler handler) {
-		feedHandlers.remove(handler);
+		if (feedHandlers.remove(registered(FEED, handler))) {
+			release(FEED, handler);
+		}
+	}
+
+	@Override
+	public void addFeedViewHandler(FeedViewHandler handler) {
+		feedViewHandlers.addIfAbsent(handler);
+	}
+
+	@Override
+	public void removeFeedViewHandler(FeedViewHandler handler) {
+		feedViewHandlers.remove(handler);
 	}
 
 	@Override
@@ -283,9 +432,20 @@ public class DdfClientImpl implements DdfClient {
 		marketEventHandlers.addIfAbsent(handler);
 	}
 
+	@Override
+	public void addMarketEventHandler(MarketEventHandler handler, HandlerOptions options) {
+		MarketEventHandler h = dispatched(MARKET_EVENT, handler, options,
+				d -> new HandlerDispatcher.MarketEventProxy(d, handler));
+		if (!marketEventHandlers.addIfAbsent(h)) {
+			release(MARKET_EVENT, handler);
+		}
+	}
+
 	@Override
 	public void removeMarketEventHandler(MarketEventHandler handler) {
-		marketEventHandlers.remove(handler);
+		if (marketEventHandlers.remove(registered(MARKET_EVENT, handler))) {
+			release(MARKET_EVENT, handler);
+		}
 	}
 
 	@Override
@@ -300,6 +460,11 @@ public class DdfClientImpl implements DdfClient {
 
 	@Override
 	public void addQuoteHandler(String symbol, QuoteHandler handler) {
+		addQuoteHandler(symbol, handler, null);
+	}
+
+	@Override
+	public void addQuoteHandler(String symbol, QuoteHandler handler, HandlerOptions options) {
 
 		String[] realSymbols = symbolShortCuts.resolveShortCutSymbols(symbol.trim());
 		if (realSymbols.length == 0) {
@@ -308,12 +473,14 @@ public class DdfClientImpl implements DdfClient {
 		}
 		for (String s : realSymbols) {
 			synchronized (quoteHandlers) {
-				CopyOnWriteArrayList<QuoteHandler> l = quoteHandlers.get(s);
+				int id = symbols.register(s);
+				QuoteHandler h = dispatched(QUOTE, handler, options, d -> new HandlerDispatcher.QuoteProxy(d, handler));
+				CopyOnWriteArrayList<QuoteHandler> l = quoteHandlers.get(id);
 				if (l == null) {
 					// No subscription
 					l = new CopyOnWriteArrayList<>();
-					quoteHandlers.put(s, l);
-					l.add(handler);
+					quoteHandlers.put(id, l);
+					l.add(h);
 					if(handler.isSnapshotRequest()) {
 						subscribeQuoteSnapshot(s);
 					}
@@ -323,9 +490,11 @@ public class DdfClientImpl implements DdfClient {
 					}
 				} else {
 					// We have a subscription
-					boolean added = l.addIfAbsent(handler);
+					boolean added = l.addIfAbsent(h);
 					if (added) {
-						sendQuoteFromCache(s, handler);
+						sendQuoteFromCache(s, h);
+					} else {
+						release(QUOTE, handler);
 					}
 				}
 			}
@@ -335,11 +504,13 @@ public class DdfClientImpl implements DdfClient {
 	@Override
 	public void removeQuoteHandler(String symbol, QuoteHandler handler) {
 		synchronized (quoteHandlers) {
-			CopyOnWriteArrayList<QuoteHandler> l = quoteHandlers.get(symbol);
+			CopyOnWriteArrayList<QuoteHandler> l = quoteHandlers.get(symbols.getId(symbol));
 			if (l == null) {
 				return;
 			}
-			l.remove(handler);
+			if (l.remove(registered(QUOTE, handler))) {
+				release(QUOTE, handler);
+			}
 			if (l.size() == 0) {
 				if(handler.isSnapshotRequest()) {
 					unsubscribeQuoteSnapshot(symbol);
@@ -353,20 +524,30 @@ public class DdfClientImpl implements DdfClient {
 
 	@Override
 	public void addBookQuoteHandler(String symbol, BookQuoteHandler handler) {
+		addBookQuoteHandler(symbol, handler, null);
+	}
+
+	@Override
+	public void addBookQuoteHandler(String symbol, BookQuoteHandler handler, HandlerOptions options) {
 		synchronized (bookQuoteHandlers) {
-			CopyOnWriteArrayList<BookQuoteHandler> l = bookQuoteHandlers.get(symbol);
+			int id = symbols.register(symbol);
+			BookQuoteHandler h = dispatched(BOOK_QUOTE, handler, options,
+					d -> new HandlerDispatcher.BookQuoteProxy(d, handler));
+			CopyOnWriteArrayList<BookQuoteHandler> l = bookQuoteHandlers.get(id);
 			if (l == null) {
 				// No subscription
 				l = new CopyOnWriteArrayList<>();
-				bookQuoteHandlers.put(symbol, l);
-				l.add(handler);
+				bookQuoteHandlers.put(id, l);
+				l.add(h);
 				// Initial Subscription
 				subscribeDepth(symbol);
 			} else {
 				// We have a subscription
-				boolean added = l.addIfAbsent(handler);
+				boolean added = l.addIfAbsent(h);
 				if (added) {
-					sendDepthFromCache(symbol, handler);
+					sendDepthFromCache(symbol, h);
+				} else {
+					release(BOOK_QUOTE, handler);
 				}
 			}
 		}
@@ -375,11 +556,13 @@ public class DdfClientImpl implements DdfClient {
 	@Override
 	public void removeBookQuoteHandler(String symbol, BookQuoteHandler handler) {
 		synchronized (bookQuoteHandlers) {
-			CopyOnWriteArrayList<BookQuoteHandler> l = bookQuoteHandlers.get(symbol);
+			CopyOnWriteArrayList<BookQuoteHandler> l = bookQuoteHandlers.get(symbols.getId(symbol));
 			if (l == null) {
 				return;
 			}
-			l.remove(handler);
+			if (l.remove(registered(BOOK_QUOTE, handler))) {
+				release(BOOK_QUOTE, handler);
+			}
 			if (l.size() == 0) {
 				unsubscribeDepth(symbol);
 			}
@@ -420,12 +603,18 @@ public class DdfClientImpl implements DdfClient {
 
 	@Override
 	public void addTradeExchangeHandler(String exchangeCode, TradeHandler handler) {
+		addTradeExchangeHandler(exchangeCode, handler, null);
+	}
+
+	@Override
+	public void addTradeExchangeHandler(String exchangeCode, TradeHandler handler, HandlerOptions options) {
 		synchronized (tradeExchangeHandlers) {
 
 			TradeHandler h = tradeExchangeHandlers.get(exchangeCode);
 			if (h == null) {
 				// No subscription
-				tradeExchangeHandlers.put(exchangeCode, handler);
+				tradeExchangeHandlers.put(exchangeCode,
+						dispatched(TRADE, handler, options, d -> new HandlerDispatcher.TradeProxy(d, handler)));
 				// Initial Stream Subscription
 				if (!quoteExchangeHandlers.containsKey(exchangeCode)) {
 					// only subscribe once
@@ -447,18 +636,25 @@ public class DdfClientImpl implements DdfClient {
 	@Override
 	public void removeTradeExchangeHandler(String exchangeCode) {
 		synchronized (tradeExchangeHandlers) {
-			tradeExchangeHandlers.remove(exchangeCode);
+			releaseProxy(TRADE, tradeExchangeHandlers.remove(exchangeCode));
 		}
 	}
 
 	@Override
 	public void addMinuteBarHandler(String symbol, MinuteBarHandler handler) {
+		addMinuteBarHandler(symbol, handler, null);
+	}
+
+	@Override
+	public void addMinuteBarHandler(String symbol, MinuteBarHandler handler, HandlerOptions options) {
 		synchronized (minuteBarHandlers) {
 
-			MinuteBarHandler h = minuteBarHandlers.get(symbol);
+			int id = symbols.register(symbol);
+			MinuteBarHandler h = minuteBarHandlers.get(id);
 			if (h == null) {
 				// No subscription
-				minuteBarHandlers.put(symbol, handler);
+				minuteBarHandlers.put(id,
+						dispatched(MINUTE_BAR, handler, options, d -> new HandlerDispatcher.MinuteBarProxy(d, handler)));
 				// Initial Subscription
 				subscribeMinuteBar(symbol);
 			} else {
@@ -472,7 +668,7 @@ public class DdfClientImpl implements DdfClient {
 	@Override
 	public void removeMinuteBarHandler(String symbol) {
 		synchronized (minuteBarHandlers) {
-			minuteBarHandlers.remove(symbol);
+			releaseProxy(MINUTE_BAR, minuteBarHandlers.remove(symbols.getId(symbol)));
 			unSubscribeMinuteBar(symbol);
 		}
 
@@ -506,6 +702,69 @@ public class DdfClientImpl implements DdfClient {
 
 	}
 
+	@Override
+	public List<HandlerStatistics> getHandlerStatistics() {
+		List<HandlerStatistics> l = new ArrayList<>();
+		for (HandlerDispatcher d : dispatchers.values()) {
+			l.add(d.getStatistics());
+		}
+		return l;
+	}
+
+	/*
+	 * Returns the handler to register, the proxy of its dispatcher unless
+	 * called inline. A handler registered more than once shares the
+	 * dispatcher.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> T dispatched(String type, T handler, HandlerOptions options,
+			Function<HandlerDispatcher, HandlerDispatcher.Proxy> proxy) {
+		if (options == null || options.getExecution() == HandlerExecution.Inline) {
+			return handler;
+		}
+		synchronized (dispatchers) {
+			Object key = new SimpleImmutableEntry<>(type, handler);
+			HandlerDispatcher d = dispatchers.get(key);
+			if (d == null) {
+				d = new HandlerDispatcher(type + " " + handler.getClass().getName(), options);
+				proxy.apply(d);
+				dispatchers.put(key, d);
+				log.info("Calling " + d.getName() + " with " + options);
+			}
+			d.acquire();
+			return (T) d.getProxy();
+		}
+	}
+
+	/*
+	 * Returns the registered handler, the proxy if not called inline.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> T registered(String type, T handler) {
+		HandlerDispatcher d = dispatchers.get(new SimpleImmutableEntry<>(type, handler));
+		return d != null ? (T) d.getProxy() : handler;
+	}
+
+	/*
+	 * Ends a registration, the dispatcher stops when its last one ends.
+	 */
+	private static void release(String type, Object handler) {
+		synchronized (dispatchers) {
+			Object key = new SimpleImmutableEntry<>(type, handler);
+			HandlerDispatcher d = dispatchers.get(key);
+			if (d != null && d.release()) {
+				dispatchers.remove(key);
+				d.shutdown();
+			}
+		}
+	}
+
+	private static void releaseProxy(String type, Object registered) {
+		if (registered instanceof HandlerDispatcher.Proxy) {
+			release(type, ((HandlerDispatcher.Proxy) registered).handler);
+		}
+	}
+
 	@Override
 	public Quote getQuote(String symbol) {
 		return dataMaster.getQuote(symbol);
@@ -521,6 +780,16 @@ public class DdfClientImpl implements DdfClient {
 		return dataMaster.getCumulativeVolume(symbol);
 	}
 
+	@Override
+	public BookArena getBookArena() {
+		return dataMaster.getBookArena();
+	}
+
+	@Override
+	public LatencyRecorder getLatencyRecorder() {
+		return latencyRecorder;
+	}
+
 	@Override
 	public void sendQuoteSnapshot(String symbol) {
 		connection.subscribeQuoteSnapshot(symbol);
@@ -624,12 +893,40 @@ public class DdfClientImpl implements DdfClient {
 
 		private boolean wireStats = false;
 		private WireStats stats;
-
-		public DdfClientConnectionHandler() {
+		// Re-used for every message, connection handler is single threaded
+		private final DdfMessageView view = new DdfMessageView();
+		// Null if processing on the connection thread
+		private final ShardedProcessor shards;
+		// Null if latency metrics are disabled
+		private final LatencyRecorder latency;
+		// Run on the connection thread if there are no shards
+		private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+		public DdfClientConnectionHandler(int processingShards, LatencyRecorder latency) {
+			this.latency = latency;
 			if(wireStats) {
 				stats = new WireStats();
 				Executors.newSingleThreadScheduledExecutor().scheduleAtFixedRate(this::logStats,1,1,TimeUnit.SECONDS);
 			}
+			shards = processingShards > 1 ? new ShardedProcessor(processingShards, dataMaster, this::handleFeedEvent) : null;
+		}
+
+		void shutdown() {
+			if (shards != null) {
+				shards.shutdown();
+			}
+		}
+
+		/*
+		 * Runs the task on the thread processing the symbol, before its next
+		 * message. A waiting shard is woken up.
+		 */
+		void execute(int symbolId, Runnable task) {
+			if (shards != null) {
+				shards.execute(symbolId, task);
+			} else {
+				tasks.add(task);
+			}
 		}
 
 		private void logStats() {
@@ -640,6 +937,10 @@ public class DdfClientImpl implements DdfClient {
 
 		@Override
 		public void onConnectionEvent(ConnectionEvent event) {
+			if (event.getType() == ConnectionEventType.DATA_GAP) {
+				// Called on the receive thread
+				unknownSymbolScheduler.execute(DdfClientImpl.this::recoverGap);
+			}
 			for (ConnectionEventHandler listener : adminHandlers) {
 				listener.onEvent(event);
 			}
@@ -647,18 +948,88 @@ public class DdfClientImpl implements DdfClient {
 
 		@Override
 		public void onMessage(byte[] array) {
+			onMessage(array, 0L);
+		}
+
+		@Override
+		public void onMessage(byte[] array, long receivedNanos) {
 
 			if(wireStats) {
 				stats.update(array.length);
 			}
 
-			// Decode and update caches
-			FeedEvent fe = dataMaster.processMessage(array);
+			final long start = latency == null ? 0L : receivedNanos != 0 ? receivedNanos : latency.now();
+			long t = start;
+
+			// RAW DDF View Handlers
+			if (!feedViewHandlers.isEmpty()) {
+				view.wrap(array, 0, array.length);
+				for (FeedViewHandler h : feedViewHandlers) {
+					try {
+						h.onMessage(view);
+					} catch (Exception e) {
+						log.error("DdfClient.onMessage(" + view + ") failed on onMessage. " + e);
+					}
+				}
+				if (latency != null) {
+					t = latency.record(LatencyStage.VIEW_HANDLERS, t);
+				}
+			}
+
+			if (array.length < 2) {
+				return;
+			}
+
+			DdfMarketBase msg = Codec.parseMessage(array);
+			if (msg == null) {
+				log.error("DdfClient.onMessage(" + new String(array) + ") decode failed.");
+				return;
+			}
+			if (latency != null) {
+				t = latency.record(LatencyStage.DECODE, t);
+			}
+
+			if (shards != null) {
+				// Update caches and call handlers on the shard
+				shards.route(msg);
+				return;
+			}
+
+			if (!tasks.isEmpty()) {
+				ShardedProcessor.runTasks(tasks, "Connection");
+			}
+
+			// Update caches
+			FeedEvent fe = dataMaster.processMessage(msg);
 
 			if (fe == null) {
-				// decode failure
 				return;
 			}
+			if (latency != null) {
+				t = latency.record(LatencyStage.PROCESS, t);
+			}
+
+			handleFeedEvent(fe, t);
+
+			if (latency != null) {
+				latency.recordMessage(msg.getRecord(), msg.getSubRecord(), start);
+			}
+		}
+
+		/*
+		 * Calls the handlers on the shard thread.
+		 */
+		private void handleFeedEvent(FeedEvent fe) {
+			handleFeedEvent(fe, latency != null ? latency.now() : 0L);
+		}
+
+		/*
+		 * Calls the handlers, t is the start of the first handler group if
+		 * latency is recorded.
+		 */
+		private void handleFeedEvent(FeedEvent fe, long t) {
+
+			final byte[] array = fe.getDdfMessage() != null ? fe.getDdfMessage().getBytes() : null;
 
 			// RAW DDF Handlers
 			if (fe.isDdfMessage()) {
@@ -669,6 +1040,9 @@ public class DdfClientImpl implements DdfClient {
 						log.error("DdfClient.onMessage(" + array + ") failed on onMessage. " + e);
 					}
 				}
+				if (latency != null) {
+					t = latency.record(LatencyStage.FEED_HANDLERS, t);
+				}
 			}
 
 			/*
@@ -695,10 +1069,13 @@ public class DdfClientImpl implements DdfClient {
 			if (fe.isQuote()) {
 
 				Quote q = fe.getQuote();
-				String symbol = q.getSymbolInfo().getSymbol();
+				int symbolId = q.getSymbolId();
+				if (symbolId == SymbolRegistry.NOT_FOUND) {
+					symbolId = symbols.getId(q.getSymbolInfo().getSymbol());
+				}
 
 				// Quote Handlers for pull (GO command)
-				CopyOnWriteArrayList<QuoteHandler> handlers = quoteHandlers.get(symbol);
+				CopyOnWriteArrayList<QuoteHandler> handlers = quoteHandlers.get(symbolId);
 				if (handlers != null) {
 					for (QuoteHandler h : handlers) {
 						try {
@@ -739,20 +1116,38 @@ public class DdfClientImpl implements DdfClient {
 				}
 
 			}
+			if (latency != null && (fe.isTrade() || fe.isQuote())) {
+				t = latency.record(LatencyStage.QUOTE_HANDLERS, t);
+			}
 
 			// Book/Depth
 			if (fe.isBookQuote()) {
 				BookQuote bq = fe.getBook();
-				CopyOnWriteArrayList<BookQuoteHandler> handlers = bookQuoteHandlers.get(bq.getSymbol());
+				// Live depth messages carry the id, refreshes are keyed by the book
+				int symbolId = fe.isRefreshMessage() ? SymbolRegistry.NOT_FOUND : fe.getSymbolId();
+				if (symbolId == SymbolRegistry.NOT_FOUND) {
+					symbolId = symbols.getId(bq.getSymbol());
+				}
+				CopyOnWriteArrayList<BookQuoteHandler> handlers = bookQuoteHandlers.get(symbolId);
 				if (handlers != null) {
+					BookQuoteDelta delta = fe.getBookDelta();
 					for (BookQuoteHandler h : handlers) {
 						try {
-							h.onBookQuote(bq);
+							if (delta != null && h instanceof BookQuoteDeltaHandler) {
+								if (delta.getCount() > 0) {
+									((BookQuoteDeltaHandler) h).onBookQuoteDelta(bq, delta);
+								}
+							} else {
+								h.onBookQuote(bq);
+							}
 						} catch (Exception e) {
 							log.error("bookQuote(" + array + ") failed on onMessage. " + e);
 						}
 					}
 				}
+				if (latency != null) {
+					t = latency.record(LatencyStage.BOOK_HANDLERS, t);
+				}
 			}
 
 			// Timestamp
@@ -765,6 +1160,9 @@ public class DdfClientImpl implements DdfClient {
 						log.error("timestamp(" + array + ") failed on onMessage. " + e);
 					}
 				}
+				if (latency != null) {
+					t = latency.record(LatencyStage.TIMESTAMP_HANDLERS, t);
+				}
 			}
 
 			// Cumulative Volume
@@ -783,6 +1181,9 @@ public class DdfClientImpl implements DdfClient {
 						log.error("marketEvent(" + array + ") failed on onMessage. " + e);
 					}
 				}
+				if (latency != null) {
+					t = latency.record(LatencyStage.MARKET_EVENT_HANDLERS, t);
+				}
 			}
 
 			// OHLC
@@ -802,7 +1203,7 @@ public class DdfClientImpl implements DdfClient {
 					}
 				}
 				// By Symbol
-				MinuteBarHandler mh = minuteBarHandlers.get(ohlc.getSymbol());
+				MinuteBarHandler mh = minuteBarHandlers.get(symbols.getId(ohlc.getSymbol()));
 				if (mh != null) {
 					try {
 						mh.onOhlc(ohlc);
@@ -810,6 +1211,9 @@ public class DdfClientImpl implements DdfClient {
 						log.error("minuteBar(" + array + ") failed on onOhlc. " + e);
 					}
 				}
+				if (latency != null) {
+					latency.record(LatencyStage.MINUTE_BAR_HANDLERS, t);
+				}
 			}
 		}
 
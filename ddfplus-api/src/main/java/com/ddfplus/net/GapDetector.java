@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.net;
+
+import java.net.SocketAddress;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.ddfplus.codec.Codec;
+
+/**
+ * Detects lost datagrams of the UDP listen channel.
+ * <p>
+ * DDF datagrams have no sequence numbers, so loss is detected from the
+ * timestamp beacons every source sends once a second. A beacon more than the
+ * threshold after the previous beacon of the same source means datagrams were
+ * lost in between. An increase of the kernel receive buffer drops is a gap of
+ * all sources. Every gap is counted, but a gap is only reported once per
+ * notify interval so the recovery stays bounded.
+ * <p>
+ * Used by the receive thread only, the counters can be read by any thread.
+ */
+final class GapDetector {
+
+	static final long DEFAULT_THRESHOLD_MS = 3000;
+
+	static final long DEFAULT_NOTIFY_INTERVAL_MS = 5000;
+
+	// {soh}#yyyymmddhhmmss{etx}
+	private static final int BEACON_LENGTH = 16;
+
+	private final long thresholdMs;
+
+	private final long notifyIntervalMs;
+
+	// Last beacon time of each source, seconds
+	private final Map<SocketAddress, Long> lastBeacon = new HashMap<SocketAddress, Long>();
+
+	private long lastDrops = -1;
+
+	private long lastNotify;
+
+	private volatile long beaconGaps;
+
+	private volatile long dropGaps;
+
+	private volatile long lastGapMillis;
+
+	GapDetector() {
+		this(DEFAULT_THRESHOLD_MS, DEFAULT_NOTIFY_INTERVAL_MS);
+	}
+
+	/**
+	 * @param thresholdMs
+	 *            Largest time between two beacons without a gap
+	 * @param notifyIntervalMs
+	 *            Smallest time between two reported gaps
+	 */
+	GapDetector(long thresholdMs, long notifyIntervalMs) {
+		this.thresholdMs = thresholdMs;
+		this.notifyIntervalMs = notifyIntervalMs;
+		this.lastNotify = -notifyIntervalMs;
+	}
+
+	static boolean isBeacon(byte[] message) {
+		return message.length >= BEACON_LENGTH && message[0] == MessageFramer.SOH && message[1] == '#';
+	}
+
+	/**
+	 * @param source
+	 *            Sender of the datagram
+	 * @param message
+	 *            Beacon message, see {@link #isBeacon(byte[])}
+	 * @param now
+	 *            Current time in ms
+	 * @return true if a gap has to be reported
+	 */
+	boolean beacon(SocketAddress source, byte[] message, long now) {
+		final long seconds;
+		try {
+			seconds = LocalDateTime.of(Codec.parseIntValue(message, 2, 4), Codec.parseIntValue(message, 6, 2),
+					Codec.parseIntValue(message, 8, 2), Codec.parseIntValue(message, 10, 2),
+					Codec.parseIntValue(message, 12, 2), Codec.parseIntValue(message, 14, 2))
+					.toEpochSecond(ZoneOffset.UTC);
+		} catch (RuntimeException e) {
+			return false;
+		}
+		final Long last = lastBeacon.put(source, seconds);
+		// A beacon going back is a restarted source, not a gap
+		if (last == null || (seconds - last) * 1000 <= thresholdMs) {
+			return false;
+		}
+		beaconGaps++;
+		return gap(now);
+	}
+
+	/**
+	 * @param drops
+	 *            Kernel receive buffer drops, -1 if not known
+	 * @param now
+	 *            Current time in ms
+	 * @return true if a gap has to be reported
+	 */
+	boolean drops(long drops, long now) {
+		final long last = lastDrops;
+		lastDrops = drops;
+		if (last < 0 || drops <= last) {
+			return false;
+		}
+		dropGaps++;
+		return gap(now);
+	}
+
+	private boolean gap(long now) {
+		lastGapMillis = now;
+		if (now - lastNotify < notifyIntervalMs) {
+			return false;
+		}
+		lastNotify = now;
+		return true;
+	}
+
+	/**
+	 * @return Number of gaps between the beacons of a source.
+	 */
+	long getBeaconGaps() {
+		return beaconGaps;
+	}
+
+	/**
+	 * @return Number of times the kernel receive buffer drops increased.
+	 */
+	long getDropGaps() {
+		return dropGaps;
+	}
+
+	/**
+	 * @return Time of the last gap in ms, 0 if none.
+	 */
+	long getLastGapMillis() {
+		return lastGapMillis;
+	}
+
+}
@@ -0,0 +1,333 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.net;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ddfplus.api.BookQuoteHandler;
+import com.ddfplus.api.FeedHandler;
+import com.ddfplus.api.HandlerExecution;
+import com.ddfplus.api.HandlerOptions;
+import com.ddfplus.api.MarketEventHandler;
+import com.ddfplus.api.MinuteBarHandler;
+import com.ddfplus.api.QuoteHandler;
+import com.ddfplus.api.TradeHandler;
+import com.ddfplus.db.BookQuote;
+import com.ddfplus.db.MarketEvent;
+import com.ddfplus.db.Ohlc;
+import com.ddfplus.db.Quote;
+import com.ddfplus.messages.DdfMarketBase;
+import com.ddfplus.messages.DdfMarketTrade;
+import com.ddfplus.messages.DdfMessageBase;
+import com.ddfplus.metrics.LatencyHistogram;
+
+/**
+ * Calls a handler on its own threads, see {@link HandlerOptions}.
+ * <p>
+ * Each thread has a {@link MessageRing} of calls, a call goes to the thread
+ * picked by the hash of its symbol, so the calls of a symbol are made in
+ * order. The rings are single producer, the feed thread or the processing
+ * shards offer under a per thread lock. An exception thrown by the handler is
+ * logged and counted, it does not stop the thread.
+ * <p>
+ * The handler is registered as one of the proxies below, which queue the
+ * calls.
+ */
+final class HandlerDispatcher {
+
+	private static final Logger log = LoggerFactory.getLogger(HandlerDispatcher.class);
+
+	private final String name;
+
+	private final HandlerOptions options;
+
+	private final Worker[] workers;
+
+	private final LatencyHistogram lag = new LatencyHistogram();
+
+	private final AtomicLong executed = new AtomicLong();
+
+	private final AtomicLong errors = new AtomicLong();
+
+	// Registrations using the dispatcher, guarded by the owner
+	private int references;
+
+	private Proxy proxy;
+
+	/**
+	 * @param name
+	 *            Handler name, for the threads and statistics
+	 * @param options
+	 *            Execution options, not inline
+	 */
+	HandlerDispatcher(String name, HandlerOptions options) {
+		if (options.getExecution() == HandlerExecution.Inline) {
+			throw new IllegalArgumentException("Inline handlers are not dispatched");
+		}
+		this.name = name;
+		this.options = options;
+		final QueueOverflowPolicy policy;
+		switch (options.getOverflowPolicy()) {
+		case DropOldest:
+			policy = QueueOverflowPolicy.DropOldest;
+			break;
+		case DropNewest:
+			// Ring rejects the call
+			policy = QueueOverflowPolicy.Disconnect;
+			break;
+		case Block:
+		default:
+			policy = QueueOverflowPolicy.Block;
+			break;
+		}
+		this.workers = new Worker[options.getThreads()];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Worker(name + " #" + i, options.getQueueCapacity(), policy);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Queues a call.
+	 *
+	 * @param symbol
+	 *            Symbol, picks the thread, may be null
+	 * @param call
+	 *            Handler call
+	 */
+	void dispatch(String symbol, Runnable call) {
+		final Worker w = workers.length == 1 ? workers[0]
+				: workers[((symbol == null ? 0 : symbol.hashCode()) & 0x7fffffff) % workers.length];
+		w.offer(new Call(call, System.nanoTime()));
+	}
+
+	String getName() {
+		return name;
+	}
+
+	Proxy getProxy() {
+		return proxy;
+	}
+
+	void acquire() {
+		references++;
+	}
+
+	/**
+	 * @return true if no registration uses the dispatcher any more
+	 */
+	boolean release() {
+		return --references <= 0;
+	}
+
+	/**
+	 * Stops the threads once the queued calls are made.
+	 */
+	void shutdown() {
+		for (Worker w : workers) {
+			w.ring.close();
+		}
+	}
+
+	HandlerStatistics getStatistics() {
+		int size = 0;
+		int maxSize = 0;
+		long queued = 0;
+		long blocked = 0;
+		long dropped = 0;
+		for (Worker w : workers) {
+			QueueStatistics s = w.ring.getStatistics();
+			size += s.getSize();
+			maxSize = Math.max(maxSize, s.getMaxSize());
+			queued += s.getPublished();
+			blocked += s.getBlocked();
+			dropped += s.getDropped() + s.getOverflows();
+		}
+		return new HandlerStatistics(name, options.getExecution(), workers.length, size, maxSize, queued,
+				executed.get(), blocked, dropped, errors.get(), (long) lag.getMean(), lag.getValueAtPercentile(99),
+				lag.getMax());
+	}
+
+	private static final class Call {
+
+		final Runnable call;
+
+		final long queuedNanos;
+
+		Call(Runnable call, long queuedNanos) {
+			this.call = call;
+			this.queuedNanos = queuedNanos;
+		}
+	}
+
+	private final class Worker extends Thread {
+
+		private final MessageRing<Call> ring;
+
+		private final Object producerLock = new Object();
+
+		Worker(String name, int capacity, QueueOverflowPolicy policy) {
+			super(name);
+			setDaemon(true);
+			ring = new MessageRing<Call>(capacity, QueueWaitStrategy.Park, policy);
+		}
+
+		void offer(Call c) {
+			synchronized (producerLock) {
+				ring.offer(c);
+			}
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				final Call c = ring.take();
+				if (c == null) {
+					break;
+				}
+				lag.record(System.nanoTime() - c.queuedNanos);
+				try {
+					c.call.run();
+				} catch (Throwable e) {
+					// Keeps the worker, a blocked feed thread would wait on it
+					errors.incrementAndGet();
+					log.error(getName() + " handler failed.", e);
+				}
+				executed.incrementAndGet();
+			}
+			log.info("{} stopped.", getName());
+		}
+	}
+
+	/*
+	 * Registered in place of the handler.
+	 */
+	abstract static class Proxy {
+
+		final HandlerDispatcher dispatcher;
+
+		final Object handler;
+
+		Proxy(HandlerDispatcher dispatcher, Object handler) {
+			this.dispatcher = dispatcher;
+			this.handler = handler;
+			dispatcher.proxy = this;
+		}
+	}
+
+	static final class FeedProxy extends Proxy implements FeedHandler {
+
+		private final FeedHandler h;
+
+		FeedProxy(HandlerDispatcher d, FeedHandler h) {
+			super(d, h);
+			this.h = h;
+		}
+
+		@Override
+		public void onMessage(DdfMessageBase msg) {
+			String symbol = msg instanceof DdfMarketBase ? ((DdfMarketBase) msg).getSymbol() : null;
+			dispatcher.dispatch(symbol, () -> h.onMessage(msg));
+		}
+	}
+
+	static final class MarketEventProxy extends Proxy implements MarketEventHandler {
+
+		private final MarketEventHandler h;
+
+		MarketEventProxy(HandlerDispatcher d, MarketEventHandler h) {
+			super(d, h);
+			this.h = h;
+		}
+
+		@Override
+		public void onEvent(MarketEvent event) {
+			// May be re-used by the DataMaster
+			final MarketEvent e = event.copy();
+			dispatcher.dispatch(e.getSymbol(), () -> h.onEvent(e));
+		}
+	}
+
+	static final class QuoteProxy extends Proxy implements QuoteHandler {
+
+		private final QuoteHandler h;
+
+		QuoteProxy(HandlerDispatcher d, QuoteHandler h) {
+			super(d, h);
+			this.h = h;
+		}
+
+		@Override
+		public void onQuote(Quote quote) {
+			// The cached quote keeps changing
+			final Quote q = (Quote) quote.clone();
+			dispatcher.dispatch(q.getSymbolInfo().getSymbol(), () -> h.onQuote(q));
+		}
+
+		@Override
+		public void onQuote(Quote quote, boolean refreshMessage) {
+			final Quote q = (Quote) quote.clone();
+			dispatcher.dispatch(q.getSymbolInfo().getSymbol(), () -> h.onQuote(q, refreshMessage));
+		}
+
+		@Override
+		public boolean isSnapshotRequest() {
+			return h.isSnapshotRequest();
+		}
+	}
+
+	static final class BookQuoteProxy extends Proxy implements BookQuoteHandler {
+
+		private final BookQuoteHandler h;
+
+		BookQuoteProxy(HandlerDispatcher d, BookQuoteHandler h) {
+			super(d, h);
+			this.h = h;
+		}
+
+		@Override
+		public void onBookQuote(BookQuote bookQuote) {
+			// Copied, the book is updated in place
+			final BookQuote b = bookQuote.copy();
+			dispatcher.dispatch(b.getSymbol(), () -> h.onBookQuote(b));
+		}
+	}
+
+	static final class TradeProxy extends Proxy implements TradeHandler {
+
+		private final TradeHandler h;
+
+		TradeProxy(HandlerDispatcher d, TradeHandler h) {
+			super(d, h);
+			this.h = h;
+		}
+
+		@Override
+		public void onTrade(DdfMarketTrade trade) {
+			dispatcher.dispatch(trade.getSymbol(), () -> h.onTrade(trade));
+		}
+	}
+
+	static final class MinuteBarProxy extends Proxy implements MinuteBarHandler {
+
+		private final MinuteBarHandler h;
+
+		MinuteBarProxy(HandlerDispatcher d, MinuteBarHandler h) {
+			super(d, h);
+			this.h = h;
+		}
+
+		@Override
+		public void onOhlc(Ohlc ohlc) {
+			dispatcher.dispatch(ohlc.getSymbol(), () -> h.onOhlc(ohlc));
+		}
+	}
+
+}
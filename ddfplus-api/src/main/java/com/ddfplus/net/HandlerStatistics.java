@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.net;
+
+import com.ddfplus.api.HandlerExecution;
+
+/**
+ * Snapshot of the counters of a handler not called inline.
+ *
+ * @see DdfClient#getHandlerStatistics()
+ */
+public final class HandlerStatistics {
+
+	private final String name;
+	private final HandlerExecution execution;
+	private final int threads;
+	private final int queueSize;
+	private final int maxQueueSize;
+	private final long queued;
+	private final long executed;
+	private final long blocked;
+	private final long dropped;
+	private final long errors;
+	private final long lagMeanNanos;
+	private final long lagP99Nanos;
+	private final long lagMaxNanos;
+
+	HandlerStatistics(String name, HandlerExecution execution, int threads, int queueSize, int maxQueueSize,
+			long queued, long executed, long blocked, long dropped, long errors, long lagMeanNanos, long lagP99Nanos,
+			long lagMaxNanos) {
+		this.name = name;
+		this.execution = execution;
+		this.threads = threads;
+		this.queueSize = queueSize;
+		this.maxQueueSize = maxQueueSize;
+		this.queued = queued;
+		this.executed = executed;
+		this.blocked = blocked;
+		this.dropped = dropped;
+		this.errors = errors;
+		this.lagMeanNanos = lagMeanNanos;
+		this.lagP99Nanos = lagP99Nanos;
+		this.lagMaxNanos = lagMaxNanos;
+	}
+
+	/**
+	 * @return Handler type and class.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public HandlerExecution getExecution() {
+		return execution;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @return Calls waiting, all threads.
+	 */
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	/**
+	 * @return Largest size a queue has been.
+	 */
+	public int getMaxQueueSize() {
+		return maxQueueSize;
+	}
+
+	/**
+	 * @return Number of calls queued.
+	 */
+	public long getQueued() {
+		return queued;
+	}
+
+	/**
+	 * @return Number of calls made.
+	 */
+	public long getExecuted() {
+		return executed;
+	}
+
+	/**
+	 * @return Number of times the feed thread waited on a full queue.
+	 */
+	public long getBlocked() {
+		return blocked;
+	}
+
+	/**
+	 * @return Number of calls dropped on a full queue.
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * @return Number of calls which threw an exception.
+	 */
+	public long getErrors() {
+		return errors;
+	}
+
+	/**
+	 * @return Mean time from queueing to the start of the call.
+	 */
+	public long getLagMeanNanos() {
+		return lagMeanNanos;
+	}
+
+	public long getLagP99Nanos() {
+		return lagP99Nanos;
+	}
+
+	public long getLagMaxNanos() {
+		return lagMaxNanos;
+	}
+
+	@Override
+	public String toString() {
+		return name + " " + execution + " threads: " + threads + " queue: " + queueSize + " max: " + maxQueueSize
+				+ " executed: " + executed + " dropped: " + dropped + " blocked: " + blocked + " errors: " + errors
+				+ " lag ns mean: " + lagMeanNanos + " p99: " + lagP99Nanos + " max: " + lagMaxNanos;
+	}
+
+}
@@ -6,7 +6,7 @@
  */
 package com.ddfplus.net;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executors;
@@ -106,6 +106,35 @@ abstract class IoChannel extends Thread {
 		return -1;
 	}
 
+	public QueueStatistics getQueueStatistics() {
+		return null;
+	}
+
+	/**
+	 * @return Counters of the connected feed sources, empty if the channel
+	 *         does not listen.
+	 */
+	public List<SourceStatistics> getSourceStatistics() {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * @return Datagram receive counters, null if the channel does not listen
+	 *         on UDP.
+	 */
+	public ReceiveStatistics getReceiveStatistics() {
+		return null;
+	}
+
+	/**
+	 * Called when a message could not be queued with the
+	 * {@link QueueOverflowPolicy#Disconnect} policy. Channels that can
+	 * re-connect should drop the connection.
+	 */
+	protected void onQueueOverflow() {
+		log.error("Message queue overflow, message dropped.");
+	}
+
 	protected void stopCommandThread() {
 		es.shutdownNow();
 	}
@@ -187,7 +216,7 @@ abstract class IoChannel extends Thread {
 		private StringBuilder stopBuf = new StringBuilder();
 		private int numStop = 0;
 		// Used for reconnection
-		private List<String> subscriptionCmdHistory = new ArrayList<String>();
+		private final SubscriptionRegistry subscriptions = new SubscriptionRegistry();
 
 		public CmdThread(BlockingQueue<Cmd> q) {
 			this.q = q;
@@ -222,6 +251,7 @@ abstract class IoChannel extends Thread {
 								goBuf.append(',');
 							}
 							goBuf.append(cmd.getSymbol() + "=" + cmd.getSuffix());
+							subscriptions.go(cmd.getSymbol(), cmd.getSuffix());
 						}
 						// Stop subscription
 						else if (cmd.getCmd().equals("STOP")) {
@@ -230,17 +260,17 @@ abstract class IoChannel extends Thread {
 								stopBuf.append(',');
 							}
 							stopBuf.append(cmd.getSymbol() + "=" + cmd.getSuffix());
+							subscriptions.stop(cmd.getSymbol(), cmd.getSuffix());
 						}
 						// STREAM
 						else if (cmd.getCmd().equals("STR")) {
 							sendBuf.append(cmd.getCmd() + " L " + cmd.getSymbol() + ";");
 							send(sendBuf.toString());
-							subscriptionCmdHistory.add(sendBuf.toString());
+							subscriptions.stream(sendBuf.toString());
 						}
 
 						if (numGo >= COMMAND_AGGREGATION_COUNT) {
 							send(goBuf.toString());
-							subscriptionCmdHistory.add(goBuf.toString());
 							initGoBuf();
 						}
 						if (numStop >= COMMAND_AGGREGATION_COUNT) {
@@ -259,7 +289,6 @@ abstract class IoChannel extends Thread {
 			 */
 			if (numGo > 0) {
 				send(goBuf.toString());
-				subscriptionCmdHistory.add(goBuf.toString());
 				initGoBuf();
 			}
 			if (numStop > 0) {
@@ -270,10 +299,10 @@ abstract class IoChannel extends Thread {
 		}
 
 		/*
-		 * Resends subscription requests on reconnection.
+		 * Resends the current subscriptions on reconnection.
 		 */
 		public void resendSubscriptionRequests() {
-			for (String cmd : subscriptionCmdHistory) {
+			for (String cmd : subscriptions.commands()) {
 				send(cmd);
 			}
 		}
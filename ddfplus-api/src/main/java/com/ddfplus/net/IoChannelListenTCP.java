@@ -6,21 +6,30 @@
  */
 package com.ddfplus.net;
 
-import java.io.BufferedInputStream;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.ddfplus.util.ASCII;
-
 /**
  * DDF TCP Listen server.
  * 
  * Listens for in bound TCP DDF connections from the Barchart servers and
- * callback message handlers.
+ * callback message handlers. Any number of feed connections are served by one
+ * selector thread, each framed in bulk with its own {@link MessageFramer}.
+ * Messages of all sources go to one queue, the counters are kept per source,
+ * see {@link #getSourceStatistics()}.
  * 
  *
  */
@@ -29,29 +38,35 @@ class IoChannelListenTCP extends IoChannel {
 	/** XXX remember to allocate kernel buffers */
 	private static final int SO_BUF_SIZE = 8 * 1024 * 1024;
 
-	/** XXX if no time stamp in 20 seconds, force disconnect */
+	/** XXX if no data in 20 seconds, force disconnect */
 	static final int CLIENT_TIMEOUT = 20 * 1000;
 
-	/** maximum ddf message size */
+	/** initial framing buffer, grows for larger messages */
 	static final int PACKET_BUFFER = 64 * 1024;
 
-	/** ddf time stamp */
-	static final int TIME_STAMP_SIZE = 9;
-
-	/** end of stream indicator */
-	static final int EOF = -1;
+	/** select wake up, to check the client timeouts */
+	private static final long SELECT_TIMEOUT_MS = 1000;
 
 	//
 
 	private static final Logger log = LoggerFactory.getLogger(IoChannelListenTCP.class);
 
-	private final XQueueTCP queueThread;
+	private final XQueue queueThread;
+
+	private final Map<Integer, Source> sources = new ConcurrentHashMap<Integer, Source>();
+
+	private int nextSourceId;
+
+	private volatile boolean shutdown;
+
+	private volatile Selector selector;
 
 	public IoChannelListenTCP(final Connection connection) {
 
 		super(connection);
 
-		this.queueThread = new XQueueTCP(this);
+		/* TCP listener feeds individual messages */
+		this.queueThread = connection.createQueue("XQueue for " + connection.getId(), connection::newQueueMessage);
 
 	}
 
@@ -65,9 +80,23 @@ class IoChannelListenTCP extends IoChannel {
 		return queueThread.getSize();
 	}
 
+	@Override
+	public QueueStatistics getQueueStatistics() {
+		return queueThread.getStatistics();
+	}
+
+	@Override
+	public List<SourceStatistics> getSourceStatistics() {
+		List<SourceStatistics> l = new ArrayList<SourceStatistics>(sources.size());
+		for (Source s : sources.values()) {
+			l.add(new SourceStatistics(s.id, s.remote, s.connected, s.lastReceived, s.messages, s.bytes));
+		}
+		return l;
+	}
+
 	static void delay(long millis) {
 		try {
-			Thread.sleep(1 * 1000);
+			Thread.sleep(millis);
 		} catch (InterruptedException e) {
 			log.debug("terminated");
 		}
@@ -76,229 +105,164 @@ class IoChannelListenTCP extends IoChannel {
 	@Override
 	public void run() {
 		/*
-		 * Since this class is used for servers (not clients), there isn't a
-		 * call to disconnect. Hence ... while(true)
+		 * Since this class is used for servers (not clients), run until
+		 * shutdown.
 		 */
-		while (true) {
+		while (!shutdown) {
 			try {
 				runCore();
 			} catch (Throwable e) {
+				if (shutdown) {
+					break;
+				}
 				log.error("listener run core failed", e);
 				delay(1 * 1000);
 			}
 		}
+		log.info("listener stopped");
 	}
 
-	private void runCore() throws Exception {
+	private void runCore() throws IOException {
 
 		log.info("listener start; local=" + //
 				connection.primaryServer + ":" + connection.port);
 
-		// local connection listener
-		final ServerSocket server = new ServerSocket(connection.port, 0, connection.primaryServer);
+		try (Selector sel = Selector.open(); ServerSocketChannel server = ServerSocketChannel.open()) {
+			selector = sel;
+			server.bind(new InetSocketAddress(connection.primaryServer, connection.port));
+			server.configureBlocking(false);
+			server.register(sel, SelectionKey.OP_ACCEPT);
+
+			while (!shutdown) {
+				sel.select(SELECT_TIMEOUT_MS);
+				final Iterator<SelectionKey> it = sel.selectedKeys().iterator();
+				while (it.hasNext()) {
+					final SelectionKey key = it.next();
+					it.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept(server, sel);
+					} else if (key.isReadable()) {
+						read((Source) key.attachment());
+					}
+				}
+				closeInactive();
+			}
+		} finally {
+			for (Source s : sources.values()) {
+				close(s);
+			}
+		}
 
-		// incoming remote connection
-		Socket client = null;
+	}
 
+	private void accept(final ServerSocketChannel server, final Selector sel) throws IOException {
+		final SocketChannel client = server.accept();
+		if (client == null) {
+			return;
+		}
+		final Source s = new Source(++nextSourceId, client);
 		try {
-
-			client = server.accept();
-
-			log.info("listener accept; remote=" + //
-					client.getInetAddress() + ":" + client.getPort());
-
-			client.setSoTimeout(CLIENT_TIMEOUT);
-			log.info("listener inactivity timeout : {}", CLIENT_TIMEOUT);
-
+			client.configureBlocking(false);
 			final int request = SO_BUF_SIZE;
-			client.setReceiveBufferSize(request);
-			final int actual = client.getReceiveBufferSize();
+			client.setOption(StandardSocketOptions.SO_RCVBUF, request);
+			final int actual = client.getOption(StandardSocketOptions.SO_RCVBUF);
 			if (actual >= request) {
 				log.info("listener allocated receive buffer : {}", actual);
 			} else {
 				log.error("listener failed to allocate buffer; " + "request: {}  actual:{} ;", request, actual);
 			}
+			client.register(sel, SelectionKey.OP_READ, s);
+		} catch (IOException e) {
+			log.warn("listener accept failed; remote=" + s.remote, e);
+			client.close();
+			return;
+		}
+		sources.put(s.id, s);
+		log.info("listener accept; source=" + s.id + " remote=" + s.remote);
+	}
 
-			final BufferedInputStream input = new BufferedInputStream(client.getInputStream());
-
-			final Machine machine = new Machine(input, connection);
-
-			log.info("MACHINE INIT");
-
-			machine.run();
-
-			log.info("MACHINE DONE");
-
-			log.info("listener finished; remote=" + //
-					client.getInetAddress() + ":" + client.getPort());
-
-		} catch (Throwable e) {
-			log.warn("listener client session failed", e);
-		} finally {
-			if (client != null) {
-				try {
-					client.close();
-				} catch (Exception e) {
-					log.error("unexpected", e);
+	private void read(final Source s) {
+		try {
+			final int n = s.framer.read(s.channel);
+			if (n < 0) {
+				log.warn("received end of stream; source=" + s.id + " remote=" + s.remote);
+				close(s);
+				return;
+			}
+			s.bytes += n;
+			s.lastReceived = System.currentTimeMillis();
+
+			byte[] message;
+			while ((message = s.framer.next()) != null) {
+				if (message[0] != MessageFramer.SOH) {
+					// Not a DDF message
+					continue;
+				}
+				s.messages++;
+				if (!queueThread.add(message)) {
+					log.error("message queue overflow, dropping client session; source=" + s.id);
+					close(s);
+					return;
 				}
 			}
+		} catch (IOException e) {
+			log.warn("listener client session failed; source=" + s.id + " remote=" + s.remote, e);
+			close(s);
 		}
+	}
 
-		if (server != null) {
-			try {
-				server.close();
-			} catch (Exception e) {
-				log.error("unexpected", e);
+	private void closeInactive() {
+		final long now = System.currentTimeMillis();
+		for (Source s : sources.values()) {
+			if (now - s.lastReceived > CLIENT_TIMEOUT) {
+				log.warn("listener inactivity timeout; source=" + s.id + " remote=" + s.remote);
+				close(s);
 			}
 		}
-
 	}
 
-	/** state of ddf stream decoder */
-	private enum State {
-
-		/** initialize */
-		S0_INIT, //
-
-		/** received ddf message start */
-		S1_DDF_SOH, //
-
-		/** received ddf message finish */
-		S2_DDF_ETX, //
-
-		/** received "century" i.e. time stamp marker */
-		S3_DDF_DC4, //
-
-		/** decoder logic error; should not happen */
-		S4_ERROR, //
-
-	}
-
-	/** thread safe, used in single thread */
-	private class Machine {
-
-		private final ByteBuffer buffer = ByteBuffer.allocate(PACKET_BUFFER);
-
-		private final byte[] array = buffer.array();
-
-		private final BufferedInputStream input;
-
-		@SuppressWarnings("unused")
-		private final Connection connector;
-
-		Machine(final BufferedInputStream input, final Connection connector) {
-			this.input = input;
-			this.connector = connector;
-
-		}
-
-		// send received message array
-		void fire() {
-
-			final int start = 0;
-			final int finish = buffer.position();
-			final int length = finish - start;
-
-			/* queue-less */
-
-			// final String message = new String(array, start, finish,
-			// ASCII.ASCII_CHARSET);
-			// connector.handleMessage(message);
-
-			/* uses queue */
-
-			final byte[] message = new byte[length];
-			System.arraycopy(array, start, message, start, length);
-			queueThread.add(message);
-
+	private void close(final Source s) {
+		sources.remove(s.id);
+		try {
+			s.channel.close();
+		} catch (IOException e) {
+			log.error("unexpected", e);
 		}
+		log.info("listener finished; source=" + s.id + " remote=" + s.remote + " messages=" + s.messages);
+	}
 
-		/** end of time stamp counter */
-		private int ender;
+	/** one feed connection, used by the selector thread */
+	private static final class Source {
 
-		/** main loop; will exit only on EOF */
-		void run() throws Exception {
+		final int id;
 
-			State state = State.S0_INIT;
+		final SocketChannel channel;
 
-			STREAM: while (true) {
+		final String remote;
 
-				final int result = input.read();
+		final MessageFramer framer = new MessageFramer(PACKET_BUFFER);
 
-				if (result == EOF) {
-					log.warn("received end of stream; machine will exit now");
-					break STREAM;
-				}
+		final long connected = System.currentTimeMillis();
 
-				final byte alpha = (byte) result;
-
-				switch (state) {
-
-				case S0_INIT:
-					switch (alpha) {
-					case ASCII.SOH:
-						/* new message start */
-						buffer.clear();
-						buffer.put(alpha);
-						state = State.S1_DDF_SOH;
-						continue STREAM;
-					default:
-						/* skip all till find SOH */
-						continue STREAM;
-					}
+		volatile long lastReceived = connected;
 
-				case S1_DDF_SOH:
-					switch (alpha) {
-					case ASCII.ETX:
-						/* found end of this message */
-						state = State.S2_DDF_ETX;
-						buffer.put(alpha);
-						continue STREAM;
-					default:
-						/* keep reading till find ETX */
-						buffer.put(alpha);
-						continue STREAM;
-					}
+		volatile long messages;
 
-				case S2_DDF_ETX:
-					switch (alpha) {
-					case ASCII.SOH:
-						/* next message start; end-to-end, no time stamp */
-						fire();
-						buffer.clear();
-						buffer.put(alpha);
-						state = State.S1_DDF_SOH;
-						continue STREAM;
-					case ASCII.DC4:
-						/* this message has stamp suffix; read fixed size */
-						buffer.put(alpha);
-						ender = 1;
-						state = State.S3_DDF_DC4;
-						continue STREAM;
-					default:
-						log.error("machine reset: wrong alpha : {}", alpha);
-						state = State.S0_INIT;
-						continue STREAM;
-					}
-
-				case S3_DDF_DC4:
-					/* read fixed size time stamp */
-					buffer.put(alpha);
-					ender++;
-					if (ender == TIME_STAMP_SIZE) {
-						fire();
-						state = State.S0_INIT;
-					}
-					continue STREAM;
-
-				default:
-					log.error("machine reset: wrong state : {}", state);
-					state = State.S0_INIT;
-					continue STREAM;
-				}
+		volatile long bytes;
 
+		Source(final int id, final SocketChannel channel) {
+			this.id = id;
+			this.channel = channel;
+			String r;
+			try {
+				r = String.valueOf(channel.getRemoteAddress());
+			} catch (IOException e) {
+				r = "unknown";
 			}
-
+			this.remote = r;
 		}
 
 	}
@@ -306,6 +270,11 @@ class IoChannelListenTCP extends IoChannel {
 	@Override
 	public void disconnectAndShutdown() {
 		log.info("listener disconnect");
+		shutdown = true;
+		final Selector sel = selector;
+		if (sel != null) {
+			sel.wakeup();
+		}
 	}
 
 	@Override
@@ -6,30 +6,99 @@
  */
 package com.ddfplus.net;
 
-import java.net.DatagramPacket;
+import java.io.IOException;
 import java.net.DatagramSocket;
+import java.net.Inet4Address;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.ddfplus.api.ConnectionEvent;
+import com.ddfplus.api.ConnectionEventType;
+
 /**
  * DDF UDP Listen Server.
  * 
  * Receives DDF UDP packets and calls the message handlers.
+ * <p>
+ * Every selector wake up drains all readable datagrams into a ring of pooled
+ * receive buffers, then the DDF messages are framed in place and copied once
+ * into the queued <code>byte[]</code>. See {@link #getReceiveStatistics()}
+ * for the counters.
+ * <p>
+ * Lost datagrams are detected by a {@link GapDetector} and reported as a
+ * {@link ConnectionEventType#DATA_GAP} event, so the client can refresh the
+ * affected quotes.
  */
 class IoChannelListenUDP extends IoChannel {
 
 	final static Logger log = LoggerFactory.getLogger(IoChannelListenUDP.class);
 
+	/** datagrams drained per wake up */
+	static final int RING_SIZE = 64;
+
+	private static final long SELECT_TIMEOUT_MS = 1000;
+
+	private static final byte SOH = 1;
+
+	private static final byte ETX = 3;
+
+	private static final byte DC4 = 20;
+
+	private static final String[] PROC_NET_UDP = { "/proc/net/udp", "/proc/net/udp6" };
+
 	/**
 	 */
-	private final XQueueUDP queueThread;
+	private final XQueue queueThread;
+
+	private final ByteBuffer[] ring = new ByteBuffer[RING_SIZE];
+
+	private final SocketAddress[] ringSources = new SocketAddress[RING_SIZE];
+
+	private final GapDetector gaps = new GapDetector();
+
+	/*
+	 * Counters, written by the receive thread only
+	 */
+	private volatile long packets;
+	private volatile long bytes;
+	private volatile long messages;
+	private volatile long wakeups;
+	private volatile long queueDrops;
+	private volatile long packetRate;
+	private volatile long byteRate;
+
+	private long rateStart;
+	private long ratePackets;
+	private long rateBytes;
+
+	private volatile int localPort;
+
+	private volatile boolean shutdown;
+
+	private volatile Selector selector;
 
 	public IoChannelListenUDP(Connection connection) {
 		super(connection);
-		queueThread = new XQueueUDP(this);
+		/* messages are split by the receive thread */
+		queueThread = connection.createQueue("XQueue for " + connection.getId(), connection::newQueueMessage);
+		for (int i = 0; i < RING_SIZE; i++) {
+			ring[i] = ByteBuffer.allocateDirect(NetConstants.UDP_RECV_PACKET_SIZE);
+		}
 	}
 
 	@Override
@@ -43,72 +112,188 @@ class IoChannelListenUDP extends IoChannel {
 	}
 
 	@Override
-	public void run() {
-
-		final byte[] array = new byte[NetConstants.UDP_RECV_PACKET_SIZE];
+	public QueueStatistics getQueueStatistics() {
+		return queueThread.getStatistics();
+	}
 
-		final DatagramPacket packet = new DatagramPacket(array, NetConstants.UDP_RECV_PACKET_SIZE);
+	@Override
+	public ReceiveStatistics getReceiveStatistics() {
+		return new ReceiveStatistics(packets, bytes, messages, wakeups, readReceiveBufferDrops(localPort),
+				queueDrops, packetRate, byteRate, gaps.getBeaconGaps(), gaps.getDropGaps(), gaps.getLastGapMillis());
+	}
 
-		DatagramSocket socket = null;
+	@Override
+	public void run() {
 
 		/* use socket loop to guard against intermittent hardware disconnect */
 
-		socketLoop: while (true) {
-			try {
+		while (!shutdown) {
+			try (Selector sel = Selector.open(); DatagramChannel channel = makeChannel()) {
 
-				socket = makeSocket();
+				selector = sel;
+				localPort = ((InetSocketAddress) channel.getLocalAddress()).getPort();
 
 				log.info("made socket; " + connection.primaryServer + ":" + connection.port);
 
+				channel.register(sel, SelectionKey.OP_READ);
+				rateStart = System.currentTimeMillis();
+
 				/*
-				 * Since this class is used for servers (not clients), there
-				 * isn't a call to disconnect. Hence ... while(true)
+				 * Since this class is used for servers (not clients), run
+				 * until shutdown.
 				 */
-
-				while (true) {
-
-					packet.setData(array);
-
+				while (!shutdown) {
 					// Block here waiting for UDP packets
-					socket.receive(packet);
-
-					byte[] ba = new byte[packet.getLength()];
-
-					System.arraycopy(array, 0, ba, 0, ba.length);
-
-					queueThread.add(ba);
-
+					if (sel.select(SELECT_TIMEOUT_MS) > 0) {
+						sel.selectedKeys().clear();
+						wakeups++;
+						int n;
+						do {
+							n = drain(channel);
+							for (int i = 0; i < n; i++) {
+								frame(ring[i], ringSources[i]);
+							}
+						} while (n == RING_SIZE);
+					}
+					updateRates();
 				}
 			} catch (Exception e) {
+				if (shutdown) {
+					break;
+				}
 				log.error("receive failed; " + connection.primaryServer + ":" + connection.port);
 				log.error("", e);
+				// do not hang app by spinning
+				sleep(1 * 1000);
 			}
+		}
+		log.info("listener stopped");
 
-			try {
-				// clean up
-				if (socket != null) {
-					socket.close();
-				}
-			} catch (Exception e) {
-				log.error("close failed", e);
+	}
+
+	/*
+	 * Receives datagrams into the ring until the socket has none left or the
+	 * ring is full, returns the number received.
+	 */
+	private int drain(DatagramChannel channel) throws IOException {
+		int n = 0;
+		while (n < RING_SIZE) {
+			ByteBuffer b = ring[n];
+			b.clear();
+			SocketAddress source = channel.receive(b);
+			if (source == null) {
+				break;
 			}
+			ringSources[n] = source;
+			b.flip();
+			packets++;
+			bytes += b.remaining();
+			n++;
+		}
+		return n;
+	}
 
-			try {
-				// do not hang app by spinning
-				sleep(1 * 1000);
-			} catch (Exception e) {
-				log.error("unexpected", e);
+	/*
+	 * Splits a datagram into DDF messages, same rules as
+	 * IoChannel.distributeMessage() but without copying the datagram first.
+	 */
+	void frame(ByteBuffer b, SocketAddress source) throws IOException {
+		final int limit = b.limit();
+		int start = b.position();
+		boolean isStart = true;
+		int i;
+		for (i = start; i < limit; i++) {
+			byte c = b.get(i);
+			if (isStart) {
+				if (i > start) {
+					queue(b, start, i, source);
+					start = i;
+				}
+				if (c == SOH) {
+					isStart = false;
+				}
+			} else if (c == ETX) {
+				if (limit > i + 9 && b.get(i + 1) == DC4) {
+					i += 9;
+				}
+				isStart = true;
 			}
+		}
+		if (i > start) {
+			queue(b, start, i, source);
+		}
+	}
 
-			continue socketLoop;
+	private void queue(ByteBuffer b, int start, int end, SocketAddress source) throws IOException {
+		byte[] message = new byte[end - start];
+		b.position(start);
+		b.get(message);
+		messages++;
+		if (GapDetector.isBeacon(message) && gaps.beacon(source, message, System.currentTimeMillis())) {
+			gapDetected("beacon gap from " + source);
+		}
+		if (!queueThread.add(message)) {
+			queueDrops++;
+			throw new IOException("message queue overflow, re-opening socket");
+		}
+	}
 
+	private void updateRates() {
+		long now = System.currentTimeMillis();
+		long elapsed = now - rateStart;
+		if (elapsed >= 1000) {
+			packetRate = (packets - ratePackets) * 1000 / elapsed;
+			byteRate = (bytes - rateBytes) * 1000 / elapsed;
+			ratePackets = packets;
+			rateBytes = bytes;
+			rateStart = now;
+			if (gaps.drops(readReceiveBufferDrops(localPort), now)) {
+				gapDetected("receive buffer drops");
+			}
 		}
+	}
+
+	private void gapDetected(String reason) {
+		log.warn("datagrams lost, " + reason + "; " + connection.primaryServer + ":" + connection.port);
+		connection.handleEvent(new ConnectionEvent(ConnectionEventType.DATA_GAP));
+	}
 
+	/*
+	 * Kernel drops of the sockets bound to the port, Linux only.
+	 */
+	static long readReceiveBufferDrops(int port) {
+		if (port <= 0) {
+			return -1;
+		}
+		String hexPort = String.format(":%04X", port);
+		long drops = -1;
+		for (String file : PROC_NET_UDP) {
+			Path p = Paths.get(file);
+			if (!Files.isReadable(p)) {
+				continue;
+			}
+			try {
+				List<String> lines = Files.readAllLines(p);
+				for (int i = 1; i < lines.size(); i++) {
+					String[] f = lines.get(i).trim().split("\\s+");
+					if (f.length > 12 && f[1].endsWith(hexPort)) {
+						drops = Math.max(drops, 0) + Long.parseLong(f[f.length - 1]);
+					}
+				}
+			} catch (IOException | NumberFormatException e) {
+				log.debug("can not read " + file, e);
+			}
+		}
+		return drops;
 	}
 
 	@Override
 	public void disconnectAndShutdown() {
-		;
+		shutdown = true;
+		final Selector sel = selector;
+		if (sel != null) {
+			sel.wakeup();
+		}
 	}
 
 	@Override
@@ -116,40 +301,64 @@ class IoChannelListenUDP extends IoChannel {
 		// not required, this is a server
 	}
 
-	private DatagramSocket makeSocket() throws Exception {
+	private DatagramChannel makeChannel() throws IOException {
 
-		DatagramSocket socket;
+		final boolean multicast = connection.primaryServer.isMulticastAddress();
 
-		if (connection.primaryServer.isMulticastAddress()) {
+		final DatagramChannel channel = DatagramChannel.open(connection.primaryServer instanceof Inet4Address
+				? StandardProtocolFamily.INET : StandardProtocolFamily.INET6);
 
-			socket = new MulticastSocket(connection.port);
+		try {
+			channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
 
-			final MulticastSocket socketMC = (MulticastSocket) socket;
+			channel.setOption(StandardSocketOptions.SO_RCVBUF, NetConstants.UDP_RECV_BUFFER_SIZE);
 
-			if (connection.intf != null) {
-				socketMC.setInterface(connection.intf);
+			if (multicast) {
+				channel.bind(new InetSocketAddress(connection.port));
+				channel.join(connection.primaryServer, multicastInterface(channel));
+			} else {
+				channel.bind(new InetSocketAddress(connection.primaryServer, connection.port));
 			}
 
-			socketMC.joinGroup(connection.primaryServer);
-
-		} else {
-
-			socket = new DatagramSocket(null);
-
-			socket.setReuseAddress(true);
-
-			InetSocketAddress socketAddress = new InetSocketAddress(connection.primaryServer, connection.port);
-
-			socket.bind(socketAddress);
-
+			channel.configureBlocking(false);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
 		}
 
-		socket.setReceiveBufferSize(NetConstants.UDP_RECV_BUFFER_SIZE);
+		log.info("DDF UDP Listener getReceiveBufferSize(): " + channel.getOption(StandardSocketOptions.SO_RCVBUF));
 
-		log.info("DDF UDP Listener getReceiveBufferSize(): " + socket.getReceiveBufferSize());
+		return channel;
 
-		return socket;
+	}
 
+	/*
+	 * The configured interface, else the socket's default multicast interface,
+	 * else the interface of the route to the group as MulticastSocket.joinGroup
+	 * used.
+	 */
+	private NetworkInterface multicastInterface(DatagramChannel channel) throws IOException {
+		if (connection.intf != null) {
+			NetworkInterface ni = NetworkInterface.getByInetAddress(connection.intf);
+			if (ni == null) {
+				throw new IOException("no network interface for " + connection.intf);
+			}
+			return ni;
+		}
+		NetworkInterface ni = channel.getOption(StandardSocketOptions.IP_MULTICAST_IF);
+		if (ni != null) {
+			return ni;
+		}
+		try (DatagramSocket probe = new DatagramSocket()) {
+			// Connecting a datagram socket only selects the route, nothing is sent
+			probe.connect(connection.primaryServer, connection.port);
+			final InetAddress local = probe.getLocalAddress();
+			ni = local == null || local.isAnyLocalAddress() ? null : NetworkInterface.getByInetAddress(local);
+		}
+		if (ni == null) {
+			throw new IOException("no route to " + connection.primaryServer + ", configure the network interface");
+		}
+		return ni;
 	}
 
 }
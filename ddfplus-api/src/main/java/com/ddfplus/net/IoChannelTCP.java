@@ -6,31 +6,40 @@
  */
 package com.ddfplus.net;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.net.InetAddress;
-import java.net.Socket;
+import java.net.InetSocketAddress;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.ddfplus.api.ConnectionEventType;
+import com.ddfplus.metrics.LatencyRecorder;
+import com.ddfplus.metrics.LatencyStage;
+import com.ddfplus.util.ASCII;
 
 /**
  * DDF TCP Client.
  * 
- * Connects via TCP to the DDF Servers.
- *
+ * Connects via TCP to the DDF Servers. Messages are framed directly from the
+ * socket buffer, see {@link MessageFramer}.
+ * 
  */
 class IoChannelTCP extends IoChannel {
 
 	private static int _nextId = 1;
 	private int _id = 0;
-	private Socket socket = null;
-	private BufferedReader in = null;
-	private PrintWriter out = null;
+	private volatile SocketChannel socket = null;
+	private volatile Selector selector = null;
+	private MessageFramer framer = null;
+	// Time of the socket read of the last framed message, 0 if not measured
+	private long receivedNanos;
+	private final Object writeLock = new Object();
 	private AtomicBoolean bDoStop = new AtomicBoolean(false);
 	private boolean reconnection;
 	private InetAddress currentServerAddress;
@@ -61,26 +70,30 @@ class IoChannelTCP extends IoChannel {
 					// Block here waiting for messages
 					while (isRunning) {
 
-						String line = null;
+						byte[] message = null;
 						try {
-							line = in.readLine();
+							message = readMessage();
 						} catch (SocketTimeoutException ste) {
 							log.info("[_id] read timeout, will reconnect.");
 							isRunning = false;
+							continue;
 						}
 
-						if (line == null) {
+						if (message == null) {
 							log.info("Received end of stream, disconnected from: " + currentServerAddress);
 							isRunning = false;
-						} else if (line.trim().isEmpty()) {
+						} else if (isBlank(message)) {
 							continue;
-						} else if (line.startsWith(JerqProtocol.JERQ_STOPPED_STREAM)) {
-							log.warn("Server disconnected, connection will be re-established.");
-							isRunning = false;
-						} else if (line.startsWith(JerqProtocol.JERQ_INFO_START)) {
-							log.info("Server info: " + line);
+						} else if (message[0] == JerqProtocol.JERQ_INFO_START_BYTE) {
+							String line = new String(message, ASCII.ASCII_CHARSET);
+							if (line.startsWith(JerqProtocol.JERQ_STOPPED_STREAM)) {
+								log.warn("Server disconnected, connection will be re-established.");
+								isRunning = false;
+							} else {
+								log.info("Server info: " + line);
+							}
 						} else {
-							connection.handleMessage(line);
+							connection.handleMessage(message, receivedNanos);
 						}
 					} // end read loop
 
@@ -91,14 +104,7 @@ class IoChannelTCP extends IoChannel {
 				}
 
 				// Some type of socket error, fall through to re-connection
-				if (socket != null) {
-					try {
-						socket.close();
-					} catch (IOException io) {
-						log.error(logPrefix + " Socket close issue: " + io);
-					}
-				}
-				socket = null;
+				closeSocket();
 			}
 
 			// We are disconnected
@@ -126,12 +132,32 @@ class IoChannelTCP extends IoChannel {
 
 	@Override
 	protected void sendCommand(String cmd) {
-		if (out != null) {
-			out.print(cmd + "\n");
-			out.flush();
+		final SocketChannel s = socket;
+		if (s == null) {
+			return;
+		}
+		ByteBuffer bb = ByteBuffer.wrap((cmd + "\n").getBytes(ASCII.ASCII_CHARSET));
+		synchronized (writeLock) {
+			try {
+				while (bb.hasRemaining()) {
+					if (s.write(bb) == 0) {
+						// Send buffer full, the channel is non blocking
+						Thread.yield();
+					}
+				}
+			} catch (IOException e) {
+				log.error(logPrefix + " send command failed: " + e);
+			}
 		}
 	}
 
+	@Override
+	protected void onQueueOverflow() {
+		// Called on this thread, exits the read loop and re-connects
+		log.error(logPrefix + " Message queue overflow, disconnecting from " + currentServerAddress);
+		isRunning = false;
+	}
+
 	@Override
 	public void disconnectAndShutdown() {
 		bDoStop.set(true);
@@ -139,6 +165,50 @@ class IoChannelTCP extends IoChannel {
 		disconnectFromServer();
 	}
 
+	/*
+	 * Returns the next message, null on end of stream. Waits up to the read
+	 * timeout for data.
+	 */
+	private byte[] readMessage() throws IOException {
+		final MessageFramer framer = this.framer;
+		final Selector sel = selector;
+		final SocketChannel s = socket;
+		if (framer == null || sel == null || s == null) {
+			return null;
+		}
+		final LatencyRecorder latency = connection.getLatencyRecorder();
+		while (true) {
+			byte[] message = framer.next();
+			if (message != null) {
+				if (latency != null && receivedNanos != 0) {
+					latency.record(LatencyStage.FRAMING, receivedNanos);
+				}
+				return message;
+			}
+			if (sel.select(socketReadTimeOutMs) == 0) {
+				if (bDoStop.get()) {
+					// Woken up by disconnectAndShutdown()
+					return null;
+				}
+				throw new SocketTimeoutException("No data for " + socketReadTimeOutMs + " ms");
+			}
+			sel.selectedKeys().clear();
+			if (framer.read(s) < 0) {
+				return null;
+			}
+			receivedNanos = latency != null ? latency.now() : 0L;
+		}
+	}
+
+	private static boolean isBlank(byte[] message) {
+		for (byte b : message) {
+			if (b > ' ') {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	private boolean connectToServer() {
 
 		boolean isSuccess = false;
@@ -161,16 +231,22 @@ class IoChannelTCP extends IoChannel {
 
 				log.warn("[INF " + _id + "] Connecting via TCP to " + currentServerAddress + ":" + connection.port);
 
-				socket = new Socket(currentServerAddress, connection.port);
+				int receiveBufferSize = connection.getReceiveBufferSize();
+				socket = SocketChannel.open();
+				socket.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+				socket.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				socket.connect(new InetSocketAddress(currentServerAddress, connection.port));
+				socket.configureBlocking(false);
+				selector = Selector.open();
+				socket.register(selector, SelectionKey.OP_READ);
 				socketReadTimeOutMs = createReadTimeoutMs();
-				socket.setSoTimeout(socketReadTimeOutMs);
-				socket.setTcpNoDelay(true);
 
-				in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+				framer = new MessageFramer(receiveBufferSize);
 
 				log.info("[INF " + _id + " tid: " + Thread.currentThread().getId() + "] Connected to "
-						+ currentServerAddress + ":" + connection.port + " localAddr: " + socket.getLocalAddress() + ":"
-						+ socket.getLocalPort() + " readTimeOutMs: " + socketReadTimeOutMs);
+						+ currentServerAddress + ":" + connection.port + " localAddr: " + socket.getLocalAddress()
+						+ " readTimeOutMs: " + socketReadTimeOutMs + " receiveBufferSize: "
+						+ socket.getOption(StandardSocketOptions.SO_RCVBUF));
 
 				connState = ConnectionState.Connected;
 				connection.handleEvent(makeConnectionEvent(ConnectionEventType.CONNECTED, reconnection));
@@ -184,7 +260,7 @@ class IoChannelTCP extends IoChannel {
 				 * (using JERQP) +++"
 				 */
 				while (!isDone) {
-					String line = in.readLine();
+					String line = readLine();
 					if (line == null) {
 						isDone = true;
 					} else if (line.startsWith("+++")) {
@@ -192,8 +268,6 @@ class IoChannelTCP extends IoChannel {
 					}
 				}
 
-				out = new PrintWriter(socket.getOutputStream());
-
 				// Send Login Command
 				String command = "LOGIN " + connection.username + ":" + connection.password + " VERSION="
 						+ connection.getVersion();
@@ -202,7 +276,7 @@ class IoChannelTCP extends IoChannel {
 				}
 				enqueueCommand(command);
 
-				String line = in.readLine();
+				String line = readLine();
 
 				log.info("line={}", line);
 
@@ -230,30 +304,7 @@ class IoChannelTCP extends IoChannel {
 			}
 
 			if (!isSuccess) {
-				if (in != null) {
-					try {
-						in.close();
-					} catch (Exception e) {
-						;
-					}
-				}
-				in = null;
-				if (out != null) {
-					try {
-						out.close();
-					} catch (Exception e) {
-						;
-					}
-				}
-				out = null;
-				if (socket != null) {
-					try {
-						socket.close();
-					} catch (Exception e) {
-						;
-					}
-				}
-				socket = null;
+				closeSocket();
 				connState = ConnectionState.NotConnected;
 			}
 		}
@@ -261,6 +312,30 @@ class IoChannelTCP extends IoChannel {
 		return isSuccess;
 	}
 
+	private String readLine() throws IOException {
+		byte[] message = readMessage();
+		return message == null ? null : new String(message, ASCII.ASCII_CHARSET);
+	}
+
+	private void closeSocket() {
+		framer = null;
+		if (selector != null) {
+			try {
+				selector.close();
+			} catch (IOException ignore) {
+			}
+		}
+		selector = null;
+		if (socket != null) {
+			try {
+				socket.close();
+			} catch (IOException io) {
+				log.error(logPrefix + " Socket close issue: " + io);
+			}
+		}
+		socket = null;
+	}
+
 	private void disconnectFromServer() {
 
 		synchronized (connection) {
@@ -284,6 +359,9 @@ class IoChannelTCP extends IoChannel {
 				}
 			}
 			socket = null;
+			if (selector != null) {
+				selector.wakeup();
+			}
 			log.info("[INF " + _id + "] JerqTCPListener Closed.");
 		}
 	}
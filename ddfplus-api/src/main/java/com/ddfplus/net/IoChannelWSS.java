@@ -6,8 +6,8 @@
  */
 package com.ddfplus.net;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.Reader;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
@@ -37,7 +37,13 @@ import com.ddfplus.util.ASCII;
  */
 class IoChannelWSS extends IoChannel {
 
-	private static int READ_BUF_SIZE = 2000000;
+	private static final int FRAMER_BUF_SIZE = 64 * 1024;
+
+	private static final int MAX_REFRESH_SIZE = 2000000;
+
+	private static final byte[] QUOTE_START = "<QUOTE ".getBytes(ASCII.ASCII_CHARSET);
+
+	private static final byte[] QUOTE_END = "</QUOTE>".getBytes(ASCII.ASCII_CHARSET);
 
 	private static final String WS_PREFIX = "ws://";
 
@@ -59,7 +65,7 @@ class IoChannelWSS extends IoChannel {
 
 	private ClientEndpointConfig clientEndpointConfig;
 
-	private WssMessageTextStreamHandler messageHandler;
+	private WssMessageHandler messageHandler;
 
 	private boolean reconnection;
 
@@ -163,7 +169,7 @@ class IoChannelWSS extends IoChannel {
 
 		clientEndpointConfig = ClientEndpointConfig.Builder.create().build();
 
-		messageHandler = new WssMessageTextStreamHandler();
+		messageHandler = new WssMessageHandler();
 
 		endpoint = new JerqWssEndPoint(messageHandler);
 
@@ -205,10 +211,10 @@ class IoChannelWSS extends IoChannel {
 
 	private class JerqWssEndPoint extends Endpoint {
 
-		private WssMessageTextStreamHandler handler;
+		private WssMessageHandler handler;
 		private Session session;
 
-		public JerqWssEndPoint(WssMessageTextStreamHandler messageHandler) {
+		public JerqWssEndPoint(WssMessageHandler messageHandler) {
 			this.handler = messageHandler;
 		}
 
@@ -248,164 +254,39 @@ class IoChannelWSS extends IoChannel {
 		}
 	}
 
-	private class WssMessageTextStreamHandler implements MessageHandler.Whole<java.nio.ByteBuffer> {
+	private class WssMessageHandler implements MessageHandler.Whole<java.nio.ByteBuffer> {
 
-		private char[] buf = new char[READ_BUF_SIZE];
-		private StringBuilder bufPartial = new StringBuilder(100);
-		private int partialCount;
+		// Keeps messages split across web socket frames
+		private final MessageFramer framer = new MessageFramer(FRAMER_BUF_SIZE);
 
-		@Override
-		public void onMessage(ByteBuffer reader) {
+		// Refresh message split across lines
+		private final ByteArrayOutputStream partial = new ByteArrayOutputStream(1024);
 
-			if (log.isDebugEnabled()) {
-				log.debug("+++++++++++++++++++ onMessage ++++++++++++++++++++++++++++++++++++++++");
-			}
-			// clear
-			int index = -1;
-			String packet = null;
+		@Override
+		public void onMessage(ByteBuffer data) {
 			try {
-
-				while (reader.hasRemaining()) {
-					int c = reader.get();
-					// We have data, increase index
-					index++;
-
-					// End of stream;
-					if (c == -1) {
-						if (index <= 0) {
-							// no data, just return
-							break;
-						}
-						packet = new String(buf, 0, index);
-						if (log.isDebugEnabled()) {
-							log.debug("<BUFEND " + packet);
-						}
-						// Normal packet
-						boolean haveFullPacket = checkFraming(packet);
-						if (haveFullPacket) {
-							handlePacket(packet);
-						} else {
-							handePartialPacket(packet);
-						}
-						break;
-					}
-
-					if (c == ASCII.LF) {
-						// we have a packet delimiter, do not take LF
-						packet = new String(buf, 0, index);
-						if (log.isDebugEnabled()) {
-							log.debug("<BUF " + packet);
-						}
-						boolean haveFullPacket = checkFraming(packet);
-						if (haveFullPacket) {
-							handlePacket(packet);
-						} else {
-							handePartialPacket(packet);
-						}
-						// Reset
-						index = -1;
-					} else {
-						buf[index] = (char) c;
+				framer.append(data);
+				byte[] message;
+				while ((message = framer.next()) != null) {
+					if (message.length > 0) {
+						handleFrame(message);
 					}
-
 				}
-
 			} catch (Exception e1) {
 				log.error("WSS read error: ", e1);
 			}
-			if (log.isDebugEnabled()) {
-				log.debug("++++++ Leaving onMessage ++++++++++++++++++++++++++++++++++++++++");
-			}
 		}
 
-		private void handePartialPacket(String packet) {
-			// handle partial packet
-			if (log.isDebugEnabled()) {
-				log.debug("<PARTIAL buf: " + bufPartial.toString() + " pkt: " + packet);
-			}
-			bufPartial.append(packet);
-			partialCount++;
-			// Do we have a full message?
-			if (partialCount == 2) {
-				if (checkFraming(bufPartial.toString())) {
-					if (log.isDebugEnabled()) {
-						log.debug("<PARTIAL DONE" + bufPartial.toString());
-					}
-					handlePacket(bufPartial.toString());
-				}
-				partialCount = 0;
-				bufPartial.setLength(0);
-			}
-		}
-
-		private int hasSOH(char[] buf) {
-			for (int i = 0; i < buf.length; i++) {
-				if (buf[i] == ASCII.SOH) {
-					return i;
-				}
-			}
-			return -1;
-		}
-
-		private int hasEtx(char[] buf) {
-			for (int i = 0; i < buf.length; i++) {
-				if (buf[i] == ASCII.ETX) {
-					return i;
-				}
-			}
-			return -1;
-		}
-
-		/*
-		 * Returns true if full packet found
-		 */
-		private boolean checkFraming(String packet) {
-			if (connState != ConnectionState.LoggedIn) {
-				// Only data messages are checked for framing
-				return true;
-			}
-			if (buf[0] == JerqProtocol.JERQ_ERROR_START_BYTE || buf[0] == JerqProtocol.JERQ_INFO_START_BYTE) {
-				// INFO and ERROR messages do not have framing
-				return true;
-			}
-			// When logged in we receive data messages
-			char[] data = packet.toCharArray();
-			boolean startRefresh = packet.contains("<QUOTE ");
-			boolean endEndRefresh = packet.contains("</QUOTE>");
-			if (startRefresh || endEndRefresh) {
-				// We are in a refresh packet
-				if (startRefresh && endEndRefresh) {
-					return true;
-				}
-				return false;
-			} else {
-				// DDF Message
-				int soh = hasSOH(data);
-				int etx = hasEtx(data);
-				if (soh < 0 || etx < 0) {
-					return false;
-				}
-				if (soh > etx) {
-					return false;
-				}
-				// packet has SOH and ETX
-				return true;
-			}
-		}
-
-		private void handlePacket(String msgString) {
+		private void handleFrame(byte[] message) {
 			try {
-				if (msgString.length() == 0) {
-					return;
-				}
 				if (log.isDebugEnabled()) {
-					log.debug("handlePacket: " + msgString);
+					log.debug("handleFrame: " + new String(message, ASCII.ASCII_CHARSET));
 				}
 
 				if (connState == ConnectionState.Connecting) {
-					handleConnectionHeader(msgString);
+					handleConnectionHeader(new String(message, ASCII.ASCII_CHARSET));
 				} else if (connState == ConnectionState.Connected) {
-					handleLogon(msgString);
+					handleLogon(new String(message, ASCII.ASCII_CHARSET));
 				} else if (connState == ConnectionState.LoggedIn) {
 					/*
 					 * We have a data packet which can be one of the following:
@@ -413,44 +294,54 @@ class IoChannelWSS extends IoChannel {
 					 * DDF, Refresh Message, only sent when using the push
 					 * command (GO).
 					 */
-
-					if (msgString.startsWith(JerqProtocol.JERQ_INFO_START)) {
-						// Log and continue
-						log.info("SERVER INFO: " + msgString);
-					} else if (msgString.startsWith(JerqProtocol.JERQ_ERROR_START)) {
+					if (partial.size() > 0) {
+						handlePartialRefresh(message);
+					} else if (message[0] == JerqProtocol.JERQ_INFO_START_BYTE) {
+						String line = new String(message, ASCII.ASCII_CHARSET);
+						if (line.startsWith(JerqProtocol.JERQ_STOPPED_STREAM)) {
+							log.error("SERVER ERROR " + line);
+							// Close the session
+							closeSession();
+						} else {
+							// Log and continue
+							log.info("SERVER INFO: " + line);
+						}
+					} else if (message[0] == JerqProtocol.JERQ_ERROR_START_BYTE) {
 						// Log and continue
-						log.warn("SERVER ERROR: " + msgString);
-					} else if (msgString.startsWith(JerqProtocol.JERQ_STOPPED_STREAM)) {
-						log.error("SERVER ERROR " + msgString);
-						// Close the session
-						closeSession();
-					} else {
+						log.warn("SERVER ERROR: " + new String(message, ASCII.ASCII_CHARSET));
+					} else if (message[0] == JerqProtocol.JERQ_REFRESH_MESSAGE) {
 						/*
-						 * Data Packet
+						 * Jerq Refresh message, format: %<QUOTE> ...</QUOTE>
 						 */
-						byte[] bytes = msgString.getBytes();
-						if (bytes[0] == JerqProtocol.JERQ_REFRESH_MESSAGE) {
-							/*
-							 * Jerq Refresh message, format: %<QUOTE>
-							 * ...</QUOTE>
-							 */
-							connection.handleMessage(msgString);
+						if (indexOf(message, QUOTE_START) >= 0 && indexOf(message, QUOTE_END) < 0) {
+							partial.write(message, 0, message.length);
 						} else {
-
-							/*
-							 * DDF message, framed by <SOH> .... <ETX>
-							 */
-							if (msgString.length() < 2) {
-								// must be > 2 chars for a valid DDF message
-								return;
-							}
-							connection.handleMessage(msgString);
+							connection.handleMessage(message);
 						}
+					} else if (message.length >= 2) {
+						/*
+						 * DDF message, framed by <SOH> .... <ETX>, must be > 2
+						 * bytes for a valid DDF message
+						 */
+						connection.handleMessage(message);
 					}
-
 				}
 			} catch (Exception e) {
-				log.error("Could not process message: " + msgString + " error: ", e);
+				log.error("Could not process message: " + new String(message, ASCII.ASCII_CHARSET) + " error: ", e);
+			}
+		}
+
+		private void handlePartialRefresh(byte[] message) {
+			if (log.isDebugEnabled()) {
+				log.debug("<PARTIAL size: " + partial.size());
+			}
+			partial.write(message, 0, message.length);
+			if (indexOf(message, QUOTE_END) >= 0) {
+				connection.handleMessage(partial.toByteArray());
+				partial.reset();
+			} else if (partial.size() > MAX_REFRESH_SIZE) {
+				log.warn("Dropping refresh message without end tag, size: " + partial.size());
+				partial.reset();
 			}
 		}
 
@@ -488,4 +379,16 @@ class IoChannelWSS extends IoChannel {
 		}
 	}
 
+	static int indexOf(byte[] array, byte[] target) {
+		outer: for (int i = 0; i <= array.length - target.length; i++) {
+			for (int j = 0; j < target.length; j++) {
+				if (array[i + j] != target[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
 }
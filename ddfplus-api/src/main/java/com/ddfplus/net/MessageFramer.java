@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Splits the Jerq byte stream into messages.
+ * <p>
+ * DDF messages are framed by SOH ... ETX, optionally followed by the DC4
+ * message timestamp (DC4 + 8 bytes). The timestamp bytes are binary and can
+ * contain any value, including a line feed, so they are taken by length.
+ * Everything else (Jerq server lines, XML refresh messages) is terminated by a
+ * line feed. Line feeds between messages are skipped.
+ * <p>
+ * The byte after ETX is needed to know if a timestamp follows. Jerq ends every
+ * message with a line feed, so this does not delay the message.
+ * <p>
+ * Bytes are read from the channel into a direct buffer and each frame is
+ * copied once into a <code>byte[]</code> of the exact message length. The
+ * buffer grows if a single message does not fit.
+ */
+class MessageFramer {
+
+	static final byte SOH = 1;
+
+	static final byte ETX = 3;
+
+	static final byte DC4 = 20;
+
+	static final int TIMESTAMP_SUFFIX_LENGTH = 9;
+
+	private static final byte CR = '\r';
+
+	private static final byte LF = '\n';
+
+	// Kept in read mode, [position, limit) has not been framed yet.
+	private ByteBuffer buffer;
+
+	// Scan offset for the frame at position, avoids re-scanning on partial
+	// reads.
+	private int scanned;
+
+	MessageFramer(int capacity) {
+		buffer = ByteBuffer.allocateDirect(capacity);
+		buffer.flip();
+	}
+
+	/**
+	 * Reads available bytes from the channel.
+	 *
+	 * @param channel
+	 *            Channel
+	 * @return bytes read, -1 on end of stream
+	 * @throws IOException
+	 *             on a read error
+	 */
+	int read(ReadableByteChannel channel) throws IOException {
+		if (buffer.position() > 0) {
+			buffer.compact();
+		} else if (buffer.limit() == buffer.capacity()) {
+			// One message larger than the buffer
+			ByteBuffer b = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+			b.put(buffer);
+			buffer = b;
+		} else {
+			buffer.position(buffer.limit());
+			buffer.limit(buffer.capacity());
+		}
+		int n;
+		try {
+			n = channel.read(buffer);
+		} finally {
+			buffer.flip();
+		}
+		return n;
+	}
+
+	/**
+	 * Appends received bytes, for transports which deliver buffers instead of
+	 * reading from a channel.
+	 *
+	 * @param src
+	 *            Received bytes, consumed
+	 */
+	void append(ByteBuffer src) {
+		if (buffer.position() > 0) {
+			buffer.compact();
+		} else {
+			buffer.position(buffer.limit());
+			buffer.limit(buffer.capacity());
+		}
+		if (buffer.remaining() < src.remaining()) {
+			ByteBuffer b = ByteBuffer
+					.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + src.remaining()));
+			buffer.flip();
+			b.put(buffer);
+			buffer = b;
+		}
+		buffer.put(src);
+		buffer.flip();
+	}
+
+	/**
+	 * @return The next complete message, null if more bytes are needed.
+	 */
+	byte[] next() {
+		final int limit = buffer.limit();
+		int start = buffer.position();
+		while (start < limit && (buffer.get(start) == LF || buffer.get(start) == CR)) {
+			start++;
+		}
+		buffer.position(start);
+		if (start == limit) {
+			return null;
+		}
+
+		int end;
+		if (buffer.get(start) == SOH) {
+			end = frameEnd(start, limit);
+		} else {
+			end = lineEnd(start, limit);
+		}
+		if (end < 0) {
+			return null;
+		}
+
+		byte[] frame = new byte[end - start];
+		buffer.get(frame);
+		scanned = 0;
+		return frame;
+	}
+
+	/**
+	 * @return Bytes not framed yet.
+	 */
+	int remaining() {
+		return buffer.remaining();
+	}
+
+	int capacity() {
+		return buffer.capacity();
+	}
+
+	private int frameEnd(int start, int limit) {
+		int i = Math.max(start + 1, start + scanned);
+		while (i < limit && buffer.get(i) != ETX) {
+			if (buffer.get(i) == LF) {
+				// Corrupted message, no ETX before the end of line
+				return i;
+			}
+			i++;
+		}
+		scanned = i - start;
+		// Need ETX and the byte after it to see if a timestamp follows
+		if (i + 1 >= limit) {
+			return -1;
+		}
+		if (buffer.get(i + 1) == DC4) {
+			int end = i + 1 + TIMESTAMP_SUFFIX_LENGTH;
+			return end <= limit ? end : -1;
+		}
+		return i + 1;
+	}
+
+	private int lineEnd(int start, int limit) {
+		int i = start + scanned;
+		while (i < limit && buffer.get(i) != LF) {
+			i++;
+		}
+		scanned = i - start;
+		if (i == limit) {
+			return -1;
+		}
+		// The line feed is skipped with the next frame, drop a trailing CR
+		int end = i;
+		if (end > start && buffer.get(end - 1) == CR) {
+			end--;
+		}
+		return end;
+	}
+
+}
@@ -0,0 +1,259 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.net;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded single producer, single consumer ring.
+ * <p>
+ * The slots are preallocated and addressed by two sequence counters, the
+ * producer's <code>tail</code> and the consumer's <code>head</code>, no nodes
+ * are allocated and no locks are taken. When full, the
+ * {@link QueueOverflowPolicy} applies. Waiting uses the
+ * {@link QueueWaitStrategy}.
+ *
+ * @param <E>
+ *            element type
+ */
+class MessageRing<E> {
+
+	private static final int SPIN_TRIES = 100;
+
+	private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final AtomicReferenceArray<E> slots;
+
+	private final int capacity;
+
+	private final int mask;
+
+	private final QueueWaitStrategy waitStrategy;
+
+	private final QueueOverflowPolicy overflowPolicy;
+
+	// Next sequence to read, also moved by the producer for DropOldest
+	private final AtomicLong head = new AtomicLong();
+
+	// Next sequence to write
+	private final AtomicLong tail = new AtomicLong();
+
+	private volatile Thread consumerWaiting;
+
+	private volatile Thread producerWaiting;
+
+	private volatile boolean closed;
+
+	// Set by wake(), cleared by the consumer
+	private volatile boolean woken;
+
+	// Written by the producer only
+	private volatile long published;
+	private volatile long blocked;
+	private volatile long dropped;
+	private volatile long overflows;
+	private volatile int maxSize;
+
+	/**
+	 * @param capacity
+	 *            Capacity, rounded up to a power of 2
+	 * @param waitStrategy
+	 *            Wait strategy
+	 * @param overflowPolicy
+	 *            Overflow policy
+	 */
+	MessageRing(int capacity, QueueWaitStrategy waitStrategy, QueueOverflowPolicy overflowPolicy) {
+		if (capacity < 1 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Invalid queue capacity: " + capacity);
+		}
+		this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+		this.mask = this.capacity - 1;
+		this.slots = new AtomicReferenceArray<E>(this.capacity);
+		this.waitStrategy = waitStrategy;
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	/**
+	 * Adds an element, producer thread only.
+	 *
+	 * @param e
+	 *            element, not null
+	 * @return false if the element was not queued, ring closed or full with the
+	 *         {@link QueueOverflowPolicy#Disconnect} policy
+	 */
+	boolean offer(E e) {
+		final long t = tail.get();
+		if (t - head.get() >= capacity) {
+			switch (overflowPolicy) {
+			case Block:
+				blocked++;
+				for (int n = 0; t - head.get() >= capacity; n++) {
+					if (closed) {
+						return false;
+					}
+					if (parks(n)) {
+						producerWaiting = Thread.currentThread();
+						if (t - head.get() >= capacity) {
+							LockSupport.parkNanos(this, PARK_NANOS);
+						}
+						producerWaiting = null;
+					} else {
+						idle();
+					}
+				}
+				break;
+			case DropOldest:
+				long h;
+				while (t - (h = head.get()) >= capacity) {
+					if (head.compareAndSet(h, h + 1)) {
+						dropped++;
+					}
+				}
+				break;
+			case Disconnect:
+			default:
+				overflows++;
+				return false;
+			}
+		}
+		slots.lazySet((int) t & mask, e);
+		published++;
+		int size = (int) (t + 1 - head.get());
+		if (size > maxSize) {
+			maxSize = size;
+		}
+		if (waitStrategy == QueueWaitStrategy.Park) {
+			// Volatile write so the waiting check below is not reordered
+			tail.set(t + 1);
+			Thread w = consumerWaiting;
+			if (w != null) {
+				LockSupport.unpark(w);
+			}
+		} else {
+			tail.lazySet(t + 1);
+		}
+		return true;
+	}
+
+	/**
+	 * @return Next element or null if empty, consumer thread only.
+	 */
+	E poll() {
+		while (true) {
+			final long h = head.get();
+			if (h >= tail.get()) {
+				return null;
+			}
+			final int i = (int) h & mask;
+			final E e = slots.get(i);
+			// Fails if the producer dropped it
+			if (head.compareAndSet(h, h + 1)) {
+				// Release the reference, unless already overwritten
+				slots.compareAndSet(i, e, null);
+				Thread w = producerWaiting;
+				if (w != null) {
+					LockSupport.unpark(w);
+				}
+				return e;
+			}
+		}
+	}
+
+	/**
+	 * Waits for the next element, consumer thread only.
+	 *
+	 * @return Next element, null if the ring was closed or the consumer was
+	 *         woken up while the ring was empty, see {@link #isClosed()}
+	 */
+	E take() {
+		for (int n = 0;; n++) {
+			E e = poll();
+			if (e != null) {
+				return e;
+			}
+			if (closed) {
+				return null;
+			}
+			if (woken) {
+				woken = false;
+				return null;
+			}
+			if (parks(n)) {
+				// Checked by the producer after publishing
+				consumerWaiting = Thread.currentThread();
+				if (head.get() >= tail.get() && !woken) {
+					LockSupport.parkNanos(this, PARK_NANOS);
+				}
+				consumerWaiting = null;
+			} else {
+				idle();
+			}
+		}
+	}
+
+	/**
+	 * Makes a waiting {@link #take()} return, any thread.
+	 */
+	void wake() {
+		woken = true;
+		Thread w = consumerWaiting;
+		if (w != null) {
+			LockSupport.unpark(w);
+		}
+	}
+
+	boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Wakes up and releases the waiting threads.
+	 */
+	void close() {
+		closed = true;
+		Thread w = consumerWaiting;
+		if (w != null) {
+			LockSupport.unpark(w);
+		}
+		w = producerWaiting;
+		if (w != null) {
+			LockSupport.unpark(w);
+		}
+	}
+
+	int size() {
+		return (int) Math.max(0, tail.get() - head.get());
+	}
+
+	int capacity() {
+		return capacity;
+	}
+
+	QueueStatistics getStatistics() {
+		return new QueueStatistics(capacity, size(), maxSize, published, blocked, dropped, overflows);
+	}
+
+	/*
+	 * Park spins briefly before parking, the other side unparks the waiting
+	 * thread.
+	 */
+	private boolean parks(int n) {
+		return waitStrategy == QueueWaitStrategy.Park && n >= SPIN_TRIES;
+	}
+
+	private void idle() {
+		if (waitStrategy == QueueWaitStrategy.Yield) {
+			Thread.yield();
+		} else {
+			Thread.onSpinWait();
+		}
+	}
+
+}
@@ -22,6 +22,8 @@ public final class NetConstants {
 
 	public static final int TCP_RECV_TIMEOUT = 30 * 1000;
 
+	public static final int QUEUE_CAPACITY = 64 * 1024;
+
 	private NetConstants() {
 	}
 }
@@ -0,0 +1,27 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.net;
+
+/**
+ * What the message queue does when it is full.
+ */
+public enum QueueOverflowPolicy {
+	/**
+	 * The network thread waits for space, back pressure goes to the socket.
+	 */
+	Block,
+	/**
+	 * The oldest queued message is dropped.
+	 */
+	DropOldest,
+	/**
+	 * The message is dropped and the channel disconnects, the data is
+	 * recovered with the refresh on re-connection.
+	 */
+	Disconnect;
+
+}
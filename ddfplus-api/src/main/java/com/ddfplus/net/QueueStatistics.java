@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.net;
+
+/**
+ * Snapshot of the message queue counters.
+ *
+ * @see Connection#getQueueStatistics()
+ */
+public final class QueueStatistics {
+
+	private final int capacity;
+	private final int size;
+	private final int maxSize;
+	private final long published;
+	private final long blocked;
+	private final long dropped;
+	private final long overflows;
+
+	QueueStatistics(int capacity, int size, int maxSize, long published, long blocked, long dropped,
+			long overflows) {
+		this.capacity = capacity;
+		this.size = size;
+		this.maxSize = maxSize;
+		this.published = published;
+		this.blocked = blocked;
+		this.dropped = dropped;
+		this.overflows = overflows;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return Largest size the queue has been.
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return Number of messages queued.
+	 */
+	public long getPublished() {
+		return published;
+	}
+
+	/**
+	 * @return Number of times the producer waited on a full queue,
+	 *         {@link QueueOverflowPolicy#Block}.
+	 */
+	public long getBlocked() {
+		return blocked;
+	}
+
+	/**
+	 * @return Number of messages dropped, {@link QueueOverflowPolicy#DropOldest}.
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * @return Number of overflows causing a disconnect,
+	 *         {@link QueueOverflowPolicy#Disconnect}.
+	 */
+	public long getOverflows() {
+		return overflows;
+	}
+
+	@Override
+	public String toString() {
+		return "capacity: " + capacity + " size: " + size + " maxSize: " + maxSize + " published: " + published
+				+ " blocked: " + blocked + " dropped: " + dropped + " overflows: " + overflows;
+	}
+
+}
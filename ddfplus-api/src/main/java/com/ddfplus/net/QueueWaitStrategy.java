@@ -0,0 +1,27 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.net;
+
+/**
+ * How the message queue threads wait when the queue is empty (consumer) or
+ * full (producer).
+ */
+public enum QueueWaitStrategy {
+	/**
+	 * Spin on the CPU, lowest latency, uses a full core.
+	 */
+	BusySpin,
+	/**
+	 * Spin calling <code>Thread.yield()</code>.
+	 */
+	Yield,
+	/**
+	 * Park the thread until signalled, lowest CPU usage.
+	 */
+	Park;
+
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.net;
+
+/**
+ * Snapshot of the datagram receive counters of a UDP listen channel.
+ *
+ * @see Connection#getReceiveStatistics()
+ */
+public final class ReceiveStatistics {
+
+	private final long packets;
+	private final long bytes;
+	private final long messages;
+	private final long wakeups;
+	private final long receiveBufferDrops;
+	private final long queueDrops;
+	private final long packetRate;
+	private final long byteRate;
+	private final long beaconGaps;
+	private final long dropGaps;
+	private final long lastGapMillis;
+
+	ReceiveStatistics(long packets, long bytes, long messages, long wakeups, long receiveBufferDrops,
+			long queueDrops, long packetRate, long byteRate, long beaconGaps, long dropGaps, long lastGapMillis) {
+		this.packets = packets;
+		this.bytes = bytes;
+		this.messages = messages;
+		this.wakeups = wakeups;
+		this.receiveBufferDrops = receiveBufferDrops;
+		this.queueDrops = queueDrops;
+		this.packetRate = packetRate;
+		this.byteRate = byteRate;
+		this.beaconGaps = beaconGaps;
+		this.dropGaps = dropGaps;
+		this.lastGapMillis = lastGapMillis;
+	}
+
+	/**
+	 * @return Number of datagrams received.
+	 */
+	public long getPackets() {
+		return packets;
+	}
+
+	/**
+	 * @return Number of datagram bytes received.
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return Number of DDF messages framed from the datagrams.
+	 */
+	public long getMessages() {
+		return messages;
+	}
+
+	/**
+	 * @return Number of selector wake ups, packets / wakeups is the average
+	 *         batch size.
+	 */
+	public long getWakeups() {
+		return wakeups;
+	}
+
+	/**
+	 * @return Datagrams dropped by the kernel because the socket receive
+	 *         buffer was full, -1 if not known on this platform.
+	 */
+	public long getReceiveBufferDrops() {
+		return receiveBufferDrops;
+	}
+
+	/**
+	 * @return Number of messages which did not fit in the message queue.
+	 */
+	public long getQueueDrops() {
+		return queueDrops;
+	}
+
+	/**
+	 * @return Datagrams per second, over the last full second.
+	 */
+	public long getPacketRate() {
+		return packetRate;
+	}
+
+	/**
+	 * @return Bytes per second, over the last full second.
+	 */
+	public long getByteRate() {
+		return byteRate;
+	}
+
+	/**
+	 * @return Number of gaps between the timestamp beacons of a source.
+	 */
+	public long getBeaconGaps() {
+		return beaconGaps;
+	}
+
+	/**
+	 * @return Number of times the kernel receive buffer drops increased.
+	 */
+	public long getDropGaps() {
+		return dropGaps;
+	}
+
+	/**
+	 * @return Time of the last detected gap in ms, 0 if none.
+	 */
+	public long getLastGapMillis() {
+		return lastGapMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "packets: " + packets + " bytes: " + bytes + " messages: " + messages + " wakeups: " + wakeups
+				+ " rcvbuf drops: " + receiveBufferDrops + " queue drops: " + queueDrops + " packets/s: "
+				+ packetRate + " bytes/s: " + byteRate + " beacon gaps: " + beaconGaps + " drop gaps: " + dropGaps;
+	}
+
+}
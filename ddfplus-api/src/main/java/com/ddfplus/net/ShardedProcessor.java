@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.net;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ddfplus.db.DataMaster;
+import com.ddfplus.db.FeedEvent;
+import com.ddfplus.db.SymbolRegistry;
+import com.ddfplus.messages.DdfMarketBase;
+
+/**
+ * Processes decoded messages on N shard threads.
+ * <p>
+ * Messages are routed by symbol id, so all messages of a symbol are processed
+ * in order by the same shard, and the quote, book and cumulative volume
+ * entries of a symbol are only updated by that shard's thread. Messages
+ * without a symbol (timestamps) go to shard 0.
+ * <p>
+ * Each shard has its own single producer, single consumer {@link MessageRing},
+ * the producer is the connection thread.
+ */
+class ShardedProcessor {
+
+	private static final Logger log = LoggerFactory.getLogger(ShardedProcessor.class);
+
+	private final DataMaster dataMaster;
+
+	private final Consumer<FeedEvent> sink;
+
+	private final Shard[] shards;
+
+	/**
+	 * @param count
+	 *            number of shards
+	 * @param dataMaster
+	 *            DataMaster
+	 * @param sink
+	 *            called on the shard thread with the processed message
+	 */
+	ShardedProcessor(int count, DataMaster dataMaster, Consumer<FeedEvent> sink) {
+		if (count < 1) {
+			throw new IllegalArgumentException("Invalid shard count: " + count);
+		}
+		this.dataMaster = dataMaster;
+		this.sink = sink;
+		this.shards = new Shard[count];
+		for (int i = 0; i < count; i++) {
+			shards[i] = new Shard(i);
+			shards[i].start();
+		}
+		log.info("Started {} processing shards.", count);
+	}
+
+	/**
+	 * Routes the message to its shard, connection thread only.
+	 *
+	 * @param msg
+	 *            DDF Message
+	 */
+	void route(DdfMarketBase msg) {
+		shards[shardOf(dataMaster.getSymbolId(msg))].ring.offer(msg);
+	}
+
+	/**
+	 * Runs the task on the shard of the symbol, before its next message, the
+	 * shard is woken up if it waits for messages. Can be called from any
+	 * thread.
+	 *
+	 * @param symbolId
+	 *            Symbol id
+	 * @param task
+	 *            Task
+	 */
+	void execute(int symbolId, Runnable task) {
+		final Shard s = shards[shardOf(symbolId)];
+		s.tasks.add(task);
+		s.ring.wake();
+	}
+
+	int shardOf(int symbolId) {
+		if (symbolId == SymbolRegistry.NOT_FOUND) {
+			return 0;
+		}
+		// Ids are dense, spreads symbols evenly
+		return symbolId % shards.length;
+	}
+
+	int getShardCount() {
+		return shards.length;
+	}
+
+	/**
+	 * Stops the shard threads once the queued messages are processed.
+	 */
+	void shutdown() {
+		for (Shard s : shards) {
+			s.ring.close();
+		}
+	}
+
+	private class Shard extends Thread {
+
+		private final MessageRing<DdfMarketBase> ring = new MessageRing<>(NetConstants.QUEUE_CAPACITY,
+				QueueWaitStrategy.Park, QueueOverflowPolicy.Block);
+
+		// Not through the ring, which has the connection thread as its only
+		// producer
+		private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+		Shard(int id) {
+			super("DataMaster shard #" + id);
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				final DdfMarketBase msg = ring.take();
+				runTasks(tasks, getName());
+				if (msg == null) {
+					if (ring.isClosed()) {
+						break;
+					}
+					// Woken up for a task
+					continue;
+				}
+				try {
+					FeedEvent fe = dataMaster.processMessage(msg);
+					if (fe != null) {
+						sink.accept(fe);
+					}
+				} catch (Exception e) {
+					log.error(getName() + " failed to process: " + msg, e);
+				}
+			}
+			log.info("{} stopped.", getName());
+		}
+	}
+
+	/**
+	 * Runs the queued tasks on the processing thread.
+	 *
+	 * @param tasks
+	 *            Tasks
+	 * @param thread
+	 *            Thread name for the log
+	 */
+	static void runTasks(Queue<Runnable> tasks, String thread) {
+		Runnable task;
+		while ((task = tasks.poll()) != null) {
+			try {
+				task.run();
+			} catch (Exception e) {
+				log.error(thread + " task failed.", e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.net;
+
+/**
+ * Snapshot of the counters of one feed source of a listen channel.
+ *
+ * @see Connection#getSourceStatistics()
+ */
+public final class SourceStatistics {
+
+	private final int id;
+	private final String remoteAddress;
+	private final long connectedMillis;
+	private final long lastReceivedMillis;
+	private final long messages;
+	private final long bytes;
+
+	SourceStatistics(int id, String remoteAddress, long connectedMillis, long lastReceivedMillis, long messages,
+			long bytes) {
+		this.id = id;
+		this.remoteAddress = remoteAddress;
+		this.connectedMillis = connectedMillis;
+		this.lastReceivedMillis = lastReceivedMillis;
+		this.messages = messages;
+		this.bytes = bytes;
+	}
+
+	/**
+	 * @return Id of the source, unique per channel.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	public String getRemoteAddress() {
+		return remoteAddress;
+	}
+
+	public long getConnectedMillis() {
+		return connectedMillis;
+	}
+
+	public long getLastReceivedMillis() {
+		return lastReceivedMillis;
+	}
+
+	/**
+	 * @return Number of messages received from the source.
+	 */
+	public long getMessages() {
+		return messages;
+	}
+
+	/**
+	 * @return Number of bytes received from the source.
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	@Override
+	public String toString() {
+		return "source: " + id + " remote: " + remoteAddress + " messages: " + messages + " bytes: " + bytes;
+	}
+
+}
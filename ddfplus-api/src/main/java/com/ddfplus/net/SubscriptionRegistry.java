@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.net;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Current subscriptions of a channel, used to subscribe again after a
+ * reconnection.
+ * <p>
+ * Holds the requested data types per symbol, e.g. "SsV" for quotes, as the
+ * GO and STOP commands leave them on the server, and the exchanges streamed
+ * with STR.
+ */
+final class SubscriptionRegistry {
+
+	/**
+	 * Maximum length of a GO command built by {@link #commands()}.
+	 */
+	static final int MAX_COMMAND_LENGTH = 4096;
+
+	// Symbol to data types
+	private final Map<String, String> symbols = new LinkedHashMap<String, String>();
+
+	private final Set<String> streams = new LinkedHashSet<String>();
+
+	/**
+	 * @param symbol
+	 *            Symbol
+	 * @param types
+	 *            Data types added
+	 */
+	synchronized void go(String symbol, String types) {
+		String current = symbols.get(symbol);
+		if (current == null) {
+			symbols.put(symbol, types);
+			return;
+		}
+		StringBuilder sb = new StringBuilder(current);
+		for (int i = 0; i < types.length(); i++) {
+			if (sb.indexOf(types.substring(i, i + 1)) < 0) {
+				sb.append(types.charAt(i));
+			}
+		}
+		symbols.put(symbol, sb.toString());
+	}
+
+	/**
+	 * Volume ('V') is part of the quote subscription, it is removed with the
+	 * last of the quote types 'S' and 's'.
+	 * 
+	 * @param symbol
+	 *            Symbol
+	 * @param types
+	 *            Data types removed, the symbol is removed without any left
+	 */
+	synchronized void stop(String symbol, String types) {
+		String current = symbols.get(symbol);
+		if (current == null) {
+			return;
+		}
+		StringBuilder sb = new StringBuilder(current.length());
+		for (int i = 0; i < current.length(); i++) {
+			if (types.indexOf(current.charAt(i)) < 0) {
+				sb.append(current.charAt(i));
+			}
+		}
+		final boolean quoteStopped = types.indexOf('S') >= 0 || types.indexOf('s') >= 0;
+		if (quoteStopped && sb.indexOf("S") < 0 && sb.indexOf("s") < 0) {
+			final int v = sb.indexOf("V");
+			if (v >= 0) {
+				sb.deleteCharAt(v);
+			}
+		}
+		if (sb.length() == 0) {
+			symbols.remove(symbol);
+		} else {
+			symbols.put(symbol, sb.toString());
+		}
+	}
+
+	/**
+	 * @param command
+	 *            STR command, sent again as is
+	 */
+	synchronized void stream(String command) {
+		streams.add(command);
+	}
+
+	/**
+	 * @param symbol
+	 *            Symbol
+	 * @return Subscribed data types, null if not subscribed
+	 */
+	synchronized String getTypes(String symbol) {
+		return symbols.get(symbol);
+	}
+
+	synchronized int size() {
+		return symbols.size();
+	}
+
+	/**
+	 * Builds the commands restoring the subscriptions, one data type entry
+	 * per symbol and as many symbols per GO command as fit in
+	 * {@link #MAX_COMMAND_LENGTH}.
+	 * 
+	 * @return Commands
+	 */
+	synchronized List<String> commands() {
+		List<String> l = new ArrayList<String>(streams);
+		StringBuilder sb = new StringBuilder(MAX_COMMAND_LENGTH);
+		for (Map.Entry<String, String> e : symbols.entrySet()) {
+			int length = e.getKey().length() + 1 + e.getValue().length();
+			if (sb.length() > 0 && sb.length() + 1 + length > MAX_COMMAND_LENGTH) {
+				l.add(sb.toString());
+				sb.setLength(0);
+			}
+			sb.append(sb.length() == 0 ? "GO " : ",").append(e.getKey()).append('=').append(e.getValue());
+		}
+		if (sb.length() > 0) {
+			l.add(sb.toString());
+		}
+		return l;
+	}
+
+	synchronized void clear() {
+		symbols.clear();
+		streams.clear();
+	}
+
+}
@@ -6,46 +6,84 @@
  */
 package com.ddfplus.net;
 
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- *
+ * Decouples the network thread from the message handlers. Messages are passed
+ * through a bounded {@link MessageRing} to this thread, which calls the sink.
  */
-class XQueue implements Runnable {
+class XQueue extends Thread {
+
+	private static final Logger log = LoggerFactory.getLogger(XQueue.class);
+
+	private final MessageRing<byte[]> ring;
+
+	private final Consumer<byte[]> sink;
+
+	XQueue(String name, MessageRing<byte[]> ring, Consumer<byte[]> sink) {
+		super(name);
+		this.ring = ring;
+		this.sink = sink;
+		this.start();
+	}
 
 	/**
+	 * Queues the message, network thread only.
+	 * 
+	 * @param message
+	 *            DDF message
+	 * @return false if the message was not queued and the channel should
+	 *         disconnect, see {@link QueueOverflowPolicy#Disconnect}
 	 */
-	private Connection _connection = null;
-	private final LinkedBlockingQueue<byte[]> _queue;
-
-	public XQueue(Connection connection) {
-		_connection = connection;
-		_queue = new LinkedBlockingQueue<byte[]>();
-		Thread t = new Thread(this);
-		t.start();
+	public boolean add(byte[] message) {
+		return ring.offer(message);
 	}
 
-	public void add(byte[] item) {
-		try {
-			_queue.put(item);
-		} catch (InterruptedException ie) {
-			;
-		}
+	public int getMaxSize() {
+		return ring.getStatistics().getMaxSize();
 	}
 
 	public int getSize() {
-		return _queue.size();
+		return ring.size();
+	}
+
+	public QueueStatistics getStatistics() {
+		return ring.getStatistics();
+	}
+
+	/**
+	 * Stops the thread once the queued messages are processed.
+	 */
+	public void shutdown() {
+		ring.close();
 	}
 
 	@Override
 	public void run() {
+
+		final int priority = 10;
+		this.setPriority(priority);
+
+		final String name = this.getName();
+		log.info("name={} priority={} capacity={}", name, priority, ring.capacity());
+
 		while (true) {
+			final byte[] message = ring.take();
+			if (message == null) {
+				break;
+			}
 			try {
-				byte[] buffer = _queue.take();
-				_connection.newQueueMessage(buffer);
-			} catch (InterruptedException ie) {
-				;
+				sink.accept(message);
+			} catch (Exception e) {
+				log.error("", e);
 			}
 		}
+
+		log.info("name={} stopped", name);
+
 	}
+
 }
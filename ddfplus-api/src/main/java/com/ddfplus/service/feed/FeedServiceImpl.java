@@ -8,37 +8,47 @@ package com.ddfplus.service.feed;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.net.URI;
 import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 import com.ddfplus.api.QuoteHandler;
 import com.ddfplus.db.DataMaster;
 import com.ddfplus.db.Quote;
 import com.ddfplus.service.usersettings.UserSettings;
 import com.ddfplus.util.XMLNode;
-import com.ddfplus.util.XmlUtil;
 
 /**
  * Feed Service Implementation
+ * <p>
+ * Refresh requests are de-duplicated in a pending set, drained every 500 ms
+ * into batches, and the batches are requested concurrently over a shared HTTP
+ * client. Failed batches are retried with an exponential backoff.
+ * <p>
+ * Responses are parsed on the request threads, the quotes are put into the
+ * {@link DataMaster} and passed to the quote handlers on a single thread, in
+ * the order the responses arrive.
  *
  */
 public class FeedServiceImpl implements FeedService {
@@ -47,7 +57,17 @@ public class FeedServiceImpl implements FeedService {
 
 	private static final long REQUEST_THREAD_TIMEOUT_MS = 500;
 
-	private static final int REQUEST_MAX_SYMBOLS = 200;
+	public static final int DEFAULT_BATCH_SIZE = 200;
+
+	public static final int DEFAULT_CONCURRENCY = 4;
+
+	public static final int DEFAULT_MAX_PENDING = 50000;
+
+	public static final int DEFAULT_MAX_RETRIES = 3;
+
+	private static final long RETRY_DELAY_MS = 1000;
+
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
 
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -57,14 +77,35 @@ public class FeedServiceImpl implements FeedService {
 
 	private DataMaster datamaster;
 
-	private BlockingQueue<FeedCmd> requestQ = new LinkedBlockingQueue<FeedCmd>(100);
+	// Symbols requested or in flight, guards against duplicates
+	private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+	private final Queue<String> requestQ = new ConcurrentLinkedQueue<String>();
 
 	private ScheduledExecutorService es = Executors.newScheduledThreadPool(1);
 
-	private RequestThread requestThread;
+	private final ThreadPoolExecutor requestExecutor = new ThreadPoolExecutor(DEFAULT_CONCURRENCY,
+			DEFAULT_CONCURRENCY, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+
+	private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
 
 	private Map<String, QuoteHandler> quoteExchangehandlers;
 
+	private volatile int batchSize = DEFAULT_BATCH_SIZE;
+
+	private volatile int maxPending = DEFAULT_MAX_PENDING;
+
+	private volatile int maxRetries = DEFAULT_MAX_RETRIES;
+
+	/*
+	 * Statistics
+	 */
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong refreshed = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong retries = new AtomicLong();
+
 	// for testing only
 	private String queryUrl;
 
@@ -78,90 +119,205 @@ public class FeedServiceImpl implements FeedService {
 		this.userSettings = userSettings;
 		this.quoteExchangehandlers = quoteExchangehandlers;
 		this.baseUrl = buildBaseUrl(this.userSettings);
-		requestThread = new RequestThread(requestQ);
-		es.scheduleAtFixedRate(requestThread, REQUEST_THREAD_INITIAL_DELAY_MS, REQUEST_THREAD_TIMEOUT_MS,
+		requestExecutor.allowCoreThreadTimeOut(true);
+		es.scheduleAtFixedRate(new RequestThread(), REQUEST_THREAD_INITIAL_DELAY_MS, REQUEST_THREAD_TIMEOUT_MS,
 				TimeUnit.MILLISECONDS);
 		log.info("Snapshot/Refresh is enabled for user: " + userSettings.getUserName());
 	}
 
 	@Override
 	public void scheduleQuoteRefresh(String symbol) {
-		FeedCmd cmd = new FeedCmd(CMDS.QuoteRefresh, symbol);
-		requestQ.offer(cmd);
+		if (pending.size() >= maxPending) {
+			dropped.incrementAndGet();
+			return;
+		}
+		if (pending.add(symbol)) {
+			requestQ.offer(symbol);
+		}
+	}
+
+	/**
+	 * @param batchSize
+	 *            Maximum number of symbols per request, default is
+	 *            {@link #DEFAULT_BATCH_SIZE}
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @param concurrency
+	 *            Maximum number of concurrent requests, default is
+	 *            {@link #DEFAULT_CONCURRENCY}
+	 */
+	public void setConcurrency(int concurrency) {
+		if (concurrency <= 0) {
+			throw new IllegalArgumentException("Invalid concurrency: " + concurrency);
+		}
+		if (concurrency > requestExecutor.getMaximumPoolSize()) {
+			requestExecutor.setMaximumPoolSize(concurrency);
+			requestExecutor.setCorePoolSize(concurrency);
+		} else {
+			requestExecutor.setCorePoolSize(concurrency);
+			requestExecutor.setMaximumPoolSize(concurrency);
+		}
+	}
+
+	/**
+	 * @param maxPending
+	 *            Maximum number of pending symbols, further requests are
+	 *            dropped. Default is {@link #DEFAULT_MAX_PENDING}
+	 */
+	public void setMaxPending(int maxPending) {
+		this.maxPending = maxPending;
+	}
+
+	/**
+	 * @param maxRetries
+	 *            Number of retries of a failed request, default is
+	 *            {@link #DEFAULT_MAX_RETRIES}
+	 */
+	public void setMaxRetries(int maxRetries) {
+		this.maxRetries = maxRetries;
+	}
+
+	/**
+	 * @return Number of symbols waiting for or in a request
+	 */
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * @return Number of requests sent, without retries
+	 */
+	public long getRequestCount() {
+		return requests.get();
+	}
+
+	/**
+	 * @return Number of quotes received
+	 */
+	public long getRefreshedCount() {
+		return refreshed.get();
+	}
+
+	/**
+	 * @return Number of refresh requests dropped because too many were
+	 *         pending
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return Number of symbols whose request failed after all retries
+	 */
+	public long getFailedCount() {
+		return failed.get();
+	}
+
+	/**
+	 * @return Number of retried requests
+	 */
+	public long getRetryCount() {
+		return retries.get();
 	}
 
 	/*
-	 * Queries web service for snapshot refresh, parses it, and updates the
-	 * caches.
+	 * Queries web service for snapshot refresh, parses it, and hands the quotes
+	 * to the update thread.
 	 */
-	void getQuotes(List<String> symbolList) {
-		// Get Quote Refresh(s)
-		String query = buildQueryString(symbolList);
+	private void request(List<String> symbols, int attempt) {
+		try {
+			final List<Quote> quotes = parse(fetch(buildQueryString(symbols)));
+			es.execute(() -> {
+				refreshed.addAndGet(update(quotes));
+				pending.removeAll(symbols);
+			});
+		} catch (Exception e) {
+			if (attempt < maxRetries) {
+				long delay = RETRY_DELAY_MS << attempt;
+				log.warn("Snapshot/refresh request failed, retry in " + delay + " ms: " + e.getMessage());
+				retries.incrementAndGet();
+				es.schedule(() -> requestExecutor.execute(() -> request(symbols, attempt + 1)), delay,
+						TimeUnit.MILLISECONDS);
+			} else {
+				log.error("Snapshot/refresh request failed for " + symbols.size() + " symbols: " + e.getMessage());
+				failed.addAndGet(symbols.size());
+				pending.removeAll(symbols);
+			}
+		}
+	}
+
+	private byte[] fetch(String query) throws IOException, InterruptedException {
 		if (log.isDebugEnabled()) {
 			log.debug("Sending refresh request: " + query);
 		}
-		try {
-			DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-			Document doc = builder.parse(query);
+		if (!query.startsWith("http")) {
+			// for testing only
+			return Files.readAllBytes(Paths.get(query));
+		}
+		HttpRequest request = HttpRequest.newBuilder(URI.create(query)).timeout(REQUEST_TIMEOUT).GET().build();
+		HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+		if (response.statusCode() != 200) {
+			throw new IOException("HTTP status " + response.statusCode());
+		}
+		return response.body();
+	}
 
-			if (log.isDebugEnabled()) {
-				log.debug(XmlUtil.printDocument(doc));
+	/*
+	 * Parses the response, called on the request threads.
+	 */
+	private List<Quote> parse(byte[] body) {
+		List<Quote> quotes = new ArrayList<Quote>();
+		XMLNode root = XMLNode.parse(body, 0, body.length);
+		if (root == null) {
+			return quotes;
+		}
+		for (XMLNode n : root.getAllNodes("QUOTE")) {
+			try {
+				quotes.add(Quote.fromXMLNode(n));
+			} catch (Exception e2) {
+				log.error("Parsing Quote Error: " + e2.getMessage());
 			}
+		}
+		// BOOK and CV are not supported since DDF provides them with the stream.
+		return quotes;
+	}
 
-			Element root = doc.getDocumentElement();
-			NodeList list = root.getElementsByTagName("QUOTE");
-			for (int i = 0; i < list.getLength(); i++) {
-				try {
-					Node node = list.item(i);
-					XMLNode n = XMLNode.fromElement((Element)node);
-					Quote q = Quote.fromXMLNode(n);
-
-					// Update the Cache
-					datamaster.putQuote(q);
-					
-					/*
-					 * We have the snapshot now, callback the handler
-					 */
-					if (quoteExchangehandlers != null) {
-						String ddfExchange = q.getDDFExchange();
-						QuoteHandler eh = quoteExchangehandlers.get(ddfExchange);
-						if (eh != null) {
-							eh.onQuote(q);
-						}
+	/*
+	 * Updates the caches, called on the update thread, returns the number of
+	 * quotes.
+	 */
+	private int update(List<Quote> quotes) {
+		int count = 0;
+		for (Quote q : quotes) {
+			try {
+				// Update the Cache
+				datamaster.putQuote(q);
+				count++;
+
+				/*
+				 * We have the snapshot now, callback the handler
+				 */
+				if (quoteExchangehandlers != null) {
+					String ddfExchange = q.getDDFExchange();
+					QuoteHandler eh = quoteExchangehandlers.get(ddfExchange);
+					if (eh != null) {
+						eh.onQuote(q);
 					}
-				} catch (Exception e2) {
-					log.error("Parsing Quote Error: " + e2.getMessage());
-				}
-			}
-
-			// Not supported since DDF provides the whole book.
-			list = root.getElementsByTagName("BOOK");
-
-			// Not supported yet, do we need it?
-			list = root.getElementsByTagName("CV");
-			for (int i = 0; i < list.getLength(); i++) {
-				try {
-					Node node = list.item(i);
-					processCV(node);
-				} catch (Exception e2) {
-					log.error("CV Parsing Error: " + e2.getMessage());
 				}
+			} catch (Exception e2) {
+				log.error("Quote update Error: " + e2.getMessage());
 			}
-
-		} catch (ParserConfigurationException e) {
-			log.error("Parser configuration on snapshot/refresh request: " + e.getMessage());
-		} catch (SAXException e) {
-			log.error("Could not parse snapshot/refresh request: " + e.getMessage());
-		} catch (IOException e) {
-			log.error("IO issue with snaphost/refresh request: " + e.getMessage());
 		}
+		return count;
 	}
 
-	private void processCV(Node node) {
-
-	}
-
-
 	private String buildQueryString(List<String> symbols) {
 		// for testing only
 		if (queryUrl != null) {
@@ -192,78 +348,41 @@ public class FeedServiceImpl implements FeedService {
 				+ us.getPassword() + "&symbols=";
 	}
 
-	private static class FeedCmd {
-		private CMDS cmd;
-		private String symbol;
-
-		public FeedCmd(CMDS cmd, String symbol) {
-			this.cmd = cmd;
-			this.symbol = symbol;
-		}
-
-		public CMDS getCmd() {
-			return cmd;
-		}
-
-		public void setCmd(CMDS cmd) {
-			this.cmd = cmd;
-		}
-
-		public String getSymbol() {
-			return symbol;
-		}
-
-		public void setSymbol(String symbols) {
-			this.symbol = symbols;
-		}
-	}
-
 	// for testing
 	void setQueryUrl(String url) {
 		this.queryUrl = url;
 	}
 
+	/*
+	 * Drains the pending requests into batches.
+	 */
 	private class RequestThread implements Runnable {
 
-		private BlockingQueue<FeedCmd> cmdQ;
-		private List<String> symbols = new ArrayList<String>();
-
-		public RequestThread(BlockingQueue<FeedCmd> q) {
-			cmdQ = requestQ;
-		}
-
 		@Override
 		public void run() {
-			symbols.clear();
-			while (cmdQ.peek() != null) {
-				try {
-					FeedCmd cmd = cmdQ.poll();
-					if (cmd != null) {
-						switch (cmd.getCmd()) {
-						case QuoteRefresh:
-							if (symbols.size() < REQUEST_MAX_SYMBOLS) {
-								symbols.add(cmd.getSymbol());
-							} else {
-								// Send it
-								getQuotes(symbols);
-								symbols.clear();
-							}
-							break;
-						default:
-						}
+			try {
+				List<String> symbols = new ArrayList<String>(batchSize);
+				String symbol;
+				while ((symbol = requestQ.poll()) != null) {
+					symbols.add(symbol);
+					if (symbols.size() >= batchSize) {
+						submit(symbols);
+						symbols = new ArrayList<String>(batchSize);
 					}
-				} catch (Exception e) {
-					log.error("Feed request error: " + e.getMessage());
 				}
-			}
-			// Q is empty now, send any remaining requests
-			if (symbols.size() > 0) {
-				getQuotes(symbols);
+				// Q is empty now, send any remaining requests
+				if (symbols.size() > 0) {
+					submit(symbols);
+				}
+			} catch (Exception e) {
+				log.error("Feed request error: " + e.getMessage());
 			}
 		}
-	}
 
-	private enum CMDS {
-		QuoteRefresh;
+		private void submit(List<String> symbols) {
+			requests.incrementAndGet();
+			requestExecutor.execute(() -> request(symbols, 0));
+		}
 	}
+
 }
@@ -16,9 +16,48 @@ public interface MessageStore {
 
 	void storeMessage(byte[] bytes);
 
+	/**
+	 * Stores the message with its receive time.
+	 *
+	 * @param bytes
+	 *            DDF message
+	 * @param timestampNanos
+	 *            Receive time, nanoseconds since the epoch
+	 */
+	default void storeMessage(byte[] bytes, long timestampNanos) {
+		storeMessage(bytes);
+	}
+
 	void readMessages(ReaderCallback cb);
 
+	/**
+	 * Reads the messages received in a time range.
+	 *
+	 * @param fromNanos
+	 *            Start time inclusive, nanoseconds since the epoch
+	 * @param toNanos
+	 *            End time inclusive, nanoseconds since the epoch
+	 * @param cb
+	 *            Reader callback
+	 */
+	void readMessages(long fromNanos, long toNanos, ReaderCallback cb);
+
 	public interface ReaderCallback {
 		void onMessage(byte[] bytes, int len);
+
+		/**
+		 * Called instead of {@link #onMessage(byte[], int)} if the store has
+		 * receive times.
+		 *
+		 * @param timestampNanos
+		 *            Receive time, nanoseconds since the epoch
+		 * @param bytes
+		 *            Buffer, only valid during the call
+		 * @param len
+		 *            Message length
+		 */
+		default void onMessage(long timestampNanos, byte[] bytes, int len) {
+			onMessage(bytes, len);
+		}
 	}
 }
@@ -6,36 +6,109 @@
  */
 package com.ddfplus.util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Segmented, memory mapped message journal.
+ * <p>
+ * Messages are appended to memory mapped segment files
+ * <code>&lt;filePath&gt;.000000</code>, <code>&lt;filePath&gt;.000001</code>,
+ * ... A new segment is started when the current one is full or, if set, older
+ * than the segment duration. Each record is
+ * <code>[int length][long receive time ns][bytes]</code>, a 0 length marks the
+ * end of the written data, so empty messages are not stored.
+ * <p>
+ * Every second of receive time a <code>[long time][int segment][int offset]</code>
+ * entry is added to the <code>&lt;filePath&gt;.idx</code> index, so
+ * {@link #readMessages(long, long, ReaderCallback)} can start reading close to
+ * the requested time. The index is flushed with every entry, a crash loses at
+ * most the last second of index entries, not the journal.
+ * <p>
+ * Files written by the earlier, stream based store are still read by
+ * {@link #readMessages(ReaderCallback)}.
+ */
 public class MessageStoreImpl implements MessageStore {
 
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	static final int MAGIC = 0x44444A31;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 32;
+	static final int RECORD_HEADER_SIZE = 12;
+	static final String INDEX_SUFFIX = ".idx";
+	private static final int INDEX_ENTRY_SIZE = 16;
+	private static final long INDEX_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
 	private final Logger log = LoggerFactory.getLogger(getClass());
-	private DataInputStream in;
-	private DataOutputStream out;
+	private final int segmentSize;
+	private final long segmentDurationNanos;
 	private String filePath;
+	private boolean writing;
+
+	// Writer state
+	private FileChannel segmentChannel;
+	private MappedByteBuffer segment;
+	private int segmentNumber;
+	private long segmentStartNanos;
+	private DataOutputStream index;
+	private long lastIndexNanos;
+
+	// Epoch nanos clock
+	private final long epochNanosBase = System.currentTimeMillis() * 1000000L;
+	private final long nanoTimeBase = System.nanoTime();
+
+	public MessageStoreImpl() {
+		this(DEFAULT_SEGMENT_SIZE, 0);
+	}
+
+	/**
+	 * @param segmentSize
+	 *            Maximum segment size in bytes
+	 * @param segmentDurationMs
+	 *            Maximum receive time span of a segment in ms, 0 for no limit
+	 */
+	public MessageStoreImpl(int segmentSize, long segmentDurationMs) {
+		if (segmentSize <= HEADER_SIZE + RECORD_HEADER_SIZE) {
+			throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+		}
+		this.segmentSize = segmentSize;
+		this.segmentDurationNanos = TimeUnit.MILLISECONDS.toNanos(segmentDurationMs);
+	}
 
 	@Override
-	public void open(String filePath, boolean read) {
+	public synchronized void open(String filePath, boolean read) {
 		this.filePath = filePath;
+		this.writing = false;
+		log.info("Opening up message store: " + filePath);
+		if (read) {
+			return;
+		}
 		try {
-			log.info("Opening up message store: " + filePath);
-			if (read) {
-				FileInputStream fis = new FileInputStream(filePath);
-				in = new DataInputStream(fis);
-			} else {
-				FileOutputStream fos = new FileOutputStream(filePath);
-				out = new DataOutputStream(fos);
+			// Replaces an existing journal, as the stream based store did
+			for (int n = 0; segmentFile(n).exists(); n++) {
+				segmentFile(n).delete();
 			}
-		} catch (FileNotFoundException e) {
+			index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath + INDEX_SUFFIX)));
+			segmentNumber = -1;
+			lastIndexNanos = Long.MIN_VALUE;
+			writing = true;
+		} catch (IOException e) {
 			log.error("Could not create message store: " + e);
 		}
 	}
@@ -46,20 +119,53 @@ public class MessageStoreImpl implements MessageStore {
 	}
 
 	@Override
-	public void close() {
-		if (out != null) {
-			try {
-				out.close();
-			} catch (IOException e) {
-			}
+	public synchronized void close() {
+		if (!writing) {
+			return;
+		}
+		writing = false;
+		closeSegment();
+		try {
+			index.close();
+		} catch (IOException e) {
 		}
+		index = null;
 	}
 
 	@Override
 	public void storeMessage(byte[] bytes) {
+		storeMessage(bytes, epochNanos());
+	}
+
+	@Override
+	public synchronized void storeMessage(byte[] bytes, long timestampNanos) {
+		if (!writing) {
+			log.error("Message store was not opened for writing");
+			return;
+		}
+		if (bytes.length == 0) {
+			log.warn("Empty message not stored");
+			return;
+		}
+		final int size = RECORD_HEADER_SIZE + bytes.length;
 		try {
-			out.writeInt(bytes.length);
-			out.write(bytes);
+			if (segment == null || segment.remaining() < size
+					|| (segmentDurationNanos > 0 && timestampNanos - segmentStartNanos >= segmentDurationNanos)) {
+				nextSegment(timestampNanos, size);
+			}
+			final int pos = segment.position();
+			if (pos == HEADER_SIZE || timestampNanos - lastIndexNanos >= INDEX_INTERVAL_NANOS) {
+				index.writeLong(timestampNanos);
+				index.writeInt(segmentNumber);
+				index.writeInt(pos);
+				index.flush();
+				lastIndexNanos = timestampNanos;
+			}
+			segment.position(pos + 4);
+			segment.putLong(timestampNanos);
+			segment.put(bytes);
+			// Length last, a reader stops at a 0 length
+			segment.putInt(pos, bytes.length);
 		} catch (IOException e) {
 			log.error("Could not write to message store: " + e);
 		}
@@ -67,7 +173,12 @@ public class MessageStoreImpl implements MessageStore {
 
 	@Override
 	public void readMessages(ReaderCallback cb) {
-		if (in == null) {
+		readMessages(Long.MIN_VALUE, Long.MAX_VALUE, cb);
+	}
+
+	@Override
+	public void readMessages(long fromNanos, long toNanos, ReaderCallback cb) {
+		if (filePath == null) {
 			log.error("Message store was not opened");
 			return;
 		}
@@ -75,19 +186,152 @@ public class MessageStoreImpl implements MessageStore {
 			log.error("Reader callback cannot be null");
 			return;
 		}
-		byte[] buf = new byte[1024];
 		try {
-			while (in.available() > 0) {
-				int len = in.readInt();
-				if (buf.length < len) {
-					buf = new byte[len];
+			if (!segmentFile(0).exists()) {
+				if (new File(filePath).isFile()) {
+					readStream(cb);
+				} else {
+					log.error("Message store not found: " + filePath);
+				}
+				return;
+			}
+			long start = findStart(fromNanos);
+			int offset = (int) start;
+			byte[] buf = new byte[1024];
+			for (int n = (int) (start >>> 32); segmentFile(n).exists(); n++, offset = HEADER_SIZE) {
+				ByteBuffer bb = map(n);
+				if (bb == null) {
+					return;
+				}
+				int pos = offset;
+				while (pos + RECORD_HEADER_SIZE <= bb.limit()) {
+					int len = bb.getInt(pos);
+					if (len <= 0 || pos + RECORD_HEADER_SIZE + len > bb.limit()) {
+						break;
+					}
+					long ts = bb.getLong(pos + 4);
+					if (ts > toNanos) {
+						return;
+					}
+					if (ts >= fromNanos) {
+						if (buf.length < len) {
+							buf = new byte[len];
+						}
+						bb.position(pos + RECORD_HEADER_SIZE);
+						bb.get(buf, 0, len);
+						cb.onMessage(ts, buf, len);
+					}
+					pos += RECORD_HEADER_SIZE + len;
 				}
-				in.read(buf, 0, len);
-				cb.onMessage(buf, len);
 			}
 		} catch (IOException e) {
 			log.error("Read error on: " + filePath + " error: " + e.getMessage());
 		}
+	}
+
+	/**
+	 * @return Current time in nanoseconds since the epoch, as used for the
+	 *         receive time.
+	 */
+	public long epochNanos() {
+		return epochNanosBase + (System.nanoTime() - nanoTimeBase);
+	}
+
+	File segmentFile(int n) {
+		return new File(String.format("%s.%06d", filePath, n));
+	}
+
+	private void nextSegment(long timestampNanos, int size) throws IOException {
+		closeSegment();
+		segmentNumber++;
+		segmentChannel = FileChannel.open(segmentFile(segmentNumber).toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, HEADER_SIZE + size));
+		segment.putInt(MAGIC);
+		segment.putInt(VERSION);
+		segment.putInt(segmentNumber);
+		segment.putInt(0);
+		segment.putLong(timestampNanos);
+		segment.position(HEADER_SIZE);
+		segmentStartNanos = timestampNanos;
+	}
+
+	private void closeSegment() {
+		if (segment == null) {
+			return;
+		}
+		final int end = segment.position();
+		segment.force();
+		segment = null;
+		try {
+			// Drop the unused tail, can fail on platforms which do not allow
+			// truncating a mapped file, readers stop at the 0 length.
+			segmentChannel.truncate(end);
+		} catch (IOException e) {
+			log.debug("Could not truncate segment: " + e);
+		}
+		try {
+			segmentChannel.close();
+		} catch (IOException e) {
+		}
+		segmentChannel = null;
+	}
 
+	private ByteBuffer map(int n) throws IOException {
+		try (FileChannel ch = FileChannel.open(segmentFile(n).toPath(), StandardOpenOption.READ)) {
+			ByteBuffer bb = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			if (bb.limit() < HEADER_SIZE || bb.getInt(0) != MAGIC) {
+				log.error("Not a message store segment: " + segmentFile(n));
+				return null;
+			}
+			return bb;
+		}
+	}
+
+	/*
+	 * Segment in the high, offset in the low 32 bits. Last index entry at or
+	 * before the time, else the start of the journal.
+	 */
+	private long findStart(long fromNanos) throws IOException {
+		long start = HEADER_SIZE;
+		File f = new File(filePath + INDEX_SUFFIX);
+		if (fromNanos == Long.MIN_VALUE || !f.isFile()) {
+			return start;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+			for (long n = f.length() / INDEX_ENTRY_SIZE; n > 0; n--) {
+				long ts = in.readLong();
+				int seg = in.readInt();
+				int offset = in.readInt();
+				if (ts > fromNanos) {
+					break;
+				}
+				start = ((long) seg << 32) | offset;
+			}
+		} catch (EOFException e) {
+		}
+		return start;
+	}
+
+	/*
+	 * Stream based store format, [int length][bytes]
+	 */
+	private void readStream(ReaderCallback cb) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filePath)))) {
+			byte[] buf = new byte[1024];
+			while (true) {
+				int len;
+				try {
+					len = in.readInt();
+				} catch (EOFException e) {
+					return;
+				}
+				if (buf.length < len) {
+					buf = new byte[len];
+				}
+				in.readFully(buf, 0, len);
+				cb.onMessage(buf, len);
+			}
+		}
 	}
 }
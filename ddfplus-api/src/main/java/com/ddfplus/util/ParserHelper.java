@@ -7,8 +7,10 @@
 package com.ddfplus.util;
 
 import java.awt.event.KeyEvent;
+import java.nio.charset.StandardCharsets;
 import java.text.NumberFormat;
 
+import com.ddfplus.codec.Codec;
 import com.ddfplus.db.SymbolInfo;
 
 /**
@@ -372,6 +374,18 @@ public final class ParserHelper {
 		return f;
 	}
 
+	/**
+	 * Converts a string representation of the data to an exact fixed point
+	 * value, based on the unitcode.
+	 * 
+	 * @see Codec#parseDDFPriceMantissa(byte[], int, int, char)
+	 */
+
+	public static long string2mantissa(String value, char unitcode) throws NumberFormatException {
+		final byte[] ba = value.getBytes(StandardCharsets.US_ASCII);
+		return Codec.parseDDFPriceMantissa(ba, 0, ba.length, unitcode);
+	}
+
 	/**
 	 * A unified way of converting string values to integer values.
 	 */
@@ -6,6 +6,9 @@
  */
 package com.ddfplus.util;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -198,90 +201,232 @@ public class XMLNode {
 	
 
 	/**
-	 * Parses an individual tag for the name and attributes. This will not parse
-	 * any interior element data.
+	 * Parses an XML string into an XMLNode, including any sub nodes.
 	 */
 
-	private static XMLNode parseTag(String tag, XMLNode node) {
-		char[] ca = tag.toCharArray();
-		int pos = 0;
-		for (int i = 0; i < ca.length; i++) {
-			if ((node == null) && ((ca[i] == ' ') || (i == ca.length - 1))) {
-				node = new XMLNode(new String(ca, 0, i + 1).trim());
-				pos = i + 1;
-			} else if (((ca[i] == ' ') && ca[i - 1] == '"') || (i == ca.length - 1)) {
-				String attrib = new String(ca, pos, i - pos + 1).trim();
-				int pos2 = attrib.indexOf('=');
-				if (pos2 > -1) {
-					String key = attrib.substring(0, pos2);
-					String val = attrib.substring(pos2 + 1, attrib.length());
-					if (val.startsWith("\""))
-						val = val.substring(1, val.length());
-					if (val.endsWith("\""))
-						val = val.substring(0, val.length() - 1);
-					node.m_Attributes.put(key, val);
-				} else
-					node.m_Attributes.put(attrib, null);
-
-				pos = i + 1;
-			}
-		}
-
-		return node;
+	public static XMLNode parse(final String xml) {
+		final byte[] ba = xml.getBytes(StandardCharsets.UTF_8);
+		return parse(ba, 0, ba.length);
 	}
 
 	/**
-	 * Parses an XML string into an XMLNode. This method is recursive, and will
-	 * create any subnodes that may be included in the input.
+	 * Parses XML bytes into an XMLNode, including any sub nodes, in a single
+	 * pass without recursion. Text outside of the tags, such as a leading '%'
+	 * or trailing line feed, is skipped. The predefined entities and character
+	 * references in attribute values are decoded, other entities are kept as
+	 * is.
+	 * 
+	 * @param ba
+	 *            bytes
+	 * @param offset
+	 *            start offset
+	 * @param length
+	 *            number of bytes
+	 * @return The root node, null if there is no element
 	 */
 
-	public static XMLNode parse(final String xml) {
+	public static XMLNode parse(final byte[] ba, final int offset, final int length) {
+		final int end = offset + length;
+		final ArrayDeque<XMLNode> open = new ArrayDeque<XMLNode>();
+		XMLNode root = null;
+		int i = offset;
 
-		String s1 = "";
+		while (i < end) {
+			if (ba[i++] != '<' || i >= end) {
+				continue;
+			}
+			final byte b = ba[i];
+			if (b == '/' || b == '?' || b == '!') {
+				// End tag, declaration or comment
+				i = indexOf(ba, i, end, '>') + 1;
+				if (b == '/') {
+					open.poll();
+					if (open.isEmpty() && root != null) {
+						break;
+					}
+				}
+				continue;
+			}
+
+			int start = i;
+			while (i < end && !isNameEnd(ba[i])) {
+				i++;
+			}
+			final XMLNode node = new XMLNode(name(ba, start, i));
+
+			boolean closed = false;
+			while (i < end) {
+				final byte c = ba[i];
+				if (c == '>') {
+					i++;
+					break;
+				} else if (c == '/') {
+					closed = true;
+					i++;
+				} else if (c <= ' ') {
+					i++;
+				} else {
+					// Attribute
+					start = i;
+					while (i < end && !isNameEnd(ba[i]) && ba[i] != '=') {
+						i++;
+					}
+					final String key = name(ba, start, i);
+					String value = null;
+					if (i < end && ba[i] == '=') {
+						i++;
+						if (i < end && (ba[i] == '"' || ba[i] == '\'')) {
+							final byte quote = ba[i++];
+							start = i;
+							i = indexOf(ba, i, end, quote);
+							value = decode(new String(ba, start, i - start, StandardCharsets.UTF_8));
+							i++;
+						} else {
+							start = i;
+							while (i < end && !isNameEnd(ba[i])) {
+								i++;
+							}
+							value = decode(new String(ba, start, i - start, StandardCharsets.UTF_8));
+						}
+					}
+					node.m_Attributes.put(key, value);
+				}
+			}
 
-		String s2 = "";
+			if (open.isEmpty()) {
+				if (root != null) {
+					// Only one root element
+					break;
+				}
+				root = node;
+			} else {
+				open.peek().m_SubNodes.add(node);
+			}
+			if (!closed) {
+				open.push(node);
+			} else if (open.isEmpty()) {
+				break;
+			}
+		}
 
-		if (xml.endsWith("/>")) {
-			s1 = xml.substring(1, xml.length() - 2);
-		} else {
-			int pos = xml.indexOf(">");
+		return root;
+	}
 
-			s1 = xml.substring(1, pos);
-			s2 = xml.substring(pos + 1).trim();
-			pos = s2.lastIndexOf("</");
-			s2 = s2.substring(0, pos);
+	/*
+	 * Decodes &amp; &lt; &gt; &quot; &apos; and &#NN; / &#xNN; references.
+	 */
+	static String decode(String s) {
+		int amp = s.indexOf('&');
+		if (amp < 0) {
+			return s;
 		}
+		final StringBuilder sb = new StringBuilder(s.length());
+		int from = 0;
+		while (amp >= 0) {
+			sb.append(s, from, amp);
+			final int semi = s.indexOf(';', amp);
+			final int c = semi < 0 ? -1 : reference(s, amp + 1, semi);
+			if (c < 0) {
+				sb.append('&');
+				from = amp + 1;
+			} else {
+				sb.appendCodePoint(c);
+				from = semi + 1;
+			}
+			amp = s.indexOf('&', from);
+		}
+		sb.append(s, from, s.length());
+		return sb.toString();
+	}
 
-		XMLNode node = parseTag(s1.trim(), null);
-
-		char[] ca = s2.toCharArray();
-		int iLevel = 0;
-
-		StringBuilder tmp = new StringBuilder();
-		boolean b = false;
-		for (int i = 0; i < ca.length; i++) {
-			tmp.append(ca[i]);
-			if ((ca[i] == '<') && (ca[i + 1] != '/'))
-				iLevel++;
-			else if ((ca[i] == '<') && (ca[i + 1] == '/')) {
-				b = true;
-			} else if (ca[i] == '>') {
-				if (ca[i - 1] == '/')
-					iLevel--;
-				else if (b) {
-					b = false;
-					iLevel--;
-				}
+	private static int reference(String s, int start, int end) {
+		final int len = end - start;
+		if (len > 1 && s.charAt(start) == '#') {
+			final boolean hex = s.charAt(start + 1) == 'x' || s.charAt(start + 1) == 'X';
+			try {
+				final int c = Integer.parseInt(s, start + (hex ? 2 : 1), end, hex ? 16 : 10);
+				return Character.isValidCodePoint(c) ? c : -1;
+			} catch (NumberFormatException e) {
+				return -1;
+			}
+		}
+		if (len == 3 && s.startsWith("amp", start)) {
+			return '&';
+		} else if (len == 2 && s.startsWith("lt", start)) {
+			return '<';
+		} else if (len == 2 && s.startsWith("gt", start)) {
+			return '>';
+		} else if (len == 4 && s.startsWith("quot", start)) {
+			return '"';
+		} else if (len == 4 && s.startsWith("apos", start)) {
+			return '\'';
+		}
+		return -1;
+	}
 
-				if (iLevel == 0) {
-					node.m_SubNodes.add(XMLNode.parse(tmp.toString()));
-					tmp = new StringBuilder();
-				}
+	private static boolean isNameEnd(byte b) {
+		return b <= ' ' || b == '>' || b == '/';
+	}
+
+	private static int indexOf(byte[] ba, int from, int end, int b) {
+		while (from < end && ba[from] != b) {
+			from++;
+		}
+		return from;
+	}
+
+	/*
+	 * Element and attribute names of the refresh messages, looked up by length
+	 * and first byte so parsing does not create a String per name.
+	 */
+	private static final String[] NAMES = { "QUOTE", "SESSION", "BOOK", "CV", "symbol", "name", "exchange",
+			"basecode", "pointvalue", "tickincrement", "ddfexchange", "flag", "marketcondition", "bid", "bidsize",
+			"ask", "asksize", "mode", "lastupdate", "day", "session", "timestamp", "tradetime", "open", "open2", "high",
+			"low", "last", "close", "close2", "previous", "settlement", "tradesize", "openinterest", "openinterestdate",
+			"volume", "numtrades", "pricevolume", "vwap", "blocktrade", "ticks", "id", "askcount", "bidcount",
+			"askprices", "asksizes", "bidprices", "bidsizes", "data", "date", "interval", "lastcvol", "lastsize",
+			"time" };
+
+	private static final int NAME_MAX_LENGTH = 32;
+
+	private static final String[][] NAME_TABLE = new String[NAME_MAX_LENGTH * 128][];
+
+	static {
+		for (String n : NAMES) {
+			int k = n.length() * 128 + n.charAt(0);
+			String[] l = NAME_TABLE[k];
+			if (l == null) {
+				NAME_TABLE[k] = new String[] { n };
+			} else {
+				l = Arrays.copyOf(l, l.length + 1);
+				l[l.length - 1] = n;
+				NAME_TABLE[k] = l;
 			}
 		}
+	}
 
-		return node;
+	private static String name(byte[] ba, int start, int end) {
+		final int len = end - start;
+		if (len > 0 && len < NAME_MAX_LENGTH && ba[start] > 0) {
+			final String[] l = NAME_TABLE[len * 128 + ba[start]];
+			if (l != null) {
+				for (String n : l) {
+					if (matches(n, ba, start, len)) {
+						return n;
+					}
+				}
+			}
+		}
+		return new String(ba, start, len, StandardCharsets.UTF_8);
+	}
 
+	private static boolean matches(String n, byte[] ba, int start, int len) {
+		for (int j = 1; j < len; j++) {
+			if (n.charAt(j) != ba[start + j]) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	@Override
@@ -0,0 +1,112 @@
+package com.ddfplus.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.ddfplus.db.Quote;
+import com.ddfplus.db.SymbolInfo;
+
+public class ConflatingQuoteHandlerTest {
+
+	@Test
+	public void coalescesWhileConsumerIsBusy() throws Exception {
+		final CountDownLatch busy = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Map<String, Float> last = new ConcurrentHashMap<>();
+		TestHandler consumer = new TestHandler() {
+			@Override
+			public void onQuote(Quote quote) {
+				busy.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+				}
+				last.put(quote.getSymbolInfo().getSymbol(), quote.getBid());
+			}
+		};
+		ConflatingQuoteHandler h = new ConflatingQuoteHandler(consumer);
+		try {
+			h.onQuote(quote("ESZ9", 0));
+			assertTrue(busy.await(5, TimeUnit.SECONDS));
+			// Consumer is blocked, these are coalesced per symbol
+			for (int i = 1; i <= 1000; i++) {
+				h.onQuote(quote("ESZ9", i));
+				h.onQuote(quote("NQZ9", i));
+			}
+			assertEquals(2, h.getPending());
+			release.countDown();
+
+			long end = System.currentTimeMillis() + 5000;
+			while (h.getDelivered() < 3 && System.currentTimeMillis() < end) {
+				Thread.sleep(10);
+			}
+			assertEquals(2001, h.getReceived());
+			assertEquals(3, h.getDelivered());
+			assertEquals(1000.0f, last.get("ESZ9"), 0.0);
+			assertEquals(1000.0f, last.get("NQZ9"), 0.0);
+		} finally {
+			h.shutdown();
+		}
+	}
+
+	@Test
+	public void keepsRefreshFlag() throws Exception {
+		final CountDownLatch refreshed = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		TestHandler consumer = new TestHandler() {
+			@Override
+			public void onQuote(Quote quote) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+				}
+			}
+
+			@Override
+			public void onQuote(Quote quote, boolean refreshMessage) {
+				refreshed.countDown();
+			}
+		};
+		ConflatingQuoteHandler h = new ConflatingQuoteHandler(consumer, 1);
+		try {
+			h.onQuote(quote("ESZ9", 0));
+			h.onQuote(quote("NQZ9", 1), true);
+			h.onQuote(quote("NQZ9", 2));
+			release.countDown();
+			assertTrue(refreshed.await(5, TimeUnit.SECONDS));
+		} finally {
+			h.shutdown();
+		}
+	}
+
+	private static Quote quote(String symbol, float bid) {
+		Quote q = new Quote(new SymbolInfo(symbol, symbol, "M", 'A', null, 1));
+		q.setBid(bid);
+		return q;
+	}
+
+	private static class TestHandler implements QuoteHandler {
+
+		@Override
+		public void onQuote(Quote quote) {
+		}
+
+		@Override
+		public void onQuote(Quote quote, boolean refreshMessage) {
+			onQuote(quote);
+		}
+
+		@Override
+		public boolean isSnapshotRequest() {
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,135 @@
+package com.ddfplus.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.ddfplus.messages.Data20Parameter;
+import com.ddfplus.messages.Data27Trade;
+import com.ddfplus.messages.Data28BidAsk;
+
+public class DdfMessageViewTest {
+
+	private final DdfMessageView view = new DdfMessageView();
+
+	@Test
+	public void trade27() {
+		byte[] ba = "\u00012HOZ9,7\u0002CJ1021371,5,SG\u0003".getBytes();
+		Data27Trade m = (Data27Trade) Codec.parseMessage(ba);
+
+		view.wrap(ba, 0, ba.length);
+		assertTrue(view.isValid());
+		assertTrue(view.isTrade());
+		assertEquals('2', view.getRecord());
+		assertEquals('7', view.getSubrecord());
+		assertTrue(view.symbolEquals("HOZ9"));
+		assertEquals("HOZ9".hashCode(), view.symbolHash());
+		assertEquals(m.getBaseCode(), view.getBaseCode());
+		assertEquals(m.getExchange(), view.getExchange());
+		assertEquals(m.getTradePrice(), view.getTradePrice(), 0.0f);
+		assertEquals(m.getTradeSize(), view.getTradeSize());
+		assertEquals('S', view.getDay());
+		assertEquals('G', view.getSession());
+		assertEquals(m.getPositionETX(), view.getPositionETX());
+	}
+
+	@Test
+	public void trade2ZWithOffset() {
+		byte[] msg = "\u00012HEUS,Z\u0002A152591,100,NA\u0003".getBytes();
+		byte[] ba = new byte[msg.length + 10];
+		System.arraycopy(msg, 0, ba, 5, msg.length);
+
+		view.wrap(ba, 5, msg.length);
+		assertTrue(view.isTrade());
+		assertEquals("HEUS", view.getSymbol());
+		assertEquals(5.91f, view.getTradePrice(), 0.0f);
+		assertEquals(100, view.getTradeSize());
+		assertEquals('N', view.getDay());
+		assertEquals('A', view.getSession());
+	}
+
+	@Test
+	public void bidAsk28() {
+		byte[] ba = "\u00012HOZ9,8\u0002CJ1020911,5,20919,1,SG\u0003".getBytes();
+		Data28BidAsk m = (Data28BidAsk) Codec.parseMessage(ba);
+
+		view.wrap(ba, 0, ba.length);
+		assertTrue(view.isBidAsk());
+		assertEquals(m._bid, view.getBidPrice(), 0.0f);
+		assertEquals((int) m._bidSize, view.getBidSize());
+		assertEquals(m._ask, view.getAskPrice(), 0.0f);
+		assertEquals((int) m._askSize, view.getAskSize());
+	}
+
+	@Test
+	public void parameter20() {
+		byte[] ba = "\u00012SF0,0\u00022B1010530,D0Q \u0003".getBytes();
+		Data20Parameter m = (Data20Parameter) Codec.parseMessage(ba);
+
+		view.wrap(ba, 0, ba.length);
+		assertTrue(view.isParameter());
+		assertFalse(view.isBidAsk());
+		assertEquals(m.getElement(), view.getElement());
+		assertEquals(m.getModifier(), view.getModifier());
+		assertEquals(m.getValueAsFloat(), view.getValueAsPrice(), 0.0f);
+		assertEquals(m.getDay(), view.getDay());
+		assertEquals(m.getSession(), view.getSession());
+	}
+
+	@Test
+	public void parameter20Ask() {
+		byte[] ba = "\u00012MEZ900C,0\u00022G10100,10C \u0003".getBytes();
+		Data28BidAsk m = (Data28BidAsk) Codec.parseMessage(ba);
+
+		view.wrap(ba, 0, ba.length);
+		assertTrue(view.hasAsk());
+		assertFalse(view.hasBid());
+		assertEquals(m._ask, view.getAskPrice(), 0.0f);
+	}
+
+	@Test
+	public void spread20() {
+		byte[] ba = "\u0001SSPZ9|11200C,0\u0002AM10GN2ESZ9|11200C,300,00GR\u0003".getBytes();
+		Data20Parameter m = (Data20Parameter) Codec.parseMessage(ba);
+
+		view.wrap(ba, 0, ba.length);
+		assertTrue(view.isSpread());
+		assertTrue(view.isParameter());
+		assertTrue(view.symbolEquals("SPZ9|11200C"));
+		assertEquals(m.getValueAsFloat(), view.getValueAsPrice(), 0.0f);
+		assertEquals(m.getDay(), view.getDay());
+		assertEquals(m.getSession(), view.getSession());
+	}
+
+	@Test
+	public void headerOnly() {
+		byte[] ba = "\u00013IBM,S\u0002AN>>,10/07/2009,12112,12285,12094,12278,5967600\u0003".getBytes();
+		view.wrap(ba, 0, ba.length);
+		assertTrue(view.isMarketMessage());
+		assertEquals('3', view.getRecord());
+		assertEquals('S', view.getSubrecord());
+		assertEquals('A', view.getBaseCode());
+		assertEquals('N', view.getExchange());
+		assertFalse(view.isTrade());
+	}
+
+	@Test
+	public void timestamp() {
+		byte[] ba = "\u0001#20091123185002\u0003".getBytes();
+		view.wrap(ba, 0, ba.length);
+		assertTrue(view.isValid());
+		assertFalse(view.isMarketMessage());
+		assertEquals('#', view.getRecord());
+	}
+
+	@Test
+	public void corrupted() {
+		byte[] ba = "\u00012COMM,8A".getBytes();
+		view.wrap(ba, 0, ba.length);
+		assertFalse(view.isValid());
+		assertFalse(view.isBidAsk());
+	}
+
+}
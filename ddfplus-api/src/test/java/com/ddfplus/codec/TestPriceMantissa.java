@@ -0,0 +1,78 @@
+package com.ddfplus.codec;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.ddfplus.db.SymbolInfo;
+import com.ddfplus.messages.Data27Trade;
+import com.ddfplus.messages.Data28BidAsk;
+
+public class TestPriceMantissa {
+
+	private static long mantissa(String value, char baseCode) {
+		byte[] ba = value.getBytes();
+		return Codec.parseDDFPriceMantissa(ba, 0, ba.length, baseCode);
+	}
+
+	private static float price(String value, char baseCode) {
+		byte[] ba = value.getBytes();
+		return Codec.parseDDFPriceValue(ba, 0, ba.length, baseCode);
+	}
+
+	@Test
+	public void decimal() {
+		assertEquals(1021371L, mantissa("1021371", 'C'));
+		assertEquals(4, Codec.getPriceScale(SymbolInfo.ddfuc2bb('C')));
+		assertEquals(102.1371f, price("1021371", 'C'), 0.0f);
+		assertEquals(-36800L, mantissa("-36800", 'I'));
+		assertEquals(0L, mantissa("-", 'A'));
+		assertEquals(0L, mantissa("", 'A'));
+	}
+
+	@Test
+	public void fractions() {
+		// 123 4/8
+		assertEquals(123500L, mantissa("1234", '2'));
+		assertEquals(3, Codec.getPriceScale(SymbolInfo.ddfuc2bb('2')));
+		assertEquals(123.5f, price("1234", '2'), 0.0f);
+		// 123 15/16
+		assertEquals(1239375L, mantissa("12315", '3'));
+		// 123 31/32
+		assertEquals(12396875L, mantissa("12331", '4'));
+		// 123 63/64
+		assertEquals(123984375L, mantissa("12363", '5'));
+		// 123 127/128
+		assertEquals(1239921875L, mantissa("123127", '6'));
+		// 123 255/256
+		assertEquals(12399609375L, mantissa("123255", '7'));
+		assertEquals(123.99609375f, price("123255", '7'), 0.0f);
+		// -12 1/4
+		assertEquals(-12250L, mantissa("-122", '2'));
+		assertEquals(-12.25f, price("-122", '2'), 0.0f);
+	}
+
+	@Test
+	public void roundTrip() {
+		assertEquals(1021371L, Codec.floatToMantissa(102.1371f, SymbolInfo.ddfuc2bb('C')));
+		assertEquals(123500L, Codec.floatToMantissa(123.5f, SymbolInfo.ddfuc2bb('2')));
+		assertEquals(102.1371, Codec.mantissaToDouble(1021371L, SymbolInfo.ddfuc2bb('C')), 0.0);
+		assertEquals(123.99609375, Codec.mantissaToDouble(12399609375L, SymbolInfo.ddfuc2bb('7')), 0.0);
+	}
+
+	@Test
+	public void messages() {
+		Data27Trade t = (Data27Trade) Codec.parseMessage("\u00012HOZ9,7\u0002CJ1021371,5,SG\u0003".getBytes());
+		assertEquals(21371L, t.getTradePriceMantissa());
+		assertEquals(4, t.getPriceScale());
+
+		Data28BidAsk ba = (Data28BidAsk) Codec.parseMessage("\u00012HOZ9,8\u0002CJ1020911,5,20919,1,SG\u0003".getBytes());
+		assertEquals(20911L, ba.getBidPriceMantissa());
+		assertEquals(20919L, ba.getAskPriceMantissa());
+
+		Data28BidAsk ask = (Data28BidAsk) Codec.parseMessage("\u00012MEZ900C,0\u00022G10100,10C \u0003".getBytes());
+		assertEquals(10000L, ask.getAskPriceMantissa());
+		assertEquals(10.0f, ask.getAskPrice(), 0.0f);
+	}
+
+}
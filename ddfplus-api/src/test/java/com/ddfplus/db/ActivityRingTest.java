@@ -0,0 +1,29 @@
+package com.ddfplus.db;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+public class ActivityRingTest {
+
+	@Test
+	public void recentIdsNewestFirst() {
+		ActivityRing ring = new ActivityRing(4);
+		ring.record(1, 100);
+		ring.record(2, 101);
+		ring.record(1, 102);
+		assertArrayEquals(new int[] { 1, 2 }, ring.recent(100000, 10));
+		assertArrayEquals(new int[] { 1 }, ring.recent(102000, 10));
+		assertArrayEquals(new int[] { 1 }, ring.recent(100000, 1));
+	}
+
+	@Test
+	public void oldestEntriesAreOverwritten() {
+		ActivityRing ring = new ActivityRing(4);
+		for (int id = 1; id <= 6; id++) {
+			ring.record(id, 100 + id);
+		}
+		assertArrayEquals(new int[] { 6, 5, 4, 3 }, ring.recent(0, 10));
+	}
+
+}
@@ -0,0 +1,68 @@
+package com.ddfplus.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.ddfplus.util.XMLNode;
+
+public class BookArenaTest {
+
+	@Test
+	public void poolsLevelStorage() {
+		BookArena arena = new BookArena(20, 2);
+		assertEquals(2, arena.getBooksPooled());
+		assertEquals(0, arena.getBooksInUse());
+
+		DataMaster dataMaster = new DataMaster(MasterType.Realtime);
+		dataMaster.setBookArena(arena);
+		BookQuote book = dataMaster.processMessage(FeedFixtures.BOOK.getBytes()).getBook();
+		assertEquals(20, book.getDepth());
+		assertEquals(5, book.getBidCount());
+		assertEquals(1, arena.getBooksInUse());
+		assertEquals(1, arena.getBooksPooled());
+		assertEquals(2 * arena.getBytesPerBook(), arena.getMemoryUsage());
+
+		float[] prices = (float[]) book.getBidData()[0];
+		dataMaster.clearDataCache();
+		assertEquals(0, arena.getBooksInUse());
+		assertEquals(1, arena.getBooksPooled());
+
+		// A cleared book can still be held, its storage is not re-used
+		BookQuote next = dataMaster.processMessage(FeedFixtures.BOOK.replace("XIZ9", "XIH0").getBytes()).getBook();
+		assertNotSame(prices, next.getBidData()[0]);
+		assertEquals(5, book.getBidCount());
+		assertEquals(63795f, prices[0], 0.001f);
+	}
+
+	@Test
+	public void bytesPerBookGrowsWithDepth() {
+		long b10 = new BookArena(10, 0).getBytesPerBook();
+		long b50 = new BookArena(50, 0).getBytesPerBook();
+		// 4 level arrays and 4 delta arrays of twice the depth
+		assertEquals(40 * (4 * 4 + 4 * 8), b50 - b10);
+		assertTrue(b10 > 0);
+	}
+
+	@Test
+	public void refreshBeyondDepthIsTruncated() {
+		XMLNode node = new XMLNode("BOOK");
+		node.setAttribute("symbol", "XIZ9");
+		node.setAttribute("basecode", "A");
+		node.setAttribute("askcount", "3");
+		node.setAttribute("bidcount", "3");
+		node.setAttribute("askprices", "101,102,103");
+		node.setAttribute("asksizes", "1,2,3");
+		node.setAttribute("bidprices", "99,98,97");
+		node.setAttribute("bidsizes", "4,5,6");
+
+		BookQuote book = new BookQuote("XIZ9", 2);
+		book.load(node);
+		assertEquals(2, book.getAskCount());
+		assertEquals(2, book.getBidCount());
+		assertEquals(5, ((int[]) book.getBidData()[1])[1]);
+	}
+
+}
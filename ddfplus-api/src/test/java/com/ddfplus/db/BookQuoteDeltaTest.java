@@ -0,0 +1,72 @@
+package com.ddfplus.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class BookQuoteDeltaTest {
+
+	// Top bid size changed, ask side one level shorter
+	private static final String UPDATE = "\u00013XIZ9,B\u00028X54,63795K30,63790L5,63780M1000,63775N35,63765O5,63800J20,63815I5,63820H10,63825G5\u0003";
+
+	@Test
+	public void reportsChangedLevels() {
+		DataMaster dataMaster = new DataMaster(MasterType.Realtime);
+
+		FeedEvent fe = dataMaster.processMessage(FeedFixtures.BOOK.getBytes());
+		BookQuote book = fe.getBook();
+		assertNotNull(book);
+		assertEquals(1, book.getSequence());
+		assertEquals(10, fe.getBookDelta().getCount());
+
+		fe = dataMaster.processMessage(UPDATE.getBytes());
+		assertSame(book, fe.getBook());
+		assertEquals(2, book.getSequence());
+		BookQuoteDelta delta = fe.getBookDelta();
+		assertEquals(2, delta.getSequence());
+		assertEquals(2, delta.getCount());
+
+		assertEquals(BookQuoteDelta.Side.Ask, delta.getSide(0));
+		assertEquals(4, delta.getLevel(0));
+		assertEquals(63830f, delta.getPrice(0), 0.0f);
+		assertEquals(0, delta.getSize(0));
+		// Removed from the book
+		assertEquals(0.0f, book.askprices[4], 0.0f);
+		assertEquals(0, book.asksizes[4]);
+
+		assertEquals(BookQuoteDelta.Side.Bid, delta.getSide(1));
+		assertEquals(0, delta.getLevel(1));
+		assertEquals(30, delta.getSize(1));
+		assertEquals(30, book.bidsizes[0]);
+		assertEquals(4, book.getAskCount());
+	}
+
+	@Test
+	public void refreshReplacesTheBook() {
+		DataMaster dataMaster = new DataMaster(MasterType.Realtime);
+		BookQuote book = dataMaster.processMessage(FeedFixtures.BOOK.getBytes()).getBook();
+		assertEquals(5, book.getAskCount());
+
+		// 2 levels, the second bid without a price
+		String refresh = "%<BOOK symbol=\"XIZ9\" basecode=\"8\" askcount=\"2\" bidcount=\"2\" askprices=\"63805,63810\" asksizes=\"3,4\" bidprices=\"63785,\" bidsizes=\"7,\"/>";
+		FeedEvent fe = dataMaster.processMessage(refresh.getBytes());
+		assertSame(book, fe.getBook());
+		assertEquals(2, book.getAskCount());
+		assertEquals(2, book.getBidCount());
+
+		float[] askPrices = (float[]) book.getAskData()[0];
+		int[] askSizes = (int[]) book.getAskData()[1];
+		assertEquals(63810f, askPrices[1], 0.0f);
+		assertEquals(4, askSizes[1]);
+		for (int i = 2; i < askPrices.length; i++) {
+			assertEquals(0.0f, askPrices[i], 0.0f);
+			assertEquals(0, askSizes[i]);
+		}
+		assertEquals(63785f, ((float[]) book.getBidData()[0])[0], 0.0f);
+		assertEquals(0.0f, ((float[]) book.getBidData()[0])[1], 0.0f);
+		assertEquals(0, ((int[]) book.getBidData()[1])[1]);
+	}
+
+}
@@ -0,0 +1,105 @@
+package com.ddfplus.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DataMasterSnapshotTest {
+
+	private static final byte[] REFRESH = FeedFixtures.REFRESH.getBytes();
+
+	private static final byte[] TRADE = FeedFixtures.TRADE.getBytes();
+
+	private static final byte[] BOOK = FeedFixtures.BOOK.getBytes();
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private DataMaster dataMaster;
+
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		dataMaster = new DataMaster(MasterType.Realtime);
+		file = folder.getRoot().toPath().resolve("ddf.snapshot");
+	}
+
+	@Test
+	public void quotesAndBooksAreRestoredStale() throws IOException {
+		Quote quote = dataMaster.processMessage(REFRESH).getQuote();
+		quote.setRequestSymbol("ES*1");
+		dataMaster.putQuote(quote);
+		dataMaster.processMessage(TRADE);
+		BookQuote book = dataMaster.processMessage(BOOK).getBook();
+		assertEquals(2, DataMasterSnapshot.write(dataMaster, file));
+		assertFalse(Files.exists(file.resolveSibling("ddf.snapshot.tmp")));
+
+		DataMaster restored = new DataMaster(MasterType.Realtime);
+		assertEquals(2, DataMasterSnapshot.read(restored, file));
+
+		Quote q = restored.getQuote("ESH2");
+		assertNotNull(q);
+		assertTrue(q.isStale());
+		assertEquals(q, restored.getQuote("ES*1"));
+		assertEquals("E-Mini S&P 500", q.getSymbolInfo().getName());
+		assertEquals(50.0f, q.getSymbolInfo().getPointValue(), 0.0);
+		assertEquals(quote.getCombinedSession().getLast(), q.getCombinedSession().getLast(), 0.0);
+		assertEquals(quote.getCombinedSession().getVolume(), q.getCombinedSession().getVolume());
+
+		BookQuote b = restored.getBookQuote("XIZ9");
+		assertTrue(b.isStale());
+		assertEquals(book.getBidCount(), b.getBidCount());
+		assertEquals(((float[]) book.getAskData()[0])[0], ((float[]) b.getAskData()[0])[0], 0.0);
+
+		// Live data replaces the stale entries
+		assertFalse(restored.processMessage(REFRESH).getQuote().isStale());
+		assertFalse(restored.processMessage(BOOK).getBook().isStale());
+	}
+
+	@Test
+	public void existingEntriesAreKept() throws IOException {
+		dataMaster.processMessage(REFRESH);
+		DataMasterSnapshot.write(dataMaster, file);
+
+		DataMaster restored = new DataMaster(MasterType.Realtime);
+		restored.processMessage(REFRESH);
+		assertEquals(0, DataMasterSnapshot.read(restored, file));
+		assertFalse(restored.getQuote("ESH2").isStale());
+	}
+
+	@Test
+	public void offHeapQuotesAreNotLoaded() throws IOException {
+		OffHeapQuoteStore store = new OffHeapQuoteStore(1);
+		dataMaster.setQuoteStore(store);
+		dataMaster.processMessage(REFRESH);
+		long volume = dataMaster.processMessage(TRADE).getQuote().getCombinedSession().getVolume();
+		Quote hot = dataMaster.processMessage(FeedFixtures.REFRESH.replace("ESH2", "ESM2").getBytes()).getQuote();
+		assertEquals(2, DataMasterSnapshot.write(dataMaster, file));
+		assertEquals(1, store.getHotCount());
+		assertSame(hot, dataMaster.getQuote("ESM2"));
+
+		DataMaster restored = new DataMaster(MasterType.Realtime);
+		assertEquals(2, DataMasterSnapshot.read(restored, file));
+		assertEquals(volume, restored.getQuote("ESH2").getCombinedSession().getVolume());
+		assertEquals("ESM2", restored.getQuote("ESM2").getSymbolInfo().getSymbol());
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsOtherFiles() throws IOException {
+		Files.write(file, new byte[64]);
+		DataMasterSnapshot.read(dataMaster, file);
+	}
+
+}
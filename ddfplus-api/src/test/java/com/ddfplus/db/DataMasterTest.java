@@ -6,6 +6,8 @@ import com.ddfplus.messages.DdfMarketBase;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -77,6 +79,112 @@ public class DataMasterTest {
 
 	}
 
+	@Test
+	public void mantissasAreTakenFromTheMessages() {
+		symbolInfo = new SymbolInfo("XYZ", "XYZ", "J", 'B', null, 1);
+		quote = new Quote(symbolInfo);
+		dataMaster.putQuote(quote);
+
+		// 123456.787 is not exact as a float
+		dataMaster.processMessage("\u00012XYZ,7\u0002BJ10123456787,5,SG\u0003".getBytes());
+		dataMaster.processMessage("\u00012XYZ,8\u0002BJ10123456785,5,123456787,1,SG\u0003".getBytes());
+
+		Quote update = dataMaster.getQuote("XYZ");
+		assertEquals(3, update.getPriceScale());
+		assertEquals(123456787L, update.getCombinedSession().getLastMantissa());
+		assertEquals(123456785L, update.getBidMantissa());
+		assertEquals(123456787L, update.getAskMantissa());
+		// Survives a copy
+		assertEquals(123456787L, ((Quote) update.clone()).getCombinedSession().getLastMantissa());
+
+		// Prices only set as a float are rounded
+		update.getCombinedSession().setLast(123.5f);
+		assertEquals(123500L, update.getCombinedSession().getLastMantissa());
+	}
+
+	@Test
+	public void refreshActiveQuotesAfterGap() {
+		List<String> scheduled = new ArrayList<>();
+		dataMaster.setFeedService(scheduled::add);
+		Quote idle = new Quote(new SymbolInfo("MEZ900C", "MEZ900C", "G", '2', null, 1));
+		idle.updateLastUpdated(1000);
+		dataMaster.putQuote(idle);
+		for (String s : new String[] { "MEZ910C", "MEZ920C", "MEZ930C" }) {
+			dataMaster.putQuote(new Quote(new SymbolInfo(s, s, "G", '2', null, 1)));
+		}
+		dataMaster.processMessage("\u00012MEZ920C,0\u00022G10100,A0C \u0003".getBytes());
+		dataMaster.processMessage("\u00012MEZ910C,0\u00022G10100,A0C \u0003".getBytes());
+
+		List<String> refreshed = dataMaster.refreshActiveQuotes(2000, 2);
+		assertEquals(Arrays.asList("MEZ910C", "MEZ920C"), refreshed);
+		assertEquals(refreshed, scheduled);
+		for (String s : refreshed) {
+			assertTrue(dataMaster.getQuote(s).isStale());
+		}
+		assertFalse(dataMaster.getQuote("MEZ900C").isStale());
+	}
+
+	@Test
+	public void activeQuotesAreMarkedStaleByTheirProcessingThread() {
+		List<String> scheduled = new ArrayList<>();
+		dataMaster.setFeedService(scheduled::add);
+		dataMaster.putQuote(new Quote(new SymbolInfo("MEZ910C", "MEZ910C", "G", '2', null, 1)));
+		dataMaster.processMessage("\u00012MEZ910C,0\u00022G10100,A0C \u0003".getBytes());
+
+		List<Runnable> tasks = new ArrayList<>();
+		List<Integer> ids = new ArrayList<>();
+		List<String> refreshed = dataMaster.refreshActiveQuotes(System.currentTimeMillis() - 60000, 10,
+				(id, task) -> {
+					ids.add(id);
+					tasks.add(task);
+				});
+		assertEquals(Arrays.asList("MEZ910C"), refreshed);
+		assertEquals(dataMaster.getSymbolRegistry().getId("MEZ910C"), (int) ids.get(0));
+		// Refresh requested at once, the quote is marked by the owning thread
+		assertEquals(refreshed, scheduled);
+		assertFalse(dataMaster.getQuote("MEZ910C").isStale());
+		tasks.get(0).run();
+		assertTrue(dataMaster.getQuote("MEZ910C").isStale());
+	}
+
+	@Test
+	public void refreshedQuotesAreNotMarkedStale() {
+		dataMaster.setFeedService(symbol -> {
+		});
+		dataMaster.putQuote(new Quote(new SymbolInfo("MEZ910C", "MEZ910C", "G", '2', null, 1)));
+		dataMaster.processMessage("\u00012MEZ910C,0\u00022G10100,A0C \u0003".getBytes());
+
+		List<Runnable> tasks = new ArrayList<>();
+		dataMaster.refreshActiveQuotes(System.currentTimeMillis() - 60000, 10, (id, task) -> tasks.add(task));
+		// Refresh applied before the task runs
+		Quote refresh = new Quote(new SymbolInfo("MEZ910C", "MEZ910C", "G", '2', null, 1));
+		dataMaster.putQuote(refresh);
+		tasks.get(0).run();
+		assertSame(refresh, dataMaster.getQuote("MEZ910C"));
+		assertFalse(refresh.isStale());
+	}
+
+	@Test
+	public void reuseEventsRecyclesFeedAndMarketEvents() {
+		dataMaster.putQuote(new Quote(new SymbolInfo("MEZ900C", "MEZ900C", "G", '2', null, 1)));
+		dataMaster.putQuote(new Quote(new SymbolInfo("MEZ910C", "MEZ910C", "G", '2', null, 1)));
+		assertNotSame(dataMaster.processMessage("\u00012MEZ900C,0\u00022G10100,A0C \u0003".getBytes()),
+				dataMaster.processMessage("\u00012MEZ900C,0\u00022G10100,A0C \u0003".getBytes()));
+
+		dataMaster.setReuseEvents(true);
+		FeedEvent fe = dataMaster.processMessage("\u00012MEZ910C,0\u00022G10100,A0C \u0003".getBytes());
+		MarketEvent me = fe.getMarketEvents().get(0);
+		assertEquals("MEZ910C", me.getSymbol());
+
+		FeedEvent fe2 = dataMaster.processMessage("\u00012MEZ910C,0\u00022G10200,50C \u0003".getBytes());
+		assertSame(fe, fe2);
+		assertEquals(1, fe2.getMarketEvents().size());
+		assertSame(me, fe2.getMarketEvents().get(0));
+		assertEquals(MarketEventType.High, me.getEventType());
+		assertEquals(fe2.getQuote().getCombinedSession().getHigh(), me.getHigh(), 0.0);
+		assertEquals(0.0f, me.getOpen(), 0.0);
+	}
+
 	@Test
 	public void process2ZSaleConditionShouldBeSet() {
 		// 2HEUS,ZbAA152591,100,NMc
@@ -0,0 +1,19 @@
+package com.ddfplus.db;
+
+/**
+ * DDF messages shared by the db tests.
+ */
+final class FeedFixtures {
+
+	// ESH2 quote refresh
+	static final String REFRESH = "%<QUOTE symbol=\"ESH2\" name=\"E-Mini S&amp;P 500\" exchange=\"GBLX\" basecode=\"A\" pointvalue=\"50.0\" tickincrement=\"25\" ddfexchange=\"M\" lastupdate=\"20120116182024\" bid=\"129025\" bidsize=\"111\" ask=\"129025\" asksize=\"107\" mode=\"R\"><SESSION day=\"G\" session=\"G\" timestamp=\"20120116122036\" open=\"128525\" high=\"129225\" low=\"128125\" last=\"129150\" previous=\"128900\" tradesize=\"6\" volume=\"175626\" numtrades=\"51228\" pricevolume=\"161528936.75\" tradetime=\"20120116102959\" ticks=\"..\" id=\"combined\"/><SESSION day=\"F\" session=\" \" timestamp=\"20120116115052\" last=\"128900\" previous=\"128900\" settlement=\"128900\" openinterest=\"2613516\" volume=\"2115831\" ticks=\"..\" id=\"previous\"/></QUOTE>";
+
+	static final String TRADE = "\u00012ESH2,Z\u0002A129200,5,GA\u0003";
+
+	// Depth 20, 5 bids, 5 asks
+	static final String BOOK = "\u00013XIZ9,B\u00028X55,63795K25,63790L5,63780M1000,63775N35,63765O5,63800J20,63815I5,63820H10,63825G5,63830F7\u0003";
+
+	private FeedFixtures() {
+	}
+
+}
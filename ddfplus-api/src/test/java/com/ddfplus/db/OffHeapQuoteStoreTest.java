@@ -0,0 +1,96 @@
+package com.ddfplus.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class OffHeapQuoteStoreTest {
+
+	private static final String REFRESH = FeedFixtures.REFRESH;
+
+	private static final byte[] TRADE = FeedFixtures.TRADE.getBytes();
+
+	private DataMaster dataMaster;
+
+	private OffHeapQuoteStore store;
+
+	@Before
+	public void setUp() {
+		dataMaster = new DataMaster(MasterType.Realtime);
+		store = new OffHeapQuoteStore(1);
+		dataMaster.setQuoteStore(store);
+	}
+
+	@Test
+	public void evictedQuoteIsRestored() {
+		Quote hot = dataMaster.processMessage(REFRESH.getBytes()).getQuote();
+		dataMaster.processMessage(TRADE);
+		float last = hot.getCombinedSession().getLast();
+		long volume = hot.getCombinedSession().getVolume();
+
+		// Second symbol evicts the first
+		dataMaster.processMessage(REFRESH.replace("ESH2", "ESM2").getBytes());
+		assertEquals(1, store.getHotCount());
+		assertTrue(store.getOffHeapBytes() > 0);
+
+		Quote q = dataMaster.getQuote("ESH2");
+		assertNotSame(hot, q);
+		assertEquals("ESH2", q.getSymbolInfo().getSymbol());
+		assertEquals(hot.getSymbolId(), q.getSymbolId());
+		assertEquals("M", q.getDDFExchange());
+		assertEquals(hot.getBid(), q.getBid(), 0.0);
+		assertEquals(last, q.getCombinedSession().getLast(), 0.0);
+		assertEquals(volume, q.getCombinedSession().getVolume());
+		assertEquals(hot.getCombinedSession().getDayCode(), q.getCombinedSession().getDayCode());
+		assertEquals(2613516, q.getPreviousSession().getOpenInterest());
+		assertEquals(hot.getPreviousSession().getSettlement(), q.getPreviousSession().getSettlement(), 0.0);
+
+		// Updates continue on the restored quote
+		Quote updated = dataMaster.processMessage(TRADE).getQuote();
+		assertSame(q, updated);
+		assertEquals(volume + 5, updated.getCombinedSession().getVolume());
+	}
+
+	@Test
+	public void quoteEvictedWhileUpdatedStaysHot() {
+		Quote updating = dataMaster.processMessage(REFRESH.getBytes()).getQuote();
+		final int id = updating.getSymbolId();
+		long volume = updating.getCombinedSession().getVolume();
+
+		// Evicted and read again by another thread during the update
+		dataMaster.processMessage(REFRESH.replace("ESH2", "ESM2").getBytes());
+		Quote read = store.get(id);
+		assertNotSame(updating, read);
+		updating.getCombinedSession()._volume += 5;
+		store.updated(updating);
+
+		assertSame(updating, store.get(id));
+		Quote updated = dataMaster.processMessage(TRADE).getQuote();
+		assertSame(updating, updated);
+		assertEquals(volume + 10, updated.getCombinedSession().getVolume());
+	}
+
+	@Test
+	public void requestSymbolSharesTheQuote() {
+		Quote q = dataMaster.processMessage(REFRESH.getBytes()).getQuote();
+		q.setRequestSymbol("ES*1");
+		dataMaster.putQuote(q);
+		assertEquals(2, dataMaster.getSizes()[0]);
+
+		dataMaster.processMessage(REFRESH.replace("ESH2", "ESM2").getBytes());
+		Quote alias = dataMaster.getQuote("ES*1");
+		assertNotNull(alias);
+		assertSame(alias, dataMaster.getQuote("ESH2"));
+		assertEquals("ES*1", alias.getRequestSymbol());
+
+		dataMaster.clearDataCache();
+		assertEquals(0, dataMaster.getSizes()[0]);
+		assertEquals(0, store.getHotCount());
+	}
+
+}
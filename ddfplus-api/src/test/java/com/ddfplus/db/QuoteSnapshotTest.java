@@ -0,0 +1,59 @@
+package com.ddfplus.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class QuoteSnapshotTest {
+
+	private static final byte[] REFRESH = FeedFixtures.REFRESH.getBytes();
+
+	private static final byte[] TRADE = FeedFixtures.TRADE.getBytes();
+
+	private DataMaster dataMaster;
+
+	@Before
+	public void setUp() {
+		dataMaster = new DataMaster(MasterType.Realtime);
+	}
+
+	@Test
+	public void disabledByDefault() {
+		FeedEvent fe = dataMaster.processMessage(REFRESH);
+		assertNotNull(fe.getQuote());
+		assertNull(fe.getQuoteSnapshot());
+		assertNull(fe.getQuote().getSnapshot());
+	}
+
+	@Test
+	public void snapshotDoesNotChangeWithTheQuote() {
+		dataMaster.setQuoteSnapshots(true);
+		FeedEvent fe = dataMaster.processMessage(REFRESH);
+		QuoteSnapshot first = fe.getQuoteSnapshot();
+		assertNotNull(first);
+		assertSame(first, fe.getQuote().getSnapshot());
+		assertEquals("ESH2", first.getSymbolInfo().getSymbol());
+		assertEquals(fe.getQuote().getSymbolId(), first.getSymbolId());
+		float last = first.getCombinedSession().getLast();
+		long volume = first.getCombinedSession().getVolume();
+		assertEquals(fe.getQuote().getCombinedSession().getLast(), last, 0.0);
+		assertEquals(fe.getQuote().getChange(), first.getChange(), 0.0);
+
+		fe = dataMaster.processMessage(TRADE);
+		QuoteSnapshot second = fe.getQuoteSnapshot();
+		assertNotNull(second);
+		// Live quote moved on, the first snapshot did not
+		assertEquals(last, first.getCombinedSession().getLast(), 0.0);
+		assertEquals(volume, first.getCombinedSession().getVolume());
+		assertNotEquals(volume, second.getCombinedSession().getVolume());
+		assertEquals(fe.getQuote().getCombinedSession().getVolume(), second.getCombinedSession().getVolume());
+		// Unchanged session is shared
+		assertSame(first.getPreviousSession(), second.getPreviousSession());
+	}
+
+}
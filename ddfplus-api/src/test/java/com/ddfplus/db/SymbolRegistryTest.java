@@ -0,0 +1,90 @@
+package com.ddfplus.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SymbolRegistryTest {
+
+	private final SymbolRegistry registry = new SymbolRegistry();
+
+	@Test
+	public void registerAndLookup() {
+		assertEquals(SymbolRegistry.NOT_FOUND, registry.getId("IBM"));
+		int ibm = registry.register("IBM");
+		int esz = registry.register("ESZ9");
+		assertEquals(0, ibm);
+		assertEquals(1, esz);
+		assertEquals(ibm, registry.register("IBM"));
+		assertEquals(ibm, registry.getId("IBM"));
+		assertEquals("ESZ9", registry.getSymbol(esz));
+		assertEquals(2, registry.size());
+		assertNull(registry.getSymbol(2));
+		assertEquals(SymbolRegistry.NOT_FOUND, registry.register(""));
+	}
+
+	@Test
+	public void bytesMatchStrings() {
+		byte[] ba = "\u00012HOZ9,7\u0002CJ1021371,5,SG\u0003".getBytes();
+		assertEquals("HOZ9".hashCode(), SymbolRegistry.hash(ba, 2, 4));
+		assertEquals(SymbolRegistry.NOT_FOUND, registry.getId(ba, 2, 4));
+		int id = registry.register(ba, 2, 4);
+		assertEquals(id, registry.getId("HOZ9"));
+		assertEquals("HOZ9", registry.getSymbol(id));
+		assertEquals(SymbolRegistry.NOT_FOUND, registry.getId(ba, 2, 3));
+	}
+
+	@Test
+	public void grows() {
+		for (int i = 0; i < 5000; i++) {
+			assertEquals(i, registry.register("S" + i));
+		}
+		for (int i = 0; i < 5000; i++) {
+			assertEquals(i, registry.getId("S" + i));
+		}
+	}
+
+	@Test
+	public void symbolMap() {
+		SymbolMap<String> map = new SymbolMap<>();
+		assertNull(map.get(5000));
+		assertNull(map.put(5000, "a"));
+		assertEquals("a", map.put(5000, "b"));
+		assertEquals("b", map.putIfAbsent(5000, "c"));
+		assertNull(map.putIfAbsent(3, "d"));
+		assertEquals(2, map.size());
+
+		final List<Integer> ids = new ArrayList<>();
+		map.forEach((id, v) -> ids.add(id));
+		assertEquals(3, (int) ids.get(0));
+		assertEquals(5000, (int) ids.get(1));
+
+		assertEquals("d", map.remove(3));
+		assertNull(map.remove(SymbolRegistry.NOT_FOUND));
+		map.clear();
+		assertEquals(0, map.size());
+		assertNull(map.get(5000));
+	}
+
+	@Test
+	public void dataMasterKeysQuotesById() {
+		DataMaster dm = new DataMaster(MasterType.Realtime);
+		Quote q = new Quote(new SymbolInfo("IBM", "IBM", "NYSE", 'A', 1.0f, 1));
+		dm.putQuote(q);
+		int id = dm.getSymbolRegistry().getId("IBM");
+		assertEquals(id, q.getSymbolId());
+		assertSame(q, dm.getQuote(id));
+		assertSame(q, dm.getQuote("IBM"));
+
+		FeedEvent fe = dm.processMessage("\u00012IBM,7\u0002AN101220,100,SG\u0003".getBytes());
+		assertEquals(id, fe.getSymbolId());
+		assertSame(q, fe.getQuote());
+		assertEquals("IBM", dm.getAllSymbols()[0]);
+	}
+
+}
@@ -2,6 +2,8 @@ package com.ddfplus.db;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -31,8 +33,57 @@ public class TestCumulativeVolume {
 		assertEquals("LEJ0", volume._symbol);
 		assertEquals('B', volume.getBaseCode());
 		assertEquals(95.850F, volume._last, 0.01F);
-		assertEquals(24, volume._data.size());
+		assertEquals(24, volume.getPriceCount());
+		assertEquals(504, volume.getVolume(95.650F));
+		// Round trip, data in price order
+		assertEquals(volume.getData(), CumulativeVolume.fromXMLNode(volume.toXMLNode()).getData());
+
+	}
 
+	@Test
+	public void ladderKeepsPricesInOrder() {
+		CumulativeVolume volume = new CumulativeVolume("ESZ9");
+		volume.setBaseCode('A');
+		volume.setTickIncrement(25);
+		float[] prices = { 3000.25f, 2990.00f, 3010.50f, 3000.25f, 2500.00f };
+		for (float p : prices) {
+			volume.addTrade(p, 10);
+		}
+		assertEquals(4, volume.getPriceCount());
+		assertEquals(20, volume.getVolume(3000.25f));
+		assertEquals(0, volume.getVolume(3000.50f));
+		assertEquals(Arrays.asList(2500.00f, 2990.00f, 3000.25f, 3010.50f), volume.getPrices());
+		assertEquals(10, volume.getLastCumulativeVolume());
+
+		// Off the tick increment
+		volume.addTrade(3000.01f, 5);
+		assertEquals(5, volume.getVolume(3000.01f));
+		assertEquals(20, volume.getVolume(3000.25f));
+		assertEquals(Arrays.asList(2500.00f, 2990.00f, 3000.01f, 3000.25f, 3010.50f), volume.getPrices());
+
+		final int[] total = new int[1];
+		volume.forEach((price, v) -> total[0] += v);
+		assertEquals(55, total[0]);
+
+		volume.clear();
+		assertEquals(0, volume.getPriceCount());
+		assertTrue(volume.getPrices().isEmpty());
+	}
+
+	@Test
+	public void outliers() {
+		CumulativeVolume volume = new CumulativeVolume("EURUSD");
+		volume.setBaseCode('E');
+		volume.addTrade(1.085001f, 1);
+		// Too far for the ladder
+		volume.addTrade(1000.0f, 2);
+		volume.addTrade(0.5f, 3);
+		assertEquals(Arrays.asList(0.5f, 1.085001f, 1000.0f), volume.getPrices());
+		assertEquals(2, volume.getVolume(1000.0f));
+		assertEquals(3, volume.getVolume(0.5f));
+		assertEquals(3, volume.getPriceCount());
+		// In range bad ticks do not grow the ladder past its cap
+		assertTrue(volume.getLadderSlots() <= CumulativeVolume.MAX_SLOTS);
 	}
 
 	static final String VOLUME_2 = "<CV symbol=\"CLZ3\" basecode=\"A\" tickincrement=\"1\" last=\"8600\" lastsize=\"1\" lastcvol=\"20\" date=\"20100530120000\" count=\"0\"/>";
@@ -47,7 +98,7 @@ public class TestCumulativeVolume {
 		assertEquals("CLZ3", volume._symbol);
 		assertEquals('A', volume.getBaseCode());
 		assertEquals(86.00F, volume._last, 0.01F);
-		assertEquals(0, volume._data.size());
+		assertEquals(0, volume.getPriceCount());
 
 	}
 
@@ -0,0 +1,47 @@
+package com.ddfplus.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+public class JmxMetricsPublisherTest {
+
+	@Test
+	public void publishesStagesAndRecordTypes() throws Exception {
+		LatencyRecorder recorder = new LatencyRecorder();
+		long t = recorder.now();
+		recorder.record(LatencyStage.DECODE, t - 1000);
+		recorder.recordMessage('2', 'Z', t - 5000);
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		JmxMetricsPublisher publisher = new JmxMetricsPublisher(server);
+		publisher.start("test", recorder);
+		ObjectName name = publisher.getObjectName();
+		try {
+			assertTrue(server.isRegistered(name));
+			CompositeData[] stages = (CompositeData[]) server.getAttribute(name, "Stages");
+			assertEquals(2, stages.length);
+			assertEquals("DECODE", stages[0].get("name"));
+			assertEquals("TOTAL", stages[1].get("name"));
+			CompositeData[] types = (CompositeData[]) server.getAttribute(name, "RecordTypes");
+			assertEquals(1, types.length);
+			assertEquals("2Z", types[0].get("name"));
+			assertEquals(1L, types[0].get("count"));
+
+			server.invoke(name, "reset", null, null);
+			assertEquals(0, recorder.getHistogram("2Z").getCount());
+		} finally {
+			publisher.stop();
+		}
+		assertFalse(server.isRegistered(name));
+	}
+
+}
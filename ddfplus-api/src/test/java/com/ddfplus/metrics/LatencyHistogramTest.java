@@ -0,0 +1,45 @@
+package com.ddfplus.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void bucketsAreContiguous() {
+		long previous = -1;
+		for (int i = 0; i < LatencyHistogram.BUCKETS - 1; i++) {
+			long high = LatencyHistogram.highestValue(i);
+			assertEquals(i, LatencyHistogram.index(high));
+			assertEquals(i, LatencyHistogram.index(previous + 1));
+			previous = high;
+		}
+		assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.index(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void percentiles() {
+		LatencyHistogram h = new LatencyHistogram();
+		for (int i = 1; i <= 100000; i++) {
+			h.record(i * 10L);
+		}
+		assertEquals(100000, h.getCount());
+		assertEquals(1000000, h.getMax());
+		assertEquals(500005, h.getMean(), 0.5);
+		assertWithin(500000, h.getValueAtPercentile(50));
+		assertWithin(990000, h.getValueAtPercentile(99));
+		assertEquals(1000000, h.getValueAtPercentile(100));
+
+		h.reset();
+		assertEquals(0, h.getCount());
+		assertEquals(0, h.getValueAtPercentile(50));
+	}
+
+	private static void assertWithin(long expected, long actual) {
+		assertTrue(actual + " not within 3% of " + expected,
+				actual >= expected && actual <= expected + expected * 3 / 100);
+	}
+
+}
@@ -0,0 +1,55 @@
+package com.ddfplus.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+import org.junit.Test;
+
+public class GapDetectorTest {
+
+	private static final SocketAddress A = new InetSocketAddress("127.0.0.1", 1);
+
+	private static final SocketAddress B = new InetSocketAddress("127.0.0.1", 2);
+
+	private static final SocketAddress C = new InetSocketAddress("127.0.0.1", 3);
+
+	@Test
+	public void beaconGapPerSource() {
+		GapDetector d = new GapDetector(3000, 0);
+		assertTrue(GapDetector.isBeacon(beacon("20191105103000")));
+		assertFalse(GapDetector.isBeacon("\u00012IBM,0\u000202A1,\u0003".getBytes()));
+
+		assertFalse(d.beacon(A, beacon("20191105103000"), 1));
+		assertFalse(d.beacon(B, beacon("20191105103004"), 2));
+		assertFalse(d.beacon(A, beacon("20191105103001"), 3));
+		assertFalse(d.beacon(A, beacon("20191105103004"), 4));
+		// across midnight, 5 seconds
+		assertFalse(d.beacon(C, beacon("20191105235958"), 5));
+		assertTrue(d.beacon(C, beacon("20191106000003"), 6));
+		// restarted source
+		assertFalse(d.beacon(A, beacon("20191105102000"), 7));
+		assertEquals(1, d.getBeaconGaps());
+		assertEquals(6, d.getLastGapMillis());
+	}
+
+	@Test
+	public void gapsAreReportedOncePerInterval() {
+		GapDetector d = new GapDetector(3000, 5000);
+		assertFalse(d.drops(-1, 1000));
+		assertFalse(d.drops(10, 1000));
+		assertTrue(d.drops(11, 2000));
+		assertFalse(d.drops(11, 3000));
+		assertFalse(d.drops(12, 4000));
+		assertTrue(d.drops(13, 7000));
+		assertEquals(3, d.getDropGaps());
+	}
+
+	private static byte[] beacon(String time) {
+		return ("\u0001#" + time + "\u0003").getBytes();
+	}
+
+}
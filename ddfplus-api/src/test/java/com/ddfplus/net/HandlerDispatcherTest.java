@@ -0,0 +1,167 @@
+package com.ddfplus.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.ddfplus.api.BookQuoteHandler;
+import com.ddfplus.api.HandlerExecution;
+import com.ddfplus.api.HandlerOptions;
+import com.ddfplus.api.HandlerOverflowPolicy;
+import com.ddfplus.api.QuoteHandler;
+import com.ddfplus.db.BookQuote;
+import com.ddfplus.db.Quote;
+import com.ddfplus.db.SymbolInfo;
+import com.ddfplus.util.XMLNode;
+
+public class HandlerDispatcherTest {
+
+	@Test
+	public void orderedBySymbol() throws InterruptedException {
+		HandlerDispatcher d = new HandlerDispatcher("test",
+				HandlerOptions.ordered(3, 1024, HandlerOverflowPolicy.Block));
+		Map<String, List<Integer>> calls = Collections.synchronizedMap(new HashMap<>());
+		Map<String, Thread> threads = Collections.synchronizedMap(new HashMap<>());
+		String[] symbols = { "ESZ9", "NQZ9", "IBM", "CLZ9", "GCZ9" };
+		CountDownLatch done = new CountDownLatch(symbols.length * 100);
+		for (int i = 0; i < 100; i++) {
+			for (String s : symbols) {
+				final int n = i;
+				d.dispatch(s, () -> {
+					Thread t = threads.putIfAbsent(s, Thread.currentThread());
+					// Always the same thread for a symbol
+					assertTrue(t == null || t == Thread.currentThread());
+					calls.computeIfAbsent(s, k -> new ArrayList<>()).add(n);
+					done.countDown();
+				});
+			}
+		}
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		for (String s : symbols) {
+			List<Integer> l = calls.get(s);
+			for (int i = 0; i < 100; i++) {
+				assertEquals(i, l.get(i).intValue());
+			}
+			assertNotSame(Thread.currentThread(), threads.get(s));
+		}
+		HandlerStatistics stats = d.getStatistics();
+		assertEquals(HandlerExecution.Ordered, stats.getExecution());
+		assertEquals(3, stats.getThreads());
+		assertEquals(500, stats.getQueued());
+		d.shutdown();
+	}
+
+	@Test
+	public void slowHandlerDropsAndFailuresAreIsolated() throws InterruptedException {
+		HandlerDispatcher d = new HandlerDispatcher("test",
+				HandlerOptions.dedicated(2, HandlerOverflowPolicy.DropNewest));
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		d.dispatch(null, () -> {
+			blocked.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+			}
+			throw new IllegalStateException("failed");
+		});
+		assertTrue(blocked.await(5, TimeUnit.SECONDS));
+		CountDownLatch done = new CountDownLatch(2);
+		for (int i = 0; i < 5; i++) {
+			d.dispatch(null, done::countDown);
+		}
+		release.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		d.shutdown();
+
+		HandlerStatistics stats = d.getStatistics();
+		assertEquals(3, stats.getDropped());
+		assertEquals(1, stats.getErrors());
+		assertEquals(2, stats.getMaxQueueSize());
+		assertTrue(stats.getLagMaxNanos() > 0);
+	}
+
+	@Test
+	public void quoteProxyPassesCopy() throws InterruptedException {
+		HandlerDispatcher d = new HandlerDispatcher("test",
+				HandlerOptions.dedicated(16, HandlerOverflowPolicy.Block));
+		List<Quote> received = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch done = new CountDownLatch(1);
+		QuoteHandler proxy = new HandlerDispatcher.QuoteProxy(d, new QuoteHandler() {
+			@Override
+			public void onQuote(Quote quote) {
+				received.add(quote);
+				done.countDown();
+			}
+
+			@Override
+			public void onQuote(Quote quote, boolean refreshMessage) {
+			}
+
+			@Override
+			public boolean isSnapshotRequest() {
+				return false;
+			}
+		});
+		Quote q = new Quote(new SymbolInfo("IBM", "IBM", "A", '2', null, 1));
+		proxy.onQuote(q);
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertNotSame(q, received.get(0));
+		assertEquals("IBM", received.get(0).getSymbolInfo().getSymbol());
+		d.shutdown();
+	}
+
+	@Test
+	public void errorsDoNotStopTheWorker() throws InterruptedException {
+		HandlerDispatcher d = new HandlerDispatcher("test", HandlerOptions.dedicated(4, HandlerOverflowPolicy.Block));
+		d.dispatch(null, () -> {
+			throw new Error("failed");
+		});
+		CountDownLatch done = new CountDownLatch(1);
+		d.dispatch(null, done::countDown);
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(1, d.getStatistics().getErrors());
+		d.shutdown();
+	}
+
+	@Test
+	public void bookProxyPassesCopy() throws InterruptedException {
+		HandlerDispatcher d = new HandlerDispatcher("test",
+				HandlerOptions.dedicated(16, HandlerOverflowPolicy.Block));
+		List<BookQuote> received = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch done = new CountDownLatch(1);
+		BookQuoteHandler proxy = new HandlerDispatcher.BookQuoteProxy(d, b -> {
+			received.add(b);
+			done.countDown();
+		});
+		XMLNode node = new XMLNode("BOOK");
+		node.setAttribute("symbol", "XIZ9");
+		node.setAttribute("basecode", "A");
+		node.setAttribute("askcount", "1");
+		node.setAttribute("bidcount", "1");
+		node.setAttribute("askprices", "101");
+		node.setAttribute("asksizes", "1");
+		node.setAttribute("bidprices", "99");
+		node.setAttribute("bidsizes", "4");
+		BookQuote book = BookQuote.fromXMLNode(node);
+		proxy.onBookQuote(book);
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		BookQuote copy = received.get(0);
+		assertNotSame(book, copy);
+		assertNotSame(book.getBidData()[0], copy.getBidData()[0]);
+		assertEquals(1, copy.getBidCount());
+		assertEquals(4, ((int[]) copy.getBidData()[1])[0]);
+		d.shutdown();
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.ddfplus.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.ddfplus.api.ConnectionEvent;
+import com.ddfplus.enums.ConnectionType;
+
+public class IoChannelListenTCPTest {
+
+	private static final byte[] MESSAGE = "\u00012IBM,0\u000202A1,\u0003".getBytes();
+
+	@Test
+	public void servesSeveralSources() throws Exception {
+		int port;
+		try (ServerSocket s = new ServerSocket(0)) {
+			port = s.getLocalPort();
+		}
+		InetAddress local = InetAddress.getLoopbackAddress();
+		Connection connection = new Connection(ConnectionType.LISTEN_TCP, local, port, null);
+		CountDownLatch latch = new CountDownLatch(5);
+		AtomicInteger received = new AtomicInteger();
+		connection.registerHandler(new ConnectionHandler() {
+			@Override
+			public void onConnectionEvent(ConnectionEvent event) {
+			}
+
+			@Override
+			public void onMessage(byte[] array) {
+				received.incrementAndGet();
+				latch.countDown();
+			}
+		});
+
+		IoChannelListenTCP channel = new IoChannelListenTCP(connection);
+		channel.setDaemon(true);
+		channel.start();
+		try (Socket a = connect(local, port); Socket b = connect(local, port)) {
+			OutputStream out = a.getOutputStream();
+			out.write(MESSAGE);
+			out.write(MESSAGE);
+			out.write(MESSAGE);
+			// framer needs the byte after ETX
+			out.write('\n');
+			out.flush();
+			// split across writes
+			out = b.getOutputStream();
+			out.write(MESSAGE, 0, 5);
+			out.flush();
+			Thread.sleep(20);
+			out.write(MESSAGE, 5, MESSAGE.length - 5);
+			out.write(MESSAGE);
+			out.write('\n');
+			out.flush();
+
+			assertTrue(latch.await(5, TimeUnit.SECONDS));
+			assertEquals(5, received.get());
+
+			List<SourceStatistics> stats = channel.getSourceStatistics();
+			assertEquals(2, stats.size());
+			long messages = 0;
+			long bytes = 0;
+			for (SourceStatistics s : stats) {
+				messages += s.getMessages();
+				bytes += s.getBytes();
+				assertTrue(s.getMessages() == 2 || s.getMessages() == 3);
+			}
+			assertEquals(5, messages);
+			assertEquals(5 * MESSAGE.length + 2, bytes);
+		} finally {
+			channel.disconnectAndShutdown();
+			channel.join(5000);
+		}
+	}
+
+	private static Socket connect(InetAddress addr, int port) throws Exception {
+		for (int i = 0;; i++) {
+			try {
+				return new Socket(addr, port);
+			} catch (java.net.ConnectException e) {
+				if (i == 50) {
+					throw e;
+				}
+				Thread.sleep(50);
+			}
+		}
+	}
+
+}
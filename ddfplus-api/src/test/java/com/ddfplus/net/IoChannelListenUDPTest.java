@@ -0,0 +1,107 @@
+package com.ddfplus.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.ddfplus.api.ConnectionEvent;
+import com.ddfplus.enums.ConnectionType;
+
+public class IoChannelListenUDPTest {
+
+	private static final String M1 = "\u00012IBM,0\u000202A1,\u0003";
+
+	private static final String M2 = "\u00012ESZ9,0\u0002B0A1,\u0003\u001412345678";
+
+	@Test
+	public void framesDatagramsInPlace() throws Exception {
+		InetAddress local = InetAddress.getLoopbackAddress();
+		int port;
+		try (DatagramSocket s = new DatagramSocket(0, local)) {
+			port = s.getLocalPort();
+		}
+		Connection connection = new Connection(ConnectionType.LISTEN_UDP, local, port, null);
+		CountDownLatch latch = new CountDownLatch(3);
+		List<String> received = new CopyOnWriteArrayList<String>();
+		connection.registerHandler(new ConnectionHandler() {
+			@Override
+			public void onConnectionEvent(ConnectionEvent event) {
+			}
+
+			@Override
+			public void onMessage(byte[] array) {
+				received.add(new String(array));
+				latch.countDown();
+			}
+		});
+
+		IoChannelListenUDP channel = new IoChannelListenUDP(connection);
+		channel.setDaemon(true);
+		channel.start();
+		try (DatagramSocket out = new DatagramSocket()) {
+			byte[] p1 = (M1 + M2).getBytes();
+			byte[] p2 = M1.getBytes();
+			// Until the channel is bound
+			for (int i = 0; i < 100 && latch.getCount() == 3; i++) {
+				out.send(new DatagramPacket(p1, p1.length, local, port));
+				Thread.sleep(50);
+			}
+			out.send(new DatagramPacket(p2, p2.length, local, port));
+
+			assertTrue(latch.await(5, TimeUnit.SECONDS));
+			int n = received.size();
+			assertEquals(M1, received.get(0));
+			assertEquals(M2, received.get(1));
+			assertEquals(M1, received.get(n - 1));
+
+			ReceiveStatistics stats = channel.getReceiveStatistics();
+			assertNotNull(stats);
+			assertEquals(n, stats.getMessages());
+			assertEquals(n / 2 + 1, stats.getPackets());
+			assertEquals((n / 2) * p1.length + p2.length, stats.getBytes());
+			assertEquals(0, stats.getQueueDrops());
+		} finally {
+			channel.disconnectAndShutdown();
+			channel.join(5000);
+		}
+	}
+
+	@Test
+	public void unframedBytesAreOneMessage() throws Exception {
+		Connection connection = new Connection(ConnectionType.LISTEN_UDP, InetAddress.getLoopbackAddress(), 0,
+				null);
+		List<byte[]> received = new CopyOnWriteArrayList<byte[]>();
+		connection.registerHandler(new ConnectionHandler() {
+			@Override
+			public void onConnectionEvent(ConnectionEvent event) {
+			}
+
+			@Override
+			public void onMessage(byte[] array) {
+				received.add(array);
+			}
+		});
+		IoChannelListenUDP channel = new IoChannelListenUDP(connection);
+		ByteBuffer b = ByteBuffer.wrap(("#" + M1).getBytes());
+		channel.frame(b, null);
+		for (int i = 0; i < 100 && received.size() < 2; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(2, received.size());
+		assertArrayEquals("#".getBytes(), received.get(0));
+		assertArrayEquals(M1.getBytes(), received.get(1));
+	}
+
+}
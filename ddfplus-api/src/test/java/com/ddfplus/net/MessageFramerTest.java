@@ -0,0 +1,149 @@
+package com.ddfplus.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MessageFramerTest {
+
+	private static final byte[] TIMESTAMP = new byte[] { 20, 73, 75, 67, 80, 88, 116, 10, 2 };
+
+	private static final String TRADE = "\u00012HOZ9,7\u0002CJ1021371,5,SG\u0003";
+
+	private static final String REFRESH = "%<QUOTE symbol=\"ESH2\" basecode=\"A\"></QUOTE>";
+
+	@Test
+	public void framesMessagesAndLines() throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		write(os, "+ Successful login\r\n");
+		write(os, TRADE);
+		os.write(TIMESTAMP);
+		write(os, "\n");
+		write(os, TRADE + "\n\n");
+		write(os, REFRESH + "\n");
+
+		List<byte[]> frames = readAll(os.toByteArray(), 1024, 1024);
+		assertEquals(4, frames.size());
+		assertEquals("+ Successful login", new String(frames.get(0)));
+		// Timestamp contains a line feed
+		assertArrayEquals(concat(TRADE.getBytes(), TIMESTAMP), frames.get(1));
+		assertEquals(TRADE, new String(frames.get(2)));
+		assertEquals(REFRESH, new String(frames.get(3)));
+	}
+
+	@Test
+	public void partialReads() throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		for (int i = 0; i < 50; i++) {
+			write(os, TRADE);
+			os.write(TIMESTAMP);
+			write(os, "\n" + REFRESH + "\n");
+		}
+		// 3 byte reads with a buffer smaller than a message
+		List<byte[]> frames = readAll(os.toByteArray(), 16, 3);
+		assertEquals(100, frames.size());
+		for (int i = 0; i < 100; i += 2) {
+			assertArrayEquals(concat(TRADE.getBytes(), TIMESTAMP), frames.get(i));
+			assertEquals(REFRESH, new String(frames.get(i + 1)));
+		}
+	}
+
+	@Test
+	public void waitsForTimestamp() throws IOException {
+		MessageFramer framer = new MessageFramer(64);
+		framer.read(channel(TRADE.getBytes(), 64));
+		// Can't tell yet if a timestamp follows ETX
+		assertNull(framer.next());
+		framer.read(channel(new byte[] { 20, 73, 75 }, 64));
+		assertNull(framer.next());
+		framer.read(channel(new byte[] { 67, 80, 88, 116, 10, 2, '\n' }, 64));
+		assertEquals(TRADE.length() + TIMESTAMP.length, framer.next().length);
+		assertNull(framer.next());
+		assertEquals(0, framer.remaining());
+	}
+
+	@Test
+	public void appendedBuffers() {
+		byte[] data = (TRADE + "\n" + REFRESH + "\n" + TRADE + "\n").getBytes();
+		MessageFramer framer = new MessageFramer(16);
+		List<byte[]> frames = new ArrayList<>();
+		// Web socket frames split messages anywhere, the first larger than
+		// the buffer
+		int[] splits = { 0, 40, 41, 70, data.length };
+		for (int i = 1; i < splits.length; i++) {
+			framer.append(ByteBuffer.wrap(data, splits[i - 1], splits[i] - splits[i - 1]));
+			byte[] f;
+			while ((f = framer.next()) != null) {
+				frames.add(f);
+			}
+		}
+		assertEquals(3, frames.size());
+		assertEquals(TRADE, new String(frames.get(0)));
+		assertEquals(REFRESH, new String(frames.get(1)));
+		assertEquals(TRADE, new String(frames.get(2)));
+		assertEquals(0, framer.remaining());
+	}
+
+	private static List<byte[]> readAll(byte[] data, int capacity, int chunk) throws IOException {
+		MessageFramer framer = new MessageFramer(capacity);
+		ReadableByteChannel ch = channel(data, chunk);
+		List<byte[]> frames = new ArrayList<>();
+		while (true) {
+			byte[] f = framer.next();
+			if (f != null) {
+				frames.add(f);
+			} else if (framer.read(ch) < 0) {
+				break;
+			}
+		}
+		return frames;
+	}
+
+	private static ReadableByteChannel channel(byte[] data, final int chunk) {
+		final ByteArrayInputStream is = new ByteArrayInputStream(data);
+		return new ReadableByteChannel() {
+
+			@Override
+			public boolean isOpen() {
+				return true;
+			}
+
+			@Override
+			public void close() {
+			}
+
+			@Override
+			public int read(ByteBuffer dst) {
+				int n = Math.min(chunk, dst.remaining());
+				byte[] b = new byte[n];
+				n = is.read(b, 0, n);
+				if (n > 0) {
+					dst.put(b, 0, n);
+				}
+				return n;
+			}
+		};
+	}
+
+	private static void write(ByteArrayOutputStream os, String s) throws IOException {
+		os.write(s.getBytes());
+	}
+
+	private static byte[] concat(byte[] a, byte[] b) {
+		byte[] c = new byte[a.length + b.length];
+		System.arraycopy(a, 0, c, 0, a.length);
+		System.arraycopy(b, 0, c, a.length, b.length);
+		return c;
+	}
+
+}
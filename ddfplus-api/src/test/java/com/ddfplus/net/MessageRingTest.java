@@ -0,0 +1,120 @@
+package com.ddfplus.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MessageRingTest {
+
+	@Test
+	public void capacityRoundedUp() {
+		assertEquals(8, new MessageRing<Integer>(5, QueueWaitStrategy.Park, QueueOverflowPolicy.Block).capacity());
+		assertEquals(1, new MessageRing<Integer>(1, QueueWaitStrategy.Park, QueueOverflowPolicy.Block).capacity());
+	}
+
+	@Test
+	public void dropOldest() {
+		MessageRing<Integer> ring = new MessageRing<>(4, QueueWaitStrategy.BusySpin, QueueOverflowPolicy.DropOldest);
+		for (int i = 0; i < 6; i++) {
+			assertTrue(ring.offer(i));
+		}
+		assertEquals(4, ring.size());
+		for (int i = 2; i < 6; i++) {
+			assertEquals(i, (int) ring.poll());
+		}
+		assertNull(ring.poll());
+		QueueStatistics stats = ring.getStatistics();
+		assertEquals(6, stats.getPublished());
+		assertEquals(2, stats.getDropped());
+		assertEquals(4, stats.getMaxSize());
+	}
+
+	@Test
+	public void disconnect() {
+		MessageRing<Integer> ring = new MessageRing<>(2, QueueWaitStrategy.Yield, QueueOverflowPolicy.Disconnect);
+		assertTrue(ring.offer(1));
+		assertTrue(ring.offer(2));
+		assertFalse(ring.offer(3));
+		assertEquals(1, ring.getStatistics().getOverflows());
+		assertEquals(1, (int) ring.poll());
+		assertTrue(ring.offer(3));
+	}
+
+	@Test
+	public void closeReleasesConsumer() {
+		MessageRing<Integer> ring = new MessageRing<>(2, QueueWaitStrategy.Park, QueueOverflowPolicy.Block);
+		ring.offer(1);
+		ring.close();
+		assertEquals(1, (int) ring.take());
+		assertNull(ring.take());
+	}
+
+	@Test
+	public void wakeReleasesConsumer() throws Exception {
+		MessageRing<Integer> ring = new MessageRing<>(2, QueueWaitStrategy.Park, QueueOverflowPolicy.Block);
+		ring.offer(1);
+		ring.wake();
+		// Elements first
+		assertEquals(1, (int) ring.take());
+		assertNull(ring.take());
+		assertFalse(ring.isClosed());
+
+		Thread waker = new Thread(() -> {
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				return;
+			}
+			ring.wake();
+		});
+		waker.start();
+		assertNull(ring.take());
+		waker.join();
+	}
+
+	@Test
+	public void busySpin() throws Exception {
+		// Both sides spinning needs 2 cores, do not block the producer
+		transfer(QueueWaitStrategy.BusySpin, 1 << 18);
+	}
+
+	@Test
+	public void yield() throws Exception {
+		transfer(QueueWaitStrategy.Yield, 16);
+	}
+
+	@Test
+	public void park() throws Exception {
+		transfer(QueueWaitStrategy.Park, 16);
+	}
+
+	/*
+	 * Blocking producer, all messages arrive in order.
+	 */
+	private void transfer(QueueWaitStrategy strategy, int capacity) throws Exception {
+		final int count = 200000;
+		final MessageRing<Integer> ring = new MessageRing<>(capacity, strategy, QueueOverflowPolicy.Block);
+		final long[] result = new long[1];
+		Thread consumer = new Thread(() -> {
+			int expected = 0;
+			for (int i = 0; i < count; i++) {
+				if (ring.take() == expected) {
+					expected++;
+				}
+			}
+			result[0] = expected;
+		});
+		consumer.start();
+		for (int i = 0; i < count; i++) {
+			assertTrue(ring.offer(i));
+		}
+		consumer.join(30000);
+		assertEquals(count, result[0]);
+		assertEquals(count, ring.getStatistics().getPublished());
+		assertEquals(0, ring.size());
+	}
+
+}
@@ -0,0 +1,172 @@
+package com.ddfplus.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.ddfplus.codec.Codec;
+import com.ddfplus.db.DataMaster;
+import com.ddfplus.db.FeedEvent;
+import com.ddfplus.db.MasterType;
+import com.ddfplus.db.Quote;
+import com.ddfplus.db.SymbolInfo;
+import com.ddfplus.db.SymbolRegistry;
+import com.ddfplus.messages.DdfMarketTrade;
+
+public class ShardedProcessorTest {
+
+	private static final String[] SYMBOLS = { "HEUS", "MEZ900C", "ESH2", "IBM", "GOOG" };
+
+	@Test
+	public void symbolsStayOnTheirShard() throws Exception {
+		final int count = 20;
+		DataMaster dataMaster = new DataMaster(MasterType.Realtime);
+		for (String s : SYMBOLS) {
+			dataMaster.putQuote(new Quote(new SymbolInfo(s, s, "G", '2', null, 1)));
+		}
+
+		final Map<String, List<Thread>> threads = new HashMap<>();
+		final Map<String, List<Integer>> sizes = new HashMap<>();
+		final CountDownLatch done = new CountDownLatch(count * SYMBOLS.length);
+		ShardedProcessor processor = new ShardedProcessor(3, dataMaster, fe -> {
+			String symbol = fe.getQuote().getSymbolInfo().getSymbol();
+			synchronized (threads) {
+				threads.computeIfAbsent(symbol, k -> new ArrayList<>()).add(Thread.currentThread());
+				sizes.computeIfAbsent(symbol, k -> new ArrayList<>()).add(tradeSize(fe));
+			}
+			done.countDown();
+		});
+		try {
+			assertEquals(0, processor.shardOf(SymbolRegistry.NOT_FOUND));
+			for (int i = 1; i <= count; i++) {
+				for (String s : SYMBOLS) {
+					processor.route(Codec.parseMessage(("\u00012" + s + ",Z\u0002A152591," + i + ",NA\u0003").getBytes()));
+				}
+			}
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+			for (String s : SYMBOLS) {
+				int shard = processor.shardOf(dataMaster.getSymbolRegistry().getId(s));
+				assertTrue(shard < processor.getShardCount());
+				List<Thread> l = threads.get(s);
+				assertEquals(count, l.size());
+				Thread first = l.get(0);
+				assertEquals("DataMaster shard #" + shard, first.getName());
+				for (int i = 0; i < count; i++) {
+					assertSame(first, l.get(i));
+					assertEquals(i + 1, (int) sizes.get(s).get(i));
+				}
+			}
+		} finally {
+			processor.shutdown();
+		}
+	}
+
+	@Test
+	public void messagesOfASymbolAreProcessedInOrder() throws Exception {
+		final int count = 200;
+		DataMaster dataMaster = new DataMaster(MasterType.Realtime);
+		for (String s : SYMBOLS) {
+			dataMaster.putQuote(new Quote(new SymbolInfo(s, s, "G", '2', null, 1)));
+		}
+
+		final Map<String, List<Integer>> sizes = new HashMap<>();
+		final Map<String, String> threads = new HashMap<>();
+		final List<String> moved = new ArrayList<>();
+		final CountDownLatch done = new CountDownLatch(count * SYMBOLS.length);
+		ShardedProcessor processor = new ShardedProcessor(2, dataMaster, fe -> {
+			String symbol = fe.getQuote().getSymbolInfo().getSymbol();
+			synchronized (sizes) {
+				sizes.computeIfAbsent(symbol, k -> new ArrayList<>()).add(tradeSize(fe));
+				String previous = threads.put(symbol, Thread.currentThread().getName());
+				if (previous != null && !previous.equals(Thread.currentThread().getName())) {
+					moved.add(symbol);
+				}
+			}
+			done.countDown();
+		});
+		try {
+			for (int i = 1; i <= count; i++) {
+				for (String s : SYMBOLS) {
+					processor.route(Codec.parseMessage(("\u00012" + s + ",Z\u0002A152591," + i + ",NA\u0003").getBytes()));
+				}
+			}
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+			assertTrue(moved.isEmpty());
+			for (String s : SYMBOLS) {
+				List<Integer> l = sizes.get(s);
+				assertEquals(count, l.size());
+				for (int i = 0; i < count; i++) {
+					assertEquals(i + 1, (int) l.get(i));
+				}
+			}
+		} finally {
+			processor.shutdown();
+		}
+	}
+
+	@Test
+	public void tasksRunOnTheShardOfTheSymbol() throws Exception {
+		DataMaster dataMaster = new DataMaster(MasterType.Realtime);
+		dataMaster.putQuote(new Quote(new SymbolInfo("IBM", "IBM", "G", '2', null, 1)));
+		final int id = dataMaster.getSymbolRegistry().getId("IBM");
+
+		final List<String> calls = new ArrayList<>();
+		final CountDownLatch done = new CountDownLatch(1);
+		ShardedProcessor processor = new ShardedProcessor(3, dataMaster, fe -> {
+			synchronized (calls) {
+				calls.add("message " + Thread.currentThread().getName());
+			}
+			done.countDown();
+		});
+		try {
+			processor.execute(id, () -> {
+				synchronized (calls) {
+					calls.add("task " + Thread.currentThread().getName());
+				}
+			});
+			processor.route(Codec.parseMessage("\u00012IBM,Z\u0002A152591,1,NA\u0003".getBytes()));
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+			String shard = "DataMaster shard #" + processor.shardOf(id);
+			synchronized (calls) {
+				assertEquals(List.of("task " + shard, "message " + shard), calls);
+			}
+		} finally {
+			processor.shutdown();
+		}
+	}
+
+	@Test
+	public void tasksWakeAnIdleShard() throws Exception {
+		DataMaster dataMaster = new DataMaster(MasterType.Realtime);
+		final CountDownLatch done = new CountDownLatch(1);
+		final List<String> threads = new ArrayList<>();
+		ShardedProcessor processor = new ShardedProcessor(2, dataMaster, fe -> {
+		});
+		try {
+			// Let the shards park
+			Thread.sleep(50);
+			processor.execute(1, () -> {
+				threads.add(Thread.currentThread().getName());
+				done.countDown();
+			});
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+			assertEquals(List.of("DataMaster shard #1"), threads);
+		} finally {
+			processor.shutdown();
+		}
+	}
+
+	private static int tradeSize(FeedEvent fe) {
+		return ((DdfMarketTrade) fe.getDdfMessage()).getTradeSize();
+	}
+
+}
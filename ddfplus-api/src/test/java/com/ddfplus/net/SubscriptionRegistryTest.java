@@ -0,0 +1,77 @@
+package com.ddfplus.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class SubscriptionRegistryTest {
+
+	@Test
+	public void stopRemovesTypes() {
+		SubscriptionRegistry r = new SubscriptionRegistry();
+		r.go("IBM", "SsV");
+		r.go("IBM", "Bb");
+		r.go("IBM", "SsV");
+		assertEquals("SsVBb", r.getTypes("IBM"));
+
+		r.stop("IBM", "Bb");
+		assertEquals("SsV", r.getTypes("IBM"));
+		r.stop("IBM", "SsV");
+		assertNull(r.getTypes("IBM"));
+		assertEquals(0, r.size());
+		assertTrue(r.commands().isEmpty());
+	}
+
+	@Test
+	public void quoteStopRemovesVolume() {
+		SubscriptionRegistry r = new SubscriptionRegistry();
+		r.go("IBM", "SsV");
+		r.go("IBM", "Bb");
+		r.go("MSFT", "SsV");
+		r.go("MSFT", "s");
+		r.stop("IBM", "Ss");
+		assertEquals("Bb", r.getTypes("IBM"));
+		r.stop("MSFT", "Ss");
+		assertNull(r.getTypes("MSFT"));
+		assertEquals(List.of("GO IBM=Bb"), r.commands());
+
+		// Volume stays while a quote type is left
+		r.go("GOOG", "SsV");
+		r.stop("GOOG", "S");
+		assertEquals("sV", r.getTypes("GOOG"));
+	}
+
+	@Test
+	public void commandsArePacked() {
+		SubscriptionRegistry r = new SubscriptionRegistry();
+		r.stream("STR L N;");
+		r.stream("STR L N;");
+		r.go("IBM", "SsV");
+		r.go("MSFT", "s");
+		r.go("ESZ9", "Bb");
+		r.stop("MSFT", "s");
+		assertEquals(List.of("STR L N;", "GO IBM=SsV,ESZ9=Bb"), r.commands());
+	}
+
+	@Test
+	public void commandsAreSplitAtMaxLength() {
+		SubscriptionRegistry r = new SubscriptionRegistry();
+		for (int i = 0; i < 1000; i++) {
+			r.go("SYM" + i, "SsV");
+		}
+		List<String> commands = r.commands();
+		assertTrue(commands.size() > 1);
+		int symbols = 0;
+		for (String c : commands) {
+			assertTrue(c.startsWith("GO "));
+			assertTrue(c.length() <= SubscriptionRegistry.MAX_COMMAND_LENGTH);
+			symbols += c.split(",").length;
+		}
+		assertEquals(1000, symbols);
+	}
+
+}
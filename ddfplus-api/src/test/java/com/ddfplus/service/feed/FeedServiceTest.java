@@ -1,9 +1,9 @@
 package com.ddfplus.service.feed;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -39,17 +39,17 @@ public class FeedServiceTest {
 	}
 
 	@Test
-	public void getQuotes() {
+	public void getQuotes() throws Exception {
 		service.setQueryUrl("src/test/resources/quote_refresh_cme.xml");
-		List<String> s = new ArrayList<String>();
-		s.add("IBM");
-		service.getQuotes(s);
+		service.scheduleQuoteRefresh("IBM");
+		waitForPending();
 
 		// quote 1
 		Quote quote = dataMaster.getQuote("ESZ2125C");		
 		assertNotNull(quote);
 		assertEquals("M", quote.getDDFExchange());
 		assertEquals("ESZ2125C", quote.getSymbolInfo().getSymbol());
+		assertEquals("E-Mini S&P 500", quote.getSymbolInfo().getName());
 		// sessions
 		Session previousSession = quote.getPreviousSession();
 		Session session = quote.getCombinedSession();
@@ -82,4 +82,73 @@ public class FeedServiceTest {
 		assertNotNull(quote3);
 
 	}
+
+	@Test
+	public void refreshRequestsAreBatchedAndDeduplicated() throws Exception {
+		service.setQueryUrl("src/test/resources/quote_refresh_cme.xml");
+		service.setBatchSize(2);
+		service.scheduleQuoteRefresh("ESZ2125C");
+		service.scheduleQuoteRefresh("HEQ780C");
+		service.scheduleQuoteRefresh("ESZ2125C");
+		service.scheduleQuoteRefresh("J6U810P");
+		assertEquals(3, service.getPendingCount());
+
+		waitForPending();
+		assertEquals(2, service.getRequestCount());
+		assertEquals(6, service.getRefreshedCount());
+		assertNotNull(dataMaster.getQuote("J6U810P"));
+	}
+
+	@Test
+	public void handlersAreCalledOnOneThread() throws Exception {
+		final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+		final AtomicInteger quotes = new AtomicInteger();
+		quoteExchangeHandlers.put("M", new QuoteHandler() {
+			@Override
+			public void onQuote(Quote quote) {
+				threads.add(Thread.currentThread());
+				quotes.incrementAndGet();
+			}
+
+			@Override
+			public void onQuote(Quote quote, boolean refreshMessage) {
+				onQuote(quote);
+			}
+
+			@Override
+			public boolean isSnapshotRequest() {
+				return false;
+			}
+		});
+		service.setQueryUrl("src/test/resources/quote_refresh_cme.xml");
+		service.setBatchSize(1);
+		service.scheduleQuoteRefresh("ESZ2125C");
+		service.scheduleQuoteRefresh("HEQ780C");
+		service.scheduleQuoteRefresh("J6U810P");
+
+		waitForPending();
+		assertEquals(3, service.getRequestCount());
+		assertEquals(9, quotes.get());
+		assertEquals(1, threads.size());
+	}
+
+	@Test
+	public void failedRequestsAreCounted() throws Exception {
+		service.setQueryUrl("src/test/resources/missing.xml");
+		service.setMaxRetries(0);
+		service.setMaxPending(1);
+		service.scheduleQuoteRefresh("IBM");
+		service.scheduleQuoteRefresh("MSFT");
+		assertEquals(1, service.getDroppedCount());
+
+		waitForPending();
+		assertEquals(1, service.getFailedCount());
+	}
+
+	private void waitForPending() throws InterruptedException {
+		for (int i = 0; i < 100 && service.getPendingCount() > 0; i++) {
+			Thread.sleep(50);
+		}
+		assertEquals(0, service.getPendingCount());
+	}
 }
@@ -0,0 +1,144 @@
+package com.ddfplus.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MessageStoreImplTest {
+
+	private static final long START = TimeUnit.SECONDS.toNanos(1700000000L);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void rollsSegmentsAndReadsAll() throws Exception {
+		String path = new File(folder.getRoot(), "ddf").getPath();
+		write(path, 1000);
+
+		MessageStoreImpl store = new MessageStoreImpl();
+		store.open(path, true);
+		assertTrue(store.segmentFile(1).exists());
+		List<String> read = new ArrayList<>();
+		List<Long> times = new ArrayList<>();
+		store.readMessages(new MessageStore.ReaderCallback() {
+			@Override
+			public void onMessage(byte[] bytes, int len) {
+			}
+
+			@Override
+			public void onMessage(long timestampNanos, byte[] bytes, int len) {
+				read.add(new String(bytes, 0, len));
+				times.add(timestampNanos);
+			}
+		});
+		assertEquals(1000, read.size());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(message(i), read.get(i));
+			assertEquals(time(i), (long) times.get(i));
+		}
+	}
+
+	@Test
+	public void readsTimeRange() throws Exception {
+		String path = new File(folder.getRoot(), "ddf").getPath();
+		write(path, 1000);
+
+		MessageStoreImpl store = new MessageStoreImpl();
+		store.open(path, true);
+		List<String> read = new ArrayList<>();
+		store.readMessages(time(500), time(509), (bytes, len) -> read.add(new String(bytes, 0, len)));
+		assertEquals(10, read.size());
+		assertEquals(message(500), read.get(0));
+		assertEquals(message(509), read.get(9));
+	}
+
+	@Test
+	public void indexIsWrittenBeforeClose() throws Exception {
+		String path = new File(folder.getRoot(), "ddf").getPath();
+		MessageStoreImpl writer = new MessageStoreImpl(4096, 0);
+		writer.open(path, false);
+		for (int i = 0; i < 1000; i++) {
+			writer.storeMessage(message(i).getBytes(), time(i));
+		}
+		// Not closed, as after a crash
+		File index = new File(path + MessageStoreImpl.INDEX_SUFFIX);
+		long flushed = index.length();
+		assertTrue(flushed > 0);
+
+		MessageStoreImpl store = new MessageStoreImpl();
+		store.open(path, true);
+		List<String> read = new ArrayList<>();
+		store.readMessages(time(500), time(501), (bytes, len) -> read.add(new String(bytes, 0, len)));
+		assertEquals(2, read.size());
+		assertEquals(message(500), read.get(0));
+		writer.close();
+		assertEquals(flushed, index.length());
+	}
+
+	@Test
+	public void emptyMessagesAreNotStored() throws Exception {
+		String path = new File(folder.getRoot(), "ddf").getPath();
+		MessageStoreImpl writer = new MessageStoreImpl();
+		writer.open(path, false);
+		writer.storeMessage(message(0).getBytes(), time(0));
+		writer.storeMessage(new byte[0], time(1));
+		writer.storeMessage(message(2).getBytes(), time(2));
+		writer.close();
+
+		MessageStoreImpl store = new MessageStoreImpl();
+		store.open(path, true);
+		List<String> read = new ArrayList<>();
+		store.readMessages((bytes, len) -> read.add(new String(bytes, 0, len)));
+		assertEquals(2, read.size());
+		assertEquals(message(2), read.get(1));
+	}
+
+	@Test
+	public void readsStreamFormat() throws Exception {
+		File f = folder.newFile("old");
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(f))) {
+			for (int i = 0; i < 3; i++) {
+				byte[] b = message(i).getBytes();
+				out.writeInt(b.length);
+				out.write(b);
+			}
+		}
+		MessageStoreImpl store = new MessageStoreImpl();
+		store.open(f.getPath(), true);
+		List<String> read = new ArrayList<>();
+		store.readMessages((bytes, len) -> read.add(new String(bytes, 0, len)));
+		assertEquals(3, read.size());
+		assertEquals(message(2), read.get(2));
+	}
+
+	private static void write(String path, int count) {
+		// Small segments, about 100 messages each
+		MessageStoreImpl store = new MessageStoreImpl(4096, 0);
+		store.open(path, false);
+		for (int i = 0; i < count; i++) {
+			store.storeMessage(message(i).getBytes(), time(i));
+		}
+		store.close();
+	}
+
+	private static long time(int i) {
+		// 10 ms apart, 100 per index interval
+		return START + TimeUnit.MILLISECONDS.toNanos(10 * i);
+	}
+
+	private static String message(int i) {
+		return "\u00012ESH2,Z\u0002A1292" + i + ",5,GA\u0003";
+	}
+
+}
@@ -2,6 +2,8 @@ package com.ddfplus.util;
 
 import static org.junit.Assert.*;
 
+import java.util.List;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -37,4 +39,40 @@ public class TestXMLNode {
 
 	}
 
+	static final String QUOTE = "%<QUOTE symbol=\"ESH2\" name=\"E-Mini S&amp;P 500\" basecode=\"A\" mode=\"R\"><SESSION day=\"G\" session=\"G\" last=\"129150\" id=\"combined\"/><SESSION day=\"F\" session=\" \" timestamp=\"20120116115052\" id=\"previous\"/></QUOTE>\n";
+
+	@Test
+	public void parseNested() {
+		XMLNode node = XMLNode.parse(QUOTE.getBytes(), 0, QUOTE.length());
+		assertEquals("QUOTE", node.getName());
+		assertEquals("ESH2", node.getAttribute("symbol"));
+		assertEquals("E-Mini S&P 500", node.getAttribute("name"));
+		List<XMLNode> sessions = node.getAllNodes("SESSION");
+		assertEquals(2, sessions.size());
+		assertEquals("combined", sessions.get(0).getAttribute("id"));
+		assertEquals("129150", sessions.get(0).getAttribute("last"));
+		assertEquals(" ", sessions.get(1).getAttribute("session"));
+		assertEquals("20120116115052", sessions.get(1).getAttribute("timestamp"));
+		assertEquals("previous", sessions.get(1).getAttribute("id"));
+	}
+
+	@Test
+	public void decodesEntities() {
+		XMLNode node = XMLNode.parse("<QUOTE name=\"&lt;A&amp;B&gt; &quot;C&apos; &#38;&#x263A; &nbsp; & x\"/>");
+		assertEquals("<A&B> \"C' &\u263A &nbsp; & x", node.getAttribute("name"));
+		// Round trip
+		assertEquals(node.getAttribute("name"), XMLNode.parse(node.toXMLString()).getAttribute("name"));
+	}
+
+	@Test
+	public void parseSelfClosedWithLineFeed() {
+		XMLNode node = XMLNode.parse(m2.substring(1));
+		assertEquals("BOOK", node.getName());
+		assertEquals("10", node.getAttribute("bidcount"));
+		assertEquals("307,604,728,977,1215,994,994,1061,873,995", node.getAttribute("bidsizes"));
+		assertEquals(0, node.getAllNodes("SESSION").size());
+		// Round trip
+		assertEquals(m1.substring(1), XMLNode.parse(node.toXMLString()).toXMLString());
+	}
+
 }
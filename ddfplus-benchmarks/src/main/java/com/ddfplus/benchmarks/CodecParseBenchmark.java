@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.ddfplus.codec.Codec;
+import com.ddfplus.messages.DdfMessageBase;
+
+/**
+ * JMH suite for {@link Codec#parseMessage(byte[])}, one benchmark per
+ * record/subrecord branch.
+ *
+ * Run with the gc profiler to see the bytes allocated per message:
+ *
+ * <pre>
+ * mvn -pl ddfplus-benchmarks -am package
+ * java -jar ddfplus-benchmarks/target/benchmarks.jar CodecParseBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecParseBenchmark {
+
+	// DC4 + 8 byte message timestamp as sent by the servers
+	private static final byte[] TIMESTAMP_SUFFIX = new byte[] { 20, 73, 75, 67, 80, 88, 116, 63, 2 };
+
+	byte[] data20Parameter = stamp("\u00012SF0,0\u00022B1010530,D0Q \u0003");
+	byte[] data20Ask = stamp("\u00012MEZ900C,0\u00022G10100,A0C \u0003");
+	byte[] data21Refresh = stamp("\u00012SK0,3\u00022B10,10380,10380,10254,10300,,10280,,10364,,,,13147,52796,,H \u0003");
+	byte[] data27Trade = stamp("\u00012HOZ9,7\u0002CJ1021371,5,SG\u0003");
+	byte[] data2ZTrade = stamp("\u00012HEUS,Z\u0002A152591,100,NA\u0003");
+	byte[] data28BidAsk = stamp("\u00012HOZ9,8\u0002CJ1020911,5,20919,1,SG\u0003");
+	byte[] data29Condition = stamp("\u00012FTNT,9\u0002*Q15A,  H \u0003");
+	byte[] data3BOrderBook = stamp(
+			"\u00013XIZ9,B\u00028X55,63795K25,63790L5,63780M1000,63775N35,63765O5,63800J20,63815I5,63820H10,63825G5,63830F5\u0003");
+	byte[] data3CSummary = stamp("\u00013IBM,C\u0002AN>>,10/07/2009,12112,12285,12094,12278\u0003");
+	byte[] data3ISummary = stamp("\u00013IBM,I\u0002AN>>,10/07/2009,5967600,1000\u0003");
+	byte[] data3SSummary = stamp("\u00013IBM,S\u0002AN>>,10/07/2009,12112,12285,12094,12278,5967600\u0003");
+	byte[] data3TSummary = stamp("\u00013IBM,T\u0002AN>>,10/07/2009,6967600,6000\u0003");
+	byte[] spread20Parameter = stamp("\u0001SSPZ9|11200C,0\u0002AM10GN2ESZ9|11200C,300,00GR\u0003");
+	byte[] ctrlTimestamp = "\u0001#20091123185002\u0003".getBytes();
+	byte[] refreshXML = ("%<QUOTE symbol=\"ESH2\" name=\"E-Mini S&amp;P 500\" exchange=\"GBLX\" basecode=\"A\" "
+			+ "pointvalue=\"50.0\" tickincrement=\"25\" ddfexchange=\"M\" lastupdate=\"20120116182024\" bid=\"129025\" "
+			+ "bidsize=\"111\" ask=\"129025\" asksize=\"107\" mode=\"R\"><SESSION day=\"G\" session=\"G\" "
+			+ "timestamp=\"20120116122036\" open=\"128525\" high=\"129225\" low=\"128125\" last=\"129150\" "
+			+ "previous=\"128900\" tradesize=\"6\" volume=\"175626\" numtrades=\"51228\" pricevolume=\"161528936.75\" "
+			+ "tradetime=\"20120116102959\" ticks=\"..\" id=\"combined\"/><SESSION day=\"F\" session=\" \" "
+			+ "timestamp=\"20120116115052\" last=\"128900\" previous=\"128900\" settlement=\"128900\" "
+			+ "openinterest=\"2613516\" volume=\"2115831\" ticks=\"..\" id=\"previous\"/></QUOTE>").getBytes();
+
+	private static byte[] stamp(String message) {
+		byte[] ba = message.getBytes();
+		byte[] bx = new byte[ba.length + TIMESTAMP_SUFFIX.length];
+		System.arraycopy(ba, 0, bx, 0, ba.length);
+		System.arraycopy(TIMESTAMP_SUFFIX, 0, bx, ba.length, TIMESTAMP_SUFFIX.length);
+		return bx;
+	}
+
+	@Benchmark
+	public DdfMessageBase parse20Parameter() {
+		return Codec.parseMessage(data20Parameter);
+	}
+
+	@Benchmark
+	public DdfMessageBase parse20Ask() {
+		return Codec.parseMessage(data20Ask);
+	}
+
+	@Benchmark
+	public DdfMessageBase parse21Refresh() {
+		return Codec.parseMessage(data21Refresh);
+	}
+
+	@Benchmark
+	public DdfMessageBase parse27Trade() {
+		return Codec.parseMessage(data27Trade);
+	}
+
+	@Benchmark
+	public DdfMessageBase parse2ZTrade() {
+		return Codec.parseMessage(data2ZTrade);
+	}
+
+	@Benchmark
+	public DdfMessageBase parse28BidAsk() {
+		return Codec.parseMessage(data28BidAsk);
+	}
+
+	@Benchmark
+	public DdfMessageBase parse29Condition() {
+		return Codec.parseMessage(data29Condition);
+	}
+
+	@Benchmark
+	public DdfMessageBase parse3BOrderBook() {
+		return Codec.parseMessage(data3BOrderBook);
+	}
+
+	@Benchmark
+	public DdfMessageBase parse3CSummary() {
+		return Codec.parseMessage(data3CSummary);
+	}
+
+	@Benchmark
+	public DdfMessageBase parse3ISummary() {
+		return Codec.parseMessage(data3ISummary);
+	}
+
+	@Benchmark
+	public DdfMessageBase parse3SSummary() {
+		return Codec.parseMessage(data3SSummary);
+	}
+
+	@Benchmark
+	public DdfMessageBase parse3TSummary() {
+		return Codec.parseMessage(data3TSummary);
+	}
+
+	@Benchmark
+	public DdfMessageBase parseSpread20Parameter() {
+		return Codec.parseMessage(spread20Parameter);
+	}
+
+	@Benchmark
+	public DdfMessageBase parseCtrlTimestamp() {
+		return Codec.parseMessage(ctrlTimestamp);
+	}
+
+	@Benchmark
+	public DdfMessageBase parseRefreshXML() {
+		return Codec.parseMessage(refreshXML);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder().include(CodecParseBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class).build();
+		new Runner(opt).run();
+	}
+
+}
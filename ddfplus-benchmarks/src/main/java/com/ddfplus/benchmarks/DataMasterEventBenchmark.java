@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ddfplus.codec.Codec;
+import com.ddfplus.db.DataMaster;
+import com.ddfplus.db.FeedEvent;
+import com.ddfplus.db.MasterType;
+import com.ddfplus.db.Quote;
+import com.ddfplus.db.SymbolInfo;
+import com.ddfplus.messages.DdfMarketBase;
+
+/**
+ * JMH suite for {@link DataMaster#processMessage(DdfMarketBase)} with and
+ * without event re-use, see {@link DataMaster#setReuseEvents(boolean)}. The
+ * messages are parsed up front so only the event handling is measured.
+ *
+ * Run with the gc profiler to compare the bytes allocated per message:
+ *
+ * <pre>
+ * mvn -pl ddfplus-benchmarks -am package
+ * java -jar ddfplus-benchmarks/target/benchmarks.jar DataMasterEventBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DataMasterEventBenchmark {
+
+	@Param({ "false", "true" })
+	boolean reuseEvents;
+
+	private DataMaster dataMaster;
+
+	// High, with a market event
+	private DdfMarketBase high;
+
+	private DdfMarketBase timestamp;
+
+	@Setup
+	public void setUp() {
+		dataMaster = new DataMaster(MasterType.Realtime);
+		dataMaster.setReuseEvents(reuseEvents);
+		dataMaster.putQuote(new Quote(new SymbolInfo("MEZ900C", "MEZ900C", "G", '2', null, 1)));
+		high = Codec.parseMessage("\u00012MEZ900C,0\u00022G10200,50C \u0003".getBytes());
+		timestamp = Codec.parseMessage("\u0001#20091123185002\u0003".getBytes());
+	}
+
+	@Benchmark
+	public FeedEvent marketEvent() {
+		return dataMaster.processMessage(high);
+	}
+
+	@Benchmark
+	public FeedEvent timestamp() {
+		return dataMaster.processMessage(timestamp);
+	}
+
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2004 - 2015 by Barchart.com, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Barchart.com, Inc.
+ * Use is subject to license terms.
+ */
+package com.ddfplus.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ddfplus.codec.DdfMessageView;
+
+/**
+ * JMH suite for the {@link DdfMessageView} flyweight, compare with
+ * {@link CodecParseBenchmark}. Run with <code>-prof gc</code>, the view should
+ * not allocate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DdfMessageViewBenchmark {
+
+	private final DdfMessageView view = new DdfMessageView();
+
+	byte[] data20Parameter = "\u00012SF0,0\u00022B1010530,D0Q \u0003".getBytes();
+	byte[] data27Trade = "\u00012HOZ9,7\u0002CJ1021371,5,SG\u0003".getBytes();
+	byte[] data28BidAsk = "\u00012HOZ9,8\u0002CJ1020911,5,20919,1,SG\u0003".getBytes();
+	byte[] spread20Parameter = "\u0001SSPZ9|11200C,0\u0002AM10GN2ESZ9|11200C,300,00GR\u0003".getBytes();
+
+	@Benchmark
+	public float view20Parameter() {
+		return view.wrap(data20Parameter, 0, data20Parameter.length).getValueAsPrice();
+	}
+
+	@Benchmark
+	public float view27Trade() {
+		return view.wrap(data27Trade, 0, data27Trade.length).getTradePrice();
+	}
+
+	@Benchmark
+	public float view28BidAsk() {
+		return view.wrap(data28BidAsk, 0, data28BidAsk.length).getBidPrice();
+	}
+
+	@Benchmark
+	public float viewSpread20Parameter() {
+		return view.wrap(spread20Parameter, 0, spread20Parameter.length).getValueAsPrice();
+	}
+
+}
@@ -6,6 +6,8 @@
  */
 package com.ddfplus.api.examples;
 
+import java.time.Instant;
+
 import com.ddfplus.util.MessageStore;
 import com.ddfplus.util.MessageStoreImpl;
 
@@ -13,13 +15,22 @@ public class MessageStoreReader {
 
 	public static void main(String[] args) {
 		if (args.length < 1) {
-			System.err.println("Usage: MessageStoreReader fileName");
+			System.err.println("Usage: MessageStoreReader fileName [from to]");
+			System.err.println("  from, to: ISO-8601 instants, e.g. 2024-03-01T14:30:00Z");
 			System.exit(0);
 		}
 		String dataFile = args[0];
 		MessageStore store = new MessageStoreImpl();
 		store.open(dataFile, true);
-		store.readMessages(new ReaderCallback());
+		if (args.length >= 3) {
+			store.readMessages(toNanos(Instant.parse(args[1])), toNanos(Instant.parse(args[2])), new ReaderCallback());
+		} else {
+			store.readMessages(new ReaderCallback());
+		}
+	}
+
+	private static long toNanos(Instant i) {
+		return i.getEpochSecond() * 1000000000L + i.getNano();
 	}
 
 	private static class ReaderCallback implements MessageStore.ReaderCallback {